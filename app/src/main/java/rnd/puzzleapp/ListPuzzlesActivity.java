@@ -1,6 +1,7 @@
 package rnd.puzzleapp;
 
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.view.ContextMenu;
@@ -8,14 +9,17 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.GridView;
 import android.widget.Toast;
 
-import java.util.function.Predicate;
+import java.util.Collections;
+import java.util.Optional;
 
 import rnd.puzzleapp.puzzle.Puzzle;
 import rnd.puzzleapp.puzzle.PuzzleStatus;
+import rnd.puzzleapp.storage.PuzzleMetadata;
 import rnd.puzzleapp.storage.StorageManager;
 import rnd.puzzleapp.storage.StoredPuzzle;
 import rnd.puzzleapp.utils.Dialog;
@@ -41,6 +45,17 @@ public class ListPuzzlesActivity extends AppCompatActivity {
         gridView = findViewById(R.id.grid_list_puzzles);
         gridView.setAdapter(puzzleAdapter);
         gridView.setOnItemClickListener((adapterView, view, i, l) -> startPuzzle(puzzleAdapter.getPuzzle(i)));
+        gridView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                // Preload the thumbnails of the next screenful of puzzles.
+                puzzleAdapter.preloadThumbnails(firstVisibleItem + visibleItemCount, visibleItemCount);
+            }
+        });
         registerForContextMenu(gridView);
 
         if(StorageManager.shouldGeneratePuzzles(this)) {
@@ -50,6 +65,13 @@ public class ListPuzzlesActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        puzzleAdapter.releaseThumbnails();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -61,8 +83,8 @@ public class ListPuzzlesActivity extends AppCompatActivity {
 
             // If a user just returned from playing a puzzle, then update that puzzle.
             Threading.asyncProgressDialog(this, getString(R.string.loading_puzzle),
-                    () -> StorageManager.load(this, activePuzzleCopy),
-                    storedPuzzle -> storedPuzzle.ifPresent(puzzle -> {
+                    () -> StorageManager.loadMetadata(this, activePuzzleCopy),
+                    metadata -> metadata.ifPresent(puzzle -> {
                         puzzleAdapter.update(puzzle);
                         gridView.invalidateViews();
                     }));
@@ -120,7 +142,7 @@ public class ListPuzzlesActivity extends AppCompatActivity {
     @Override
     public boolean onContextItemSelected(MenuItem item) {
         AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) item.getMenuInfo();
-        StoredPuzzle storedPuzzle = puzzleAdapter.getPuzzle(info.position);
+        PuzzleMetadata storedPuzzle = puzzleAdapter.getPuzzle(info.position);
 
         switch (item.getItemId()) {
             case R.id.list_puzzles_context_play:
@@ -156,25 +178,40 @@ public class ListPuzzlesActivity extends AppCompatActivity {
     private void recreatePuzzles() {
         Threading.asyncProgressDialog(this, getString(R.string.deleting_all_puzzles),
                 () -> StorageManager.deleteAll(this),
-                this::generatePuzzles);
+                () -> {
+                    puzzleAdapter.updateAll(Collections.emptyList());
+                    gridView.invalidateViews();
+                    generatePuzzles();
+                });
     }
 
     /**
-     * Generate all default puzzles in an async task, then load all puzzles upon completion.
+     * Generate all default puzzles in an async task, adding each puzzle to the view as soon as it
+     * has been saved. The generation takes a while, so it runs on the thread pool rather than the
+     * serial executor, where it would hold up loading thumbnails, resets and deletes until it is done.
      */
     private void generatePuzzles() {
-        Threading.asyncProgressDialog(this, getString(R.string.generating_puzzles),
-                () -> StorageManager.generatePuzzles(this),
-                this::loadPuzzles);
+        Toast.makeText(this, R.string.generating_puzzles, Toast.LENGTH_SHORT).show();
+
+        Threading.asyncOn(AsyncTask.THREAD_POOL_EXECUTOR,
+                () -> StorageManager.generatePuzzles(this, puzzle -> runOnUiThread(() -> {
+                    puzzleAdapter.update(puzzle);
+                    gridView.invalidateViews();
+                })),
+                () -> {});
     }
 
     /**
-     * Load all puzzles from local storage in an async task, then populate view with loaded puzzles
-     * upon completion.
+     * Load the metadata of all puzzles from local storage in an async task, adding the puzzles to the
+     * view in batches as they are loaded, then populate view with all loaded puzzles upon completion.
+     * The puzzles themselves are only loaded once they are opened.
      */
     private void loadPuzzles() {
-        Threading.asyncProgressDialog(this, getString(R.string.loading_puzzles),
-                () -> StorageManager.load(this),
+        Threading.async(
+                () -> StorageManager.loadMetadata(this, batch -> runOnUiThread(() -> {
+                    puzzleAdapter.updateBatch(batch);
+                    gridView.invalidateViews();
+                })),
                 puzzles -> {
                     puzzleAdapter.updateAll(puzzles);
                     gridView.invalidateViews();
@@ -182,35 +219,28 @@ public class ListPuzzlesActivity extends AppCompatActivity {
     }
 
     /**
-     * Reset all modified puzzles.
+     * Reset all modified puzzles in an async task, and update the view with the reset puzzles upon
+     * completion.
      */
     private void resetAllPuzzles() {
-        Predicate<StoredPuzzle> isModified = sp -> sp.getPuzzle().getStatus() != PuzzleStatus.Untouched;
-
         Threading.asyncProgressDialog(this, getString(R.string.resetting_all_puzzles),
-                () -> puzzleAdapter.getPuzzles().stream().filter(isModified).forEach(sp -> {
-                    sp.getPuzzle().reset();
-                    sp.markDirty();
-                    StorageManager.save(this, sp);
-                }),
-                gridView::invalidateViews);
+                () -> StorageManager.resetModified(this),
+                puzzles -> {
+                    puzzleAdapter.updateBatch(puzzles);
+                    gridView.invalidateViews();
+                });
     }
 
     /**
      * Reset the given puzzle in an async task, and update the view upon completion.
-     * @param storedPuzzle the puzzle to reset
+     * @param metadata the metadata of the puzzle to reset
      */
-    private void resetPuzzle(StoredPuzzle storedPuzzle) {
-        Puzzle puzzle = storedPuzzle.getPuzzle();
-
-        if(puzzle.getStatus() != PuzzleStatus.Untouched) {
-            puzzle.reset();
-            storedPuzzle.markDirty();
-
+    private void resetPuzzle(PuzzleMetadata metadata) {
+        if(metadata.getStatus() != PuzzleStatus.Untouched) {
             Threading.asyncProgressDialog(this, getString(R.string.saving_puzzle),
-                    () -> StorageManager.save(this, storedPuzzle),
-                    () -> {
-                        puzzleAdapter.update(storedPuzzle);
+                    () -> StorageManager.reset(this, Collections.singletonList(metadata)),
+                    updated -> {
+                        puzzleAdapter.updateBatch(updated);
                         gridView.invalidateViews();
                     });
         }
@@ -220,7 +250,7 @@ public class ListPuzzlesActivity extends AppCompatActivity {
      * Delete the given puzzle in an async task, and update the view upon completion.
      * @param puzzle the puzzle to delete
      */
-    private void deletePuzzle(StoredPuzzle puzzle) {
+    private void deletePuzzle(PuzzleMetadata puzzle) {
         puzzleAdapter.remove(puzzle);
 
         Threading.asyncProgressDialog(this, getString(R.string.deleting_puzzle),
@@ -244,7 +274,7 @@ public class ListPuzzlesActivity extends AppCompatActivity {
      * Start the puzzle activity with the given puzzle.
      * @param puzzle the puzzle to play
      */
-    private void startPuzzle(StoredPuzzle puzzle) {
+    private void startPuzzle(PuzzleMetadata puzzle) {
         activePuzzle = puzzle.getName();
         generatingRandomPuzzle = false;
         Intent intent = new Intent(this, PuzzleActivity.class);
@@ -258,7 +288,7 @@ public class ListPuzzlesActivity extends AppCompatActivity {
      * Start the puzzle activity with the given solution.
      * @param puzzle the solution to view
      */
-    private void startSolution(StoredPuzzle puzzle) {
+    private void startSolution(PuzzleMetadata puzzle) {
         activePuzzle = null;
         generatingRandomPuzzle = false;
         Intent intent = new Intent(this, PuzzleActivity.class);
@@ -269,15 +299,36 @@ public class ListPuzzlesActivity extends AppCompatActivity {
     }
 
     /**
-     * View the solution to the given puzzle if one exists, or prompt to try and solve the puzzle otherwise.
+     * View the solution to the given puzzle if one exists, or try to find a solution otherwise. A found
+     * solution is saved with the puzzle before it is viewed.
      * @param puzzle the puzzle to view/create a solution of/for
      */
-    private void viewOrCreateSolution(StoredPuzzle puzzle) {
-        if(puzzle.getSolution().isPresent()) {
+    private void viewOrCreateSolution(PuzzleMetadata puzzle) {
+        if(puzzle.hasSolution()) {
             startSolution(puzzle);
         } else {
-            // TODO: Prompt for solver.
-            Toast.makeText(this, R.string.solution_could_not_be_found, Toast.LENGTH_SHORT).show();
+            Threading.asyncProgressDialog(this, getString(R.string.solving_puzzle),
+                    () -> {
+                        Optional<StoredPuzzle> storedPuzzle = StorageManager.load(this, puzzle.getName());
+
+                        if(!storedPuzzle.isPresent()) {
+                            return Optional.<PuzzleMetadata>empty();
+                        }
+
+                        Optional<Puzzle> solution = StorageManager.findSolution(this, storedPuzzle.get().getPuzzle());
+                        solution.ifPresent(storedPuzzle.get()::setSolution);
+
+                        return solution.isPresent() && StorageManager.save(this, storedPuzzle.get()) ?
+                                StorageManager.loadMetadata(this, puzzle.getName()) : Optional.<PuzzleMetadata>empty();
+                    },
+                    updated -> {
+                        if(updated.isPresent()) {
+                            puzzleAdapter.update(updated.get());
+                            startSolution(updated.get());
+                        } else {
+                            Toast.makeText(this, R.string.solution_could_not_be_found, Toast.LENGTH_SHORT).show();
+                        }
+                    });
         }
     }
 }
@@ -46,7 +46,7 @@ public class PuzzleActivity extends AppCompatActivity {
             // If no puzzle is supplied, it will cause a crash, so provide a dummy puzzle.
             puzzleView.setPuzzle(new Puzzle());
             Toast.makeText(this, R.string.could_not_load_puzzle, Toast.LENGTH_SHORT).show();
-        } else if(isSolution && !puzzle.get().getSolution().isPresent()) {
+        } else if(isSolution && !puzzle.get().hasSolution()) {
             // If no puzzle is supplied, it will cause a crash, so provide a dummy puzzle.
             puzzleView.setPuzzle(new Puzzle());
             Toast.makeText(this, R.string.could_not_find_solution, Toast.LENGTH_SHORT).show();
@@ -56,7 +56,7 @@ public class PuzzleActivity extends AppCompatActivity {
             puzzleView.setPuzzle(isSolution ? storedPuzzle.getSolution().get() : storedPuzzle.getPuzzle());
             puzzleController = puzzleView.getPuzzleController();
             puzzleController.setViewOnly(isSolution);
-            puzzleController.setOnPuzzleChangedListener(p -> storedPuzzle.markDirty());
+            puzzleController.setOnMoveListener(storedPuzzle::recordMove);
             puzzleController.setOnPuzzleChangedListener(this::onPuzzleChanged);
         }
     }
@@ -66,10 +66,9 @@ public class PuzzleActivity extends AppCompatActivity {
         super.onPause();
 
         if(storedPuzzle.isDirty()) {
-            // Not doing this in an async task as I want to make sure the puzzle is actually saved
-            // before this activity returns to avoid a potential race condition where the puzzle is
-            // being saved by this activity, while being loaded by the list puzzles activity.
-            StorageManager.save(this, storedPuzzle);
+            // Saved in the background, loading the puzzle while the save is pending returns the
+            // saved state, so the list puzzles activity cannot observe a stale puzzle.
+            StorageManager.saveAsync(this, storedPuzzle);
         }
     }
 
@@ -91,6 +90,10 @@ public class PuzzleActivity extends AppCompatActivity {
                         this::resetPuzzle);
                 return true;
 
+            case R.id.puzzle_option_undo:
+                undoMove();
+                return true;
+
             case R.id.puzzle_option_help:
                 viewHelp();
                 return true;
@@ -114,6 +117,15 @@ public class PuzzleActivity extends AppCompatActivity {
         puzzleView.invalidate();
     }
 
+    private void undoMove() {
+        if(storedPuzzle == null || puzzleController.isViewOnly() || !storedPuzzle.undo()) {
+            Toast.makeText(this, R.string.nothing_to_undo, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        puzzleController.onPuzzleChanged();
+    }
+
     private void viewHelp() {
         Intent intent = new Intent(this, HelpActivity.class);
 
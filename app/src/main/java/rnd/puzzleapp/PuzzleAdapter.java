@@ -1,6 +1,7 @@
 package rnd.puzzleapp;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,16 +11,38 @@ import android.widget.TextView;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
-import rnd.puzzleapp.storage.StoredPuzzle;
+import rnd.puzzleapp.storage.PuzzleMetadata;
+import rnd.puzzleapp.storage.StorageManager;
+import rnd.puzzleapp.utils.Threading;
 
 /**
- * A simple adapter to populate a {@link android.widget.GridView} with puzzle instances.
+ * A simple adapter to populate a {@link android.widget.GridView} with the metadata of stored puzzles,
+ * which loads the thumbnails of the puzzles as they become visible. The thumbnails that are shown are
+ * pinned in the thumbnail cache, and unpinned once their view shows another puzzle, so that only the
+ * thumbnails that are visible are kept from being reused. Thumbnails are loaded on a small pool of
+ * their own, so that they are neither loaded one at a time nor held up by other async tasks.
  */
 public class PuzzleAdapter extends BaseAdapter {
+    private static final int THUMBNAIL_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 3));
+    private static final Executor THUMBNAIL_EXECUTOR = Executors.newFixedThreadPool(THUMBNAIL_THREADS, r -> {
+        Thread thread = new Thread(r, "thumbnail-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Context context;
-    private final List<StoredPuzzle> puzzles;
+    private final List<PuzzleMetadata> puzzles;
+    private final Map<ImageView, Bitmap> shownThumbnails;
+    private boolean isReleased;
 
     /**
      * Creates a new adapter without any puzzles.
@@ -34,9 +57,10 @@ public class PuzzleAdapter extends BaseAdapter {
      * @param context the context of this adapter
      * @param puzzles the list of puzzles
      */
-    public PuzzleAdapter(Context context, List<StoredPuzzle> puzzles) {
+    public PuzzleAdapter(Context context, List<PuzzleMetadata> puzzles) {
         this.context = context;
         this.puzzles = puzzles;
+        this.shownThumbnails = new HashMap<>();
 
         sortPuzzles();
     }
@@ -45,17 +69,29 @@ public class PuzzleAdapter extends BaseAdapter {
      * Updates or adds the given puzzle.
      * @param puzzle the puzzle to update
      */
-    public void update(StoredPuzzle puzzle) {
+    public void update(PuzzleMetadata puzzle) {
         remove(puzzle);
         puzzles.add(puzzle);
         sortPuzzles();
     }
 
+    /**
+     * Updates or adds all given puzzles, which are sorted into place.
+     * @param batch the puzzles to update
+     */
+    public void updateBatch(Collection<PuzzleMetadata> batch) {
+        Set<String> names = batch.stream().map(PuzzleMetadata::getName).collect(Collectors.toSet());
+
+        puzzles.removeIf(p -> names.contains(p.getName()));
+        puzzles.addAll(batch);
+        sortPuzzles();
+    }
+
     /**
      * Replaces all puzzles in this adapter with the given puzzles.
      * @param newPuzzles the new puzzles this adapter should contain
      */
-    public void updateAll(Collection<StoredPuzzle> newPuzzles) {
+    public void updateAll(Collection<PuzzleMetadata> newPuzzles) {
         puzzles.clear();
         puzzles.addAll(newPuzzles);
         sortPuzzles();
@@ -65,10 +101,36 @@ public class PuzzleAdapter extends BaseAdapter {
      * Remove all occurrences of the given puzzle.
      * @param puzzle the puzzle to remove
      */
-    public void remove(StoredPuzzle puzzle) {
+    public void remove(PuzzleMetadata puzzle) {
         puzzles.removeIf(p -> p.getName().equals(puzzle.getName()));
     }
 
+    /**
+     * Loads the thumbnails of the given range of puzzles into memory in the background, such as the
+     * puzzles just past the visible ones, so that they can be shown right away once scrolled to.
+     * @param first the position of the first puzzle
+     * @param count the amount of puzzles
+     */
+    public void preloadThumbnails(int first, int count) {
+        for(int i = Math.max(0, first); i < Math.min(first + count, puzzles.size()); ++i) {
+            StorageManager.preloadThumbnail(context, puzzles.get(i));
+        }
+    }
+
+    /**
+     * Removes the thumbnails from all views, and unpins them. Thumbnails that are still being loaded
+     * are unpinned once they are loaded, without being shown. This must be called once the views of
+     * this adapter are no longer shown.
+     */
+    public void releaseThumbnails() {
+        isReleased = true;
+        shownThumbnails.forEach((view, thumbnail) -> {
+            view.setImageBitmap(null);
+            StorageManager.unpinThumbnail(context, thumbnail);
+        });
+        shownThumbnails.clear();
+    }
+
     @Override
     public int getCount() {
         return puzzles.size();
@@ -84,7 +146,7 @@ public class PuzzleAdapter extends BaseAdapter {
      * @param i the position
      * @return the puzzle at that position
      */
-    public StoredPuzzle getPuzzle(int i) {
+    public PuzzleMetadata getPuzzle(int i) {
         return puzzles.get(i);
     }
 
@@ -92,7 +154,7 @@ public class PuzzleAdapter extends BaseAdapter {
      * Returns the list of puzzles in this adapter.
      * @return the list of puzzles
      */
-    public List<StoredPuzzle> getPuzzles() {
+    public List<PuzzleMetadata> getPuzzles() {
         return puzzles;
     }
 
@@ -103,7 +165,7 @@ public class PuzzleAdapter extends BaseAdapter {
 
     @Override
     public View getView(int i, View view, ViewGroup viewGroup) {
-        StoredPuzzle puzzle = puzzles.get(i);
+        PuzzleMetadata puzzle = puzzles.get(i);
         View gridItemView = view;
 
         if(gridItemView == null) {
@@ -116,12 +178,53 @@ public class PuzzleAdapter extends BaseAdapter {
         ImageView thumbnailView = gridItemView.findViewById(R.id.puzzles_grid_item_thumbnail);
 
         nameView.setText(puzzle.getName());
-        stateView.setText(puzzle.getPuzzle().getStatus().toString());
-        thumbnailView.setImageBitmap(puzzle.getThumbnail());
+        stateView.setText(puzzle.getStatus().toString());
+        loadThumbnail(thumbnailView, puzzle);
 
         return gridItemView;
     }
 
+    /**
+     * Shows the thumbnail of the given puzzle in the given view. A thumbnail that is in memory is shown
+     * immediately, otherwise it is loaded in an async task, and shown if the view was not recycled for
+     * another puzzle in the meantime. Only thumbnails of visible puzzles are thus ever loaded.
+     * @param thumbnailView the view to show the thumbnail in
+     * @param puzzle the metadata of the puzzle
+     */
+    private void loadThumbnail(ImageView thumbnailView, PuzzleMetadata puzzle) {
+        Optional<Bitmap> cached = StorageManager.pinThumbnail(context, puzzle);
+
+        showThumbnail(thumbnailView, cached.orElse(null));
+        thumbnailView.setTag(puzzle);
+
+        if(cached.isPresent()) {
+            return;
+        }
+
+        Threading.asyncOn(THUMBNAIL_EXECUTOR, () -> StorageManager.loadThumbnail(context, puzzle), thumbnail -> {
+            if(!isReleased && thumbnailView.getTag() == puzzle) {
+                thumbnail.ifPresent(t -> showThumbnail(thumbnailView, t));
+            } else {
+                thumbnail.ifPresent(t -> StorageManager.unpinThumbnail(context, t));
+            }
+        });
+    }
+
+    /**
+     * Shows a pinned thumbnail in the given view, and unpins the thumbnail it showed before.
+     * @param thumbnailView the view to show the thumbnail in
+     * @param thumbnail the pinned thumbnail, or {@code null} to show no thumbnail
+     */
+    private void showThumbnail(ImageView thumbnailView, Bitmap thumbnail) {
+        Bitmap previous = thumbnail != null ? shownThumbnails.put(thumbnailView, thumbnail) : shownThumbnails.remove(thumbnailView);
+
+        thumbnailView.setImageBitmap(thumbnail);
+
+        if(previous != null) {
+            StorageManager.unpinThumbnail(context, previous);
+        }
+    }
+
     /**
      * Sort the puzzles based on incremental difficulty.
      */
@@ -0,0 +1,17 @@
+package rnd.puzzleapp;
+
+import android.app.Application;
+
+import rnd.puzzleapp.storage.StorageManager;
+
+/**
+ * The application, which opens the local storage in the background as soon as the app starts.
+ */
+public class PuzzleApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        StorageManager.openAsync(this);
+    }
+}
@@ -1,57 +1,40 @@
 package rnd.puzzleapp;
 
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 
 import rnd.puzzleapp.puzzle.PuzzleDifficulty;
-import rnd.puzzleapp.storage.StoredPuzzle;
+import rnd.puzzleapp.storage.PuzzleMetadata;
 
 /**
  * Comparator that sorts puzzles based on incremental difficulty.
  */
-public class PuzzleComparator implements Comparator<StoredPuzzle> {
+public class PuzzleComparator implements Comparator<PuzzleMetadata> {
     public static final PuzzleComparator INSTANCE = new PuzzleComparator();
 
-    private final Map<String, Integer> difficultyMapping;
-
     private PuzzleComparator() {
-        this.difficultyMapping = new HashMap<>();
-
-        int i = 0;
-        for(PuzzleDifficulty difficulty : PuzzleDifficulty.values()) {
-            difficultyMapping.put(difficulty.getName(), i++);
-        }
+        // NOTE: Private constructor for the Singleton pattern.
     }
 
     @Override
-    public int compare(StoredPuzzle puzzle, StoredPuzzle t1) {
-        String nameA = puzzle.getName();
-        String nameB = t1.getName();
-        int difficultyA = getDifficulty(nameA);
-        int difficultyB = getDifficulty(nameB);
+    public int compare(PuzzleMetadata puzzle, PuzzleMetadata t1) {
+        int difficultyA = getDifficulty(puzzle);
+        int difficultyB = getDifficulty(t1);
 
         // First group on incremental difficulty, then sort on name within equal difficulty.
         if(difficultyA != difficultyB) {
             return Integer.compare(difficultyA, difficultyB);
         } else {
-            return nameA.compareTo(nameB);
+            return puzzle.getName().compareTo(t1.getName());
         }
     }
 
     /**
-     * Returns the difficulty category of a puzzle based on the given name.
-     * @param name the name of the puzzle
+     * Returns the difficulty category of a puzzle.
+     * @param puzzle the metadata of the puzzle
      * @return a non-negative number that represents the incremental difficulty category
      */
-    private int getDifficulty(String name) {
-        for(Map.Entry<String, Integer> entry : difficultyMapping.entrySet()) {
-            if(name.startsWith(entry.getKey())) {
-                return entry.getValue();
-            }
-        }
-
+    private int getDifficulty(PuzzleMetadata puzzle) {
         // Any other puzzles (user generated) fall into the same category, and appear at the end.
-        return difficultyMapping.size();
+        return puzzle.getDifficulty().map(Enum::ordinal).orElse(PuzzleDifficulty.values().length);
     }
 }
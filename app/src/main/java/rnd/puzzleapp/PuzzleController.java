@@ -7,6 +7,7 @@ import java.util.function.Consumer;
 
 import rnd.puzzleapp.puzzle.Bridge;
 import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Move;
 import rnd.puzzleapp.puzzle.Puzzle;
 import rnd.puzzleapp.puzzle.PuzzleStatus;
 
@@ -18,6 +19,7 @@ import static rnd.puzzleapp.utils.Functional.doIf;
 public class PuzzleController {
     private final Puzzle puzzle;
     private final List<Consumer<Puzzle>> puzzleChangedListeners;
+    private final List<Consumer<Move>> moveListeners;
     private final List<BiConsumer<Island, SelectionMode>> selectionChangedListeners;
     private Island selectedIsland;
     private SelectionMode selectedMode;
@@ -28,8 +30,10 @@ public class PuzzleController {
      * @param puzzle the puzzle
      */
     public PuzzleController(Puzzle puzzle) {
-        this.puzzle = puzzle;
+        // Every tap performs point queries, which the occupancy grid answers in constant time.
+        this.puzzle = puzzle.enableOccupancyGrid();
         this.puzzleChangedListeners = new ArrayList<>();
+        this.moveListeners = new ArrayList<>();
         this.selectionChangedListeners = new ArrayList<>();
         this.viewOnly = false;
     }
@@ -42,6 +46,15 @@ public class PuzzleController {
         puzzleChangedListeners.add(puzzleChangedListener);
     }
 
+    /**
+     * Registers a new callback method invoked when a move is applied to the puzzle, before the puzzle
+     * changed listeners are invoked.
+     * @param moveListener the callback method
+     */
+    public void setOnMoveListener(Consumer<Move> moveListener) {
+        moveListeners.add(moveListener);
+    }
+
     /**
      * Registers a new callback method invoked when the island selection changes.
      * @param selectionChangedListener the callback method
@@ -73,10 +86,18 @@ public class PuzzleController {
         if(!viewOnly && puzzle.getStatus() != PuzzleStatus.Untouched) {
             puzzle.reset();
 
+            notifyMoveListeners(Move.reset());
             notifyPuzzleChangedListeners(puzzle);
         }
     }
 
+    /**
+     * The puzzle was changed outside of this controller, for instance by undoing a move.
+     */
+    public void onPuzzleChanged() {
+        notifyPuzzleChangedListeners(puzzle);
+    }
+
     /**
      * View detected a long press on the given puzzle coordinates.
      * @param x the x coordinate
@@ -156,7 +177,7 @@ public class PuzzleController {
      * @return {@code true} if the bridge was removed, {@code false} otherwise
      */
     private boolean deleteBridge(Bridge bridge) {
-        return doIf(puzzle.deleteBridge(bridge), () -> notifyPuzzleChangedListeners(puzzle));
+        return doIf(puzzle.deleteBridge(bridge), () -> notifyMoved(Move.delete(bridge)));
     }
 
     /**
@@ -165,7 +186,24 @@ public class PuzzleController {
      * @return {@code true} if the bridge was placed, {@code false} otherwise
      */
     private boolean placeBridge(Bridge bridge) {
-        return doIf(puzzle.placeBridge(bridge), () -> notifyPuzzleChangedListeners(puzzle));
+        return doIf(puzzle.placeBridge(bridge), () -> notifyMoved(Move.place(bridge)));
+    }
+
+    /**
+     * Notify listeners the given move was applied to the puzzle, and thus the puzzle has changed.
+     * @param move the applied move
+     */
+    private void notifyMoved(Move move) {
+        notifyMoveListeners(move);
+        notifyPuzzleChangedListeners(puzzle);
+    }
+
+    /**
+     * Notify listeners a move was applied to the puzzle.
+     * @param move the applied move
+     */
+    private void notifyMoveListeners(Move move) {
+        moveListeners.forEach(l -> l.accept(move));
     }
 
     /**
@@ -10,10 +10,10 @@ import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.Toast;
 
-import rnd.puzzleapp.graphics.ThumbnailRenderer;
+import java.util.Optional;
+import java.util.Random;
+
 import rnd.puzzleapp.puzzle.Puzzle;
-import rnd.puzzleapp.puzzle.PuzzleGenerator;
-import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
 import rnd.puzzleapp.storage.StorageManager;
 import rnd.puzzleapp.storage.StoredPuzzle;
 import rnd.puzzleapp.utils.Threading;
@@ -30,7 +30,6 @@ public class RandomPuzzleActivity extends Activity {
     private Puzzle solution;
     private Puzzle puzzle;
     private Bitmap thumbnail;
-    private int incrementalSeed;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -48,8 +47,17 @@ public class RandomPuzzleActivity extends Activity {
         generateButton.setOnClickListener(this::onGenerate);
         saveButton.setOnClickListener(this::onSave);
 
+        // Restore the most recently used island settings, and start filling the pool for them.
+        if(RandomPuzzlePool.INSTANCE.hasSettings()) {
+            minIslands.setText(String.valueOf(RandomPuzzlePool.INSTANCE.getMinIslands()));
+            maxIslands.setText(String.valueOf(RandomPuzzlePool.INSTANCE.getMaxIslands()));
+        }
+
+        RandomPuzzlePool.INSTANCE.prefetch(Integer.parseInt(minIslands.getText().toString()),
+                Integer.parseInt(maxIslands.getText().toString()));
+
         // Quickly generate a small bitmap as a placeholder.
-        Threading.async(() -> generate(2, 2, 0), preview::setImageBitmap);
+        Threading.async(() -> generate(2, 2, 0), this::onGenerated);
     }
 
     /**
@@ -61,7 +69,6 @@ public class RandomPuzzleActivity extends Activity {
         String seedString = seedText.getText().toString();
         int min = minString.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(minString);
         int max = maxString.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(maxString);
-        int seed = seedString.isEmpty() ? incrementalSeed++ : Integer.parseInt(seedString);
 
         if(min == Integer.MIN_VALUE) {
             showToast(getString(R.string.enter_min_island_count));
@@ -71,31 +78,66 @@ public class RandomPuzzleActivity extends Activity {
             showToast(getString(R.string.min_island_count_must_be_2));
         } else if(max < min) {
             showToast(getString(R.string.max_island_count_cannot_be_below_min));
-        } else {
+        } else if(!seedString.isEmpty()) {
+            int seed = Integer.parseInt(seedString);
+
             Threading.asyncProgressDialog(this, getString(R.string.generating_puzzle),
                     () -> generate(min, max, seed),
-                    preview::setImageBitmap);
+                    this::onGenerated);
+        } else {
+            Optional<RandomPuzzlePool.PooledPuzzle> pooledPuzzle = RandomPuzzlePool.INSTANCE.poll(min, max);
+
+            if(pooledPuzzle.isPresent()) {
+                onGenerated(show(pooledPuzzle.get()));
+            } else {
+                // The pool is not filled for these settings yet, so generate one with an unpinned seed directly.
+                long seed = new Random().nextLong();
+
+                Threading.asyncProgressDialog(this, getString(R.string.generating_puzzle),
+                        () -> generate(min, max, seed),
+                        this::onGenerated);
+            }
         }
     }
 
     /**
-     * Generate a new random puzzle.
+     * Generate a new random puzzle. Generation is bounded by a budget, so that unlucky settings cannot
+     * keep the progress dialog open indefinitely.
      * @param min the minimum island count
      * @param max the maximum island count
      * @param seed the seed
-     * @return a large thumbnail of the generated puzzle
+     * @return a large thumbnail of the generated puzzle, or {@code null} if generation failed
      */
-    private Bitmap generate(int min, int max, int seed) {
-        PuzzleGenerator generator = new RandomPuzzleGenerator(seed, min, max);
-        solution = generator.generate(true);
+    private Bitmap generate(int min, int max, long seed) {
+        return RandomPuzzlePool.generate(seed, min, max).map(this::show).orElse(null);
+    }
+
+    /**
+     * Makes the given puzzle the current puzzle.
+     * @param pooledPuzzle the puzzle, together with its large thumbnail
+     * @return the large thumbnail of the puzzle
+     */
+    private Bitmap show(RandomPuzzlePool.PooledPuzzle pooledPuzzle) {
+        solution = pooledPuzzle.getSolution();
         puzzle = solution.copy();
         puzzle.reset();
-        ThumbnailRenderer renderer = new ThumbnailRenderer(solution);
-        thumbnail = renderer.drawLarge();
+        thumbnail = pooledPuzzle.getThumbnail();
 
         return thumbnail;
     }
 
+    /**
+     * Callback method invoked when a puzzle has finished generating.
+     * @param thumbnail the large thumbnail of the generated puzzle, or {@code null} if generation failed
+     */
+    private void onGenerated(Bitmap thumbnail) {
+        if(thumbnail != null) {
+            preview.setImageBitmap(thumbnail);
+        } else {
+            showToast(getString(R.string.could_not_generate_puzzle));
+        }
+    }
+
     /**
      * Invoked when the user clicked the save button.
      */
@@ -119,7 +161,7 @@ public class RandomPuzzleActivity extends Activity {
      * @return {@code true} if the puzzle was saved successfully, {@code false} otherwise
      */
     private boolean save(String name) {
-        return StorageManager.save(this, StoredPuzzle.create(name, puzzle, solution, null));
+        return StorageManager.save(this, StoredPuzzle.create(name, puzzle, solution));
     }
 
     /**
@@ -0,0 +1,226 @@
+package rnd.puzzleapp;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import rnd.puzzleapp.graphics.ThumbnailRenderer;
+import rnd.puzzleapp.puzzle.GenerationBudget;
+import rnd.puzzleapp.puzzle.GenerationResult;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleGenerator;
+import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+
+/**
+ * A pool of random puzzles that are generated ahead of time, together with their large thumbnails, for
+ * the most recently used island settings. Taking a puzzle from the pool refills it on a low priority
+ * background thread, so that a random puzzle without a custom seed can be shown instantly. Changing
+ * the island settings discards the pooled puzzles, and any puzzle still being generated for the old
+ * settings.
+ */
+public class RandomPuzzlePool {
+    public static final RandomPuzzlePool INSTANCE = new RandomPuzzlePool();
+    private static final int POOL_SIZE = 3;
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final long MAX_ROUNDS_PER_ISLAND = 1000;
+    private static final long MAX_GENERATION_MILLIS = 5000;
+
+    private final Queue<PooledPuzzle> puzzles;
+    private final Random seeds;
+    private final ExecutorService refiller;
+    private int minIslands;
+    private int maxIslands;
+    private int generation;
+    private boolean isRefilling;
+
+    private RandomPuzzlePool() {
+        // NOTE: Private constructor for the Singleton pattern.
+        this.puzzles = new ArrayDeque<>();
+        this.seeds = new Random();
+        this.refiller = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "random-puzzle-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether the pool was used before, in which case it has island settings.
+     * @return {@code true} if the pool has island settings, {@code false} otherwise
+     */
+    public synchronized boolean hasSettings() {
+        return minIslands > 0;
+    }
+
+    /**
+     * Returns the minimum island count of the most recently used settings.
+     * @return the minimum island count, or 0 if the pool was not used yet
+     */
+    public synchronized int getMinIslands() {
+        return minIslands;
+    }
+
+    /**
+     * Returns the maximum island count of the most recently used settings.
+     * @return the maximum island count, or 0 if the pool was not used yet
+     */
+    public synchronized int getMaxIslands() {
+        return maxIslands;
+    }
+
+    /**
+     * Starts filling the pool for the given island settings, if it is not filled for them already.
+     * @param min the minimum island count
+     * @param max the maximum island count
+     */
+    public synchronized void prefetch(int min, int max) {
+        if(min != minIslands || max != maxIslands) {
+            puzzles.clear();
+            minIslands = min;
+            maxIslands = max;
+            ++generation;
+        }
+
+        refill();
+    }
+
+    /**
+     * Takes a puzzle from the pool, and starts refilling the pool. If the island settings differ from the
+     * settings the pool was filled for, the pool starts filling for the new settings instead.
+     * @param min the minimum island count
+     * @param max the maximum island count
+     * @return the puzzle, or an empty optional if no puzzle is ready for the given settings
+     */
+    public synchronized Optional<PooledPuzzle> poll(int min, int max) {
+        prefetch(min, max);
+        Optional<PooledPuzzle> puzzle = Optional.ofNullable(puzzles.poll());
+        refill();
+
+        return puzzle;
+    }
+
+    /**
+     * Starts a refill task, unless one is already running or the pool is full.
+     */
+    private void refill() {
+        if(!isRefilling && puzzles.size() < POOL_SIZE) {
+            isRefilling = true;
+            int refillGeneration = generation;
+            refiller.execute(() -> fill(refillGeneration));
+        }
+    }
+
+    /**
+     * Generates puzzles until the pool is full, the settings changed or generation keeps failing. A
+     * generation that throws, such as running out of memory for a large island count, counts as a
+     * failed attempt, and the pool can always be refilled again once this refill ends, however it ends.
+     * @param refillGeneration the generation of the settings the refill was started for
+     */
+    private void fill(int refillGeneration) {
+        int failures = 0;
+
+        try {
+            while(true) {
+                long seed;
+                int min;
+                int max;
+
+                synchronized(this) {
+                    if(refillGeneration != generation || puzzles.size() >= POOL_SIZE || failures >= MAX_CONSECUTIVE_FAILURES) {
+                        return;
+                    }
+
+                    seed = seeds.nextLong();
+                    min = minIslands;
+                    max = maxIslands;
+                }
+
+                Optional<PooledPuzzle> puzzle;
+
+                try {
+                    puzzle = generate(seed, min, max);
+                } catch (RuntimeException | OutOfMemoryError | StackOverflowError e) {
+                    Log.e("PUZZLE_APP", String.format("Could not generate random puzzle with seed %d: %s", seed, e));
+                    puzzle = Optional.empty();
+                }
+
+                synchronized(this) {
+                    if(!puzzle.isPresent()) {
+                        ++failures;
+                    } else if(refillGeneration == generation) {
+                        failures = 0;
+                        puzzles.add(puzzle.get());
+                    }
+                }
+            }
+        } finally {
+            synchronized(this) {
+                isRefilling = false;
+
+                // The settings could have changed while the pool was full, which needs a fresh refill.
+                if(refillGeneration != generation) {
+                    refill();
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a random puzzle and renders its large thumbnail. Generation is bounded by a budget, so
+     * that unlucky settings cannot keep generating indefinitely.
+     * @param seed the seed
+     * @param min the minimum island count
+     * @param max the maximum island count
+     * @return the generated puzzle, or an empty optional if generation failed
+     */
+    public static Optional<PooledPuzzle> generate(long seed, int min, int max) {
+        PuzzleGenerator generator = new RandomPuzzleGenerator(seed, min, max);
+        GenerationBudget budget = new GenerationBudget(MAX_ROUNDS_PER_ISLAND * max, MAX_GENERATION_MILLIS);
+        GenerationResult result = generator.generate(true, budget);
+
+        if(!result.isGenerated()) {
+            return Optional.empty();
+        }
+
+        Puzzle solution = result.getPuzzle();
+        Bitmap thumbnail = new ThumbnailRenderer(solution).drawLarge();
+
+        return Optional.of(new PooledPuzzle(solution, thumbnail));
+    }
+
+    /**
+     * A generated random puzzle together with its large thumbnail.
+     */
+    public static class PooledPuzzle {
+        private final Puzzle solution;
+        private final Bitmap thumbnail;
+
+        PooledPuzzle(Puzzle solution, Bitmap thumbnail) {
+            this.solution = solution;
+            this.thumbnail = thumbnail;
+        }
+
+        /**
+         * Returns the solution of the puzzle.
+         * @return the solution
+         */
+        public Puzzle getSolution() {
+            return solution;
+        }
+
+        /**
+         * Returns the large thumbnail of the solution.
+         * @return the thumbnail
+         */
+        public Bitmap getThumbnail() {
+            return thumbnail;
+        }
+    }
+}
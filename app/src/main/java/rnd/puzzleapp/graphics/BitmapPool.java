@@ -0,0 +1,124 @@
+package rnd.puzzleapp.graphics;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * A thread safe pool of reusable bitmaps of a single configuration, of which the total size is bounded
+ * by a memory budget. Both the bitmaps in use and the idle bitmaps count towards the budget. Acquiring
+ * a bitmap blocks until enough bitmaps are released, which bounds the memory used by any amount of
+ * threads that render bitmaps concurrently, as long as every acquired bitmap is eventually released.
+ * Obtaining a bitmap never blocks, and exceeds the budget if needed, in which case released bitmaps are
+ * dropped until the pool fits the budget again.
+ */
+public class BitmapPool {
+    private final long capacity;
+    private final Bitmap.Config config;
+    private final Deque<Bitmap> idle;
+    private long size;
+
+    /**
+     * Creates a new empty pool.
+     * @param capacity the maximum total size in bytes of the bitmaps of this pool, which must be able
+     *                 to hold at least a single bitmap
+     * @param config the configuration of the bitmaps of this pool
+     */
+    public BitmapPool(long capacity, Bitmap.Config config) {
+        this.capacity = capacity;
+        this.config = config;
+        this.idle = new ArrayDeque<>();
+        this.size = 0;
+    }
+
+    /**
+     * Acquires a bitmap with the given dimensions, reusing an idle bitmap if possible, and waiting for
+     * bitmaps to be released if the budget does not allow another bitmap. The contents of a reused bitmap
+     * are undefined, so it must be drawn over entirely.
+     * @param width the width in pixels
+     * @param height the height in pixels
+     * @return the bitmap, which must be released once it is no longer used
+     * @throws InterruptedException if interrupted while waiting for the budget
+     */
+    public synchronized Bitmap acquire(int width, int height) throws InterruptedException {
+        long bytes = getByteCount(width, height);
+
+        if(bytes > capacity) {
+            throw new IllegalArgumentException(String.format("A %dx%d bitmap exceeds the budget", width, height));
+        }
+
+        while(true) {
+            Bitmap bitmap = reuse(width, height);
+
+            if(bitmap != null) {
+                return bitmap;
+            }
+
+            // Idle bitmaps of other dimensions are dropped to make room.
+            while(size + bytes > capacity && !idle.isEmpty()) {
+                size -= idle.removeFirst().getByteCount();
+            }
+
+            if(size + bytes <= capacity) {
+                return create(width, height);
+            }
+
+            wait();
+        }
+    }
+
+    /**
+     * Obtains a bitmap with the given dimensions, reusing an idle bitmap if possible, without waiting for
+     * the budget. The contents of a reused bitmap are undefined, so it must be drawn over entirely.
+     * @param width the width in pixels
+     * @param height the height in pixels
+     * @return the bitmap, which should be released once it is no longer used
+     */
+    public synchronized Bitmap obtain(int width, int height) {
+        Bitmap bitmap = reuse(width, height);
+
+        return bitmap != null ? bitmap : create(width, height);
+    }
+
+    /**
+     * Returns a bitmap of this pool, so that it can be reused. If this pool exceeds its budget, the least
+     * recently released bitmaps are dropped instead.
+     * @param bitmap the bitmap, which must not be used afterwards
+     */
+    public synchronized void release(Bitmap bitmap) {
+        idle.addLast(bitmap);
+
+        while(size > capacity && !idle.isEmpty()) {
+            size -= idle.removeFirst().getByteCount();
+        }
+
+        notifyAll();
+    }
+
+    private Bitmap reuse(int width, int height) {
+        Iterator<Bitmap> iterator = idle.iterator();
+
+        while(iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+
+            if(bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                iterator.remove();
+                return bitmap;
+            }
+        }
+
+        return null;
+    }
+
+    private Bitmap create(int width, int height) {
+        size += getByteCount(width, height);
+
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    private long getByteCount(int width, int height) {
+        return (long)width * height * (config == Bitmap.Config.ARGB_8888 ? 4 : 2);
+    }
+}
@@ -5,17 +5,16 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 
-import java.util.function.BiConsumer;
-
 import rnd.puzzleapp.PuzzleController;
 import rnd.puzzleapp.puzzle.Bridge;
 import rnd.puzzleapp.puzzle.Island;
-import rnd.puzzleapp.puzzle.Orientation;
 import rnd.puzzleapp.puzzle.Puzzle;
 import rnd.puzzleapp.puzzle.Span;
+import rnd.puzzleapp.serialization.SerializedPuzzle;
 
 /**
- * Represents a class that renders a {@link Puzzle} to a {@link Canvas}.
+ * Represents a class that renders a {@link Puzzle} to a {@link Canvas}. A {@link SerializedPuzzle}
+ * can be rendered as well, straight from its view and without materializing it.
  */
 public class PuzzleRenderer {
     public static final float CELL_SIZE = 128;
@@ -23,6 +22,8 @@ public class PuzzleRenderer {
     public static final float BRIDGE_WIDTH = CELL_SIZE / 16;
     public static final float BRIDGE_OFFSET = (CELL_SIZE - BRIDGE_WIDTH) / 2;
     public static final float TEXT_SIZE = CELL_SIZE / 2;
+    public static final float SIMPLIFIED_ISLAND_RADIUS = CELL_SIZE / 3;
+    public static final float SIMPLIFIED_BRIDGE_WIDTH = CELL_SIZE / 4;
     public static final Paint BACKGROUND_PAINT = new Paint();
     public static final Paint TEXT_PAINT = new Paint();
     public static final Paint BRIDGE_PAINT = new Paint();
@@ -45,19 +46,31 @@ public class PuzzleRenderer {
     }
 
     private final Puzzle puzzle;
+    private final SerializedPuzzle serializedPuzzle;
     private final float width;
     private final float height;
     private Canvas canvas;
     private Island selectedIsland;
     private PuzzleController.SelectionMode selectedMode;
+    private boolean isSimplified;
 
     public PuzzleRenderer(Puzzle puzzle) {
+        this(puzzle, null, puzzle.getWidth(), puzzle.getHeight());
+    }
+
+    public PuzzleRenderer(SerializedPuzzle puzzle) {
+        this(null, puzzle, puzzle.getWidth(), puzzle.getHeight());
+    }
+
+    private PuzzleRenderer(Puzzle puzzle, SerializedPuzzle serializedPuzzle, int width, int height) {
         this.puzzle = puzzle;
-        this.width = puzzle.getWidth() * CELL_SIZE;
-        this.height = puzzle.getHeight() * CELL_SIZE;
+        this.serializedPuzzle = serializedPuzzle;
+        this.width = width * CELL_SIZE;
+        this.height = height * CELL_SIZE;
         this.canvas = null;
         this.selectedIsland = null;
         this.selectedMode = PuzzleController.SelectionMode.place;
+        this.isSimplified = false;
     }
 
     /**
@@ -70,6 +83,16 @@ public class PuzzleRenderer {
         this.selectedMode = mode;
     }
 
+    /**
+     * Sets whether the puzzle is rendered in a simplified style, which remains legible when the puzzle
+     * is drawn at a small scale. The simplified style omits the numbers of the islands, draws the islands
+     * larger, and draws every bridge as a single thick line regardless of its multiplicity.
+     * @param isSimplified {@code true} to use the simplified style, {@code false} to draw in full detail
+     */
+    public void setSimplified(boolean isSimplified) {
+        this.isSimplified = isSimplified;
+    }
+
     /**
      * Returns the render width of the puzzle
      * @return the width in pixels
@@ -96,8 +119,26 @@ public class PuzzleRenderer {
 
         canvas.drawRect(0, 0, width, height, BACKGROUND_PAINT);
 
-        puzzle.getBridges().stream().distinct().forEach(this::drawBridge);
-        puzzle.getIslands().forEach(this::drawIsland);
+        if(puzzle != null) {
+            puzzle.getBridges().stream().distinct().forEach(this::drawBridge);
+            puzzle.getIslands().forEach(this::drawIsland);
+        } else {
+            drawSerializedPuzzle();
+        }
+    }
+
+    private void drawSerializedPuzzle() {
+        for(int i = 0; i < serializedPuzzle.getBridgeCount(); ++i) {
+            drawBridge(serializedPuzzle.getBridgeX1(i), serializedPuzzle.getBridgeY1(i), serializedPuzzle.getBridgeX2(i),
+                    serializedPuzzle.getBridgeY2(i), serializedPuzzle.getMultiplicity(i));
+        }
+
+        for(int i = 0; i < serializedPuzzle.getIslandCount(); ++i) {
+            int requiredBridges = serializedPuzzle.getRequiredBridges(i);
+
+            drawIsland(serializedPuzzle.getX(i), serializedPuzzle.getY(i), requiredBridges,
+                    getDegreePaint(serializedPuzzle.getDegree(i), requiredBridges));
+        }
     }
 
     private Paint getIslandPaint(Island island) {
@@ -108,75 +149,87 @@ public class PuzzleRenderer {
                 return ISLAND_SELECTED_DELETE_PAINT;
             }
         } else {
-            long bridges = puzzle.getBridgeCount(island);
-            int requiredBridges = island.getRequiredBridges();
-
-            if(bridges < requiredBridges) {
-                return ISLAND_BELOW_DEGREE_PAINT;
-            } else if(bridges > requiredBridges) {
-                return ISLAND_ABOVE_DEGREE_PAINT;
-            } else if(bridges == requiredBridges) {
-                return ISLAND_ON_DEGREE_PAINT;
-            }
+            return getDegreePaint(puzzle.getBridgeCount(island), island.getRequiredBridges());
         }
 
         throw new IllegalStateException("Unable to determine island paint");
     }
 
+    private static Paint getDegreePaint(long bridges, int requiredBridges) {
+        if(bridges < requiredBridges) {
+            return ISLAND_BELOW_DEGREE_PAINT;
+        } else if(bridges > requiredBridges) {
+            return ISLAND_ABOVE_DEGREE_PAINT;
+        } else {
+            return ISLAND_ON_DEGREE_PAINT;
+        }
+    }
+
     private void drawIsland(Island island) {
+        drawIsland(island.getX(), island.getY(), island.getRequiredBridges(), getIslandPaint(island));
+    }
+
+    private void drawIsland(int islandX, int islandY, int requiredBridges, Paint paint) {
+        float x = islandX * CELL_SIZE + CELL_SIZE / 2;
+        float y = islandY * CELL_SIZE + CELL_SIZE / 2;
+
+        if(isSimplified) {
+            canvas.drawCircle(x, y, SIMPLIFIED_ISLAND_RADIUS, paint);
+            return;
+        }
+
         Rect textBounds = new Rect();
-        String text = Integer.toString(island.getRequiredBridges());
+        String text = Integer.toString(requiredBridges);
         TEXT_PAINT.getTextBounds(text, 0, text.length(), textBounds);
-        float x = island.getX() * CELL_SIZE + CELL_SIZE / 2;
-        float y = island.getY() * CELL_SIZE + CELL_SIZE / 2;
         float textX = x - textBounds.exactCenterX();
         float textY = y - textBounds.exactCenterY();
 
-        canvas.drawCircle(x, y, ISLAND_RADIUS, getIslandPaint(island));
+        canvas.drawCircle(x, y, ISLAND_RADIUS, paint);
         canvas.drawText(text, textX, textY, TEXT_PAINT);
     }
 
     private void drawBridge(Bridge bridge) {
-        Orientation orientation = bridge.getOrientation();
-        long multiplicity = puzzle.getBridgeCount(bridge);
-        BiConsumer<Bridge, Float> drawBridgeFunction = getDrawBridgeFunction(orientation);
+        drawBridge(bridge.getX1(), bridge.getY1(), bridge.getX2(), bridge.getY2(), puzzle.getBridgeCount(bridge));
+    }
 
-        if(multiplicity == 1) {
-            drawBridgeFunction.accept(bridge, BRIDGE_OFFSET);
+    private void drawBridge(int x1, int y1, int x2, int y2, long multiplicity) {
+        if(isSimplified) {
+            drawBridgeLine(x1, y1, x2, y2, (CELL_SIZE - SIMPLIFIED_BRIDGE_WIDTH) / 2);
+        } else if(multiplicity == 1) {
+            drawBridgeLine(x1, y1, x2, y2, BRIDGE_OFFSET);
         } else if(multiplicity == 2) {
-            drawBridgeFunction.accept(bridge, BRIDGE_OFFSET-BRIDGE_WIDTH);
-            drawBridgeFunction.accept(bridge, BRIDGE_OFFSET+BRIDGE_WIDTH);
+            drawBridgeLine(x1, y1, x2, y2, BRIDGE_OFFSET-BRIDGE_WIDTH);
+            drawBridgeLine(x1, y1, x2, y2, BRIDGE_OFFSET+BRIDGE_WIDTH);
         }
     }
 
-    private BiConsumer<Bridge, Float> getDrawBridgeFunction(Orientation orientation) {
-        switch (orientation) {
-            case Horizontal:
-                return this::drawHorizontalBridge;
-            case Vertical:
-                return this::drawVerticalBridge;
-            default:
-                throw new IllegalArgumentException("Bad orientation");
+    private void drawBridgeLine(int x1, int y1, int x2, int y2, float offset) {
+        if(x1 == x2) {
+            drawVerticalBridge(x1, Span.fromValues(y1, y2), offset);
+        } else if(y1 == y2) {
+            drawHorizontalBridge(y1, Span.fromValues(x1, x2), offset);
+        } else {
+            throw new IllegalArgumentException("Bad orientation");
         }
     }
 
-    private void drawHorizontalBridge(Bridge bridge, float yOffset) {
-        Span horizontalSpan = bridge.getHorizontalSpan();
-        float y = bridge.getY1();
+    private float getBridgeWidth() {
+        return isSimplified ? SIMPLIFIED_BRIDGE_WIDTH : BRIDGE_WIDTH;
+    }
+
+    private void drawHorizontalBridge(float y, Span horizontalSpan, float yOffset) {
         float left = horizontalSpan.getStart() * CELL_SIZE + CELL_SIZE / 2;
         float top = y * CELL_SIZE + yOffset;
         float right = horizontalSpan.getEnd() * CELL_SIZE + CELL_SIZE / 2;
-        float bottom = top + BRIDGE_WIDTH;
+        float bottom = top + getBridgeWidth();
 
         canvas.drawRect(left, top, right, bottom, BRIDGE_PAINT);
     }
 
-    private void drawVerticalBridge(Bridge bridge, float xOffset) {
-        Span verticalSpan = bridge.getVerticalSpan();
-        float x = bridge.getX1();
+    private void drawVerticalBridge(float x, Span verticalSpan, float xOffset) {
         float left = x * CELL_SIZE + xOffset;
         float top = verticalSpan.getStart() * CELL_SIZE + CELL_SIZE / 2;
-        float right = left + BRIDGE_WIDTH;
+        float right = left + getBridgeWidth();
         float bottom = verticalSpan.getEnd() * CELL_SIZE + CELL_SIZE / 2;
 
         canvas.drawRect(left, top, right, bottom, BRIDGE_PAINT);
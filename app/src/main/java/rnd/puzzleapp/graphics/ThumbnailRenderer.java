@@ -2,15 +2,28 @@ package rnd.puzzleapp.graphics;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PaintFlagsDrawFilter;
 
 import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.serialization.SerializedPuzzle;
 
 /**
- * Represents a class that renders a thumbnail for a {@link Puzzle}.
+ * Represents a class that renders a thumbnail for a {@link Puzzle}. The puzzle is drawn directly at
+ * the size of the thumbnail by scaling the canvas, so no bitmap larger than the thumbnail is ever
+ * allocated, regardless of the size of the puzzle. A thumbnail of a {@link SerializedPuzzle} is drawn
+ * straight from its view.
  */
 public class ThumbnailRenderer {
     public static final int THUMBNAIL_SIZE = 400;
     public static final int THUMBNAIL_LARGE_SIZE = 800;
+    /**
+     * The smallest size in pixels of a cell that is drawn in full detail, below which the numbers of
+     * the islands would be unreadable.
+     */
+    public static final float MIN_DETAILED_CELL_SIZE = 16;
+
+    private static final PaintFlagsDrawFilter ANTI_ALIAS_FILTER = new PaintFlagsDrawFilter(0, Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
 
     private final PuzzleRenderer puzzleRenderer;
 
@@ -18,23 +31,8 @@ public class ThumbnailRenderer {
         this.puzzleRenderer = new PuzzleRenderer(puzzle);
     }
 
-    private Bitmap drawPaddedBitmap() {
-        float width = puzzleRenderer.getWidth();
-        float height = puzzleRenderer.getHeight();
-        float size = Math.max(width, height);
-        float padX = (size - width) / 2.0f;
-        float padY = (size - height) / 2.0f;
-        Bitmap bitmap = Bitmap.createBitmap((int)size, (int)size, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-
-        canvas.drawRect(0, 0, size, padY, PuzzleRenderer.BACKGROUND_PAINT);
-        canvas.drawRect(0, size-padY, size, size, PuzzleRenderer.BACKGROUND_PAINT);
-        canvas.drawRect(0, 0, padX, size, PuzzleRenderer.BACKGROUND_PAINT);
-        canvas.drawRect(size-padX, 0, size, size, PuzzleRenderer.BACKGROUND_PAINT);
-        canvas.translate(padX, padY);
-        puzzleRenderer.draw(canvas);
-
-        return bitmap;
+    public ThumbnailRenderer(SerializedPuzzle puzzle) {
+        this.puzzleRenderer = new PuzzleRenderer(puzzle);
     }
 
     /**
@@ -60,8 +58,29 @@ public class ThumbnailRenderer {
      * @return the rendered thumbnail
      */
     public Bitmap draw(int size) {
-        Bitmap bitmap = drawPaddedBitmap();
+        return draw(Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888));
+    }
 
-        return Bitmap.createScaledBitmap(bitmap, size, size, true);
+    /**
+     * Renders a thumbnail for the puzzle into an existing bitmap, such as a bitmap of a {@link BitmapPool}.
+     * The puzzle is scaled to fit the bitmap, and padded and centered if needed.
+     * @param bitmap the mutable bitmap to render into, of which all previous contents are overwritten
+     * @return the given bitmap
+     */
+    public Bitmap draw(Bitmap bitmap) {
+        float width = puzzleRenderer.getWidth();
+        float height = puzzleRenderer.getHeight();
+        float scale = Math.min(bitmap.getWidth() / width, bitmap.getHeight() / height);
+        Canvas canvas = new Canvas(bitmap);
+
+        canvas.setDrawFilter(ANTI_ALIAS_FILTER);
+        canvas.drawRect(0, 0, bitmap.getWidth(), bitmap.getHeight(), PuzzleRenderer.BACKGROUND_PAINT);
+        canvas.translate((bitmap.getWidth() - width * scale) / 2.0f, (bitmap.getHeight() - height * scale) / 2.0f);
+        canvas.scale(scale, scale);
+
+        puzzleRenderer.setSimplified(PuzzleRenderer.CELL_SIZE * scale < MIN_DETAILED_CELL_SIZE);
+        puzzleRenderer.draw(canvas);
+
+        return bitmap;
     }
 }
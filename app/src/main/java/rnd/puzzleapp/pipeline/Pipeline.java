@@ -0,0 +1,265 @@
+package rnd.puzzleapp.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import rnd.puzzleapp.utils.Failures;
+
+/**
+ * A streaming pipeline of stages, where every stage runs on its own threads and passes its items on to
+ * the next stage through a bounded queue. A stage that falls behind fills up its input queue, which
+ * blocks the stages before it, so the amount of items in flight never exceeds the queue capacities.
+ * Giving the slowest stage the most threads keeps all stages busy. Items that throw an exception or
+ * overflow the stack in a stage are counted as failed, reported to the failure listener and dropped,
+ * without stopping the pipeline. A stage thread stopped by any other error is reported as well, and
+ * the remaining threads of its stage take over, so that the pipeline still runs to the end.
+ * @param <I> the type of the items entering the pipeline
+ * @param <O> the type of the items leaving the pipeline
+ */
+public class Pipeline<I, O> {
+    private static final Object END = new Object();
+
+    private final int queueCapacity;
+    private final List<Stage> stages;
+    private final BiConsumer<String, Throwable> failureListener;
+
+    private Pipeline(int queueCapacity, List<Stage> stages, BiConsumer<String, Throwable> failureListener) {
+        this.queueCapacity = queueCapacity;
+        this.stages = stages;
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Creates a new pipeline without any stages.
+     * @param queueCapacity the capacity of the queue in front of every stage
+     * @param <T> the type of the items entering the pipeline
+     * @return the pipeline
+     */
+    public static <T> Pipeline<T, T> create(int queueCapacity) {
+        if(queueCapacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be at least 1");
+        }
+
+        return new Pipeline<>(queueCapacity, Collections.emptyList(), (stage, failure) -> {});
+    }
+
+    /**
+     * Returns a pipeline with an additional stage that transforms every item. Items the function maps
+     * to an empty optional are dropped.
+     * @param name the name of the stage
+     * @param threads the amount of threads of the stage
+     * @param function the function of the stage
+     * @param <R> the type of the items leaving the stage
+     * @return the extended pipeline
+     */
+    public <R> Pipeline<I, R> map(String name, int threads, Function<O, Optional<R>> function) {
+        if(threads < 1) {
+            throw new IllegalArgumentException(String.format("Stage %s needs at least 1 thread", name));
+        }
+
+        List<Stage> extended = new ArrayList<>(stages);
+        extended.add(new Stage(name, threads, function));
+
+        return new Pipeline<>(queueCapacity, extended, failureListener);
+    }
+
+    /**
+     * Returns a pipeline with an additional stage that drops every item not matching the predicate.
+     * @param name the name of the stage
+     * @param threads the amount of threads of the stage
+     * @param predicate the predicate of the stage
+     * @return the extended pipeline
+     */
+    public Pipeline<I, O> filter(String name, int threads, Predicate<O> predicate) {
+        return map(name, threads, item -> predicate.test(item) ? Optional.of(item) : Optional.empty());
+    }
+
+    /**
+     * Returns a pipeline that reports every failure to the given listener, which replaces the previous one.
+     * @param listener invoked with the name of the stage and the cause of every failure on the thread of
+     *                 that stage, which must not throw
+     * @return the pipeline
+     */
+    public Pipeline<I, O> onFailure(BiConsumer<String, Throwable> listener) {
+        return new Pipeline<>(queueCapacity, stages, listener);
+    }
+
+    /**
+     * Feeds all inputs through the pipeline and blocks until every item left the pipeline or was
+     * dropped. The inputs are fed from the calling thread, which blocks while the first queue is full.
+     * @param inputs the items entering the pipeline
+     * @param sink invoked with every item leaving the pipeline on a separate thread, which must not throw
+     * @return the metrics of every stage, in stage order
+     * @throws InterruptedException if the calling thread was interrupted, in which case all stage
+     * threads are interrupted as well
+     */
+    public List<StageMetrics> run(Iterable<I> inputs, Consumer<O> sink) throws InterruptedException {
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        List<StageMetrics> metrics = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for(int i = 0; i <= stages.size(); ++i) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+
+        for(int i = 0; i < stages.size(); ++i) {
+            Stage stage = stages.get(i);
+            StageMetrics stageMetrics = new StageMetrics(stage.name, stage.threads);
+            AtomicInteger remainingThreads = new AtomicInteger(stage.threads);
+            BlockingQueue<Object> input = queues.get(i);
+            BlockingQueue<Object> output = queues.get(i + 1);
+
+            for(int j = 0; j < stage.threads; ++j) {
+                Thread thread = new Thread(() -> work(stage, stageMetrics, input, output, remainingThreads),
+                        String.format("pipeline-%s-%d", stage.name, j));
+                thread.setDaemon(true);
+                threads.add(thread);
+            }
+
+            metrics.add(stageMetrics);
+        }
+
+        // The last queue is drained by a separate thread, so that a slow sink does not count towards the last stage.
+        BlockingQueue<Object> last = queues.get(stages.size());
+        Thread drain = new Thread(() -> drain(last, sink), "pipeline-sink");
+        drain.setDaemon(true);
+        threads.add(drain);
+        threads.forEach(Thread::start);
+
+        try {
+            for(I item : inputs) {
+                queues.get(0).put(item);
+            }
+
+            queues.get(0).put(END);
+
+            for(Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            threads.forEach(Thread::interrupt);
+        }
+
+        long nanos = System.nanoTime() - start;
+        metrics.forEach(m -> m.finish(nanos));
+
+        return metrics;
+    }
+
+    private void work(Stage stage, StageMetrics metrics, BlockingQueue<Object> input,
+                      BlockingQueue<Object> output, AtomicInteger remainingThreads) {
+        boolean isEnded = false;
+
+        try {
+            process(stage, metrics, input, output);
+            isEnded = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            failureListener.accept(stage.name, e);
+            throw e;
+        } finally {
+            // An interrupted thread is shutting the pipeline down, so there is no end to pass on.
+            if(!Thread.currentThread().isInterrupted()) {
+                finish(metrics, input, output, remainingThreads, isEnded);
+            }
+        }
+    }
+
+    private void process(Stage stage, StageMetrics metrics, BlockingQueue<Object> input,
+                         BlockingQueue<Object> output) throws InterruptedException {
+        while(true) {
+            long takeStart = System.nanoTime();
+            Object item = input.take();
+            long processStart = System.nanoTime();
+            metrics.recordIdle(processStart - takeStart);
+
+            if(item == END) {
+                return;
+            }
+
+            // NOTE: A null result marks a failed item, as stage functions return an empty optional instead.
+            Optional<Object> result = Failures.recover(() -> stage.function.apply(item), e -> {
+                failureListener.accept(stage.name, e);
+                return null;
+            });
+
+            if(result == null) {
+                metrics.recordFailed(System.nanoTime() - processStart);
+                continue;
+            }
+
+            metrics.recordProcessed(System.nanoTime() - processStart, result.isPresent());
+
+            if(result.isPresent()) {
+                long putStart = System.nanoTime();
+                output.put(result.get());
+                metrics.recordBlocked(System.nanoTime() - putStart);
+            }
+        }
+    }
+
+    /**
+     * Passes the end on once the last thread of a stage stops. A thread stopped by an error leaves the
+     * items after it behind, so if it is the last thread of its stage, it drops the remaining items of
+     * the stage first. Otherwise the stages before it would block on a full queue.
+     */
+    private static void finish(StageMetrics metrics, BlockingQueue<Object> input, BlockingQueue<Object> output,
+                               AtomicInteger remainingThreads, boolean isEnded) {
+        try {
+            if(isEnded) {
+                // Let the other threads of this stage see the end as well.
+                input.put(END);
+            }
+
+            if(remainingThreads.decrementAndGet() == 0) {
+                if(!isEnded) {
+                    for(Object item = input.take(); item != END; item = input.take()) {
+                        metrics.recordFailed(0);
+                    }
+                }
+
+                output.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void drain(BlockingQueue<Object> queue, Consumer<T> sink) {
+        try {
+            for(Object item = queue.take(); item != END; item = queue.take()) {
+                sink.accept((T)item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A stage of the pipeline.
+     */
+    private static class Stage {
+        private final String name;
+        private final int threads;
+        private final Function<Object, Optional<Object>> function;
+
+        @SuppressWarnings("unchecked")
+        Stage(String name, int threads, Function<?, ? extends Optional<?>> function) {
+            this.name = name;
+            this.threads = threads;
+            this.function = (Function<Object, Optional<Object>>)function;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package rnd.puzzleapp.pipeline;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of a single stage of a {@link Pipeline}. The metrics are updated while the pipeline runs,
+ * and are complete once the pipeline finished.
+ */
+public class StageMetrics {
+    private final String name;
+    private final int threads;
+    private final AtomicLong processed;
+    private final AtomicLong dropped;
+    private final AtomicLong failed;
+    private final AtomicLong busyNanos;
+    private final AtomicLong maxNanos;
+    private final AtomicLong idleNanos;
+    private final AtomicLong blockedNanos;
+    private long wallNanos;
+
+    StageMetrics(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+        this.processed = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.busyNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+        this.idleNanos = new AtomicLong();
+        this.blockedNanos = new AtomicLong();
+    }
+
+    void recordProcessed(long nanos, boolean isPassed) {
+        processed.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+
+        if(!isPassed) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    void recordFailed(long nanos) {
+        failed.incrementAndGet();
+        busyNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    void recordIdle(long nanos) {
+        idleNanos.addAndGet(nanos);
+    }
+
+    void recordBlocked(long nanos) {
+        blockedNanos.addAndGet(nanos);
+    }
+
+    void finish(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * Returns the name of the stage.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the amount of threads of the stage.
+     * @return the amount of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the amount of items the stage processed without failing, including dropped items.
+     * @return the amount of processed items
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Returns the amount of items the stage dropped.
+     * @return the amount of dropped items
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the amount of items for which the stage threw an exception.
+     * @return the amount of failed items
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the throughput of the stage over the run of the whole pipeline.
+     * @return the amount of items per second
+     */
+    public double getThroughput() {
+        return wallNanos == 0 ? 0 : (processed.get() + failed.get()) / (wallNanos / 1e9);
+    }
+
+    /**
+     * Returns the mean time the stage spent on a single item.
+     * @return the mean latency, in nanoseconds
+     */
+    public long getMeanNanos() {
+        long items = processed.get() + failed.get();
+
+        return items == 0 ? 0 : busyNanos.get() / items;
+    }
+
+    /**
+     * Returns the longest time the stage spent on a single item.
+     * @return the maximum latency, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the fraction of the thread time of the stage spent processing items. A utilization close
+     * to 1 marks the bottleneck of the pipeline, which could use more threads.
+     * @return the utilization, between 0 and 1
+     */
+    public double getUtilization() {
+        return wallNanos == 0 ? 0 : Math.min(1, busyNanos.get() / ((double)wallNanos * threads));
+    }
+
+    /**
+     * Returns the total time the threads of the stage waited for input.
+     * @return the idle time, in nanoseconds
+     */
+    public long getIdleNanos() {
+        return idleNanos.get();
+    }
+
+    /**
+     * Returns the total time the threads of the stage waited for the next stage to accept their output,
+     * which is the backpressure exerted by the next stage.
+     * @return the blocked time, in nanoseconds
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s x%d: %d processed, %d dropped, %d failed, %.1f/s, mean %.1fms, max %.1fms, utilization %.0f%%, idle %.1fs, blocked %.1fs",
+                name, threads, getProcessed(), getDropped(), getFailed(), getThroughput(), getMeanNanos() / 1e6,
+                getMaxNanos() / 1e6, getUtilization() * 100, getIdleNanos() / 1e9, getBlockedNanos() / 1e9);
+    }
+}
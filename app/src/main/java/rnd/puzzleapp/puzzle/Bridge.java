@@ -208,7 +208,8 @@ public class Bridge implements Comparable<Bridge> {
 
     @Override
     public int hashCode() {
-        return x1 ^ y1 ^ x2 ^ y2;
+        // NOTE: Bridges of larger puzzles end up in hash based collections, so the coordinates are mixed.
+        return 31 * (31 * (31 * x1 + y1) + x2) + y2;
     }
 
     @Override
@@ -0,0 +1,84 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A multiset of {@link Bridge} instances that supports adding a bridge, removing all occurrences of a
+ * bridge and sampling a uniformly random occurrence in constant time. Removal swaps the last occurrence
+ * into the freed slot, so the order of the occurrences is not preserved.
+ */
+class BridgeMultiset {
+    private final List<Bridge> occurrences;
+    private final Map<Bridge, List<Integer>> positions;
+
+    /**
+     * Creates a new empty multiset.
+     */
+    BridgeMultiset() {
+        this.occurrences = new ArrayList<>();
+        this.positions = new HashMap<>();
+    }
+
+    /**
+     * Adds a single occurrence of the given bridge.
+     * @param bridge the bridge to add
+     */
+    void add(Bridge bridge) {
+        positions.computeIfAbsent(bridge, b -> new ArrayList<>(Puzzle.MAX_BRIDGE_COUNT)).add(occurrences.size());
+        occurrences.add(bridge);
+    }
+
+    /**
+     * Removes all occurrences of the given bridge.
+     * @param bridge the bridge to remove
+     * @return the amount of removed occurrences
+     */
+    int removeAll(Bridge bridge) {
+        List<Integer> indices = positions.remove(bridge);
+
+        if(indices == null) {
+            return 0;
+        }
+
+        // Remove from the back, so that no occurrence that still has to be removed is moved.
+        indices.sort(Comparator.reverseOrder());
+        indices.forEach(this::removeAt);
+
+        return indices.size();
+    }
+
+    private void removeAt(int index) {
+        int last = occurrences.size() - 1;
+        Bridge moved = occurrences.remove(last);
+
+        if(index != last) {
+            List<Integer> movedIndices = positions.get(moved);
+
+            occurrences.set(index, moved);
+            movedIndices.set(movedIndices.indexOf(last), index);
+        }
+    }
+
+    /**
+     * Selects a uniformly random occurrence, so bridges are selected proportional to their multiplicity.
+     * Note that this multiset is expected to not be empty.
+     * @param random the pseudo-random number generator to use
+     * @return the selected bridge
+     */
+    Bridge sample(Random random) {
+        return occurrences.get(random.nextInt(occurrences.size()));
+    }
+
+    /**
+     * Returns all occurrences in this multiset, in no particular order.
+     * @return the list of occurrences
+     */
+    List<Bridge> toList() {
+        return new ArrayList<>(occurrences);
+    }
+}
@@ -0,0 +1,108 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Utility methods for candidate edges, which are the bridges between every island and its nearest
+ * neighbor to the east and to the south. As bridges may not cross islands, these are the only bridges
+ * that could ever be part of a solution.
+ */
+public class CandidateEdges {
+    private static final Comparator<Island> ROW_ORDER = Comparator
+            .comparing(Island::getY)
+            .thenComparing(Island::getX);
+
+    /**
+     * Returns the candidate edges of the given islands, in the canonical order of sorted bridges.
+     * @param islands the islands, which should have distinct coordinates
+     * @return the sorted list of candidate edges
+     */
+    public static List<Bridge> of(Collection<Island> islands) {
+        List<Island> columns = new ArrayList<>(islands);
+        List<Island> rows = new ArrayList<>(islands);
+        List<Bridge> edges = new ArrayList<>();
+
+        // Islands are ordered by x and then y, so consecutive islands in the same column are vertical neighbors.
+        Collections.sort(columns);
+        rows.sort(ROW_ORDER);
+
+        for(int i = 1; i < columns.size(); ++i) {
+            if(columns.get(i - 1).getX() == columns.get(i).getX()) {
+                edges.add(Bridge.create(columns.get(i - 1), columns.get(i)));
+            }
+        }
+
+        for(int i = 1; i < rows.size(); ++i) {
+            if(rows.get(i - 1).getY() == rows.get(i).getY()) {
+                edges.add(Bridge.create(rows.get(i - 1), rows.get(i)));
+            }
+        }
+
+        Collections.sort(edges);
+
+        return edges;
+    }
+
+    /**
+     * Determines which of the given edges cross each other. The vertical edges are indexed by their x
+     * coordinate, so every horizontal edge is only checked against the vertical edges within its span,
+     * instead of against all edges.
+     * @param edges the straight edges
+     * @return for every edge, the indices of the edges crossing it in increasing order
+     */
+    public static int[][] crossings(List<Bridge> edges) {
+        List<Integer> vertical = new ArrayList<>();
+        List<List<Integer>> crossing = new ArrayList<>(edges.size());
+
+        for(int i = 0; i < edges.size(); ++i) {
+            crossing.add(new ArrayList<>());
+
+            if(edges.get(i).getOrientation() == Orientation.Vertical) {
+                vertical.add(i);
+            }
+        }
+
+        vertical.sort(Comparator.comparing(i -> edges.get(i).getX1()));
+        int[] columns = vertical.stream().mapToInt(i -> edges.get(i).getX1()).toArray();
+
+        for(int i = 0; i < edges.size(); ++i) {
+            Bridge edge = edges.get(i);
+
+            if(edge.getOrientation() != Orientation.Horizontal) {
+                continue;
+            }
+
+            Span span = edge.getHorizontalSpan();
+
+            // Skip to the first vertical edge strictly right of the start of the span.
+            int first = Arrays.binarySearch(columns, span.getStart() + 1);
+            first = first < 0 ? -first - 1 : first;
+
+            while(first > 0 && columns[first - 1] > span.getStart()) {
+                --first;
+            }
+
+            for(int j = first; j < columns.length && columns[j] < span.getEnd(); ++j) {
+                int other = vertical.get(j);
+
+                if(edges.get(other).intersects(edge)) {
+                    crossing.get(i).add(other);
+                    crossing.get(other).add(i);
+                }
+            }
+        }
+
+        int[][] result = new int[edges.size()][];
+
+        for(int i = 0; i < edges.size(); ++i) {
+            result[i] = crossing.get(i).stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        return result;
+    }
+}
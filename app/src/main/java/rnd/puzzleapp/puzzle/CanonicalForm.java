@@ -0,0 +1,222 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static rnd.puzzleapp.utils.Collections.iteratorCompare;
+
+/**
+ * The canonical form of the island layout of a {@link Puzzle}. Two puzzles that are equal up to
+ * any of the 8 rotations/reflections of the square (and translation) share the same canonical form,
+ * and thus the same {@link CanonicalForm#getKey() key}.
+ */
+public class CanonicalForm {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<Island> islands;
+    private final Map<Long, Island> canonicalToOriginal;
+    private final Map<Long, Island> originalToCanonical;
+    private final String key;
+
+    private CanonicalForm(List<Island> originalIslands, List<Island> islands) {
+        this.islands = islands;
+        this.canonicalToOriginal = new HashMap<>();
+        this.originalToCanonical = new HashMap<>();
+
+        // NOTE: islands is still in the order of originalIslands at this point, so both can be zipped.
+        for(int i = 0; i < originalIslands.size(); ++i) {
+            Island original = originalIslands.get(i);
+            Island canonical = islands.get(i);
+
+            canonicalToOriginal.put(pack(canonical.getX(), canonical.getY()), original);
+            originalToCanonical.put(pack(original.getX(), original.getY()), canonical);
+        }
+
+        Collections.sort(islands);
+        this.key = computeKey(islands);
+    }
+
+    /**
+     * Returns the sorted islands of the canonical layout.
+     * @return the canonical islands
+     */
+    public List<Island> getIslands() {
+        return islands;
+    }
+
+    /**
+     * Returns the key of this canonical form, which is a hash of the canonical layout that is a valid
+     * file name.
+     * @return the key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Transforms the given puzzle, which must have the layout this canonical form was created from,
+     * into the canonical orientation, including all of its bridges.
+     * @param puzzle the puzzle to transform
+     * @return the transformed puzzle
+     */
+    public Puzzle toCanonical(Puzzle puzzle) {
+        return transform(puzzle, originalToCanonical);
+    }
+
+    /**
+     * Transforms the given puzzle, which must have the canonical layout, back into the orientation of
+     * the puzzle this canonical form was created from, including all of its bridges.
+     * @param puzzle the puzzle to transform
+     * @return the transformed puzzle
+     */
+    public Puzzle fromCanonical(Puzzle puzzle) {
+        return transform(puzzle, canonicalToOriginal);
+    }
+
+    /**
+     * Checks whether the islands of the given puzzle match the canonical layout exactly.
+     * @param puzzle the puzzle to check, which is expected to be in the canonical orientation
+     * @return {@code true} if the layouts match, {@code false} otherwise
+     */
+    public boolean matches(Puzzle puzzle) {
+        return iteratorCompare(islands, puzzle.getIslands()) == 0;
+    }
+
+    private static Puzzle transform(Puzzle puzzle, Map<Long, Island> mapping) {
+        Puzzle transformed = new Puzzle();
+
+        for(Island island : puzzle.getIslands()) {
+            transformed.addIsland(map(mapping, island.getX(), island.getY()));
+        }
+
+        for(Bridge bridge : puzzle.getBridges()) {
+            Island endpoint1 = map(mapping, bridge.getX1(), bridge.getY1());
+            Island endpoint2 = map(mapping, bridge.getX2(), bridge.getY2());
+
+            transformed.addBridge(Bridge.create(endpoint1, endpoint2));
+        }
+
+        return transformed;
+    }
+
+    private static Island map(Map<Long, Island> mapping, int x, int y) {
+        Island island = mapping.get(pack(x, y));
+
+        if(island == null) {
+            throw new IllegalArgumentException("Puzzle does not match the canonical layout");
+        }
+
+        return island;
+    }
+
+    /**
+     * Computes the canonical form of the island layout of the given puzzle.
+     * @param puzzle the puzzle
+     * @return the canonical form
+     */
+    public static CanonicalForm of(Puzzle puzzle) {
+        List<Island> originalIslands = puzzle.getIslands();
+        List<Island> best = null;
+        List<Island> bestSorted = null;
+
+        for(Symmetry symmetry : Symmetry.values()) {
+            List<Island> transformed = normalize(originalIslands, symmetry);
+            List<Island> sorted = new ArrayList<>(transformed);
+            Collections.sort(sorted);
+
+            if(bestSorted == null || iteratorCompare(sorted, bestSorted) < 0) {
+                best = transformed;
+                bestSorted = sorted;
+            }
+        }
+
+        return new CanonicalForm(originalIslands, best);
+    }
+
+    private static List<Island> normalize(List<Island> islands, Symmetry symmetry) {
+        List<Island> transformed = new ArrayList<>(islands.size());
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+
+        for(Island island : islands) {
+            int x = symmetry.getX(island.getX(), island.getY());
+            int y = symmetry.getY(island.getX(), island.getY());
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+
+            transformed.add(new Island(x, y, island.getRequiredBridges()));
+        }
+
+        for(int i = 0; i < transformed.size(); ++i) {
+            Island island = transformed.get(i);
+
+            transformed.set(i, new Island(island.getX() - minX, island.getY() - minY, island.getRequiredBridges()));
+        }
+
+        return transformed;
+    }
+
+    private static String computeKey(List<Island> sortedIslands) {
+        long hash = hash(FNV_OFFSET_BASIS, sortedIslands.size());
+
+        for(Island island : sortedIslands) {
+            hash = hash(hash, island.getX());
+            hash = hash(hash, island.getY());
+            hash = hash(hash, island.getRequiredBridges());
+        }
+
+        return String.format(Locale.US, "%016x", hash);
+    }
+
+    private static long hash(long hash, int value) {
+        for(int i = 0; i < 4; ++i) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    private static long pack(int x, int y) {
+        return ((long)x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * The 8 symmetries of the square, as mappings of (x, y) coordinates.
+     */
+    private enum Symmetry {
+        Identity(1, 0, 0, 1),
+        Rotate90(0, -1, 1, 0),
+        Rotate180(-1, 0, 0, -1),
+        Rotate270(0, 1, -1, 0),
+        ReflectX(-1, 0, 0, 1),
+        ReflectY(1, 0, 0, -1),
+        ReflectDiagonal(0, 1, 1, 0),
+        ReflectAntiDiagonal(0, -1, -1, 0);
+
+        private final int xx;
+        private final int xy;
+        private final int yx;
+        private final int yy;
+
+        Symmetry(int xx, int xy, int yx, int yy) {
+            this.xx = xx;
+            this.xy = xy;
+            this.yx = yx;
+            this.yy = yy;
+        }
+
+        int getX(int x, int y) {
+            return xx * x + xy * y;
+        }
+
+        int getY(int x, int y) {
+            return yx * x + yy * y;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import rnd.puzzleapp.solver.DifficultyRater;
+
+/**
+ * One of the default puzzles. Every default puzzle is generated from a seed that only depends on its
+ * difficulty and number, so it is identical on every device and regardless of generation order.
+ */
+public class DefaultPuzzle {
+    public static final int PUZZLES_PER_DIFFICULTY = 8;
+    private static final int MAX_CANDIDATES = 64;
+
+    private final PuzzleDifficulty difficulty;
+    private final int number;
+
+    /**
+     * Creates a new default puzzle instance.
+     * @param difficulty the difficulty of the puzzle
+     * @param number the puzzle number within its difficulty, starting at 1
+     */
+    public DefaultPuzzle(PuzzleDifficulty difficulty, int number) {
+        this.difficulty = difficulty;
+        this.number = number;
+    }
+
+    /**
+     * Returns the difficulty of this default puzzle.
+     * @return the difficulty
+     */
+    public PuzzleDifficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Returns the name of this default puzzle.
+     * @return the name, which is a valid directory name
+     */
+    public String getName() {
+        return String.format(Locale.US, "%s %d", difficulty.getName(), number);
+    }
+
+    /**
+     * Returns the seed this default puzzle is generated from.
+     * @return the seed
+     */
+    public long getSeed() {
+        // Construct a deterministic pseudo-random seed from the difficulty and puzzle number.
+        return ((long)difficulty.getName().hashCode() << 32L) | number;
+    }
+
+    /**
+     * Generates this default puzzle. Candidates are generated with the island range of the difficulty
+     * until one is rated within its score range. If no candidate is, the candidate with the closest score
+     * is used. Candidates that cannot be made uniquely solvable are skipped, and only if every candidate
+     * is skipped is a random puzzle used instead, which may have more than one solution.
+     * @return the generated puzzle, together with its solution
+     */
+    public PackedPuzzle generate() {
+        Random random = new Random(getSeed());
+        Puzzle solution = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+
+        for(int i = 0; i < MAX_CANDIDATES && bestDistance > 0; ++i) {
+            PuzzleGenerator generator = new UniquePuzzleGenerator(random.nextLong(), difficulty.getMinNodes(), difficulty.getMaxNodes());
+            GenerationResult result = generator.generate(true, GenerationBudget.UNBOUNDED);
+
+            if(!result.isGenerated()) {
+                continue;
+            }
+
+            Puzzle candidate = result.getPuzzle();
+            double distance = difficulty.getScoreDistance(DifficultyRater.rate(candidate).getScore());
+
+            if(distance < bestDistance) {
+                solution = candidate;
+                bestDistance = distance;
+            }
+        }
+
+        if(solution == null) {
+            solution = new RandomPuzzleGenerator(random.nextLong(), difficulty.getMinNodes(), difficulty.getMaxNodes()).generate(true);
+        }
+
+        Puzzle puzzle = solution.copy();
+        puzzle.reset();
+
+        return new PackedPuzzle(getName(), puzzle, solution);
+    }
+
+    /**
+     * Returns all default puzzles, ordered by difficulty and number.
+     * @return the list of default puzzles
+     */
+    public static List<DefaultPuzzle> all() {
+        List<DefaultPuzzle> puzzles = new ArrayList<>();
+
+        for (PuzzleDifficulty difficulty : PuzzleDifficulty.values()) {
+            for (int i = 1; i <= PUZZLES_PER_DIFFICULTY; ++i) {
+                puzzles.add(new DefaultPuzzle(difficulty, i));
+            }
+        }
+
+        return puzzles;
+    }
+}
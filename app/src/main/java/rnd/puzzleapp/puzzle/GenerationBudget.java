@@ -0,0 +1,62 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The budget a {@link PuzzleGenerator} may spend on generating a single puzzle, as both a maximum
+ * amount of permutation rounds and a maximum amount of time. Generation fails once either is exhausted.
+ */
+public class GenerationBudget {
+    /**
+     * A budget without any limits, with which generation can only end by succeeding.
+     */
+    public static final GenerationBudget UNBOUNDED = new GenerationBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long maxRounds;
+    private final long maxNanos;
+
+    /**
+     * Creates a new generation budget.
+     * @param maxRounds the maximum amount of permutation rounds
+     * @param maxMillis the maximum amount of time, in milliseconds
+     */
+    public GenerationBudget(long maxRounds, long maxMillis) {
+        this.maxRounds = maxRounds;
+        this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+    }
+
+    /**
+     * Returns the budget that remains after the given amount of time was spent.
+     * @param elapsedNanos the time spent, in nanoseconds
+     * @return the remaining budget, which has the same maximum amount of rounds
+     */
+    public GenerationBudget remaining(long elapsedNanos) {
+        return this == UNBOUNDED ? UNBOUNDED :
+                new GenerationBudget(maxRounds, TimeUnit.NANOSECONDS.toMillis(Math.max(0, maxNanos - elapsedNanos)));
+    }
+
+    /**
+     * Checks whether the time of this budget is exhausted.
+     * @param elapsedNanos the time spent, in nanoseconds
+     * @return {@code true} if more than the maximum amount of time was spent, {@code false} otherwise
+     */
+    public boolean isTimeExhausted(long elapsedNanos) {
+        return elapsedNanos > maxNanos;
+    }
+
+    /**
+     * Returns the maximum amount of permutation rounds.
+     * @return the maximum amount of rounds
+     */
+    public long getMaxRounds() {
+        return maxRounds;
+    }
+
+    /**
+     * Returns the maximum amount of time.
+     * @return the maximum amount of time, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+}
@@ -0,0 +1,104 @@
+package rnd.puzzleapp.puzzle;
+
+/**
+ * The result of generating a puzzle within a {@link GenerationBudget}, which either holds the
+ * generated puzzle or the reason generation failed.
+ */
+public class GenerationResult {
+    private final Puzzle puzzle;
+    private final Failure failure;
+    private final GenerationStats stats;
+    private final long nanos;
+
+    private GenerationResult(Puzzle puzzle, Failure failure, GenerationStats stats, long nanos) {
+        this.puzzle = puzzle;
+        this.failure = failure;
+        this.stats = stats;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Checks whether a puzzle was generated.
+     * @return {@code true} if a puzzle was generated, {@code false} if generation failed
+     */
+    public boolean isGenerated() {
+        return failure == null;
+    }
+
+    /**
+     * Returns the generated puzzle. Note that this method should only be called if a puzzle was
+     * generated, as determined by {@link GenerationResult#isGenerated()}.
+     * @return the generated puzzle
+     */
+    public Puzzle getPuzzle() {
+        if(!isGenerated()) {
+            throw new IllegalStateException("No puzzle was generated");
+        }
+
+        return puzzle;
+    }
+
+    /**
+     * Returns the reason generation failed.
+     * @return the reason, or {@code null} if a puzzle was generated
+     */
+    public Failure getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the statistics of the generation.
+     * @return the statistics
+     */
+    public GenerationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the time spent on the generation.
+     * @return the time, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Creates the result of a successful generation.
+     * @param puzzle the generated puzzle
+     * @param stats the statistics of the generation
+     * @param nanos the time spent, in nanoseconds
+     * @return the result
+     */
+    public static GenerationResult generated(Puzzle puzzle, GenerationStats stats, long nanos) {
+        return new GenerationResult(puzzle, null, stats, nanos);
+    }
+
+    /**
+     * Creates the result of a failed generation.
+     * @param failure the reason generation failed
+     * @param stats the statistics of the generation
+     * @param nanos the time spent, in nanoseconds
+     * @return the result
+     */
+    public static GenerationResult failed(Failure failure, GenerationStats stats, long nanos) {
+        return new GenerationResult(null, failure, stats, nanos);
+    }
+
+    /**
+     * The reasons generation can fail.
+     */
+    public enum Failure {
+        /**
+         * The maximum amount of permutation rounds was exhausted.
+         */
+        RoundLimitReached,
+        /**
+         * The maximum amount of time was exhausted.
+         */
+        TimeLimitReached,
+        /**
+         * No uniquely solvable puzzle was found within the edit and search limits of the generator.
+         */
+        NotUnique
+    }
+}
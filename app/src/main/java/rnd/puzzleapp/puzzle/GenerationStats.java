@@ -0,0 +1,97 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Statistics of a single puzzle generation, which count how often each permutation operation was
+ * attempted and how often it was rejected because it could not be applied to the puzzle.
+ */
+public class GenerationStats {
+    private final long[] attempts;
+    private final long[] rejections;
+
+    /**
+     * Creates new empty statistics.
+     */
+    public GenerationStats() {
+        this.attempts = new long[Operation.values().length];
+        this.rejections = new long[Operation.values().length];
+    }
+
+    /**
+     * Records a single attempt of the given operation.
+     * @param operation the attempted operation
+     * @param isAccepted whether the operation was applied to the puzzle
+     */
+    void record(Operation operation, boolean isAccepted) {
+        ++attempts[operation.ordinal()];
+
+        if(!isAccepted) {
+            ++rejections[operation.ordinal()];
+        }
+    }
+
+    /**
+     * Returns the total amount of permutation rounds.
+     * @return the amount of rounds
+     */
+    public long getRounds() {
+        return Arrays.stream(attempts).sum();
+    }
+
+    /**
+     * Returns how often the given operation was attempted.
+     * @param operation the operation
+     * @return the amount of attempts
+     */
+    public long getAttempts(Operation operation) {
+        return attempts[operation.ordinal()];
+    }
+
+    /**
+     * Returns how often the given operation was rejected.
+     * @param operation the operation
+     * @return the amount of rejections
+     */
+    public long getRejections(Operation operation) {
+        return rejections[operation.ordinal()];
+    }
+
+    /**
+     * Returns the fraction of attempts of the given operation that was rejected.
+     * @param operation the operation
+     * @return the rejection rate, between 0.0 and 1.0
+     */
+    public double getRejectionRate(Operation operation) {
+        long operationAttempts = getAttempts(operation);
+
+        return operationAttempts == 0 ? 0 : getRejections(operation) / (double)operationAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.stream(Operation.values())
+                .map(o -> String.format(Locale.US, "%s %d/%d rejected", o, getRejections(o), getAttempts(o)))
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * The permutation operations of a generator.
+     */
+    public enum Operation {
+        /**
+         * Places an island in-between the endpoints of a bridge.
+         */
+        Subdivision,
+        /**
+         * Doubles up a bridge.
+         */
+        EdgeAddition,
+        /**
+         * Attaches a new island to an existing island.
+         */
+        NodeAddition
+    }
+}
@@ -84,7 +84,7 @@ public class Island implements Comparable<Island> {
 
     @Override
     public int hashCode() {
-        return x ^ y ^ requiredBridges;
+        return 31 * (31 * x + y) + requiredBridges;
     }
 
     @Override
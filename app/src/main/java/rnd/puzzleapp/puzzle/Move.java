@@ -0,0 +1,138 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A single change made to a {@link Puzzle} by the player, which is either placing a bridge, deleting a
+ * bridge or resetting the puzzle.
+ */
+public class Move {
+    private static final Move RESET = new Move(Type.Reset, null);
+
+    private final Type type;
+    private final Bridge bridge;
+
+    private Move(Type type, Bridge bridge) {
+        this.type = type;
+        this.bridge = bridge;
+    }
+
+    /**
+     * Creates a move that places the given bridge.
+     * @param bridge the bridge to place
+     * @return the move
+     */
+    public static Move place(Bridge bridge) {
+        return new Move(Type.Place, bridge);
+    }
+
+    /**
+     * Creates a move that deletes a single occurrence of the given bridge.
+     * @param bridge the bridge to delete
+     * @return the move
+     */
+    public static Move delete(Bridge bridge) {
+        return new Move(Type.Delete, bridge);
+    }
+
+    /**
+     * Returns the move that removes all bridges.
+     * @return the move
+     */
+    public static Move reset() {
+        return RESET;
+    }
+
+    /**
+     * Returns the type of this move.
+     * @return the type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the bridge that is placed or deleted by this move.
+     * @return the bridge, or an empty optional if this move resets the puzzle
+     */
+    public Optional<Bridge> getBridge() {
+        return Optional.ofNullable(bridge);
+    }
+
+    /**
+     * Attempts to apply this move to the given puzzle.
+     * @param puzzle the puzzle to apply this move to
+     * @return {@code true} if the move was applied, {@code false} if it is not valid for the puzzle
+     */
+    public boolean applyTo(Puzzle puzzle) {
+        switch(type) {
+            case Place:
+                return puzzle.placeBridge(bridge);
+
+            case Delete:
+                return puzzle.deleteBridge(bridge);
+
+            default:
+                puzzle.reset();
+                return true;
+        }
+    }
+
+    /**
+     * Returns the move that reverts this move. A reset cannot be reverted, as it does not record the
+     * bridges it removed.
+     * @return the reverting move, or an empty optional if this move is a reset
+     */
+    public Optional<Move> inverse() {
+        switch(type) {
+            case Place:
+                return Optional.of(delete(bridge));
+
+            case Delete:
+                return Optional.of(place(bridge));
+
+            default:
+                return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj instanceof Move) {
+            Move other = (Move)obj;
+
+            return type == other.type && Objects.equals(bridge, other.bridge);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, bridge);
+    }
+
+    @Override
+    public String toString() {
+        return bridge != null ? String.format("%s %s", type, bridge) : type.toString();
+    }
+
+    /**
+     * The types of moves.
+     */
+    public enum Type {
+        /**
+         * The move places a bridge.
+         */
+        Place,
+        /**
+         * The move deletes a bridge.
+         */
+        Delete,
+        /**
+         * The move removes all bridges.
+         */
+        Reset
+    }
+}
@@ -0,0 +1,472 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A 2D occupancy grid of a {@link Puzzle}, which records per cell the island on it, the horizontal
+ * or vertical bridge crossing over it and the degree of the island. Bridges are additionally
+ * recorded, together with their multiplicity, on the cell of their first endpoint, so that point
+ * queries, bridge counts and crossing checks take constant time. Puzzles that fit in
+ * {@link OccupancyGrid#MAX_DENSE_CELLS} cells are backed by dense arrays, larger puzzles by a hash
+ * map from coordinates to cells, so that a few far away islands do not allocate a huge grid.
+ */
+class OccupancyGrid {
+    static final int MAX_DENSE_CELLS = 1 << 20;
+
+    private static final int INITIAL_SPARSE_CELLS = 64;
+
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+    private final Map<Long, Integer> sparseCells;
+    private Island[] islands;
+    private Bridge[] horizontal;
+    private Bridge[] vertical;
+    private Bridge[] east;
+    private Bridge[] south;
+    private byte[] eastCount;
+    private byte[] southCount;
+    private int[] degrees;
+
+    /**
+     * Creates a new empty dense grid that covers the given bounds.
+     * @param minX the lowest x coordinate of the grid
+     * @param minY the lowest y coordinate of the grid
+     * @param width the width of the grid
+     * @param height the height of the grid
+     */
+    private OccupancyGrid(int minX, int minY, int width, int height) {
+        this.minX = minX;
+        this.minY = minY;
+        this.width = width;
+        this.height = height;
+        this.sparseCells = null;
+        allocate(width * height);
+    }
+
+    /**
+     * Creates a new empty sparse grid that covers all coordinates.
+     */
+    private OccupancyGrid() {
+        this.minX = 0;
+        this.minY = 0;
+        this.width = 0;
+        this.height = 0;
+        this.sparseCells = new HashMap<>();
+        allocate(INITIAL_SPARSE_CELLS);
+    }
+
+    /**
+     * Copy constructor.
+     * @param other the instance to copy
+     */
+    private OccupancyGrid(OccupancyGrid other) {
+        this.minX = other.minX;
+        this.minY = other.minY;
+        this.width = other.width;
+        this.height = other.height;
+        this.sparseCells = other.sparseCells == null ? null : new HashMap<>(other.sparseCells);
+        this.islands = other.islands.clone();
+        this.horizontal = other.horizontal.clone();
+        this.vertical = other.vertical.clone();
+        this.east = other.east.clone();
+        this.south = other.south.clone();
+        this.eastCount = other.eastCount.clone();
+        this.southCount = other.southCount.clone();
+        this.degrees = other.degrees.clone();
+    }
+
+    /**
+     * Creates a copy of this grid.
+     * @return a copied instance of this grid
+     */
+    OccupancyGrid copy() {
+        return new OccupancyGrid(this);
+    }
+
+    private void allocate(int cells) {
+        islands = new Island[cells];
+        horizontal = new Bridge[cells];
+        vertical = new Bridge[cells];
+        east = new Bridge[cells];
+        south = new Bridge[cells];
+        eastCount = new byte[cells];
+        southCount = new byte[cells];
+        degrees = new int[cells];
+    }
+
+    /**
+     * Returns the cell of the given coordinates, if the grid has one.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the cell index, or -1 if there is no such cell
+     */
+    private int findCell(int x, int y) {
+        if(sparseCells != null) {
+            Integer cell = sparseCells.get(key(x, y));
+
+            return cell == null ? -1 : cell;
+        }
+
+        int column = x - minX;
+        int row = y - minY;
+
+        return column >= 0 && column < width && row >= 0 && row < height ? row * width + column : -1;
+    }
+
+    /**
+     * Returns the cell of the given coordinates, which is created if this is a sparse grid.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the cell index, or -1 if the coordinates are outside of this dense grid
+     */
+    private int getCell(int x, int y) {
+        int cell = findCell(x, y);
+
+        if(cell == -1 && sparseCells != null) {
+            cell = sparseCells.size();
+            sparseCells.put(key(x, y), cell);
+
+            if(cell == islands.length) {
+                grow(cell * 2);
+            }
+        }
+
+        return cell;
+    }
+
+    private void grow(int cells) {
+        islands = Arrays.copyOf(islands, cells);
+        horizontal = Arrays.copyOf(horizontal, cells);
+        vertical = Arrays.copyOf(vertical, cells);
+        east = Arrays.copyOf(east, cells);
+        south = Arrays.copyOf(south, cells);
+        eastCount = Arrays.copyOf(eastCount, cells);
+        southCount = Arrays.copyOf(southCount, cells);
+        degrees = Arrays.copyOf(degrees, cells);
+    }
+
+    /**
+     * Records the given island.
+     * @param island the island to record
+     * @return {@code true} if the island was recorded, {@code false} if it falls outside of this grid
+     * or its cell is already occupied
+     */
+    boolean addIsland(Island island) {
+        int cell = getCell(island.getX(), island.getY());
+
+        if(cell == -1 || islands[cell] != null || horizontal[cell] != null || vertical[cell] != null) {
+            return false;
+        }
+
+        islands[cell] = island;
+
+        return true;
+    }
+
+    /**
+     * Records a single occurrence of the given bridge.
+     * @param bridge the bridge to record
+     * @return {@code true} if the bridge was recorded, {@code false} if it falls outside of this grid,
+     * is not straight, has its endpoints in the wrong order or overlaps anything other than an equal bridge
+     */
+    boolean addBridge(Bridge bridge) {
+        if(!bridge.isStraight() || bridge.getX1() > bridge.getX2() || bridge.getY1() > bridge.getY2()) {
+            return false;
+        }
+
+        boolean isHorizontal = bridge.getOrientation() == Orientation.Horizontal;
+        int first = getCell(bridge.getX1(), bridge.getY1());
+        int second = getCell(bridge.getX2(), bridge.getY2());
+
+        if(first == -1 || second == -1) {
+            return false;
+        }
+
+        Bridge outgoing = isHorizontal ? east[first] : south[first];
+
+        if(outgoing == null) {
+            // The bridge is new, so all cells it spans must be free. Note that this may grow a sparse grid.
+            if(!isFree(bridge, isHorizontal)) {
+                return false;
+            }
+
+            Bridge[] crossing = isHorizontal ? horizontal : vertical;
+            forEachSpannedCell(bridge, isHorizontal, c -> crossing[c] = bridge);
+            (isHorizontal ? east : south)[first] = bridge;
+        } else if(!outgoing.equals(bridge)) {
+            return false;
+        }
+
+        ++(isHorizontal ? eastCount : southCount)[first];
+        ++degrees[first];
+        ++degrees[second];
+
+        return true;
+    }
+
+    /**
+     * Removes a single occurrence of the given bridge. Note that it is assumed this grid contains the bridge.
+     * @param bridge the bridge to remove
+     */
+    void removeBridge(Bridge bridge) {
+        boolean isHorizontal = bridge.getOrientation() == Orientation.Horizontal;
+        int first = findCell(bridge.getX1(), bridge.getY1());
+        int second = findCell(bridge.getX2(), bridge.getY2());
+        Bridge[] outgoing = isHorizontal ? east : south;
+        byte[] outgoingCount = isHorizontal ? eastCount : southCount;
+
+        --degrees[first];
+        --degrees[second];
+
+        if(--outgoingCount[first] == 0) {
+            Bridge[] crossing = isHorizontal ? horizontal : vertical;
+            forEachSpannedCell(bridge, isHorizontal, c -> crossing[c] = null);
+            outgoing[first] = null;
+        }
+    }
+
+    /**
+     * Removes all bridges from this grid, keeping the islands.
+     */
+    void clearBridges() {
+        Arrays.fill(horizontal, null);
+        Arrays.fill(vertical, null);
+        Arrays.fill(east, null);
+        Arrays.fill(south, null);
+        Arrays.fill(eastCount, (byte)0);
+        Arrays.fill(southCount, (byte)0);
+        Arrays.fill(degrees, 0);
+    }
+
+    /**
+     * Checks whether all cells strictly between the endpoints of the given bridge are free.
+     * @param bridge the bridge to check
+     * @param isHorizontal whether the bridge is horizontal
+     * @return {@code true} if no island or bridge occupies any of the spanned cells, {@code false} otherwise
+     */
+    private boolean isFree(Bridge bridge, boolean isHorizontal) {
+        int start = isHorizontal ? bridge.getX1() : bridge.getY1();
+        int end = isHorizontal ? bridge.getX2() : bridge.getY2();
+
+        for(int i = start + 1; i < end; ++i) {
+            int cell = isHorizontal ? getCell(i, bridge.getY1()) : getCell(bridge.getX1(), i);
+
+            if(cell == -1 || islands[cell] != null || horizontal[cell] != null || vertical[cell] != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void forEachSpannedCell(Bridge bridge, boolean isHorizontal, CellAction action) {
+        int start = isHorizontal ? bridge.getX1() : bridge.getY1();
+        int end = isHorizontal ? bridge.getX2() : bridge.getY2();
+
+        for(int i = start + 1; i < end; ++i) {
+            action.apply(isHorizontal ? findCell(i, bridge.getY1()) : findCell(bridge.getX1(), i));
+        }
+    }
+
+    /**
+     * Returns the island at the given coordinates.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the island, or {@code null} if there is none
+     */
+    Island getIsland(int x, int y) {
+        int cell = findCell(x, y);
+
+        return cell == -1 ? null : islands[cell];
+    }
+
+    /**
+     * Returns the bridge that crosses over the given coordinates.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the bridge, or {@code null} if there is none
+     */
+    Bridge getBridge(int x, int y) {
+        int cell = findCell(x, y);
+
+        return cell == -1 ? null : horizontal[cell] != null ? horizontal[cell] : vertical[cell];
+    }
+
+    /**
+     * Returns the amount of bridges that have the given coordinates as an endpoint.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the amount of bridges
+     */
+    int getDegree(int x, int y) {
+        int cell = findCell(x, y);
+
+        return cell == -1 ? 0 : degrees[cell];
+    }
+
+    /**
+     * Returns the amount of bridges that are equal to the given bridge.
+     * @param bridge the bridge to check
+     * @return the amount of bridges
+     */
+    int getMultiplicity(Bridge bridge) {
+        if(!bridge.isStraight()) {
+            return 0;
+        }
+
+        boolean isHorizontal = bridge.getOrientation() == Orientation.Horizontal;
+        int first = findCell(bridge.getX1(), bridge.getY1());
+
+        if(first == -1) {
+            return 0;
+        }
+
+        Bridge outgoing = isHorizontal ? east[first] : south[first];
+
+        return bridge.equals(outgoing) ? (isHorizontal ? eastCount[first] : southCount[first]) : 0;
+    }
+
+    /**
+     * Checks if the given bridge can be placed without violating any of the game rules, equivalent to
+     * {@link Puzzle#canPlaceBridge(Bridge)}.
+     * @param bridge the bridge to check
+     * @return {@code true} if the given bridge can be placed, {@code false} otherwise
+     */
+    boolean canPlaceBridge(Bridge bridge) {
+        if(!bridge.isStraight() || bridge.isLoop()) {
+            return false;
+        }
+
+        int multiplicity = getMultiplicity(bridge);
+
+        // An equal bridge was already checked when it was placed, so only its multiplicity matters.
+        return multiplicity > 0 ? multiplicity < Puzzle.MAX_BRIDGE_COUNT : canSpan(bridge);
+    }
+
+    /**
+     * Checks whether a new bridge would neither cross an island nor intersect another bridge.
+     * @param bridge the bridge to check
+     * @return {@code true} if the bridge can span its cells, {@code false} otherwise
+     */
+    private boolean canSpan(Bridge bridge) {
+        boolean isHorizontal = bridge.getOrientation() == Orientation.Horizontal;
+        Span span = isHorizontal ? bridge.getHorizontalSpan() : bridge.getVerticalSpan();
+
+        for(int i = span.getStart() + 1; i < span.getEnd(); ++i) {
+            int cell = isHorizontal ? findCell(i, bridge.getY1()) : findCell(bridge.getX1(), i);
+
+            if(cell != -1 && (islands[cell] != null || horizontal[cell] != null || vertical[cell] != null)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns all islands that are directly connected to the island at the given coordinates.
+     * @param x the x coordinate of the island
+     * @param y the y coordinate of the island
+     * @return the list of directly connected islands
+     */
+    List<Island> getNeighbors(int x, int y) {
+        List<Island> neighbors = new ArrayList<>(4);
+        int cell = findCell(x, y);
+
+        if(cell == -1) {
+            return neighbors;
+        }
+
+        // Bridges to the east and south start at this island, bridges to the west and north end at it.
+        Optional.ofNullable(east[cell]).map(b -> getIsland(b.getX2(), b.getY2())).ifPresent(neighbors::add);
+        Optional.ofNullable(south[cell]).map(b -> getIsland(b.getX2(), b.getY2())).ifPresent(neighbors::add);
+        findIncoming(x - 1, y, true).ifPresent(neighbors::add);
+        findIncoming(x, y - 1, false).ifPresent(neighbors::add);
+
+        return neighbors;
+    }
+
+    /**
+     * Finds the first endpoint of the bridge that ends just past the given coordinates.
+     * @param x the x coordinate of the cell before the endpoint
+     * @param y the y coordinate of the cell before the endpoint
+     * @param isHorizontal whether to look for a horizontal bridge
+     * @return the first endpoint, or an empty optional if no such bridge exists
+     */
+    private Optional<Island> findIncoming(int x, int y, boolean isHorizontal) {
+        int cell = findCell(x, y);
+
+        if(cell == -1) {
+            return Optional.empty();
+        }
+
+        Bridge bridge = isHorizontal ? horizontal[cell] : vertical[cell];
+
+        if(bridge != null) {
+            return Optional.ofNullable(getIsland(bridge.getX1(), bridge.getY1()));
+        }
+
+        Bridge outgoing = isHorizontal ? east[cell] : south[cell];
+
+        return outgoing != null ? Optional.ofNullable(islands[cell]) : Optional.empty();
+    }
+
+    private static long key(int x, int y) {
+        // NOTE: The hash of a long is the XOR of both halves, so the y half is scrambled with x to avoid
+        // collisions between nearby cells. The key remains unique as y can be recovered given x.
+        return ((long)x << 32) | ((y ^ x * 0x9E3779B9) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Creates a new empty sparse grid, which covers all coordinates and grows as cells are used.
+     * @return the sparse grid
+     */
+    static OccupancyGrid sparse() {
+        return new OccupancyGrid();
+    }
+
+    /**
+     * Creates a grid that records all islands and bridges of the given puzzle.
+     * @param puzzle the puzzle
+     * @return the grid, or an empty optional if the puzzle contains bridges that cross islands or
+     * intersect other bridges, which a grid cannot record
+     */
+    static Optional<OccupancyGrid> of(Puzzle puzzle) {
+        int minX = 0, minY = 0, maxX = 0, maxY = 0;
+
+        for(Island island : puzzle.getIslands()) {
+            minX = Math.min(minX, island.getX());
+            minY = Math.min(minY, island.getY());
+            maxX = Math.max(maxX, island.getX());
+            maxY = Math.max(maxY, island.getY());
+        }
+
+        for(Bridge bridge : puzzle.getBridges()) {
+            minX = Math.min(minX, bridge.getX1());
+            minY = Math.min(minY, bridge.getY1());
+            maxX = Math.max(maxX, bridge.getX2());
+            maxY = Math.max(maxY, bridge.getY2());
+        }
+
+        long cells = ((long)maxX - minX + 1) * ((long)maxY - minY + 1);
+        OccupancyGrid grid = cells <= MAX_DENSE_CELLS ?
+                new OccupancyGrid(minX, minY, maxX - minX + 1, maxY - minY + 1) :
+                new OccupancyGrid();
+
+        boolean ok = puzzle.getIslands().stream().allMatch(grid::addIsland)
+                && puzzle.getBridges().stream().allMatch(grid::addBridge);
+
+        return ok ? Optional.of(grid) : Optional.empty();
+    }
+
+    private interface CellAction {
+        void apply(int cell);
+    }
+}
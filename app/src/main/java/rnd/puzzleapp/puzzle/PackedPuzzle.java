@@ -0,0 +1,46 @@
+package rnd.puzzleapp.puzzle;
+
+/**
+ * A named {@link Puzzle} together with its solution, as distributed in a puzzle pack.
+ */
+public class PackedPuzzle {
+    private final String name;
+    private final Puzzle puzzle;
+    private final Puzzle solution;
+
+    /**
+     * Creates a new packed puzzle instance.
+     * @param name the name of the puzzle, which must be a valid directory name
+     * @param puzzle the puzzle
+     * @param solution the solution of the puzzle
+     */
+    public PackedPuzzle(String name, Puzzle puzzle, Puzzle solution) {
+        this.name = name;
+        this.puzzle = puzzle;
+        this.solution = solution;
+    }
+
+    /**
+     * Returns the name of this packed puzzle.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the puzzle of this packed puzzle.
+     * @return the puzzle
+     */
+    public Puzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Returns the solution of this packed puzzle.
+     * @return the solution
+     */
+    public Puzzle getSolution() {
+        return solution;
+    }
+}
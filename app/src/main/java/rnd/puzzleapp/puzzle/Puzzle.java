@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -28,6 +29,7 @@ public class Puzzle implements Comparable<Puzzle> {
 
     private final List<Island> islands;
     private final List<Bridge> bridges;
+    private OccupancyGrid grid;
 
     /**
      * Creates a new empty puzzles without any islands or bridges.
@@ -35,6 +37,7 @@ public class Puzzle implements Comparable<Puzzle> {
     public Puzzle() {
         this.islands = new ArrayList<>();
         this.bridges = new ArrayList<>();
+        this.grid = null;
     }
 
     /**
@@ -50,6 +53,7 @@ public class Puzzle implements Comparable<Puzzle> {
                 .sequential()
                 .map(Bridge::copy)
                 .collect(Collectors.toList());
+        this.grid = other.grid == null ? null : OccupancyGrid.of(this).orElse(null);
     }
 
     /**
@@ -60,6 +64,7 @@ public class Puzzle implements Comparable<Puzzle> {
     private Puzzle(Puzzle other, FastCopyTag tag) {
         this.islands = other.islands;
         this.bridges = new ArrayList<>(other.bridges);
+        this.grid = other.grid == null ? null : other.grid.copy();
     }
 
     /**
@@ -81,11 +86,51 @@ public class Puzzle implements Comparable<Puzzle> {
         return new Puzzle(this, FAST_COPY_TAG);
     }
 
+    /**
+     * Enables the occupancy grid of this puzzle, which turns point queries, bridge counts and placement
+     * checks into constant time operations at the cost of some memory. The grid is kept consistent by
+     * every mutating method of this puzzle and carried over by copies, but not by directly mutating the
+     * lists returned by {@link Puzzle#getIslands()} and {@link Puzzle#getBridges()}. Puzzles whose
+     * bridges cross islands or intersect other bridges cannot be recorded in a grid, in which case the
+     * grid is silently disabled again.
+     * @return this puzzle, to allow chaining
+     */
+    public Puzzle enableOccupancyGrid() {
+        if(grid == null) {
+            grid = OccupancyGrid.of(this).orElse(null);
+        }
+
+        return this;
+    }
+
+    /**
+     * Checks whether this puzzle currently maintains an occupancy grid.
+     * @return {@code true} if the occupancy grid is enabled, {@code false} otherwise
+     */
+    public boolean hasOccupancyGrid() {
+        return grid != null;
+    }
+
+    /**
+     * Applies a mutation to the occupancy grid, if enabled. If the grid cannot record the mutation in
+     * place it is rebuilt from the islands and bridges, which are expected to already be mutated.
+     * @param mutation the mutation, which returns {@code false} if it could not be recorded
+     */
+    private void updateGrid(Predicate<OccupancyGrid> mutation) {
+        if(grid != null && !mutation.test(grid)) {
+            grid = OccupancyGrid.of(this).orElse(null);
+        }
+    }
+
     /**
      * Resets this puzzle by removing all bridges.
      */
     public void reset() {
         bridges.clear();
+        updateGrid(g -> {
+            g.clearBridges();
+            return true;
+        });
     }
 
     /**
@@ -94,6 +139,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return a stream of all directly connected islands
      */
     public Stream<Island> getNeighbors(Island island) {
+        if(grid != null) {
+            return grid.getNeighbors(island.getX(), island.getY()).stream();
+        }
+
         return bridges.stream()
                 .filter(b -> b.hasEndpoint(island))
                 .map(b -> getOtherEndpoint(b, island))
@@ -179,6 +228,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return the amount of bridges
      */
     public long getBridgeCount(Island island) {
+        if(grid != null) {
+            return grid.getDegree(island.getX(), island.getY());
+        }
+
         return bridges.stream().filter(b -> b.hasEndpoint(island)).count();
     }
 
@@ -188,6 +241,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return the amount of bridges
      */
     public long getBridgeCount(Bridge bridge) {
+        if(grid != null) {
+            return grid.getMultiplicity(bridge);
+        }
+
         return bridges.stream().filter(bridge::equals).count();
     }
 
@@ -197,7 +254,7 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return {@code true} if the bridge was added, {@code false} otherwise
      */
     public boolean placeBridge(Bridge bridge) {
-        return doIf(canPlaceBridge(bridge), () -> addSorted(bridges, bridge));
+        return doIf(canPlaceBridge(bridge), () -> addBridge(bridge));
     }
 
     /**
@@ -208,6 +265,7 @@ public class Puzzle implements Comparable<Puzzle> {
      */
     public void addBridge(Bridge bridge) {
         addSorted(bridges, bridge);
+        updateGrid(g -> g.addBridge(bridge));
     }
 
     /**
@@ -218,6 +276,7 @@ public class Puzzle implements Comparable<Puzzle> {
      */
     public void addIsland(Island island) {
         addSorted(islands, island);
+        updateGrid(g -> g.addIsland(island));
     }
 
     /**
@@ -226,7 +285,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return {@code true} is a bridge was deleted, {@code false} otherwise
      */
     public boolean deleteBridge(Bridge bridge) {
-        return bridges.remove(bridge);
+        return doIf(bridges.remove(bridge), () -> updateGrid(g -> {
+            g.removeBridge(bridge);
+            return true;
+        }));
     }
 
     /**
@@ -235,6 +297,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return {@code true} if the given bridge can be placed, {@code false} otherwise
      */
     public boolean canPlaceBridge(Bridge bridge) {
+        if(grid != null) {
+            return grid.canPlaceBridge(bridge);
+        }
+
         return bridge.isStraight()
                 && !bridge.isLoop()
                 && getBridgeCount(bridge) < MAX_BRIDGE_COUNT
@@ -258,6 +324,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return the bridge that crosses over the given island, or an empty optional if no such bridge exists
      */
     public Optional<Bridge> getBridge(int x, int y) {
+        if(grid != null) {
+            return Optional.ofNullable(grid.getBridge(x, y));
+        }
+
         return bridges.stream().filter(b -> b.crosses(x, y)).findFirst();
     }
 
@@ -268,6 +338,10 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return the island at the given coordinates, or an empty optional if no such island exists
      */
     public Optional<Island> getIsland(int x, int y) {
+        if(grid != null) {
+            return Optional.ofNullable(grid.getIsland(x, y));
+        }
+
         return islands.stream().filter(i -> i.getX() == x && i.getY() == y).findFirst();
     }
 
@@ -290,7 +364,8 @@ public class Puzzle implements Comparable<Puzzle> {
     }
 
     /**
-     * Returns the collection of islands in this puzzle.
+     * Returns the collection of islands in this puzzle. Note that mutating the collection directly
+     * bypasses the occupancy grid, see {@link Puzzle#enableOccupancyGrid()}.
      * @return the collection of islands
      */
     public List<Island> getIslands() {
@@ -298,7 +373,8 @@ public class Puzzle implements Comparable<Puzzle> {
     }
 
     /**
-     * Returns the collection of bridges in this puzzle.
+     * Returns the collection of bridges in this puzzle. Note that mutating the collection directly
+     * bypasses the occupancy grid, see {@link Puzzle#enableOccupancyGrid()}.
      * @return the collection of bridges
      */
     public List<Bridge> getBridges() {
@@ -335,9 +411,12 @@ public class Puzzle implements Comparable<Puzzle> {
      * @return {@code true} if the given bridge can still be place, {@code false} otherwise
      */
     private boolean canStillPlaceBridge(Bridge bridge) {
-        if(!(getBridgeCount(bridge) < MAX_BRIDGE_COUNT
+        // NOTE: The grid also checks for crossed islands, which cannot change for a bridge that could previously be placed.
+        boolean isFree = grid != null ? grid.canPlaceBridge(bridge) : getBridgeCount(bridge) < MAX_BRIDGE_COUNT
                 && (bridges.stream().noneMatch(bridge::intersects)
-                || bridges.stream().anyMatch(bridge::equals)))) {
+                || bridges.stream().anyMatch(bridge::equals));
+
+        if(!isFree) {
             return false;
         }
 
@@ -1,24 +1,32 @@
 package rnd.puzzleapp.puzzle;
 
+import java.util.Optional;
+
 /**
- * The difficulty of a {@link Puzzle}.
+ * The difficulty of a {@link Puzzle}. Every difficulty has a range of islands, which determines the size
+ * of its puzzles, and a range of difficulty scores as rated by the
+ * {@link rnd.puzzleapp.solver.DifficultyRater}, which determines which puzzles belong to it.
  */
 public enum PuzzleDifficulty {
     // NOTE: Should be declared in increasing order of difficulty for correct sorting.
-    VeryEasy("Very easy", 4, 8),
-    Easy("Easy", 8, 12),
-    Normal("Normal", 12, 16),
-    Hard("Hard", 16, 32),
-    VeryHard("Very hard", 32, 64);
+    VeryEasy("Very easy", 4, 8, 0.0, 0.2),
+    Easy("Easy", 8, 12, 0.2, 0.35),
+    Normal("Normal", 12, 16, 0.35, 0.5),
+    Hard("Hard", 16, 32, 0.5, 0.65),
+    VeryHard("Very hard", 32, 64, 0.65, Double.POSITIVE_INFINITY);
 
     private final String name;
     private final int minNodes;
     private final int maxNodes;
+    private final double minScore;
+    private final double maxScore;
 
-    PuzzleDifficulty(String name, int minNodes, int maxNodes) {
+    PuzzleDifficulty(String name, int minNodes, int maxNodes, double minScore, double maxScore) {
         this.name = name;
         this.minNodes = minNodes;
         this.maxNodes = maxNodes;
+        this.minScore = minScore;
+        this.maxScore = maxScore;
     }
 
     /**
@@ -44,4 +52,59 @@ public enum PuzzleDifficulty {
     public int getMaxNodes() {
         return maxNodes;
     }
+
+    /**
+     * Returns the minimum difficulty score of this difficulty.
+     * @return the minimum score (inclusive)
+     */
+    public double getMinScore() {
+        return minScore;
+    }
+
+    /**
+     * Returns the maximum difficulty score of this difficulty.
+     * @return the maximum score (exclusive)
+     */
+    public double getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Returns how far the given difficulty score lies outside the score range of this difficulty.
+     * @param score the difficulty score
+     * @return the distance to the score range, which is 0 if the score lies within the range
+     */
+    public double getScoreDistance(double score) {
+        return score < minScore ? minScore - score : score >= maxScore ? score - maxScore : 0;
+    }
+
+    /**
+     * Returns the difficulty of which the score range contains the given difficulty score.
+     * @param score the difficulty score
+     * @return the difficulty
+     */
+    public static PuzzleDifficulty fromScore(double score) {
+        for(PuzzleDifficulty difficulty : values()) {
+            if(score < difficulty.getMaxScore()) {
+                return difficulty;
+            }
+        }
+
+        return VeryHard;
+    }
+
+    /**
+     * Returns the difficulty of a default puzzle, of which the name starts with the difficulty name.
+     * @param puzzleName the name of the puzzle
+     * @return the difficulty, or an empty optional if the puzzle is not a default puzzle
+     */
+    public static Optional<PuzzleDifficulty> fromPuzzleName(String puzzleName) {
+        for(PuzzleDifficulty difficulty : values()) {
+            if(puzzleName.startsWith(difficulty.getName())) {
+                return Optional.of(difficulty);
+            }
+        }
+
+        return Optional.empty();
+    }
 }
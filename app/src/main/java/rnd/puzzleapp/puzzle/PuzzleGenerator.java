@@ -11,4 +11,18 @@ public interface PuzzleGenerator {
      * the value of {@code keepBridges}.
      */
     Puzzle generate(boolean keepBridges);
+
+    /**
+     * Generate a new puzzle instance within the given budget. Generators that cannot stall may ignore
+     * the budget, which is what the default implementation does.
+     * @param keepBridges determine if the generated puzzle should retain all placed bridges
+     * @param budget the budget that may be spent on generating the puzzle
+     * @return the result, which holds the generated puzzle unless the budget was exhausted
+     */
+    default GenerationResult generate(boolean keepBridges, GenerationBudget budget) {
+        long start = System.nanoTime();
+        Puzzle puzzle = generate(keepBridges);
+
+        return GenerationResult.generated(puzzle, new GenerationStats(), System.nanoTime() - start);
+    }
 }
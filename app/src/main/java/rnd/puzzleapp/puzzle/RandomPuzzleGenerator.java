@@ -1,24 +1,47 @@
 package rnd.puzzleapp.puzzle;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
 
+import rnd.puzzleapp.puzzle.GenerationStats.Operation;
+
+import static rnd.puzzleapp.utils.Functional.doIf;
+
 /**
  * A random {@link Puzzle} generator that generates solvable puzzles based on pseudo-random permutation.
+ * By default the puzzle under construction is kept in plain lists, which makes generation quadratic in
+ * the amount of islands but keeps the generated puzzles stable. The scalable mode keeps the puzzle in an
+ * {@link OccupancyGrid} and a {@link BridgeMultiset} instead, which makes every permutation round take
+ * constant time and allows generating puzzles with thousands of islands. Note that both modes generate
+ * different puzzles for the same seed.
+ * <p>
+ * When generating within a {@link GenerationBudget}, the biases of the permutation operations are
+ * rebalanced while generating: an operation of which most recent attempts were rejected is selected
+ * less often, so that rounds are spent on operations that still make progress. A generator instance
+ * should only be used to generate a single puzzle.
  */
 public class RandomPuzzleGenerator implements PuzzleGenerator {
     private static final float SUBDIVISION_BIAS = .50f;
     private static final float EDGE_ADDITION_BIAS = .75f;
     private static final float NODE_ADDITION_BIAS = 2;
-    private static final float BIAS_SUM = SUBDIVISION_BIAS + EDGE_ADDITION_BIAS + NODE_ADDITION_BIAS;
+    private static final float[] BIASES = { SUBDIVISION_BIAS, EDGE_ADDITION_BIAS, NODE_ADDITION_BIAS };
+    private static final float REJECTION_RATE_SMOOTHING = 1f / 32;
+    private static final float REJECTION_RATE_SPIKE = .5f;
+    private static final float MIN_BIAS_SCALE = .1f;
     private static final int MIN_NODE_OFFSET = 1;
     private static final int MAX_NODE_OFFSET = 4;
 
     private final Random random;
     private final int targetNodeCount;
     private final Puzzle puzzle;
+    private final Layout layout;
+    private final float[] biases;
+    private final float[] rejectionRates;
+    private GenerationStats stats;
+    private boolean isRebalancing;
     private int minX;
     private int minY;
     private int maxX;
@@ -31,9 +54,26 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
      * @param maxNodeCount the maximum amount of islands the puzzle should have (inclusive)
      */
     public RandomPuzzleGenerator(long seed, int minNodeCount, int maxNodeCount) {
+        this(seed, minNodeCount, maxNodeCount, false);
+    }
+
+    /**
+     * Creates a new random puzzle generator instance.
+     * @param seed the seed of the pseudo-random number generator
+     * @param minNodeCount the minimum amount of islands the puzzle should have (inclusive)
+     * @param maxNodeCount the maximum amount of islands the puzzle should have (inclusive)
+     * @param isScalable whether to use the scalable mode, which should be used for puzzles with more
+     *                   than a few hundred islands
+     */
+    public RandomPuzzleGenerator(long seed, int minNodeCount, int maxNodeCount, boolean isScalable) {
         this.random = new Random(seed);
         this.targetNodeCount = randomInt(minNodeCount, maxNodeCount);
         this.puzzle = new Puzzle();
+        this.layout = isScalable ? new GridLayout() : new ListLayout(puzzle);
+        this.biases = BIASES.clone();
+        this.rejectionRates = new float[BIASES.length];
+        this.stats = new GenerationStats();
+        this.isRebalancing = false;
         this.minX = 0;
         this.minY = 0;
         this.maxX = 0;
@@ -45,7 +85,7 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
      * @return the random bridge
      */
     private Bridge selectRandomEdge() {
-        return selectRandomListElement(puzzle.getBridges());
+        return layout.selectRandomEdge(random);
     }
 
     /**
@@ -53,16 +93,17 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
      * @return the random island
      */
     private Island selectRandomNode() {
-        return selectRandomListElement(puzzle.getIslands());
+        return selectRandomListElement(random, layout.getNodes());
     }
 
     /**
      * Utility method to select a random element from the given list.
+     * @param random the pseudo-random number generator to use
      * @param list the list to select an element from
      * @param <T> the element type
      * @return the randomly selected element
      */
-    private <T> T selectRandomListElement(List<T> list) {
+    private static <T> T selectRandomListElement(Random random, List<T> list) {
         return list.get(random.nextInt(list.size()));
     }
 
@@ -123,13 +164,14 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
     /**
      * Attempts to subdivide a bridge by placing an island in-between and connecting that island
      * to the divided islands.
+     * @return {@code true} if the bridge was subdivided, {@code false} if it was too short
      */
-    private void subdivision() {
+    private boolean subdivision() {
         Bridge edge = selectRandomEdge();
         Orientation orientation = edge.getOrientation();
         Span horizontalSpan = edge.getHorizontalSpan();
         Span verticalSpan = edge.getVerticalSpan();
-        long edgeMultiplicity = puzzle.getBridgeCount(edge);
+        int edgeMultiplicity = layout.getMultiplicity(edge);
 
         if(horizontalSpan.size() >= 2 || verticalSpan.size() >= 2) {
             int x = orientation == Orientation.Horizontal ?
@@ -140,70 +182,104 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
                     randomInt(verticalSpan.getStart() + 1, verticalSpan.getEnd() - 1);
 
             // Remove existing edges.
-            puzzle.getBridges().removeIf(edge::equals);
+            layout.removeEdges(edge);
 
             // Create and add subdivided node and edges.
             Island newNode = new Island(x, y, 0);
             Bridge newEdge1 = new Bridge(edge.getX1(), edge.getY1(), newNode.getX(), newNode.getY());
             Bridge newEdge2 = new Bridge(newNode.getX(), newNode.getY(), edge.getX2(), edge.getY2());
 
-            puzzle.getIslands().add(newNode);
+            layout.addNode(newNode);
             for(int i = 0; i < edgeMultiplicity; ++i) {
-                puzzle.getBridges().add(newEdge1);
-                puzzle.getBridges().add(newEdge2);
+                layout.addEdge(newEdge1);
+                layout.addEdge(newEdge2);
             }
+
+            return true;
         }
+
+        return false;
     }
 
     /**
      * Attempts to double-up an existing bridge.
+     * @return {@code true} if the bridge was doubled up, {@code false} if it already was
      */
-    private void edgeAddition() {
+    private boolean edgeAddition() {
         Bridge edge = selectRandomEdge();
 
-        if(puzzle.getBridgeCount(edge) < Puzzle.MAX_BRIDGE_COUNT) {
-            puzzle.getBridges().add(edge);
-        }
+        return doIf(layout.getMultiplicity(edge) < Puzzle.MAX_BRIDGE_COUNT, () -> layout.addEdge(edge));
     }
 
     /**
      * Attempts to attach an island to an existing island.
+     * @return {@code true} if an island was attached, {@code false} if it did not fit
      */
-    private void nodeAddition() {
+    private boolean nodeAddition() {
         Island node = selectRandomNode();
         Island newNode = randomOffset(node);
         Bridge newEdge = Bridge.create(node, newNode);
 
-        if(!puzzle.getIslands().contains(newNode)
-                && puzzle.getBridges().stream().noneMatch(newNode::crosses)
-                && puzzle.getBridges().stream().noneMatch(newEdge::intersects)
-                && puzzle.getIslands().stream().noneMatch(newEdge::crosses)) {
-            puzzle.getIslands().add(newNode);
-            puzzle.getBridges().add(newEdge);
+        if(layout.canAddNode(newNode, newEdge)) {
+            layout.addNode(newNode);
+            layout.addEdge(newEdge);
 
             // Update current puzzle bounds, which are not normalized.
             minX = Math.min(minX, newNode.getX());
             minY = Math.min(minY, newNode.getY());
             maxX = Math.max(maxX, newNode.getX());
             maxY = Math.max(maxY, newNode.getY());
+
+            return true;
         }
+
+        return false;
     }
 
     /**
      * Perform the next permutation round, which might or might not end up adding a new island.
      */
     private void nextRound() {
-        float value = random.nextFloat() * BIAS_SUM;
-
-        if(value < SUBDIVISION_BIAS) {
-            subdivision();
-        } else if(value < SUBDIVISION_BIAS + EDGE_ADDITION_BIAS) {
-            edgeAddition();
+        float subdivisionBias = biases[Operation.Subdivision.ordinal()];
+        float edgeAdditionBias = biases[Operation.EdgeAddition.ordinal()];
+        float nodeAdditionBias = biases[Operation.NodeAddition.ordinal()];
+        float value = random.nextFloat() * (subdivisionBias + edgeAdditionBias + nodeAdditionBias);
+        Operation operation;
+        boolean isAccepted;
+
+        if(value < subdivisionBias) {
+            operation = Operation.Subdivision;
+            isAccepted = subdivision();
+        } else if(value < subdivisionBias + edgeAdditionBias) {
+            operation = Operation.EdgeAddition;
+            isAccepted = edgeAddition();
         } else {
-            nodeAddition();
+            operation = Operation.NodeAddition;
+            isAccepted = nodeAddition();
+        }
+
+        stats.record(operation, isAccepted);
+
+        if(isRebalancing) {
+            rebalance(operation, isAccepted);
         }
     }
 
+    /**
+     * Updates the smoothed rejection rate of the given operation, and scales its bias down while the
+     * rate is above {@link RandomPuzzleGenerator#REJECTION_RATE_SPIKE}.
+     * @param operation the operation that was just attempted
+     * @param isAccepted whether the operation was accepted
+     */
+    private void rebalance(Operation operation, boolean isAccepted) {
+        int index = operation.ordinal();
+        float rate = rejectionRates[index] + ((isAccepted ? 0 : 1) - rejectionRates[index]) * REJECTION_RATE_SMOOTHING;
+        float scale = rate > REJECTION_RATE_SPIKE ? Math.max(MIN_BIAS_SCALE, 1 - rate) : 1;
+
+        rejectionRates[index] = rate;
+        biases[index] = BIASES[index] * scale;
+    }
+
     /**
      * Normalizes the given island, based on the minimum x and y coordinates of the puzzle.
      * @param node the island to normalize
@@ -228,19 +304,46 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
 
     @Override
     public Puzzle generate(boolean keepBridges) {
+        // NOTE: Biases are not rebalanced, so that the generated puzzle only depends on the seed.
+        return generate(keepBridges, GenerationBudget.UNBOUNDED, false).getPuzzle();
+    }
+
+    @Override
+    public GenerationResult generate(boolean keepBridges, GenerationBudget budget) {
+        return generate(keepBridges, budget, true);
+    }
+
+    /**
+     * Generates a puzzle within the given budget.
+     * @param keepBridges determine if the generated puzzle should retain all placed bridges
+     * @param budget the budget that may be spent on generating the puzzle
+     * @param isRebalancing whether the biases of the operations should be rebalanced
+     * @return the result of the generation
+     */
+    private GenerationResult generate(boolean keepBridges, GenerationBudget budget, boolean isRebalancing) {
+        long start = System.nanoTime();
+        this.stats = new GenerationStats();
+        this.isRebalancing = isRebalancing;
+
         // Add 2 initial connected nodes.
         Island initialNode = new Island(minX, minY, 0);
-        puzzle.getIslands().add(initialNode);
+        layout.addNode(initialNode);
         nodeAddition();
 
-        // Keep making random permutation rounds until the target node count is hit.
-        while (puzzle.getIslands().size() < targetNodeCount) {
+        // Keep making random permutation rounds until the target node count is hit, or the budget is exhausted.
+        for(long round = 0; layout.getNodes().size() < targetNodeCount; ++round) {
+            if(round >= budget.getMaxRounds()) {
+                return GenerationResult.failed(GenerationResult.Failure.RoundLimitReached, stats, System.nanoTime() - start);
+            } else if(budget.isTimeExhausted(System.nanoTime() - start)) {
+                return GenerationResult.failed(GenerationResult.Failure.TimeLimitReached, stats, System.nanoTime() - start);
+            }
+
             nextRound();
         }
 
         // Compute node degrees.
-        List<Island> nodes = puzzle.getIslands().stream()
-                .map(i -> new Island(i.getX(), i.getY(), (int)puzzle.getBridgeCount(i)))
+        List<Island> nodes = layout.getNodes().stream()
+                .map(i -> new Island(i.getX(), i.getY(), layout.getDegree(i)))
                 .collect(Collectors.toList());
 
         // Normalize node locations to be non-negative.
@@ -250,7 +353,7 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
         List<Island> normalizedNodes = nodes.stream()
                 .map(i -> normalizeNode(i, minX, minY))
                 .collect(Collectors.toList());
-        List<Bridge> normalizedEdges = puzzle.getBridges().stream()
+        List<Bridge> normalizedEdges = layout.getEdges().stream()
                 .map(b -> normalizeEdge(b, minX, minY))
                 .collect(Collectors.toList());
 
@@ -268,6 +371,156 @@ public class RandomPuzzleGenerator implements PuzzleGenerator {
             puzzle.getBridges().addAll(normalizedEdges);
         }
 
-        return puzzle;
+        return GenerationResult.generated(puzzle, stats, System.nanoTime() - start);
+    }
+
+    /**
+     * The puzzle under construction, which is stored differently depending on the generator mode.
+     */
+    private interface Layout {
+        List<Island> getNodes();
+
+        List<Bridge> getEdges();
+
+        Bridge selectRandomEdge(Random random);
+
+        int getMultiplicity(Bridge edge);
+
+        int getDegree(Island node);
+
+        boolean canAddNode(Island node, Bridge edge);
+
+        void addNode(Island node);
+
+        void addEdge(Bridge edge);
+
+        void removeEdges(Bridge edge);
+    }
+
+    /**
+     * Stores the puzzle under construction in the unsorted lists of a puzzle, which are scanned linearly.
+     */
+    private static class ListLayout implements Layout {
+        private final Puzzle puzzle;
+
+        ListLayout(Puzzle puzzle) {
+            this.puzzle = puzzle;
+        }
+
+        @Override
+        public List<Island> getNodes() {
+            return puzzle.getIslands();
+        }
+
+        @Override
+        public List<Bridge> getEdges() {
+            return puzzle.getBridges();
+        }
+
+        @Override
+        public Bridge selectRandomEdge(Random random) {
+            return selectRandomListElement(random, puzzle.getBridges());
+        }
+
+        @Override
+        public int getMultiplicity(Bridge edge) {
+            return (int)puzzle.getBridgeCount(edge);
+        }
+
+        @Override
+        public int getDegree(Island node) {
+            return (int)puzzle.getBridgeCount(node);
+        }
+
+        @Override
+        public boolean canAddNode(Island node, Bridge edge) {
+            return !puzzle.getIslands().contains(node)
+                    && puzzle.getBridges().stream().noneMatch(node::crosses)
+                    && puzzle.getBridges().stream().noneMatch(edge::intersects)
+                    && puzzle.getIslands().stream().noneMatch(edge::crosses);
+        }
+
+        @Override
+        public void addNode(Island node) {
+            puzzle.getIslands().add(node);
+        }
+
+        @Override
+        public void addEdge(Bridge edge) {
+            puzzle.getBridges().add(edge);
+        }
+
+        @Override
+        public void removeEdges(Bridge edge) {
+            puzzle.getBridges().removeIf(edge::equals);
+        }
+    }
+
+    /**
+     * Stores the puzzle under construction in a sparse occupancy grid, which answers placement checks
+     * in constant time, and a bridge multiset, which samples and removes edges in constant time.
+     */
+    private static class GridLayout implements Layout {
+        private final List<Island> nodes;
+        private final BridgeMultiset edges;
+        private final OccupancyGrid grid;
+
+        GridLayout() {
+            this.nodes = new ArrayList<>();
+            this.edges = new BridgeMultiset();
+            this.grid = OccupancyGrid.sparse();
+        }
+
+        @Override
+        public List<Island> getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public List<Bridge> getEdges() {
+            return edges.toList();
+        }
+
+        @Override
+        public Bridge selectRandomEdge(Random random) {
+            return edges.sample(random);
+        }
+
+        @Override
+        public int getMultiplicity(Bridge edge) {
+            return grid.getMultiplicity(edge);
+        }
+
+        @Override
+        public int getDegree(Island node) {
+            return grid.getDegree(node.getX(), node.getY());
+        }
+
+        @Override
+        public boolean canAddNode(Island node, Bridge edge) {
+            // The new island is not recorded yet, so the new bridge only has to span free cells.
+            return grid.getIsland(node.getX(), node.getY()) == null
+                    && grid.getBridge(node.getX(), node.getY()) == null
+                    && grid.canPlaceBridge(edge);
+        }
+
+        @Override
+        public void addNode(Island node) {
+            nodes.add(node);
+            grid.addIsland(node);
+        }
+
+        @Override
+        public void addEdge(Bridge edge) {
+            edges.add(edge);
+            grid.addBridge(edge);
+        }
+
+        @Override
+        public void removeEdges(Bridge edge) {
+            for(int i = edges.removeAll(edge); i > 0; --i) {
+                grid.removeBridge(edge);
+            }
+        }
     }
 }
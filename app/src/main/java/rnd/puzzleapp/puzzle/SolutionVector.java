@@ -0,0 +1,178 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The bridges of a board, stored as the multiplicity of every candidate edge of its islands, in the
+ * canonical order of {@link CandidateEdges#of(java.util.Collection)}. Every multiplicity takes 2 bits,
+ * so a solution is stored without repeating the islands of the puzzle it belongs to, and two boards of
+ * the same puzzle are equal exactly when their vectors are equal.
+ */
+public class SolutionVector {
+    private static final int EDGES_PER_BYTE = 4;
+    private static final int BITS_PER_EDGE = 2;
+    private static final int MULTIPLICITY_MASK = 3;
+
+    private final int edgeCount;
+    private final byte[] packed;
+
+    private SolutionVector(int edgeCount, byte[] packed) {
+        this.edgeCount = edgeCount;
+        this.packed = packed;
+    }
+
+    /**
+     * Creates the vector of the bridges of the given board.
+     * @param edges the candidate edges of the islands of the board
+     * @param board the board
+     * @return the vector, or an empty optional if the board has a bridge that is not a candidate edge, or
+     * has more than {@link Puzzle#MAX_BRIDGE_COUNT} bridges on the same edge
+     */
+    public static Optional<SolutionVector> of(List<Bridge> edges, Puzzle board) {
+        byte[] packed = new byte[getPackedLength(edges.size())];
+
+        for(Bridge bridge : board.getBridges()) {
+            int edge = Collections.binarySearch(edges, bridge);
+
+            if(edge < 0 || getMultiplicity(packed, edge) == Puzzle.MAX_BRIDGE_COUNT) {
+                return Optional.empty();
+            }
+
+            packed[edge / EDGES_PER_BYTE] += 1 << getShift(edge);
+        }
+
+        return Optional.of(new SolutionVector(edges.size(), packed));
+    }
+
+    /**
+     * Creates a vector from its packed bytes, as returned by {@link SolutionVector#toBytes()}.
+     * @param edgeCount the amount of candidate edges of the islands of the board
+     * @param packed the packed bytes
+     * @return the vector
+     * @throws IllegalArgumentException if the bytes are not a valid vector of the given amount of edges
+     */
+    public static SolutionVector fromBytes(int edgeCount, byte[] packed) {
+        if(packed.length != getPackedLength(edgeCount)) {
+            throw new IllegalArgumentException(String.format("Expected %d bytes, got %d", getPackedLength(edgeCount), packed.length));
+        }
+
+        SolutionVector vector = new SolutionVector(edgeCount, packed.clone());
+
+        for(int edge = 0; edge < edgeCount; ++edge) {
+            if(vector.getMultiplicity(edge) > Puzzle.MAX_BRIDGE_COUNT) {
+                throw new IllegalArgumentException(String.format("Invalid multiplicity of edge %d", edge));
+            }
+        }
+
+        // The unused bits of the last byte must be clear, otherwise equal boards could differ in bytes.
+        if(edgeCount % EDGES_PER_BYTE != 0 && (packed[packed.length - 1] & 0xFF) >> getShift(edgeCount) != 0) {
+            throw new IllegalArgumentException("Unused bits are set");
+        }
+
+        return vector;
+    }
+
+    /**
+     * Returns the packed bytes of this vector.
+     * @return the packed bytes
+     */
+    public byte[] toBytes() {
+        return packed.clone();
+    }
+
+    /**
+     * Returns the amount of candidate edges of this vector.
+     * @return the amount of edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the amount of bridges on a candidate edge.
+     * @param edge the index of the edge in the canonical order
+     * @return the multiplicity of the edge
+     */
+    public int getMultiplicity(int edge) {
+        return getMultiplicity(packed, edge);
+    }
+
+    /**
+     * Checks whether every island has exactly its required amount of bridges in this vector.
+     * @param islands the islands of the board
+     * @param edges the candidate edges of the islands
+     * @return {@code true} if every island has its required amount of bridges, {@code false} otherwise
+     */
+    public boolean hasRequiredBridgeCounts(List<Island> islands, List<Bridge> edges) {
+        Map<Long, Integer> counts = new HashMap<>();
+
+        for(int edge = 0; edge < edgeCount; ++edge) {
+            int multiplicity = getMultiplicity(edge);
+            Bridge bridge = edges.get(edge);
+
+            if(multiplicity > 0) {
+                counts.merge(getKey(bridge.getX1(), bridge.getY1()), multiplicity, Integer::sum);
+                counts.merge(getKey(bridge.getX2(), bridge.getY2()), multiplicity, Integer::sum);
+            }
+        }
+
+        return islands.stream().allMatch(i -> counts.getOrDefault(getKey(i.getX(), i.getY()), 0) == i.getRequiredBridges());
+    }
+
+    /**
+     * Creates a board with the islands of the given puzzle and the bridges of this vector.
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @param edges the candidate edges of the islands of the puzzle
+     * @return the board
+     */
+    public Puzzle toPuzzle(Puzzle puzzle, List<Bridge> edges) {
+        Puzzle board = puzzle.copy();
+
+        board.reset();
+
+        for(int edge = 0; edge < edgeCount; ++edge) {
+            for(int i = getMultiplicity(edge); i > 0; --i) {
+                board.addBridge(edges.get(edge));
+            }
+        }
+
+        return board;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj instanceof SolutionVector) {
+            SolutionVector other = (SolutionVector)obj;
+
+            return edgeCount == other.edgeCount && Arrays.equals(packed, other.packed);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * edgeCount + Arrays.hashCode(packed);
+    }
+
+    private static long getKey(int x, int y) {
+        return ((long)x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static int getMultiplicity(byte[] packed, int edge) {
+        return (packed[edge / EDGES_PER_BYTE] >> getShift(edge)) & MULTIPLICITY_MASK;
+    }
+
+    private static int getShift(int edge) {
+        return (edge % EDGES_PER_BYTE) * BITS_PER_EDGE;
+    }
+
+    private static int getPackedLength(int edgeCount) {
+        return (edgeCount + EDGES_PER_BYTE - 1) / EDGES_PER_BYTE;
+    }
+}
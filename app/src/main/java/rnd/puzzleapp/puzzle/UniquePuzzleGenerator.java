@@ -0,0 +1,337 @@
+package rnd.puzzleapp.puzzle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import rnd.puzzleapp.solver.SolutionCount;
+import rnd.puzzleapp.solver.SolutionCounter;
+
+/**
+ * A {@link PuzzleGenerator} that only generates uniquely solvable puzzles. A layout is first grown by a
+ * {@link RandomPuzzleGenerator}, after which a {@link SolutionCounter} looks for a second solution. As
+ * long as one exists, the layout is edited locally so that the grown solution remains valid while the
+ * other solution becomes invalid: a bridge on which both solutions differ changes multiplicity, is
+ * subdivided by a new island, or one of its endpoints gets a new pendant island. Every edit updates the
+ * solution counter in place rather than rebuilding it. Only if a layout cannot be made unique within
+ * the edit limit is a new layout grown.
+ */
+public class UniquePuzzleGenerator implements PuzzleGenerator {
+    private static final int SOLUTION_LIMIT = 2;
+    private static final long MAX_SEARCH_NODES = 50000;
+    private static final int MAX_EDITS_PER_ISLAND = 2;
+    private static final int MAX_LAYOUTS = 16;
+    private static final int MAX_PENDANT_OFFSET = 3;
+    private static final int[][] DIRECTIONS = { { 1, 0 }, { 0, 1 }, { -1, 0 }, { 0, -1 } };
+
+    private final Random random;
+    private final int minNodeCount;
+    private final int maxNodeCount;
+    private final boolean isScalable;
+    private OccupancyGrid grid;
+    private List<Island> islands;
+    private Map<Bridge, Integer> solution;
+    private SolutionCounter counter;
+
+    /**
+     * Creates a new unique puzzle generator instance.
+     * @param seed the seed of the pseudo-random number generator
+     * @param minNodeCount the minimum amount of islands the puzzle should have (inclusive)
+     * @param maxNodeCount the maximum amount of islands the puzzle should have (inclusive), which
+     *                     disambiguating islands are never added beyond
+     */
+    public UniquePuzzleGenerator(long seed, int minNodeCount, int maxNodeCount) {
+        this(seed, minNodeCount, maxNodeCount, false);
+    }
+
+    /**
+     * Creates a new unique puzzle generator instance.
+     * @param seed the seed of the pseudo-random number generator
+     * @param minNodeCount the minimum amount of islands the puzzle should have (inclusive)
+     * @param maxNodeCount the maximum amount of islands the puzzle should have (inclusive), which
+     *                     disambiguating islands are never added beyond
+     * @param isScalable whether layouts are grown in the scalable mode of {@link RandomPuzzleGenerator}
+     */
+    public UniquePuzzleGenerator(long seed, int minNodeCount, int maxNodeCount, boolean isScalable) {
+        this.random = new Random(seed);
+        this.minNodeCount = minNodeCount;
+        this.maxNodeCount = maxNodeCount;
+        this.isScalable = isScalable;
+    }
+
+    @Override
+    public Puzzle generate(boolean keepBridges) {
+        GenerationResult result = generate(keepBridges, GenerationBudget.UNBOUNDED);
+
+        if(!result.isGenerated()) {
+            throw new IllegalStateException(String.format("Could not generate a unique puzzle: %s", result.getFailure()));
+        }
+
+        return result.getPuzzle();
+    }
+
+    @Override
+    public GenerationResult generate(boolean keepBridges, GenerationBudget budget) {
+        long start = System.nanoTime();
+        GenerationStats stats = new GenerationStats();
+
+        for(int layout = 0; layout < MAX_LAYOUTS; ++layout) {
+            PuzzleGenerator growth = new RandomPuzzleGenerator(random.nextLong(), minNodeCount, maxNodeCount, isScalable);
+            GenerationResult grown = growth.generate(true, budget.remaining(System.nanoTime() - start));
+
+            if(!grown.isGenerated()) {
+                return GenerationResult.failed(grown.getFailure(), grown.getStats(), System.nanoTime() - start);
+            }
+
+            stats = grown.getStats();
+            Optional<Puzzle> unique = makeUnique(grown.getPuzzle(), start, budget);
+
+            if(unique.isPresent()) {
+                Puzzle puzzle = unique.get();
+
+                if(!keepBridges) {
+                    puzzle.reset();
+                }
+
+                return GenerationResult.generated(puzzle, stats, System.nanoTime() - start);
+            } else if(budget.isTimeExhausted(System.nanoTime() - start)) {
+                return GenerationResult.failed(GenerationResult.Failure.TimeLimitReached, stats, System.nanoTime() - start);
+            }
+        }
+
+        return GenerationResult.failed(GenerationResult.Failure.NotUnique, stats, System.nanoTime() - start);
+    }
+
+    /**
+     * Edits the given solved layout until it is uniquely solvable.
+     * @param grown the solved layout
+     * @param start the time generation started at, in nanoseconds
+     * @param budget the budget of the generation
+     * @return the uniquely solvable puzzle in a solved state, or an empty optional if the edit limit,
+     * the search limit or the time ran out
+     */
+    private Optional<Puzzle> makeUnique(Puzzle grown, long start, GenerationBudget budget) {
+        grid = OccupancyGrid.sparse();
+        islands = new ArrayList<>(grown.getIslands());
+        solution = new HashMap<>();
+        counter = new SolutionCounter(grown);
+
+        islands.forEach(grid::addIsland);
+        grown.getBridges().forEach(b -> {
+            grid.addBridge(b);
+            solution.merge(b, 1, Integer::sum);
+        });
+
+        for(int edits = 0; ; ++edits) {
+            SolutionCount count = counter.count(SOLUTION_LIMIT, MAX_SEARCH_NODES);
+
+            if(count.isUnique()) {
+                return Optional.of(toPuzzle());
+            } else if(count.isExhausted() || edits >= MAX_EDITS_PER_ISLAND * maxNodeCount
+                    || budget.isTimeExhausted(System.nanoTime() - start)) {
+                return Optional.empty();
+            }
+
+            Optional<Map<Bridge, Integer>> alternative = count.getSolutions().stream()
+                    .filter(s -> !s.equals(solution))
+                    .findFirst();
+
+            if(!alternative.isPresent() || !applyEdit(alternative.get())) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Applies a random edit that keeps the current solution valid, but invalidates the given alternative
+     * solution. Every edit changes the required bridge count of an island on which both solutions differ,
+     * or places a new island in a cell only the current solution leaves free.
+     * @param alternative the alternative solution
+     * @return {@code true} if an edit was applied, {@code false} if no edit was possible
+     */
+    private boolean applyEdit(Map<Bridge, Integer> alternative) {
+        List<BooleanSupplier> edits = new ArrayList<>();
+        boolean canAddIsland = islands.size() < maxNodeCount;
+
+        for(Bridge edge : counter.getEdges()) {
+            int current = solution.getOrDefault(edge, 0);
+            int other = alternative.getOrDefault(edge, 0);
+
+            if(current != other) {
+                for(int multiplicity = 0; multiplicity <= Puzzle.MAX_BRIDGE_COUNT; ++multiplicity) {
+                    int newMultiplicity = multiplicity;
+
+                    if(multiplicity != current && multiplicity != other) {
+                        edits.add(() -> changeMultiplicity(edge, current, newMultiplicity));
+                    }
+                }
+
+                if(canAddIsland && current > 0) {
+                    edits.add(() -> subdivide(edge, current));
+                }
+
+                if(canAddIsland) {
+                    edits.add(() -> attachPendant(edge.getX1(), edge.getY1()));
+                    edits.add(() -> attachPendant(edge.getX2(), edge.getY2()));
+                }
+            }
+        }
+
+        Collections.shuffle(edits, random);
+
+        return edits.stream().anyMatch(BooleanSupplier::getAsBoolean);
+    }
+
+    private boolean changeMultiplicity(Bridge edge, int current, int multiplicity) {
+        if(current == 0 && !grid.canPlaceBridge(edge)) {
+            // The edge would cross a bridge of the solution.
+            return false;
+        } else if(multiplicity == 0 && !isConnectedWithout(edge)) {
+            return false;
+        }
+
+        for(int i = current; i < multiplicity; ++i) {
+            grid.addBridge(edge);
+        }
+
+        for(int i = multiplicity; i < current; ++i) {
+            grid.removeBridge(edge);
+        }
+
+        if(multiplicity == 0) {
+            solution.remove(edge);
+        } else {
+            solution.put(edge, multiplicity);
+        }
+
+        updateRequiredBridges(edge.getX1(), edge.getY1());
+        updateRequiredBridges(edge.getX2(), edge.getY2());
+
+        return true;
+    }
+
+    private boolean subdivide(Bridge edge, int multiplicity) {
+        Span span = edge.getOrientation() == Orientation.Horizontal ? edge.getHorizontalSpan() : edge.getVerticalSpan();
+
+        if(span.size() < 2) {
+            return false;
+        }
+
+        int offset = span.getStart() + 1 + random.nextInt(span.size() - 1);
+        boolean isHorizontal = edge.getOrientation() == Orientation.Horizontal;
+        Island node = new Island(isHorizontal ? offset : edge.getX1(), isHorizontal ? edge.getY1() : offset, 0);
+        Bridge edge1 = new Bridge(edge.getX1(), edge.getY1(), node.getX(), node.getY());
+        Bridge edge2 = new Bridge(node.getX(), node.getY(), edge.getX2(), edge.getY2());
+
+        for(int i = 0; i < multiplicity; ++i) {
+            grid.removeBridge(edge);
+        }
+
+        grid.addIsland(node);
+
+        for(int i = 0; i < multiplicity; ++i) {
+            grid.addBridge(edge1);
+            grid.addBridge(edge2);
+        }
+
+        solution.remove(edge);
+        solution.put(edge1, multiplicity);
+        solution.put(edge2, multiplicity);
+        islands.add(node);
+        counter.addIsland(new Island(node.getX(), node.getY(), 2 * multiplicity));
+
+        return true;
+    }
+
+    private boolean attachPendant(int x, int y) {
+        int[] direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+        int offset = 1 + random.nextInt(MAX_PENDANT_OFFSET);
+        Island node = new Island(x + direction[0] * offset, y + direction[1] * offset, 0);
+        Bridge edge = Bridge.create(grid.getIsland(x, y), node);
+        int multiplicity = 1 + random.nextInt(Puzzle.MAX_BRIDGE_COUNT);
+
+        if(grid.getIsland(node.getX(), node.getY()) != null || grid.getBridge(node.getX(), node.getY()) != null
+                || !grid.canPlaceBridge(edge)) {
+            return false;
+        }
+
+        grid.addIsland(node);
+
+        for(int i = 0; i < multiplicity; ++i) {
+            grid.addBridge(edge);
+        }
+
+        solution.put(edge, multiplicity);
+        islands.add(node);
+        counter.addIsland(new Island(node.getX(), node.getY(), multiplicity));
+        updateRequiredBridges(x, y);
+
+        return true;
+    }
+
+    private void updateRequiredBridges(int x, int y) {
+        counter.setRequiredBridges(x, y, grid.getDegree(x, y));
+    }
+
+    /**
+     * Checks whether the islands of the current solution remain connected without the given edge.
+     */
+    private boolean isConnectedWithout(Bridge edge) {
+        Map<Island, Island> parents = new HashMap<>();
+        int components = islands.size();
+
+        islands.forEach(i -> parents.put(i, i));
+
+        for(Bridge bridge : solution.keySet()) {
+            if(!bridge.equals(edge)) {
+                Island first = find(parents, grid.getIsland(bridge.getX1(), bridge.getY1()));
+                Island second = find(parents, grid.getIsland(bridge.getX2(), bridge.getY2()));
+
+                if(!first.equals(second)) {
+                    parents.put(first, second);
+                    --components;
+                }
+            }
+        }
+
+        return components == 1;
+    }
+
+    private static Island find(Map<Island, Island> parents, Island island) {
+        while(!parents.get(island).equals(island)) {
+            island = parents.get(island);
+        }
+
+        return island;
+    }
+
+    /**
+     * Creates a solved puzzle from the current layout, normalized to non-negative coordinates.
+     */
+    private Puzzle toPuzzle() {
+        int minX = islands.stream().mapToInt(Island::getX).min().orElse(0);
+        int minY = islands.stream().mapToInt(Island::getY).min().orElse(0);
+        Puzzle puzzle = new Puzzle();
+        List<Island> nodes = new ArrayList<>();
+        List<Bridge> edges = new ArrayList<>();
+
+        islands.forEach(i -> nodes.add(new Island(i.getX() - minX, i.getY() - minY, grid.getDegree(i.getX(), i.getY()))));
+        solution.forEach((b, m) -> {
+            for(int i = 0; i < m; ++i) {
+                edges.add(new Bridge(b.getX1() - minX, b.getY1() - minY, b.getX2() - minX, b.getY2() - minY));
+            }
+        });
+
+        Collections.sort(nodes);
+        Collections.sort(edges);
+        puzzle.getIslands().addAll(nodes);
+        puzzle.getBridges().addAll(edges);
+
+        return puzzle;
+    }
+}
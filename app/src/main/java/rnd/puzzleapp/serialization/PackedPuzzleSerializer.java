@@ -0,0 +1,35 @@
+package rnd.puzzleapp.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import rnd.puzzleapp.puzzle.PackedPuzzle;
+import rnd.puzzleapp.puzzle.Puzzle;
+
+/**
+ * Serializes {@link PackedPuzzle} instances to/from data streams.
+ */
+public class PackedPuzzleSerializer implements Serializer<PackedPuzzle> {
+    public static final PackedPuzzleSerializer INSTANCE = new PackedPuzzleSerializer();
+
+    private PackedPuzzleSerializer() {
+        // NOTE: Private constructor for the Singleton pattern.
+    }
+
+    @Override
+    public void serialize(DataOutputStream stream, PackedPuzzle instance) throws IOException {
+        stream.writeUTF(instance.getName());
+        PuzzleSerializer.INSTANCE.serialize(stream, instance.getPuzzle());
+        PuzzleSerializer.INSTANCE.serialize(stream, instance.getSolution());
+    }
+
+    @Override
+    public PackedPuzzle deserialize(DataInputStream stream) throws IOException {
+        String name = stream.readUTF();
+        Puzzle puzzle = PuzzleSerializer.INSTANCE.deserialize(stream);
+        Puzzle solution = PuzzleSerializer.INSTANCE.deserialize(stream);
+
+        return new PackedPuzzle(name, puzzle, solution);
+    }
+}
@@ -0,0 +1,45 @@
+package rnd.puzzleapp.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+import rnd.puzzleapp.puzzle.PackedPuzzle;
+
+/**
+ * Serializes puzzle packs, which are collections of {@link PackedPuzzle} instances preceded by a
+ * header, to/from data streams.
+ */
+public class PuzzlePackSerializer implements Serializer<Collection<PackedPuzzle>> {
+    public static final PuzzlePackSerializer INSTANCE = new PuzzlePackSerializer();
+
+    private static final int MAGIC = 0x50555A50; // "PUZP"
+    private static final int VERSION = 2;
+
+    private PuzzlePackSerializer() {
+        // NOTE: Private constructor for the Singleton pattern.
+    }
+
+    @Override
+    public void serialize(DataOutputStream stream, Collection<PackedPuzzle> instance) throws IOException {
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+        PackedPuzzleSerializer.INSTANCE.serializeCollection(stream, instance);
+    }
+
+    @Override
+    public Collection<PackedPuzzle> deserialize(DataInputStream stream) throws IOException {
+        if(stream.readInt() != MAGIC) {
+            throw new IOException("Not a puzzle pack");
+        }
+
+        // NOTE: Packs of version 1 contain puzzles in the legacy format, which the puzzle serializer still reads.
+        int version = stream.readInt();
+        if(version < 1 || version > VERSION) {
+            throw new IOException(String.format("Unsupported puzzle pack version %d", version));
+        }
+
+        return PackedPuzzleSerializer.INSTANCE.deserializeCollection(stream);
+    }
+}
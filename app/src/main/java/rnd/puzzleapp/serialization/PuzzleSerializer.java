@@ -1,34 +1,351 @@
 package rnd.puzzleapp.serialization;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
 
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Island;
 import rnd.puzzleapp.puzzle.Puzzle;
 
 /**
- * Serializes {@link Puzzle} instances to/from data streams.
+ * Serializes {@link Puzzle} instances to/from data streams. Puzzles are written in a compact format,
+ * which starts with a magic number and version and is followed by the length of the body, the body and
+ * a CRC32 of the body. The body stores the islands in sorted order, with their coordinates delta coded
+ * as variable-length integers, and every distinct bridge as the index of its first island, its
+ * direction and its multiplicity, as the other endpoint is always the nearest island in that direction.
+ * Puzzles of which a bridge does not connect nearest neighbors fall back to storing raw bridge
+ * coordinates. The legacy format, which has no header and stores every value as a 4-byte int, can still
+ * be read. Puzzles in the compact format can also be read as a {@link SerializedPuzzle}, which is a
+ * read-only view that decodes the body without copying it.
  */
 public class PuzzleSerializer implements Serializer<Puzzle> {
     public static final PuzzleSerializer INSTANCE = new PuzzleSerializer();
 
+    private static final int MAGIC = 0x50555A43; // "PUZC"
+    private static final int VERSION = 2;
+    static final int FLAG_RAW_BRIDGES = 1;
+    static final int SOUTH = 0;
+    static final int EAST = 1;
+    static final int MAX_PACKED_MULTIPLICITY = 3;
+    private static final int MAX_REQUIRED_BRIDGES = 15;
+    private static final int CHECKSUM_CHUNK_SIZE = 4096;
+
     private PuzzleSerializer() {
         // NOTE: Private constructor for the Singleton pattern.
     }
 
     @Override
     public void serialize(DataOutputStream stream, Puzzle instance) throws IOException {
-        IslandSerializer.INSTANCE.serializeCollection(stream, instance.getIslands());
-        BridgeSerializer.INSTANCE.serializeCollection(stream, instance.getBridges());
+        ByteArrayOutputStream body = new ByteArrayOutputStream(16 + 3 * instance.getIslands().size() + 2 * instance.getBridges().size());
+        CRC32 crc = new CRC32();
+
+        serializeBody(new DataOutputStream(body), instance);
+        byte[] bytes = body.toByteArray();
+        crc.update(bytes, 0, bytes.length);
+
+        stream.writeInt(MAGIC);
+        stream.writeByte(VERSION);
+        VarInts.write(stream, bytes.length);
+        stream.write(bytes);
+        stream.writeInt((int)crc.getValue());
+    }
+
+    private static void serializeBody(DataOutputStream stream, Puzzle puzzle) throws IOException {
+        List<Island> islands = sorted(puzzle.getIslands());
+        List<Bridge> bridges = sorted(puzzle.getBridges());
+        int[] xs = new int[islands.size()];
+        int[] ys = new int[islands.size()];
+        Optional<int[]> records;
+
+        for(int i = 0; i < xs.length; ++i) {
+            xs[i] = islands.get(i).getX();
+            ys[i] = islands.get(i).getY();
+        }
+
+        records = toRecords(bridges, xs, ys);
+        stream.writeByte(records.isPresent() ? 0 : FLAG_RAW_BRIDGES);
+        VarInts.write(stream, islands.size());
+
+        int previousX = 0;
+        int previousY = 0;
+
+        for(Island island : islands) {
+            int dx = island.getX() - previousX;
+
+            if(island.getRequiredBridges() < 0 || island.getRequiredBridges() > MAX_REQUIRED_BRIDGES) {
+                throw new IOException(String.format("Cannot serialize island requiring %d bridges", island.getRequiredBridges()));
+            }
+
+            // The y coordinate is only delta coded within a column, where islands are sorted by it.
+            VarInts.write(stream, (zigzag(dx) << 4) | island.getRequiredBridges());
+            VarInts.writeSigned(stream, dx == 0 ? island.getY() - previousY : island.getY());
+            previousX = island.getX();
+            previousY = island.getY();
+        }
+
+        if(records.isPresent()) {
+            int[] values = records.get();
+            VarInts.write(stream, values.length / 3);
+
+            for(int i = 0, previousIndex = 0; i < values.length; i += 3) {
+                int multiplicity = values[i + 2];
+
+                VarInts.write(stream, ((long)(values[i] - previousIndex) << 3) | (values[i + 1] << 2)
+                        | Math.min(multiplicity, MAX_PACKED_MULTIPLICITY));
+
+                if(multiplicity >= MAX_PACKED_MULTIPLICITY) {
+                    VarInts.write(stream, multiplicity - MAX_PACKED_MULTIPLICITY);
+                }
+
+                previousIndex = values[i];
+            }
+        } else {
+            VarInts.write(stream, bridges.size());
+
+            for(Bridge bridge : bridges) {
+                VarInts.writeSigned(stream, bridge.getX1());
+                VarInts.writeSigned(stream, bridge.getY1());
+                VarInts.writeSigned(stream, bridge.getX2());
+                VarInts.writeSigned(stream, bridge.getY2());
+            }
+        }
+    }
+
+    /**
+     * Converts the given sorted bridges to records of the index of their first island, their direction
+     * and their multiplicity.
+     * @return the records, three values per distinct bridge, or an empty optional if a bridge does not
+     * connect an island to its nearest neighbor to the south or east
+     */
+    private static Optional<int[]> toRecords(List<Bridge> bridges, int[] xs, int[] ys) {
+        int[] eastNeighbors = getEastNeighbors(xs, ys);
+        int[] records = new int[3 * bridges.size()];
+        int size = 0;
+
+        for(int i = 0; i < bridges.size(); ) {
+            Bridge bridge = bridges.get(i);
+            int index = indexOf(xs, ys, bridge.getX1(), bridge.getY1());
+            int multiplicity = 1;
+
+            while(i + multiplicity < bridges.size() && bridges.get(i + multiplicity).equals(bridge)) {
+                ++multiplicity;
+            }
+
+            if(index < 0) {
+                return Optional.empty();
+            } else if(index + 1 < xs.length && xs[index + 1] == bridge.getX2() && ys[index + 1] == bridge.getY2()
+                    && bridge.getX1() == bridge.getX2()) {
+                records[size + 1] = SOUTH;
+            } else if(eastNeighbors[index] >= 0 && xs[eastNeighbors[index]] == bridge.getX2()
+                    && ys[eastNeighbors[index]] == bridge.getY2()) {
+                records[size + 1] = EAST;
+            } else {
+                return Optional.empty();
+            }
+
+            records[size] = index;
+            records[size + 2] = multiplicity;
+            size += 3;
+            i += multiplicity;
+        }
+
+        return Optional.of(Arrays.copyOf(records, size));
     }
 
     @Override
     public Puzzle deserialize(DataInputStream stream) throws IOException {
+        int magic = stream.readInt();
+
+        if(magic != MAGIC) {
+            // The legacy format starts with the island count instead.
+            return deserializeLegacy(stream, magic);
+        }
+
+        int version = stream.readUnsignedByte();
+
+        if(version != VERSION) {
+            throw new IOException(String.format("Unsupported puzzle version %d", version));
+        }
+
+        long length = VarInts.read(stream);
+
+        if(length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Invalid puzzle length %d", length));
+        }
+
+        byte[] bytes = new byte[(int)length];
+        CRC32 crc = new CRC32();
+
+        stream.readFully(bytes);
+        crc.update(bytes, 0, bytes.length);
+
+        if(stream.readInt() != (int)crc.getValue()) {
+            throw new IOException("Puzzle checksum mismatch");
+        }
+
+        return new SerializedPuzzle(ByteBuffer.wrap(bytes)).toPuzzle();
+    }
+
+    /**
+     * Creates a read-only view of the puzzle at the position of the given buffer, and advances the
+     * position past the puzzle. The header and checksum are verified right away, but the islands and
+     * bridges are only decoded once they are accessed. The view shares the contents of the buffer, which
+     * must not be modified while the view is in use.
+     * @param buffer the buffer to read from, such as a record of a memory mapped store
+     * @return the view of the puzzle
+     * @throws IOException if the buffer does not contain a puzzle in the compact format, which excludes
+     * the legacy format, or the checksum does not match
+     */
+    public SerializedPuzzle view(ByteBuffer buffer) throws IOException {
+        try {
+            if(buffer.getInt() != MAGIC) {
+                throw new IOException("Not a puzzle in the compact format");
+            }
+
+            int version = buffer.get() & 0xFF;
+
+            if(version != VERSION) {
+                throw new IOException(String.format("Unsupported puzzle version %d", version));
+            }
+
+            long length = VarInts.read(buffer);
+
+            if(length < 0 || length > buffer.remaining()) {
+                throw new IOException(String.format("Invalid puzzle length %d", length));
+            }
+
+            ByteBuffer body = buffer.slice();
+            body.limit((int)length);
+            buffer.position(buffer.position() + (int)length);
+
+            if(buffer.getInt() != checksum(body)) {
+                throw new IOException("Puzzle checksum mismatch");
+            }
+
+            return new SerializedPuzzle(body);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Puzzle ended unexpectedly");
+        }
+    }
+
+    /**
+     * Computes the CRC32 of the remaining bytes of the given buffer, without advancing its position.
+     * Buffers without an accessible array, such as memory mapped buffers, are copied in small chunks, as
+     * a CRC32 can only be updated from a buffer directly as of API level 26.
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+
+        if(buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            ByteBuffer source = buffer.duplicate();
+            byte[] chunk = new byte[Math.min(source.remaining(), CHECKSUM_CHUNK_SIZE)];
+
+            while(source.hasRemaining()) {
+                int size = Math.min(chunk.length, source.remaining());
+
+                source.get(chunk, 0, size);
+                crc.update(chunk, 0, size);
+            }
+        }
+
+        return (int)crc.getValue();
+    }
+
+    private static Puzzle deserializeLegacy(DataInputStream stream, int islandCount) throws IOException {
         Puzzle puzzle = new Puzzle();
 
-        IslandSerializer.INSTANCE.deserializeCollection(stream).forEach(puzzle::addIsland);
+        for(int i = 0; i < islandCount; ++i) {
+            puzzle.addIsland(IslandSerializer.INSTANCE.deserialize(stream));
+        }
+
         BridgeSerializer.INSTANCE.deserializeCollection(stream).forEach(puzzle::addBridge);
 
         return puzzle;
     }
+
+    /**
+     * Finds the nearest neighbor to the east of every island.
+     * @param xs the x coordinates of the islands, sorted by x and then y
+     * @param ys the y coordinates of the islands
+     * @return the index of the nearest neighbor to the east of every island, or -1 if it has none
+     */
+    static int[] getEastNeighbors(int[] xs, int[] ys) {
+        long[] rowOrder = new long[xs.length];
+        int[] eastNeighbors = new int[xs.length];
+
+        // Sort the coordinates by y and then x, packed into longs so that no boxing is needed.
+        for(int i = 0; i < xs.length; ++i) {
+            rowOrder[i] = ((long)ys[i] << 32) | ((xs[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+        }
+
+        Arrays.sort(rowOrder);
+        Arrays.fill(eastNeighbors, -1);
+
+        for(int i = 1; i < rowOrder.length; ++i) {
+            int y = (int)(rowOrder[i] >> 32);
+
+            if((int)(rowOrder[i - 1] >> 32) == y) {
+                int west = indexOf(xs, ys, (int)rowOrder[i - 1] ^ Integer.MIN_VALUE, y);
+                eastNeighbors[west] = indexOf(xs, ys, (int)rowOrder[i] ^ Integer.MIN_VALUE, y);
+            }
+        }
+
+        return eastNeighbors;
+    }
+
+    /**
+     * Finds the island at the given coordinates.
+     * @return the index of the island, or a negative value if no island exists at the coordinates
+     */
+    static int indexOf(int[] xs, int[] ys, int x, int y) {
+        int low = 0;
+        int high = xs.length - 1;
+
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = xs[middle] != x ? Integer.compare(xs[middle], x) : Integer.compare(ys[middle], y);
+
+            if(comparison < 0) {
+                low = middle + 1;
+            } else if(comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    private static <T extends Comparable<T>> List<T> sorted(List<T> list) {
+        for(int i = 1; i < list.size(); ++i) {
+            if(list.get(i - 1).compareTo(list.get(i)) > 0) {
+                List<T> copy = new ArrayList<>(list);
+                Collections.sort(copy);
+                return copy;
+            }
+        }
+
+        return list;
+    }
+
+    private static long zigzag(int value) {
+        return ((long)value << 1) ^ ((long)value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
 }
@@ -0,0 +1,403 @@
+package rnd.puzzleapp.serialization;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.CandidateEdges;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+
+/**
+ * A read-only view of a puzzle in the format of {@link PuzzleSerializer}, which reads the islands and
+ * bridges from the serialized body rather than creating an {@link Island} and {@link Bridge} per
+ * element. The islands are decoded into arrays of coordinates once they are first accessed, and the
+ * bridges only once they are first accessed, so that scanning the islands of many puzzles never decodes
+ * their bridges. The body is never copied, so a view of a record in a memory mapped store reads it
+ * straight from the mapping. A view is only materialized into a mutable {@link Puzzle} once the puzzle
+ * is about to be played, see {@link SerializedPuzzle#toPuzzle()}.
+ * As the checksum of the body is verified when the view is created, a body that cannot be decoded was
+ * written by a faulty serializer, which the accessors report with an {@link UncheckedIOException}.
+ */
+public class SerializedPuzzle {
+    private static final int BRIDGE_FIELDS = 5;
+
+    private final ByteBuffer body;
+    private boolean hasRawBridges;
+    private int[] xs;
+    private int[] ys;
+    private int[] requiredBridges;
+    private int[] eastNeighbors;
+    private int width;
+    private int height;
+    private int bridgesOffset;
+    private int[] bridges;
+    private int[] degrees;
+
+    /**
+     * Creates a view of the given body, of which the checksum must already be verified.
+     * @param body the body, from its position up to its limit
+     */
+    SerializedPuzzle(ByteBuffer body) {
+        this.body = body;
+    }
+
+    /**
+     * Returns the amount of islands in this puzzle.
+     * @return the amount of islands
+     */
+    public int getIslandCount() {
+        decodeIslands();
+        return xs.length;
+    }
+
+    /**
+     * Returns the x coordinate of an island. The islands are in the same sorted order as those of the
+     * materialized puzzle.
+     * @param island the index of the island
+     * @return the x coordinate
+     */
+    public int getX(int island) {
+        decodeIslands();
+        return xs[island];
+    }
+
+    /**
+     * Returns the y coordinate of an island.
+     * @param island the index of the island
+     * @return the y coordinate
+     */
+    public int getY(int island) {
+        decodeIslands();
+        return ys[island];
+    }
+
+    /**
+     * Returns the amount of bridges an island requires.
+     * @param island the index of the island
+     * @return the amount of required bridges
+     */
+    public int getRequiredBridges(int island) {
+        decodeIslands();
+        return requiredBridges[island];
+    }
+
+    /**
+     * Returns the width of this puzzle, see {@link Puzzle#getWidth()}.
+     * @return the width, as number of islands
+     */
+    public int getWidth() {
+        decodeIslands();
+        return width;
+    }
+
+    /**
+     * Returns the height of this puzzle, see {@link Puzzle#getHeight()}.
+     * @return the height, as number of islands
+     */
+    public int getHeight() {
+        decodeIslands();
+        return height;
+    }
+
+    /**
+     * Returns the amount of distinct bridges in this puzzle, of which a bridge placed multiple times is
+     * counted once.
+     * @return the amount of distinct bridges
+     */
+    public int getBridgeCount() {
+        decodeBridges();
+        return bridges.length / BRIDGE_FIELDS;
+    }
+
+    /**
+     * Returns the x coordinate of the first endpoint of a distinct bridge. The distinct bridges are in
+     * sorted order.
+     * @param bridge the index of the distinct bridge
+     * @return the x coordinate
+     */
+    public int getBridgeX1(int bridge) {
+        decodeBridges();
+        return bridges[BRIDGE_FIELDS * bridge];
+    }
+
+    /**
+     * Returns the y coordinate of the first endpoint of a distinct bridge.
+     * @param bridge the index of the distinct bridge
+     * @return the y coordinate
+     */
+    public int getBridgeY1(int bridge) {
+        decodeBridges();
+        return bridges[BRIDGE_FIELDS * bridge + 1];
+    }
+
+    /**
+     * Returns the x coordinate of the second endpoint of a distinct bridge.
+     * @param bridge the index of the distinct bridge
+     * @return the x coordinate
+     */
+    public int getBridgeX2(int bridge) {
+        decodeBridges();
+        return bridges[BRIDGE_FIELDS * bridge + 2];
+    }
+
+    /**
+     * Returns the y coordinate of the second endpoint of a distinct bridge.
+     * @param bridge the index of the distinct bridge
+     * @return the y coordinate
+     */
+    public int getBridgeY2(int bridge) {
+        decodeBridges();
+        return bridges[BRIDGE_FIELDS * bridge + 3];
+    }
+
+    /**
+     * Returns the amount of times a distinct bridge is placed.
+     * @param bridge the index of the distinct bridge
+     * @return the multiplicity
+     */
+    public int getMultiplicity(int bridge) {
+        decodeBridges();
+        return bridges[BRIDGE_FIELDS * bridge + 4];
+    }
+
+    /**
+     * Returns the amount of bridges that have an island as an endpoint, see
+     * {@link Puzzle#getBridgeCount(Island)}.
+     * @param island the index of the island
+     * @return the amount of bridges
+     */
+    public int getDegree(int island) {
+        decodeBridges();
+        return degrees[island];
+    }
+
+    /**
+     * Returns the candidate edges of this puzzle, which are the same as those returned by
+     * {@link CandidateEdges#of(java.util.Collection)}. As the islands are already sorted, the edges are
+     * found in canonical order without sorting, and without decoding the bridges.
+     * @return the sorted list of candidate edges
+     */
+    public List<Bridge> getCandidateEdges() {
+        decodeIslands();
+        List<Bridge> edges = new ArrayList<>();
+
+        // The first endpoint of both edges is the current island, and the edge to the south ends at a lower x.
+        for(int i = 0; i < xs.length; ++i) {
+            if(i + 1 < xs.length && xs[i + 1] == xs[i]) {
+                edges.add(new Bridge(xs[i], ys[i], xs[i + 1], ys[i + 1]));
+            }
+
+            if(eastNeighbors[i] >= 0) {
+                edges.add(new Bridge(xs[i], ys[i], xs[eastNeighbors[i]], ys[eastNeighbors[i]]));
+            }
+        }
+
+        return edges;
+    }
+
+    /**
+     * Materializes this view into a new mutable puzzle.
+     * @return the puzzle
+     * @throws IOException if the body could not be decoded
+     */
+    public Puzzle toPuzzle() throws IOException {
+        try {
+            decodeIslands();
+            decodeBridges();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Puzzle puzzle = new Puzzle();
+        List<Island> islands = new ArrayList<>(xs.length);
+        List<Bridge> placed = new ArrayList<>();
+
+        for(int i = 0; i < xs.length; ++i) {
+            islands.add(new Island(xs[i], ys[i], requiredBridges[i]));
+        }
+
+        for(int i = 0; i < bridges.length; i += BRIDGE_FIELDS) {
+            for(int j = 0; j < bridges[i + 4]; ++j) {
+                placed.add(new Bridge(bridges[i], bridges[i + 1], bridges[i + 2], bridges[i + 3]));
+            }
+        }
+
+        // NOTE: The islands and bridges are stored in sorted order, so they can be added without sorting.
+        puzzle.getIslands().addAll(islands);
+
+        if(hasRawBridges) {
+            placed.forEach(puzzle::addBridge);
+        } else {
+            puzzle.getBridges().addAll(placed);
+        }
+
+        return puzzle;
+    }
+
+    private void decodeIslands() {
+        if(xs != null) {
+            return;
+        }
+
+        ByteBuffer buffer = body.duplicate();
+
+        try {
+            hasRawBridges = (buffer.get() & PuzzleSerializer.FLAG_RAW_BRIDGES) != 0;
+            int islandCount = VarInts.readInt(buffer);
+
+            // Every island takes at least two bytes, which bounds the arrays by the size of the body.
+            if(islandCount < 0 || islandCount > buffer.remaining()) {
+                throw new IOException(String.format("Invalid island count %d", islandCount));
+            }
+
+            int[] islandXs = new int[islandCount];
+            int[] islandYs = new int[islandCount];
+            int[] required = new int[islandCount];
+
+            for(int i = 0, previousX = 0, previousY = 0; i < islandCount; ++i) {
+                long packed = VarInts.read(buffer);
+                int dx = (int)PuzzleSerializer.unzigzag(packed >>> 4);
+                int y = VarInts.readSignedInt(buffer);
+
+                islandXs[i] = previousX + dx;
+                islandYs[i] = dx == 0 ? previousY + y : y;
+                required[i] = (int)(packed & 0xF);
+                width = Math.max(width, islandXs[i] + 1);
+                height = Math.max(height, islandYs[i] + 1);
+                previousX = islandXs[i];
+                previousY = islandYs[i];
+            }
+
+            bridgesOffset = buffer.position();
+            ys = islandYs;
+            requiredBridges = required;
+            eastNeighbors = PuzzleSerializer.getEastNeighbors(islandXs, islandYs);
+            xs = islandXs;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (BufferUnderflowException e) {
+            throw new UncheckedIOException(new IOException("Puzzle body ended unexpectedly"));
+        }
+    }
+
+    private void decodeBridges() {
+        if(bridges != null) {
+            return;
+        }
+
+        decodeIslands();
+
+        ByteBuffer buffer = body.duplicate();
+        buffer.position(bridgesOffset);
+
+        try {
+            int[] islandDegrees = new int[xs.length];
+            int[] records = hasRawBridges ? decodeRawBridges(buffer, islandDegrees) : decodeBridgeRecords(buffer, islandDegrees);
+
+            degrees = islandDegrees;
+            bridges = records;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (BufferUnderflowException e) {
+            throw new UncheckedIOException(new IOException("Puzzle body ended unexpectedly"));
+        }
+    }
+
+    private int[] decodeBridgeRecords(ByteBuffer buffer, int[] islandDegrees) throws IOException {
+        int recordCount = VarInts.readInt(buffer);
+
+        if(recordCount < 0 || recordCount > buffer.remaining()) {
+            throw new IOException(String.format("Invalid bridge count %d", recordCount));
+        }
+
+        int[] records = new int[BRIDGE_FIELDS * recordCount];
+
+        for(int i = 0, index = 0; i < recordCount; ++i) {
+            long packed = VarInts.read(buffer);
+            int direction = (int)(packed >>> 2) & 1;
+            int multiplicity = (int)(packed & 3);
+            int other;
+
+            index += (int)(packed >>> 3);
+
+            if(multiplicity == PuzzleSerializer.MAX_PACKED_MULTIPLICITY) {
+                multiplicity += VarInts.readInt(buffer);
+            }
+
+            if(index >= xs.length) {
+                throw new IOException(String.format("Bridge refers to island %d of %d", index, xs.length));
+            } else if(direction == PuzzleSerializer.SOUTH) {
+                other = index + 1 < xs.length && xs[index + 1] == xs[index] ? index + 1 : -1;
+            } else {
+                other = eastNeighbors[index];
+            }
+
+            if(other < 0) {
+                throw new IOException(String.format("Bridge of island %d has no endpoint", index));
+            }
+
+            setBridge(records, i, xs[index], ys[index], xs[other], ys[other], multiplicity);
+            islandDegrees[index] += multiplicity;
+            islandDegrees[other] += multiplicity;
+        }
+
+        return records;
+    }
+
+    /**
+     * Decodes raw bridges, which are stored one by one in sorted order, and merges equal consecutive
+     * bridges into a single distinct bridge.
+     */
+    private int[] decodeRawBridges(ByteBuffer buffer, int[] islandDegrees) throws IOException {
+        int bridgeCount = VarInts.readInt(buffer);
+
+        if(bridgeCount < 0 || bridgeCount > buffer.remaining()) {
+            throw new IOException(String.format("Invalid bridge count %d", bridgeCount));
+        }
+
+        int[] records = new int[BRIDGE_FIELDS * bridgeCount];
+        int size = 0;
+
+        for(int i = 0; i < bridgeCount; ++i) {
+            int x1 = VarInts.readSignedInt(buffer);
+            int y1 = VarInts.readSignedInt(buffer);
+            int x2 = VarInts.readSignedInt(buffer);
+            int y2 = VarInts.readSignedInt(buffer);
+            int first = PuzzleSerializer.indexOf(xs, ys, x1, y1);
+            int second = PuzzleSerializer.indexOf(xs, ys, x2, y2);
+            int last = BRIDGE_FIELDS * (size - 1);
+
+            if(size > 0 && records[last] == x1 && records[last + 1] == y1 && records[last + 2] == x2 && records[last + 3] == y2) {
+                ++records[last + 4];
+            } else {
+                setBridge(records, size++, x1, y1, x2, y2, 1);
+            }
+
+            if(first >= 0) {
+                ++islandDegrees[first];
+            }
+
+            if(second >= 0 && second != first) {
+                ++islandDegrees[second];
+            }
+        }
+
+        return size == bridgeCount ? records : Arrays.copyOf(records, BRIDGE_FIELDS * size);
+    }
+
+    private static void setBridge(int[] records, int bridge, int x1, int y1, int x2, int y2, int multiplicity) {
+        int offset = BRIDGE_FIELDS * bridge;
+
+        records[offset] = x1;
+        records[offset + 1] = y1;
+        records[offset + 2] = x2;
+        records[offset + 3] = y2;
+        records[offset + 4] = multiplicity;
+    }
+}
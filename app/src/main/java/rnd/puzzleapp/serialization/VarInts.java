@@ -0,0 +1,131 @@
+package rnd.puzzleapp.serialization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods to read and write variable-length integers, which store 7 bits per byte and use the
+ * high bit of every byte to mark that more bytes follow. Small values thus take a single byte. Signed
+ * values are zigzag encoded first, so that small negative values are small as well.
+ */
+public class VarInts {
+    private static final int MAX_LONG_BYTES = 10;
+
+    /**
+     * Writes an unsigned variable-length integer.
+     * @param output the output to write to
+     * @param value the value, which is treated as unsigned
+     * @throws IOException if the output could not be written to
+     */
+    public static void write(DataOutput output, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            output.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        output.writeByte((int)value);
+    }
+
+    /**
+     * Writes a signed variable-length integer.
+     * @param output the output to write to
+     * @param value the value
+     * @throws IOException if the output could not be written to
+     */
+    public static void writeSigned(DataOutput output, long value) throws IOException {
+        write(output, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     * @param input the input to read from
+     * @return the value
+     * @throws IOException if the input could not be read from, or the value is malformed
+     */
+    public static long read(DataInput input) throws IOException {
+        long value = 0;
+
+        for(int i = 0; i < MAX_LONG_BYTES; ++i) {
+            int b = input.readUnsignedByte();
+            value |= (long)(b & 0x7F) << (7 * i);
+
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     * @param buffer the buffer to read from, of which the position is advanced
+     * @return the value
+     * @throws IOException if the buffer ended before the value did, or the value is malformed
+     */
+    public static long read(ByteBuffer buffer) throws IOException {
+        long value = 0;
+
+        try {
+            for(int i = 0; i < MAX_LONG_BYTES; ++i) {
+                int b = buffer.get();
+                value |= (long)(b & 0x7F) << (7 * i);
+
+                if((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated variable-length integer");
+        }
+
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Reads a signed variable-length integer.
+     * @param buffer the buffer to read from, of which the position is advanced
+     * @return the value
+     * @throws IOException if the buffer ended before the value did, or the value is malformed
+     */
+    public static long readSigned(ByteBuffer buffer) throws IOException {
+        long value = read(buffer);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer that must fit in an int.
+     * @param buffer the buffer to read from, of which the position is advanced
+     * @return the value
+     * @throws IOException if the buffer ended before the value did, or the value is malformed or too large
+     */
+    public static int readInt(ByteBuffer buffer) throws IOException {
+        long value = read(buffer);
+
+        if(value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Variable-length integer %d out of range", value));
+        }
+
+        return (int)value;
+    }
+
+    /**
+     * Reads a signed variable-length integer that must fit in an int.
+     * @param buffer the buffer to read from, of which the position is advanced
+     * @return the value
+     * @throws IOException if the buffer ended before the value did, or the value is malformed or too large
+     */
+    public static int readSignedInt(ByteBuffer buffer) throws IOException {
+        long value = readSigned(buffer);
+
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Variable-length integer %d out of range", value));
+        }
+
+        return (int)value;
+    }
+}
@@ -0,0 +1,533 @@
+package rnd.puzzleapp.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.CandidateEdges;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+
+/**
+ * Rates the difficulty of a puzzle by solving it the way a person would: every step applies the
+ * easiest {@link DifficultyRating.Tier} of rules that still makes progress, and a guess is only made
+ * once no rule applies anymore. Every candidate edge is a variable with a multiplicity between 0 and 2,
+ * of which the rules narrow the bounds. The rating records how many deductions every tier made and how
+ * much guessing was required, from which the score is derived.
+ * <p>
+ * The bounds are narrowed in place, and every change is recorded on a trail, so that a guess or a
+ * lookahead probe is undone by unwinding the trail instead of copying the bounds. The island rules
+ * only revisit islands of which an incident edge changed. Guesses and lookahead probes are search
+ * nodes, of which a rating visits a limited amount. A puzzle that needs more is rated as exhausted.
+ */
+public class DifficultyRater {
+    /**
+     * The default maximum amount of search nodes, which is far more than any default puzzle needs.
+     */
+    public static final long DEFAULT_MAX_NODES = 20000;
+    private static final int CONTRADICTION = -1;
+    private static final double BRANCH_WEIGHT = 4.0;
+
+    private final int[] required;
+    private final int[][] endpoints;
+    private final int[][] incidentEdges;
+    private final int[][] crossingEdges;
+    private final byte[] lower;
+    private final byte[] upper;
+    private final IslandQueue basicQueue;
+    private final IslandQueue degreeQueue;
+    private final int[] deductions;
+    private int[] trail;
+    private int trailSize;
+    private long remainingNodes;
+    private int lookaheadEdge;
+    private int branches;
+    private int maxDepth;
+
+    private DifficultyRater(Puzzle puzzle, long maxNodes) {
+        List<Island> islands = new ArrayList<>(puzzle.getIslands());
+        List<Bridge> edges = CandidateEdges.of(islands);
+        Map<Island, Integer> islandIndices = new HashMap<>();
+        List<List<Integer>> incident = new ArrayList<>();
+
+        this.required = new int[islands.size()];
+        this.endpoints = new int[edges.size()][];
+        this.incidentEdges = new int[islands.size()][];
+        this.crossingEdges = CandidateEdges.crossings(edges);
+        this.lower = new byte[edges.size()];
+        this.upper = new byte[edges.size()];
+        this.basicQueue = new IslandQueue(islands.size());
+        this.degreeQueue = new IslandQueue(islands.size());
+        this.deductions = new int[DifficultyRating.Tier.values().length];
+        this.trail = new int[Math.max(16, 2 * edges.size())];
+        this.remainingNodes = maxNodes;
+
+        for(int i = 0; i < islands.size(); ++i) {
+            required[i] = islands.get(i).getRequiredBridges();
+            islandIndices.put(islands.get(i), i);
+            incident.add(new ArrayList<>(4));
+            basicQueue.add(i);
+            degreeQueue.add(i);
+        }
+
+        for(int i = 0; i < edges.size(); ++i) {
+            Bridge edge = edges.get(i);
+            int first = islandIndices.get(puzzle.getIsland(edge.getX1(), edge.getY1()).get());
+            int second = islandIndices.get(puzzle.getIsland(edge.getX2(), edge.getY2()).get());
+
+            endpoints[i] = new int[] { first, second };
+            upper[i] = (byte)Math.min(Puzzle.MAX_BRIDGE_COUNT, Math.min(required[first], required[second]));
+            incident.get(first).add(i);
+            incident.get(second).add(i);
+        }
+
+        for(int i = 0; i < islands.size(); ++i) {
+            incidentEdges[i] = incident.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private DifficultyRating rate() {
+        boolean isSolved = solve(0);
+        boolean isExhausted = remainingNodes < 0;
+        int totalDeductions = 0;
+        double weightedDeductions = 0;
+
+        for(DifficultyRating.Tier tier : DifficultyRating.Tier.values()) {
+            totalDeductions += deductions[tier.ordinal()];
+            weightedDeductions += tier.getWeight() * deductions[tier.ordinal()];
+        }
+
+        // Normalizing by the amount of deductions keeps the score independent of the size of the puzzle.
+        double score = totalDeductions == 0 ? 0 : weightedDeductions / totalDeductions - 1;
+        score += BRANCH_WEIGHT * Math.log(1 + branches) / Math.log(2);
+
+        // NOTE: How much harder an exhausted puzzle is cannot be told, so it is rated at the bottom of the hardest difficulty.
+        if(isExhausted) {
+            score = PuzzleDifficulty.VeryHard.getMinScore();
+        }
+
+        return new DifficultyRating(isSolved && !isExhausted, isExhausted, deductions, branches, maxDepth, score);
+    }
+
+    /**
+     * Solves the puzzle within the current bounds, which are narrowed to the solution if one is found.
+     * @return {@code true} if a solution was found, {@code false} otherwise
+     */
+    private boolean solve(int depth) {
+        maxDepth = Math.max(maxDepth, depth);
+
+        while(true) {
+            int changes = applyLowerTiers(true);
+
+            if(changes == CONTRADICTION || !isConnected(upper)) {
+                return false;
+            } else if(changes > 0) {
+                continue;
+            }
+
+            int edge = selectOpenEdge();
+
+            if(edge == -1) {
+                return isConnected(lower);
+            }
+
+            changes = applyLookahead();
+
+            if(changes == CONTRADICTION) {
+                return false;
+            } else if(changes > 0) {
+                deductions[DifficultyRating.Tier.Lookahead.ordinal()] += changes;
+                continue;
+            }
+
+            // No rule applies anymore, so guess the multiplicity of an edge.
+            int min = lower[edge];
+            int max = upper[edge];
+
+            for(int value = max; value >= min; --value) {
+                if(--remainingNodes < 0) {
+                    return false;
+                }
+
+                int mark = trailSize;
+                ++branches;
+
+                if(narrow(edge, value, value) != CONTRADICTION && solve(depth + 1)) {
+                    return true;
+                }
+
+                undo(mark);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Applies the easiest tier below lookahead that makes progress. The basic rules are applied until
+     * they make no more progress, while the degree rules stop at the first island they narrow, so that
+     * the basic rules get the first chance to continue from it.
+     * @param isRecorded whether the deductions count towards the rating
+     * @return the amount of narrowed bounds, or {@link #CONTRADICTION}
+     */
+    private int applyLowerTiers(boolean isRecorded) {
+        int changes = applyBasic();
+        DifficultyRating.Tier tier = DifficultyRating.Tier.Basic;
+
+        if(changes == 0) {
+            changes = applyDegree();
+            tier = DifficultyRating.Tier.Degree;
+        }
+
+        if(changes == 0) {
+            changes = applyIsolation();
+            tier = DifficultyRating.Tier.Isolation;
+        }
+
+        if(isRecorded && changes > 0) {
+            deductions[tier.ordinal()] += changes;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Applies the basic rules to the queued islands, until no island is queued anymore.
+     * @return the amount of narrowed bounds, or {@link #CONTRADICTION}
+     */
+    private int applyBasic() {
+        int changes = 0;
+
+        while(!basicQueue.isEmpty()) {
+            int islandChanges = applyIsland(basicQueue.poll(), true);
+
+            if(islandChanges == CONTRADICTION) {
+                return CONTRADICTION;
+            }
+
+            changes += islandChanges;
+        }
+
+        return changes;
+    }
+
+    /**
+     * Applies the degree rules to the queued islands, until the first island of which a bound could be narrowed.
+     * @return the amount of narrowed bounds, or {@link #CONTRADICTION}
+     */
+    private int applyDegree() {
+        while(!degreeQueue.isEmpty()) {
+            int changes = applyIsland(degreeQueue.poll(), false);
+
+            if(changes != 0) {
+                return changes;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Applies the degree rules to a single island.
+     * @param isBasic whether to only complete the island if all of its open edges are either at their
+     *                maximum or at their minimum, instead of narrowing every edge as far as possible
+     * @return the amount of narrowed bounds, or {@link #CONTRADICTION}
+     */
+    private int applyIsland(int island, boolean isBasic) {
+        int lowerSum = 0;
+        int upperSum = 0;
+        int changes = 0;
+
+        for(int edge : incidentEdges[island]) {
+            lowerSum += lower[edge];
+            upperSum += upper[edge];
+        }
+
+        if(lowerSum > required[island] || upperSum < required[island]) {
+            return CONTRADICTION;
+        } else if(isBasic && lowerSum != required[island] && upperSum != required[island]) {
+            return 0;
+        }
+
+        for(int edge : incidentEdges[island]) {
+            int newLower = Math.max(lower[edge], required[island] - (upperSum - upper[edge]));
+            int newUpper = Math.min(upper[edge], required[island] - (lowerSum - lower[edge]));
+
+            if(newLower > newUpper) {
+                return CONTRADICTION;
+            } else if(newLower != lower[edge] || newUpper != upper[edge]) {
+                lowerSum += newLower - lower[edge];
+                upperSum += newUpper - upper[edge];
+
+                int edgeChanges = narrow(edge, newLower, newUpper);
+
+                if(edgeChanges == CONTRADICTION) {
+                    return CONTRADICTION;
+                }
+
+                changes += edgeChanges;
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Applies the isolation rule to every open edge once. Placing the maximum multiplicity of an edge
+     * is impossible if it would complete every island of the group it joins, unless that group contains
+     * all islands.
+     * @return the amount of narrowed bounds
+     */
+    private int applyIsolation() {
+        int[] parents = new int[required.length];
+        int[] sizes = new int[required.length];
+        int[] deficits = new int[required.length];
+        int changes = 0;
+
+        for(int island = 0; island < required.length; ++island) {
+            parents[island] = island;
+            sizes[island] = 1;
+            deficits[island] = required[island];
+        }
+
+        for(int edge = 0; edge < endpoints.length; ++edge) {
+            if(lower[edge] > 0) {
+                int first = union(parents, sizes, deficits, endpoints[edge][0], endpoints[edge][1]);
+                deficits[first] -= 2 * lower[edge];
+            }
+        }
+
+        for(int edge = 0; edge < endpoints.length; ++edge) {
+            if(lower[edge] < upper[edge]) {
+                int first = find(parents, endpoints[edge][0]);
+                int second = find(parents, endpoints[edge][1]);
+                int size = first == second ? sizes[first] : sizes[first] + sizes[second];
+                int deficit = first == second ? deficits[first] : deficits[first] + deficits[second];
+
+                // NOTE: Lowering an upper bound never uses an edge, so it cannot contradict a crossing edge.
+                if(size < required.length && deficit - 2 * (upper[edge] - lower[edge]) == 0) {
+                    changes += narrow(edge, lower[edge], upper[edge] - 1);
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Applies lookahead to the open edges, until the first edge of which a bound could be narrowed.
+     * Lookahead continues at the edge it last narrowed, so the edges before it are not probed again
+     * until every other edge was probed. Every probe is a search node, and lookahead stops once the
+     * search nodes run out.
+     * @return the amount of narrowed bounds, or {@link #CONTRADICTION}
+     */
+    private int applyLookahead() {
+        for(int i = 0; i < endpoints.length; ++i) {
+            int edge = (lookaheadEdge + i) % endpoints.length;
+
+            if(lower[edge] < upper[edge]) {
+                lookaheadEdge = edge;
+
+                // NOTE: A probe also fails once the search nodes run out, which then ends the search as a contradiction.
+                if(!isFeasible(edge, lower[edge])) {
+                    return remainingNodes < 0 ? CONTRADICTION : narrow(edge, lower[edge] + 1, upper[edge]);
+                } else if(!isFeasible(edge, upper[edge])) {
+                    return remainingNodes < 0 ? CONTRADICTION : narrow(edge, lower[edge], upper[edge] - 1);
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Checks whether the degree and isolation rules find no contradiction once the given edge is fixed.
+     * The bounds are restored afterwards.
+     * @param value the multiplicity to fix the edge at
+     */
+    private boolean isFeasible(int edge, int value) {
+        if(--remainingNodes < 0) {
+            return false;
+        }
+
+        int mark = trailSize;
+        boolean isFeasible = narrow(edge, value, value) != CONTRADICTION;
+
+        while(isFeasible) {
+            int changes = applyLowerTiers(false);
+
+            if(changes == CONTRADICTION || !isConnected(upper)) {
+                isFeasible = false;
+            } else if(changes == 0) {
+                break;
+            }
+        }
+
+        undo(mark);
+
+        return isFeasible;
+    }
+
+    /**
+     * Narrows the bounds of an edge, queues its islands and excludes the edges crossing it once it is used.
+     * @return the amount of narrowed bounds, or {@link #CONTRADICTION}
+     */
+    private int narrow(int edge, int newLower, int newUpper) {
+        boolean isNewlyUsed = lower[edge] == 0 && newLower > 0;
+        int changes = 1;
+
+        setBounds(edge, newLower, newUpper);
+
+        if(isNewlyUsed) {
+            for(int crossing : crossingEdges[edge]) {
+                if(lower[crossing] > 0) {
+                    return CONTRADICTION;
+                } else if(upper[crossing] > 0) {
+                    setBounds(crossing, 0, 0);
+                    ++changes;
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    private void setBounds(int edge, int newLower, int newUpper) {
+        if(trailSize + 2 > trail.length) {
+            trail = Arrays.copyOf(trail, 2 * trail.length);
+        }
+
+        // Every entry holds the edge, whether the upper bound changed and the previous value of that bound.
+        if(newLower != lower[edge]) {
+            trail[trailSize++] = edge << 3 | lower[edge];
+            lower[edge] = (byte)newLower;
+        }
+
+        if(newUpper != upper[edge]) {
+            trail[trailSize++] = edge << 3 | 4 | upper[edge];
+            upper[edge] = (byte)newUpper;
+        }
+
+        for(int island : endpoints[edge]) {
+            basicQueue.add(island);
+            degreeQueue.add(island);
+        }
+    }
+
+    /**
+     * Restores the bounds as they were when the trail had the given size. Guesses and probes only start
+     * once no rule applies anymore, so the queues are empty at that point as well.
+     */
+    private void undo(int mark) {
+        while(trailSize > mark) {
+            int entry = trail[--trailSize];
+            byte[] bounds = (entry & 4) == 0 ? lower : upper;
+
+            bounds[entry >>> 3] = (byte)(entry & 3);
+        }
+
+        basicQueue.clear();
+        degreeQueue.clear();
+    }
+
+    /**
+     * Selects an open edge of the island with the fewest open edges.
+     * @return the edge, or -1 if all edges are decided
+     */
+    private int selectOpenEdge() {
+        int bestEdge = -1;
+        int bestOpen = Integer.MAX_VALUE;
+
+        for(int island = 0; island < required.length; ++island) {
+            int open = 0;
+            int openEdge = -1;
+
+            for(int edge : incidentEdges[island]) {
+                if(lower[edge] != upper[edge]) {
+                    ++open;
+                    openEdge = edge;
+                }
+            }
+
+            if(open > 0 && open < bestOpen) {
+                bestOpen = open;
+                bestEdge = openEdge;
+            }
+        }
+
+        return bestEdge;
+    }
+
+    /**
+     * Checks whether all islands are connected by the edges with a positive multiplicity.
+     */
+    private boolean isConnected(byte[] multiplicities) {
+        int[] parents = new int[required.length];
+        int[] sizes = new int[required.length];
+        int[] deficits = new int[required.length];
+        int components = required.length;
+
+        for(int island = 0; island < required.length; ++island) {
+            parents[island] = island;
+            sizes[island] = 1;
+        }
+
+        for(int edge = 0; edge < endpoints.length && components > 1; ++edge) {
+            if(multiplicities[edge] > 0 && find(parents, endpoints[edge][0]) != find(parents, endpoints[edge][1])) {
+                union(parents, sizes, deficits, endpoints[edge][0], endpoints[edge][1]);
+                --components;
+            }
+        }
+
+        return components <= 1;
+    }
+
+    /**
+     * Joins the groups of the given islands.
+     * @return the root of the joined group
+     */
+    private static int union(int[] parents, int[] sizes, int[] deficits, int first, int second) {
+        first = find(parents, first);
+        second = find(parents, second);
+
+        if(first != second) {
+            parents[second] = first;
+            sizes[first] += sizes[second];
+            deficits[first] += deficits[second];
+        }
+
+        return first;
+    }
+
+    private static int find(int[] parents, int island) {
+        while(parents[island] != island) {
+            parents[island] = parents[parents[island]];
+            island = parents[island];
+        }
+
+        return island;
+    }
+
+    /**
+     * Rates the difficulty of the given puzzle, visiting at most {@link #DEFAULT_MAX_NODES} search nodes.
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @return the rating
+     */
+    public static DifficultyRating rate(Puzzle puzzle) {
+        return rate(puzzle, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Rates the difficulty of the given puzzle.
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @param maxNodes the maximum amount of search nodes to visit
+     * @return the rating, which is exhausted if the search nodes ran out before the puzzle was solved
+     */
+    public static DifficultyRating rate(Puzzle puzzle, long maxNodes) {
+        return new DifficultyRater(puzzle, maxNodes).rate();
+    }
+}
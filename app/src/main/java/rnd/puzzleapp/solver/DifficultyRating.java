@@ -0,0 +1,148 @@
+package rnd.puzzleapp.solver;
+
+import java.util.Locale;
+
+/**
+ * The difficulty rating of a puzzle, as determined by a {@link DifficultyRater}.
+ */
+public class DifficultyRating {
+    private final boolean isSolved;
+    private final boolean isExhausted;
+    private final int[] deductions;
+    private final int branches;
+    private final int maxDepth;
+    private final double score;
+
+    /**
+     * Creates a new difficulty rating instance.
+     * @param isSolved whether the rater found a solution
+     * @param isExhausted whether the rater ran out of search nodes before it found a solution
+     * @param deductions the amount of deductions made by every rule tier, indexed by ordinal
+     * @param branches the amount of guesses that had to be made
+     * @param maxDepth the maximum amount of nested guesses
+     * @param score the numeric difficulty score
+     */
+    DifficultyRating(boolean isSolved, boolean isExhausted, int[] deductions, int branches, int maxDepth, double score) {
+        this.isSolved = isSolved;
+        this.isExhausted = isExhausted;
+        this.deductions = deductions;
+        this.branches = branches;
+        this.maxDepth = maxDepth;
+        this.score = score;
+    }
+
+    /**
+     * Checks whether the rater found a solution. Puzzles without a solution have no meaningful score,
+     * unless the rating is exhausted.
+     * @return {@code true} if the puzzle was solved, {@code false} otherwise
+     */
+    public boolean isSolved() {
+        return isSolved;
+    }
+
+    /**
+     * Checks whether the rater ran out of search nodes before it found a solution. The score of an
+     * exhausted rating is the minimum score of the hardest difficulty, regardless of how far the rater got.
+     * @return {@code true} if the rating is exhausted, {@code false} otherwise
+     */
+    public boolean isExhausted() {
+        return isExhausted;
+    }
+
+    /**
+     * Returns the amount of deductions made with the rules of the given tier.
+     * @param tier the rule tier
+     * @return the amount of deductions
+     */
+    public int getDeductions(Tier tier) {
+        return deductions[tier.ordinal()];
+    }
+
+    /**
+     * Returns the hardest rule tier that had to be applied.
+     * @return the hardest rule tier, which is {@link Tier#Basic} if no deductions were needed at all
+     */
+    public Tier getHardestTier() {
+        Tier[] tiers = Tier.values();
+
+        for(int i = tiers.length - 1; i > 0; --i) {
+            if(deductions[i] > 0) {
+                return tiers[i];
+            }
+        }
+
+        return Tier.Basic;
+    }
+
+    /**
+     * Returns the amount of guesses that had to be made, because no rule tier made any progress.
+     * @return the amount of branches
+     */
+    public int getBranches() {
+        return branches;
+    }
+
+    /**
+     * Returns the maximum amount of nested guesses.
+     * @return the maximum branch depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the numeric difficulty score, which grows with the weighted amount of deductions per
+     * candidate edge and with the amount of guesses. The score does not depend on the size of the puzzle
+     * as such, so a large puzzle that only needs the simplest rules still scores low.
+     * @return the score, which is at least 0
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "score %.2f%s (basic %d, degree %d, isolation %d, lookahead %d, branches %d, depth %d)",
+                score, isExhausted ? " exhausted" : "", deductions[Tier.Basic.ordinal()], deductions[Tier.Degree.ordinal()], deductions[Tier.Isolation.ordinal()],
+                deductions[Tier.Lookahead.ordinal()], branches, maxDepth);
+    }
+
+    /**
+     * The tiers of deduction rules, in increasing order of difficulty.
+     */
+    public enum Tier {
+        /**
+         * Completes islands that need all of their remaining bridges, or none of them, and removes
+         * bridges that would cross a placed bridge.
+         */
+        Basic(1),
+        /**
+         * Narrows the bridges of a single island by what its required bridge count and the other
+         * bridges of the island allow, such as a bridge to each neighbor of an island that needs
+         * more bridges than it has neighbors.
+         */
+        Degree(2),
+        /**
+         * Removes bridges that would close off a group of islands from the rest of the puzzle.
+         */
+        Isolation(4),
+        /**
+         * Removes bridges of which placing them leads to a contradiction using the lower tiers.
+         */
+        Lookahead(8);
+
+        private final int weight;
+
+        Tier(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Returns the weight of a deduction of this tier in the difficulty score.
+         * @return the weight
+         */
+        public int getWeight() {
+            return weight;
+        }
+    }
+}
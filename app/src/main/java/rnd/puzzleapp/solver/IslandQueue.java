@@ -0,0 +1,42 @@
+package rnd.puzzleapp.solver;
+
+/**
+ * A queue of island indices, which ignores islands that are already queued.
+ */
+class IslandQueue {
+    private final int[] elements;
+    private final boolean[] isQueued;
+    private int head;
+    private int size;
+
+    IslandQueue(int capacity) {
+        this.elements = new int[Math.max(1, capacity)];
+        this.isQueued = new boolean[capacity];
+    }
+
+    void add(int island) {
+        if(!isQueued[island]) {
+            isQueued[island] = true;
+            elements[(head + size++) % elements.length] = island;
+        }
+    }
+
+    int poll() {
+        int island = elements[head];
+        head = (head + 1) % elements.length;
+        --size;
+        isQueued[island] = false;
+
+        return island;
+    }
+
+    void clear() {
+        while(size > 0) {
+            poll();
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -17,15 +17,16 @@ import rnd.puzzleapp.puzzle.PuzzleStatus;
 import static rnd.puzzleapp.utils.Collections.iteratorCompare;
 
 public class SmartSolver implements PuzzleSolver {
-    private final Set<Puzzle> searchSpaceSet;
+    private final Set<List<Bridge>> searchSpaceSet;
 
     public SmartSolver() {
-        this.searchSpaceSet = new TreeSet<>((p, t1) -> iteratorCompare(p.getBridges(), t1.getBridges()));
+        this.searchSpaceSet = new TreeSet<>((b, t1) -> iteratorCompare(b, t1));
     }
 
     @Override
     public SolveResult solve(Puzzle puzzle) {
-        Puzzle puzzleCopy = puzzle.copy();
+        // The solver mostly performs point queries and bridge counts, which the occupancy grid speeds up.
+        Puzzle puzzleCopy = puzzle.copy().enableOccupancyGrid();
         List<Bridge> possibleMoves = puzzleCopy.getPossibleBridges();
         searchSpaceSet.clear();
 
@@ -73,10 +74,9 @@ public class SmartSolver implements PuzzleSolver {
                 Puzzle newPuzzle = puzzle.fastCopy();
                 newPuzzle.addBridge(move);
 
-                if (!searchSpaceSet.contains(newPuzzle)) {
-                    searchSpaceSet.add(newPuzzle);
-
-                    SolveResult result = trySolve(newPuzzle.fastCopy(), moves);
+                // Only remember the bridges of visited states, as puzzles also hold an occupancy grid.
+                if (searchSpaceSet.add(new ArrayList<>(newPuzzle.getBridges()))) {
+                    SolveResult result = trySolve(newPuzzle, moves);
 
                     if (result.isSolved()) {
                         return result;
@@ -193,7 +193,7 @@ public class SmartSolver implements PuzzleSolver {
     }
 
     private int getCurrentDegree(Puzzle puzzle, Island island) {
-        return (int)puzzle.getBridges().stream().filter(b -> b.hasEndpoint(island)).count();
+        return (int)puzzle.getBridgeCount(island);
     }
 
     private class BridgeComparator implements Comparator<Bridge> {
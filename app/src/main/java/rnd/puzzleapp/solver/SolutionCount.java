@@ -0,0 +1,57 @@
+package rnd.puzzleapp.solver;
+
+import java.util.List;
+import java.util.Map;
+
+import rnd.puzzleapp.puzzle.Bridge;
+
+/**
+ * The result of counting the solutions of a puzzle with a {@link SolutionCounter}.
+ */
+public class SolutionCount {
+    private final List<Map<Bridge, Integer>> solutions;
+    private final boolean isExhausted;
+
+    /**
+     * Creates a new solution count instance.
+     * @param solutions the solutions found
+     * @param isExhausted whether the search budget ran out before the count was complete
+     */
+    public SolutionCount(List<Map<Bridge, Integer>> solutions, boolean isExhausted) {
+        this.solutions = solutions;
+        this.isExhausted = isExhausted;
+    }
+
+    /**
+     * Returns the amount of solutions found, which is at most the limit the count was made with.
+     * @return the amount of solutions
+     */
+    public int getCount() {
+        return solutions.size();
+    }
+
+    /**
+     * Returns the solutions found, as the multiplicity of every bridge in the solution.
+     * @return the list of solutions
+     */
+    public List<Map<Bridge, Integer>> getSolutions() {
+        return solutions;
+    }
+
+    /**
+     * Checks whether the search budget ran out before the count was complete, in which case the
+     * puzzle might have more solutions than were found.
+     * @return {@code true} if the count is incomplete, {@code false} otherwise
+     */
+    public boolean isExhausted() {
+        return isExhausted;
+    }
+
+    /**
+     * Checks whether the puzzle is known to have exactly one solution.
+     * @return {@code true} if the puzzle is uniquely solvable, {@code false} otherwise
+     */
+    public boolean isUnique() {
+        return !isExhausted && solutions.size() == 1;
+    }
+}
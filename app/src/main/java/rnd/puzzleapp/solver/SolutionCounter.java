@@ -0,0 +1,411 @@
+package rnd.puzzleapp.solver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.CandidateEdges;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+
+/**
+ * Counts the solutions of a puzzle up to a limit, which is mostly used to check whether a puzzle is
+ * uniquely solvable. Every candidate edge is a variable with a multiplicity between 0 and 2, of which
+ * the bounds are narrowed by the degree of its endpoints and by crossing edges, and the search only
+ * branches once no bound can be narrowed any further. The candidate edges and crossings are kept
+ * between counts, and islands can be added or have their required bridge count changed, which only
+ * updates the edges around the island instead of rebuilding the whole structure.
+ */
+public class SolutionCounter {
+    private final List<Island> islands;
+    private final Map<Long, Integer> islandIndices;
+    private final Map<Integer, TreeMap<Integer, Integer>> rows;
+    private final Map<Integer, TreeMap<Integer, Integer>> columns;
+    private final List<Bridge> edges;
+    private final List<int[]> endpoints;
+    private final Map<Bridge, Integer> edgeIndices;
+    private final BitSet deadEdges;
+    private final List<List<Integer>> incidentEdges;
+    private final List<List<Integer>> crossingEdges;
+    private List<Map<Bridge, Integer>> solutions;
+    private int limit;
+    private long remainingNodes;
+
+    /**
+     * Creates a new solution counter for the islands of the given puzzle.
+     * @param puzzle the puzzle, of which only the islands are considered
+     */
+    public SolutionCounter(Puzzle puzzle) {
+        this.islands = new ArrayList<>();
+        this.islandIndices = new HashMap<>();
+        this.rows = new HashMap<>();
+        this.columns = new HashMap<>();
+        this.edges = new ArrayList<>();
+        this.endpoints = new ArrayList<>();
+        this.edgeIndices = new HashMap<>();
+        this.deadEdges = new BitSet();
+        this.incidentEdges = new ArrayList<>();
+        this.crossingEdges = new ArrayList<>();
+
+        puzzle.getIslands().forEach(this::indexIsland);
+        CandidateEdges.of(puzzle.getIslands()).forEach(this::addEdge);
+    }
+
+    private static long key(int x, int y) {
+        return ((long)x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private void indexIsland(Island island) {
+        int index = islands.size();
+
+        islands.add(island);
+        islandIndices.put(key(island.getX(), island.getY()), index);
+        rows.computeIfAbsent(island.getY(), y -> new TreeMap<>()).put(island.getX(), index);
+        columns.computeIfAbsent(island.getX(), x -> new TreeMap<>()).put(island.getY(), index);
+        incidentEdges.add(new ArrayList<>(4));
+    }
+
+    private void addEdge(Bridge bridge) {
+        int index = edges.size();
+        int first = islandIndices.get(key(bridge.getX1(), bridge.getY1()));
+        int second = islandIndices.get(key(bridge.getX2(), bridge.getY2()));
+        List<Integer> crossing = new ArrayList<>();
+
+        for(int i = 0; i < edges.size(); ++i) {
+            Bridge other = edges.get(i);
+
+            if(!deadEdges.get(i) && other.getOrientation() != bridge.getOrientation() && other.intersects(bridge)) {
+                crossing.add(i);
+                crossingEdges.get(i).add(index);
+            }
+        }
+
+        edges.add(bridge);
+        endpoints.add(new int[] { first, second });
+        edgeIndices.put(bridge, index);
+        crossingEdges.add(crossing);
+        incidentEdges.get(first).add(index);
+        incidentEdges.get(second).add(index);
+    }
+
+    private void removeEdge(int first, int second) {
+        Integer index = edgeIndices.remove(Bridge.create(islands.get(first), islands.get(second)));
+
+        if(index != null) {
+            deadEdges.set(index);
+            incidentEdges.get(first).remove(index);
+            incidentEdges.get(second).remove(index);
+        }
+    }
+
+    /**
+     * Adds an island, which splits the candidate edges passing over it and connects it to its nearest
+     * neighbors. Note that it is assumed no island exists at the same coordinates.
+     * @param island the island to add
+     */
+    public void addIsland(Island island) {
+        TreeMap<Integer, Integer> row = rows.get(island.getY());
+        TreeMap<Integer, Integer> column = columns.get(island.getX());
+        Integer west = row == null ? null : row.lowerKey(island.getX());
+        Integer east = row == null ? null : row.higherKey(island.getX());
+        Integer north = column == null ? null : column.lowerKey(island.getY());
+        Integer south = column == null ? null : column.higherKey(island.getY());
+
+        if(west != null && east != null) {
+            removeEdge(row.get(west), row.get(east));
+        }
+
+        if(north != null && south != null) {
+            removeEdge(column.get(north), column.get(south));
+        }
+
+        indexIsland(island);
+
+        if(west != null) {
+            addEdge(Bridge.create(islands.get(row.get(west)), island));
+        }
+
+        if(east != null) {
+            addEdge(Bridge.create(island, islands.get(row.get(east))));
+        }
+
+        if(north != null) {
+            addEdge(Bridge.create(islands.get(column.get(north)), island));
+        }
+
+        if(south != null) {
+            addEdge(Bridge.create(island, islands.get(column.get(south))));
+        }
+    }
+
+    /**
+     * Changes the required bridge count of the island at the given coordinates.
+     * @param x the x coordinate of the island
+     * @param y the y coordinate of the island
+     * @param requiredBridges the new required bridge count
+     */
+    public void setRequiredBridges(int x, int y, int requiredBridges) {
+        int index = islandIndices.get(key(x, y));
+
+        islands.set(index, new Island(x, y, requiredBridges));
+    }
+
+    /**
+     * Returns the live candidate edges, in the order they were added.
+     * @return the list of candidate edges
+     */
+    public List<Bridge> getEdges() {
+        List<Bridge> live = new ArrayList<>();
+
+        for(int i = 0; i < edges.size(); ++i) {
+            if(!deadEdges.get(i)) {
+                live.add(edges.get(i));
+            }
+        }
+
+        return live;
+    }
+
+    /**
+     * Counts the solutions of the current islands.
+     * @param limit the amount of solutions after which counting stops
+     * @param maxNodes the maximum amount of search nodes to visit
+     * @return the count, which is exhausted if the search nodes ran out before the count completed
+     */
+    public SolutionCount count(int limit, long maxNodes) {
+        byte[] lower = new byte[edges.size()];
+        byte[] upper = new byte[edges.size()];
+
+        for(int i = 0; i < edges.size(); ++i) {
+            int[] ends = endpoints.get(i);
+            int required = Math.min(islands.get(ends[0]).getRequiredBridges(), islands.get(ends[1]).getRequiredBridges());
+
+            upper[i] = deadEdges.get(i) ? 0 : (byte)Math.min(Puzzle.MAX_BRIDGE_COUNT, required);
+        }
+
+        this.solutions = new ArrayList<>();
+        this.limit = limit;
+        this.remainingNodes = maxNodes;
+
+        search(lower, upper, -1);
+
+        return new SolutionCount(solutions, remainingNodes < 0);
+    }
+
+    /**
+     * Searches for solutions within the given bounds.
+     * @param changedEdge the edge of which the bounds were just fixed, or -1 if all bounds are new
+     * @return {@code true} if the search should stop, {@code false} otherwise
+     */
+    private boolean search(byte[] lower, byte[] upper, int changedEdge) {
+        if(--remainingNodes < 0) {
+            return true;
+        }
+
+        if(!propagate(lower, upper, changedEdge) || !isConnected(upper)) {
+            return false;
+        }
+
+        int edge = selectBranchEdge(lower, upper);
+
+        if(edge == -1) {
+            if(isConnected(lower)) {
+                solutions.add(toSolution(lower));
+            }
+
+            return solutions.size() >= limit;
+        }
+
+        for(int value = upper[edge]; value >= lower[edge]; --value) {
+            byte[] branchLower = lower.clone();
+            byte[] branchUpper = upper.clone();
+            branchLower[edge] = (byte)value;
+            branchUpper[edge] = (byte)value;
+
+            if(search(branchLower, branchUpper, edge)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Narrows the bounds until no bound changes anymore. Only islands of which an incident edge changed
+     * are revisited, so a branch only touches the neighborhood of the edge it fixed.
+     * @param changedEdge the edge of which the bounds were just fixed, or -1 if all bounds are new
+     * @return {@code false} if the bounds turned out to be contradictory, {@code true} otherwise
+     */
+    private boolean propagate(byte[] lower, byte[] upper, int changedEdge) {
+        IslandQueue queue = new IslandQueue(islands.size());
+
+        if(changedEdge == -1) {
+            for(int island = 0; island < islands.size(); ++island) {
+                queue.add(island);
+            }
+
+            for(int edge = 0; edge < edges.size(); ++edge) {
+                if(lower[edge] > 0 && !excludeCrossings(edge, lower, upper, queue)) {
+                    return false;
+                }
+            }
+        } else {
+            queue.add(endpoints.get(changedEdge)[0]);
+            queue.add(endpoints.get(changedEdge)[1]);
+
+            if(lower[changedEdge] > 0 && !excludeCrossings(changedEdge, lower, upper, queue)) {
+                return false;
+            }
+        }
+
+        while(!queue.isEmpty()) {
+            int island = queue.poll();
+            int required = islands.get(island).getRequiredBridges();
+            int lowerSum = 0;
+            int upperSum = 0;
+
+            for(int edge : incidentEdges.get(island)) {
+                lowerSum += lower[edge];
+                upperSum += upper[edge];
+            }
+
+            if(lowerSum > required || upperSum < required) {
+                return false;
+            }
+
+            // Every edge must make up for what the other edges cannot supply, and cannot exceed what remains.
+            for(int edge : incidentEdges.get(island)) {
+                int newLower = Math.max(lower[edge], required - (upperSum - upper[edge]));
+                int newUpper = Math.min(upper[edge], required - (lowerSum - lower[edge]));
+
+                if(newLower > newUpper) {
+                    return false;
+                } else if(newLower != lower[edge] || newUpper != upper[edge]) {
+                    boolean isNewlyUsed = lower[edge] == 0 && newLower > 0;
+
+                    lowerSum += newLower - lower[edge];
+                    upperSum += newUpper - upper[edge];
+                    lower[edge] = (byte)newLower;
+                    upper[edge] = (byte)newUpper;
+                    queue.add(endpoints.get(edge)[0]);
+                    queue.add(endpoints.get(edge)[1]);
+
+                    if(isNewlyUsed && !excludeCrossings(edge, lower, upper, queue)) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Excludes the edges crossing the given used edge.
+     * @return {@code false} if a crossing edge is used as well, {@code true} otherwise
+     */
+    private boolean excludeCrossings(int edge, byte[] lower, byte[] upper, IslandQueue queue) {
+        for(int crossing : crossingEdges.get(edge)) {
+            if(lower[crossing] > 0) {
+                return false;
+            } else if(upper[crossing] > 0) {
+                upper[crossing] = 0;
+                queue.add(endpoints.get(crossing)[0]);
+                queue.add(endpoints.get(crossing)[1]);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Selects an undecided edge of the island with the fewest undecided edges, as that island has the
+     * fewest ways to be completed.
+     * @return the edge, or -1 if all edges are decided
+     */
+    private int selectBranchEdge(byte[] lower, byte[] upper) {
+        int bestEdge = -1;
+        int bestOpen = Integer.MAX_VALUE;
+
+        for(int island = 0; island < islands.size(); ++island) {
+            int open = 0;
+            int openEdge = -1;
+
+            for(int edge : incidentEdges.get(island)) {
+                if(lower[edge] != upper[edge]) {
+                    ++open;
+                    openEdge = edge;
+                }
+            }
+
+            if(open > 0 && open < bestOpen) {
+                bestOpen = open;
+                bestEdge = openEdge;
+            }
+        }
+
+        return bestEdge;
+    }
+
+    /**
+     * Checks whether all islands are connected by the edges with a positive multiplicity.
+     */
+    private boolean isConnected(byte[] multiplicities) {
+        int[] parents = new int[islands.size()];
+        int components = islands.size();
+
+        for(int i = 0; i < parents.length; ++i) {
+            parents[i] = i;
+        }
+
+        for(int edge = 0; edge < edges.size() && components > 1; ++edge) {
+            if(multiplicities[edge] > 0) {
+                int first = find(parents, endpoints.get(edge)[0]);
+                int second = find(parents, endpoints.get(edge)[1]);
+
+                if(first != second) {
+                    parents[first] = second;
+                    --components;
+                }
+            }
+        }
+
+        return components <= 1;
+    }
+
+    private static int find(int[] parents, int island) {
+        while(parents[island] != island) {
+            parents[island] = parents[parents[island]];
+            island = parents[island];
+        }
+
+        return island;
+    }
+
+    private Map<Bridge, Integer> toSolution(byte[] multiplicities) {
+        Map<Bridge, Integer> solution = new HashMap<>();
+
+        for(int edge = 0; edge < edges.size(); ++edge) {
+            if(multiplicities[edge] > 0) {
+                solution.put(edges.get(edge), (int)multiplicities[edge]);
+            }
+        }
+
+        return solution;
+    }
+
+    /**
+     * Counts the solutions of the given puzzle.
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @param limit the amount of solutions after which counting stops
+     * @param maxNodes the maximum amount of search nodes to visit
+     * @return the count
+     */
+    public static SolutionCount count(Puzzle puzzle, int limit, long maxNodes) {
+        return new SolutionCounter(puzzle).count(limit, maxNodes);
+    }
+}
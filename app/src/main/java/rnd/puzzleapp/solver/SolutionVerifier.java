@@ -0,0 +1,39 @@
+package rnd.puzzleapp.solver;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleStatus;
+
+import static rnd.puzzleapp.utils.Collections.iteratorCompare;
+
+/**
+ * Verifies that a solution actually solves a puzzle, independent of how the solution was obtained.
+ */
+public class SolutionVerifier {
+    /**
+     * Checks whether the given solution is a valid solution of the given puzzle. The solution must have
+     * exactly the same islands as the puzzle, every bridge must be placeable according to the game
+     * rules and the resulting puzzle must be solved.
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @param solution the solution to verify
+     * @return {@code true} if the solution is valid, {@code false} otherwise
+     */
+    public static boolean verify(Puzzle puzzle, Puzzle solution) {
+        if(iteratorCompare(puzzle.getIslands(), solution.getIslands()) != 0) {
+            return false;
+        }
+
+        // Replay all bridges on an empty copy, so that every bridge is checked against the game rules.
+        Puzzle replay = puzzle.copy();
+        replay.reset();
+        replay.enableOccupancyGrid();
+
+        for(Bridge bridge : solution.getBridges()) {
+            if(!replay.placeBridge(bridge)) {
+                return false;
+            }
+        }
+
+        return replay.getStatus() == PuzzleStatus.Solved;
+    }
+}
@@ -0,0 +1,531 @@
+package rnd.puzzleapp.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+import rnd.puzzleapp.puzzle.PuzzleStatus;
+import rnd.puzzleapp.utils.FileSystem;
+
+/**
+ * A persisted index of the {@link PuzzleMetadata} of every stored puzzle, which is kept in memory. The
+ * file of the index is a snapshot of all metadata followed by a log of the changes made since, so that
+ * saving a puzzle only appends a single record. Once the log outgrows the snapshot, the file is
+ * atomically replaced by a new snapshot. The index is small enough to read in full at startup, which
+ * allows listing all puzzles without decoding any of them. Besides the metadata by name,
+ * the index keeps secondary indexes by status, by difficulty and by creation time in memory, so that
+ * bulk operations find the puzzles they apply to without scanning all metadata.
+ */
+public class MetadataIndex {
+    private static final int MAGIC = 0x50555A4D; // "PUZM"
+    // NOTE: Version 2 keys thumbnails by the state of the puzzle, so older indexes are rebuilt.
+    // NOTE: Version 3 adds the creation time, and version 4 adds the key of the blank thumbnail, which
+    // requires loading the puzzles, so older indexes are rebuilt as well.
+    // NOTE: Version 5 appends a log of changes to the snapshot.
+    private static final int VERSION = 5;
+    private static final int PUT = 1;
+    private static final int REMOVE = 2;
+    private static final int MIN_COMPACTION_RECORDS = 256;
+
+    private final File file;
+    private final Map<String, PuzzleMetadata> entries;
+    private final Map<PuzzleStatus, Set<String>> byStatus;
+    private final Map<PuzzleDifficulty, Set<String>> byDifficulty;
+    private final NavigableMap<Long, Set<String>> byCreated;
+    // NOTE: The length of the valid part of the file, after which records are appended, or -1 if the
+    // file has to be replaced by a snapshot before anything can be appended.
+    private long length;
+    private int recordCount;
+
+    private MetadataIndex(File file, Contents contents) {
+        this.file = file;
+        this.entries = new LinkedHashMap<>();
+        this.byStatus = new EnumMap<>(PuzzleStatus.class);
+        this.byDifficulty = new HashMap<>();
+        this.byCreated = new TreeMap<>();
+        this.length = contents.length;
+        this.recordCount = contents.recordCount;
+
+        contents.entries.values().forEach(this::add);
+    }
+
+    /**
+     * Loads the index from the given file. A missing or corrupt file results in an empty index, which
+     * can be rebuilt from the stored puzzles. A log record that was only partially written, when the
+     * app was stopped while appending it, is discarded along with anything after it.
+     * @param file the file of the index
+     * @return the loaded index
+     */
+    public static MetadataIndex load(File file) {
+        Contents contents = new Contents();
+
+        if(file.exists()) {
+            try {
+                contents = FileSystem.read(file, MetadataIndex::read);
+            } catch (IOException | RuntimeException e) {
+                contents = new Contents();
+            }
+        }
+
+        return new MetadataIndex(file, contents);
+    }
+
+    /**
+     * Returns the metadata of all puzzles in this index.
+     * @return the metadata
+     */
+    public synchronized List<PuzzleMetadata> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Returns the metadata of the puzzle with the given name.
+     * @param name the name of the puzzle
+     * @return the metadata, or an empty optional if the puzzle is not in this index
+     */
+    public synchronized Optional<PuzzleMetadata> get(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    /**
+     * Returns the names of all puzzles in this index.
+     * @return the names
+     */
+    public synchronized Collection<String> getNames() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Adds or replaces the metadata of a puzzle, and writes this index. A replaced puzzle keeps its
+     * creation time.
+     * @param metadata the metadata
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void put(PuzzleMetadata metadata) throws IOException {
+        putAll(Collections.singletonList(metadata));
+    }
+
+    /**
+     * Adds or replaces the metadata of all given puzzles, and writes this index once.
+     * @param metadata the metadata of the puzzles
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void putAll(Collection<PuzzleMetadata> metadata) throws IOException {
+        List<String> names = new ArrayList<>();
+
+        for(PuzzleMetadata m : metadata) {
+            add(m);
+            names.add(m.getName());
+        }
+
+        append(names);
+    }
+
+    /**
+     * Adds or replaces the metadata of all given puzzles, removes all other puzzles and replaces the file
+     * of this index by a snapshot.
+     * @param metadata the metadata of all puzzles
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void replaceAll(Collection<PuzzleMetadata> metadata) throws IOException {
+        Map<String, PuzzleMetadata> previous = new HashMap<>(entries);
+
+        clearEntries();
+        metadata.forEach(m -> add(previous.containsKey(m.getName()) ? m.withCreated(previous.get(m.getName()).getCreated()) : m));
+        compact();
+    }
+
+    /**
+     * Adds the metadata of the given puzzles that are not in this index yet, and writes this index. Any
+     * metadata that was put while the given metadata was being loaded is newer, and is therefore kept.
+     * @param metadata the metadata of the puzzles
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void putAbsent(Collection<PuzzleMetadata> metadata) throws IOException {
+        putAll(metadata.stream().filter(m -> !entries.containsKey(m.getName())).collect(Collectors.toList()));
+    }
+
+    /**
+     * Removes the metadata of all puzzles of which the name matches the given predicate, and writes
+     * this index if any metadata was removed.
+     * @param predicate the predicate that matches the names of the puzzles to remove
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void removeIf(Predicate<String> predicate) throws IOException {
+        List<String> names = new ArrayList<>();
+
+        for(String name : entries.keySet()) {
+            if(predicate.test(name)) {
+                names.add(name);
+            }
+        }
+
+        removeAll(names);
+    }
+
+    /**
+     * Removes the metadata of all given puzzles that exist, and writes this index once if any metadata
+     * was removed.
+     * @param names the names of the puzzles
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void removeAll(Collection<String> names) throws IOException {
+        List<String> removed = new ArrayList<>();
+
+        for(String name : names) {
+            if(removeEntry(name)) {
+                removed.add(name);
+            }
+        }
+
+        append(removed);
+    }
+
+    /**
+     * Removes the metadata of a puzzle, if it exists, and writes this index.
+     * @param name the name of the puzzle
+     * @throws IOException if this index could not be written
+     */
+    public synchronized void remove(String name) throws IOException {
+        removeAll(Collections.singletonList(name));
+    }
+
+    /**
+     * Removes the metadata of all puzzles, including the file of this index.
+     * @return {@code true} if the file was deleted or did not exist, {@code false} otherwise
+     */
+    public synchronized boolean clear() {
+        clearEntries();
+        length = -1;
+        recordCount = 0;
+
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * Returns the metadata of all puzzles with the given status.
+     * @param status the status
+     * @return the metadata
+     */
+    public synchronized List<PuzzleMetadata> getByStatus(PuzzleStatus status) {
+        return getAll(byStatus.get(status));
+    }
+
+    /**
+     * Returns the metadata of all puzzles with the given difficulty.
+     * @param difficulty the difficulty, or {@code null} for the puzzles that are not default puzzles
+     * @return the metadata
+     */
+    public synchronized List<PuzzleMetadata> getByDifficulty(PuzzleDifficulty difficulty) {
+        return getAll(byDifficulty.get(difficulty));
+    }
+
+    /**
+     * Returns the metadata of all puzzles created in the given period, ordered by creation time.
+     * @param from the start of the period, inclusive, in milliseconds since the epoch
+     * @param to the end of the period, exclusive, in milliseconds since the epoch
+     * @return the metadata
+     */
+    public synchronized List<PuzzleMetadata> getCreatedBetween(long from, long to) {
+        List<PuzzleMetadata> metadata = new ArrayList<>();
+
+        if(from < to) {
+            byCreated.subMap(from, true, to, false).values().forEach(names -> metadata.addAll(getAll(names)));
+        }
+
+        return metadata;
+    }
+
+    private List<PuzzleMetadata> getAll(Set<String> names) {
+        List<PuzzleMetadata> metadata = new ArrayList<>();
+
+        if(names != null) {
+            names.forEach(name -> metadata.add(entries.get(name)));
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Adds or replaces the metadata of a puzzle in all indexes, keeping the creation time of a replaced puzzle.
+     */
+    private void add(PuzzleMetadata metadata) {
+        PuzzleMetadata previous = entries.get(metadata.getName());
+
+        if(previous != null) {
+            metadata = metadata.withCreated(previous.getCreated());
+            unindex(previous);
+        }
+
+        entries.put(metadata.getName(), metadata);
+        byStatus.computeIfAbsent(metadata.getStatus(), s -> new LinkedHashSet<>()).add(metadata.getName());
+        byDifficulty.computeIfAbsent(metadata.getDifficulty().orElse(null), d -> new LinkedHashSet<>()).add(metadata.getName());
+        byCreated.computeIfAbsent(metadata.getCreated(), c -> new LinkedHashSet<>()).add(metadata.getName());
+    }
+
+    private boolean removeEntry(String name) {
+        PuzzleMetadata previous = entries.remove(name);
+
+        if(previous != null) {
+            unindex(previous);
+        }
+
+        return previous != null;
+    }
+
+    private void unindex(PuzzleMetadata metadata) {
+        removeName(byStatus, metadata.getStatus(), metadata.getName());
+        removeName(byDifficulty, metadata.getDifficulty().orElse(null), metadata.getName());
+        removeName(byCreated, metadata.getCreated(), metadata.getName());
+    }
+
+    private static <K> void removeName(Map<K, Set<String>> index, K key, String name) {
+        Set<String> names = index.get(key);
+
+        if(names != null && names.remove(name) && names.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private void clearEntries() {
+        entries.clear();
+        byStatus.clear();
+        byDifficulty.clear();
+        byCreated.clear();
+    }
+
+    /**
+     * Appends a log record for each of the given puzzles, which is a put of its current metadata if
+     * it is in this index, and a removal otherwise. All records are appended with a single write, which
+     * is synced to the disk. If the log has outgrown the snapshot, or the file cannot be appended to,
+     * the file is replaced by a new snapshot instead.
+     */
+    private void append(Collection<String> names) throws IOException {
+        if(names.isEmpty()) {
+            return;
+        }
+
+        if(length < 0 || recordCount + names.size() > Math.max(MIN_COMPACTION_RECORDS, entries.size())) {
+            compact();
+            return;
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream(64 * names.size());
+
+        for(String name : names) {
+            writeRecord(records, entries.get(name), name);
+        }
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = output.getChannel();
+            ByteBuffer contents = ByteBuffer.wrap(records.toByteArray());
+
+            // NOTE: Drops a partially written record, so that the appended records are not read as its rest.
+            if(channel.size() > length) {
+                channel.truncate(length);
+            }
+
+            while(contents.hasRemaining()) {
+                channel.write(contents, length + contents.position());
+            }
+
+            channel.force(false);
+        } catch (IOException e) {
+            length = -1;
+            throw e;
+        }
+
+        length += records.size();
+        recordCount += names.size();
+    }
+
+    /**
+     * Replaces the file of this index by a snapshot of all metadata, without any log records.
+     */
+    private void compact() throws IOException {
+        length = -1;
+        FileSystem.write(file, MetadataIndex::write, entries);
+        length = file.length();
+        recordCount = 0;
+    }
+
+    private static void write(OutputStream output, Map<String, PuzzleMetadata> entries) throws IOException {
+        DataOutputStream stream = new DataOutputStream(output);
+
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeInt(entries.size());
+
+        for(PuzzleMetadata metadata : entries.values()) {
+            writeMetadata(stream, metadata);
+        }
+
+        stream.flush();
+    }
+
+    /**
+     * Writes a log record, which is the length and the checksum of its contents, followed by the
+     * contents: the type of the record and either the metadata of the put or the name of the removed
+     * puzzle.
+     */
+    private static void writeRecord(OutputStream output, PuzzleMetadata metadata, String name) throws IOException {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream(64);
+        DataOutputStream stream = new DataOutputStream(contents);
+        CRC32 checksum = new CRC32();
+
+        if(metadata != null) {
+            stream.writeByte(PUT);
+            writeMetadata(stream, metadata);
+        } else {
+            stream.writeByte(REMOVE);
+            stream.writeUTF(name);
+        }
+
+        stream.flush();
+        checksum.update(contents.toByteArray());
+
+        DataOutputStream record = new DataOutputStream(output);
+
+        record.writeInt(contents.size());
+        record.writeInt((int)checksum.getValue());
+        contents.writeTo(record);
+        record.flush();
+    }
+
+    private static void writeMetadata(DataOutputStream stream, PuzzleMetadata metadata) throws IOException {
+        stream.writeUTF(metadata.getName());
+        stream.writeByte(metadata.getDifficulty().map(d -> d.ordinal() + 1).orElse(0));
+        stream.writeInt(metadata.getIslandCount());
+        stream.writeByte(metadata.getStatus().ordinal());
+        stream.writeBoolean(metadata.hasSolution());
+        stream.writeUTF(metadata.getThumbnailKey());
+        stream.writeUTF(metadata.getBlankThumbnailKey());
+        stream.writeLong(metadata.getLastModified());
+        stream.writeLong(metadata.getCreated());
+    }
+
+    private static Contents read(InputStream input) throws IOException {
+        DataInputStream stream = new DataInputStream(input);
+        Contents contents = new Contents();
+        // NOTE: The stream reads from memory, so the available bytes are all remaining bytes.
+        long size = input.available();
+
+        if(stream.readInt() != MAGIC) {
+            throw new IOException("Not a metadata index");
+        }
+
+        int version = stream.readInt();
+        if(version != VERSION) {
+            throw new IOException(String.format("Unsupported metadata index version %d", version));
+        }
+
+        int count = stream.readInt();
+
+        for(int i = 0; i < count; ++i) {
+            PuzzleMetadata metadata = readMetadata(stream);
+            contents.entries.put(metadata.getName(), metadata);
+        }
+
+        contents.length = size - input.available();
+
+        while(input.available() > 0) {
+            byte[] record = readRecord(stream);
+
+            if(record == null) {
+                break;
+            }
+
+            DataInputStream recordStream = new DataInputStream(new ByteArrayInputStream(record));
+
+            if(recordStream.readUnsignedByte() == PUT) {
+                PuzzleMetadata metadata = readMetadata(recordStream);
+                contents.entries.put(metadata.getName(), metadata);
+            } else {
+                contents.entries.remove(recordStream.readUTF());
+            }
+
+            contents.length = size - input.available();
+            ++contents.recordCount;
+        }
+
+        return contents;
+    }
+
+    /**
+     * Reads the contents of a log record.
+     * @return the contents, or {@code null} if the record was only partially written
+     */
+    private static byte[] readRecord(DataInputStream stream) throws IOException {
+        try {
+            int recordLength = stream.readInt();
+            int expected = stream.readInt();
+
+            if(recordLength < 1 || recordLength > stream.available()) {
+                return null;
+            }
+
+            byte[] record = new byte[recordLength];
+            CRC32 checksum = new CRC32();
+
+            stream.readFully(record);
+            checksum.update(record);
+
+            return (int)checksum.getValue() == expected ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static PuzzleMetadata readMetadata(DataInputStream stream) throws IOException {
+        PuzzleDifficulty[] difficulties = PuzzleDifficulty.values();
+        PuzzleStatus[] statuses = PuzzleStatus.values();
+        String name = stream.readUTF();
+        int difficulty = stream.readUnsignedByte();
+        int islandCount = stream.readInt();
+        PuzzleStatus status = statuses[stream.readUnsignedByte()];
+        boolean hasSolution = stream.readBoolean();
+        String thumbnailKey = stream.readUTF();
+        String blankThumbnailKey = stream.readUTF();
+        long lastModified = stream.readLong();
+        long created = stream.readLong();
+
+        return new PuzzleMetadata(name, difficulty > 0 ? difficulties[difficulty - 1] : null,
+                islandCount, status, hasSolution, thumbnailKey, blankThumbnailKey, lastModified, created);
+    }
+
+    /**
+     * The metadata read from the file of an index, along with the length of its valid part and the
+     * number of log records in it.
+     */
+    private static class Contents {
+        private final Map<String, PuzzleMetadata> entries = new LinkedHashMap<>();
+        private long length = -1;
+        private int recordCount;
+    }
+}
@@ -0,0 +1,349 @@
+package rnd.puzzleapp.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Deque;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Move;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.serialization.VarInts;
+
+/**
+ * An append-only file of the moves made on a stored puzzle since its record was last written, which
+ * is its base snapshot. Saving a played puzzle only appends the new moves to the journal, rather than
+ * rewriting the record. Undoing a move is journaled as well, together with the move it reverts, so
+ * the undo history survives restarts and an undo never depends on moves from before the base snapshot.
+ * The journal starts with the generation of the base snapshot it applies to. Whenever the record is
+ * rewritten with a new generation, the journal becomes stale and is ignored, so a crash between
+ * writing the record and removing the journal never replays moves twice. A torn entry at the end of
+ * the journal, left behind by a crash while appending, is ignored and overwritten by the next append.
+ */
+public class MoveJournal {
+    private static final int MAGIC = 0x50555A4A; // "PUZJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TAG_PLACE = 1;
+    private static final int TAG_DELETE = 2;
+    private static final int TAG_RESET = 3;
+    private static final int TAG_UNDO = 4;
+
+    private final File file;
+    private long generation;
+    private long length;
+    private int size;
+
+    private MoveJournal(File file, long generation) {
+        this.file = file;
+        this.generation = generation;
+        this.length = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Opens the journal in the given file, and replays its moves on the base snapshot. Replaying stops
+     * at the first entry that is incomplete or cannot be applied, which is overwritten by the next append.
+     * @param file the file of the journal
+     * @param generation the generation of the base snapshot
+     * @param puzzle the base snapshot, to which the moves are applied
+     * @param history receives the moves that can be undone, with the most recent move first
+     * @return the opened journal
+     * @throws IOException if the file exists, but could not be read
+     */
+    public static MoveJournal open(File file, long generation, Puzzle puzzle, Deque<Move> history) throws IOException {
+        MoveJournal journal = new MoveJournal(file, generation);
+
+        if(file.exists()) {
+            byte[] contents = new byte[(int)file.length()];
+
+            try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+                input.readFully(contents);
+            }
+
+            journal.replay(ByteBuffer.wrap(contents), puzzle, history);
+        }
+
+        return journal;
+    }
+
+    /**
+     * Creates an empty journal for a new base snapshot, of which the file is created on the first append.
+     * @param file the file of the journal, which must not belong to an older base snapshot
+     * @param generation the generation of the base snapshot
+     * @return the created journal
+     */
+    public static MoveJournal create(File file, long generation) {
+        return new MoveJournal(file, generation);
+    }
+
+    /**
+     * Checks whether the journal in the given file might hold any moves, without reading it. A journal
+     * of an older base snapshot might hold moves as well, even though they are never replayed.
+     * @param file the file of the journal
+     * @return {@code true} if the file holds more than the header of a journal, {@code false} otherwise
+     */
+    public static boolean hasEntries(File file) {
+        return file.length() > HEADER_SIZE;
+    }
+
+    /**
+     * Returns the generation of the base snapshot this journal applies to.
+     * @return the generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the amount of entries in this journal.
+     * @return the amount of entries
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Appends the given entries to this journal, and syncs them to the disk. If the file does not belong
+     * to the base snapshot of this journal, it is started over.
+     * @param entries the entries to append
+     * @throws IOException if the entries could not be written
+     */
+    public synchronized void append(Entries entries) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = output.getChannel();
+
+            if(length < HEADER_SIZE || !hasHeader(channel)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+
+                channel.truncate(0);
+                while(header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+
+                length = HEADER_SIZE;
+                size = 0;
+            } else if(channel.size() > length) {
+                channel.truncate(length);
+            }
+
+            ByteBuffer bytes = ByteBuffer.wrap(entries.bytes.toByteArray());
+
+            while(bytes.hasRemaining()) {
+                channel.write(bytes, length + bytes.position());
+            }
+
+            channel.force(true);
+            length += bytes.capacity();
+            size += entries.size;
+        }
+    }
+
+    /**
+     * Starts this journal over for a new base snapshot, by deleting its file. This must only be done
+     * after the new base snapshot is written.
+     * @param generation the generation of the new base snapshot
+     */
+    public synchronized void reset(long generation) {
+        this.generation = generation;
+        this.length = 0;
+        this.size = 0;
+
+        file.delete();
+    }
+
+    private boolean hasHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while(header.hasRemaining()) {
+            if(channel.read(header, header.position()) < 0) {
+                return false;
+            }
+        }
+
+        header.flip();
+
+        return header.getInt() == MAGIC && header.getInt() == VERSION && header.getLong() == generation;
+    }
+
+    private void replay(ByteBuffer contents, Puzzle puzzle, Deque<Move> history) {
+        if(contents.remaining() < HEADER_SIZE || contents.getInt() != MAGIC || contents.getInt() != VERSION
+                || contents.getLong() != generation) {
+            // The journal belongs to an older base snapshot, of which the moves are already included.
+            return;
+        }
+
+        length = HEADER_SIZE;
+
+        while(contents.hasRemaining()) {
+            try {
+                if(!replayEntry(contents, puzzle, history)) {
+                    break;
+                }
+            } catch (IOException | RuntimeException e) {
+                break;
+            }
+
+            length = contents.position();
+            ++size;
+        }
+    }
+
+    private static boolean replayEntry(ByteBuffer contents, Puzzle puzzle, Deque<Move> history) throws IOException {
+        int tag = contents.get();
+        boolean isUndo = tag == TAG_UNDO;
+
+        if(isUndo) {
+            tag = contents.get();
+        }
+
+        Move move;
+
+        if(tag == TAG_PLACE || tag == TAG_DELETE) {
+            Bridge bridge = new Bridge(VarInts.readInt(contents), VarInts.readInt(contents),
+                    VarInts.readInt(contents), VarInts.readInt(contents));
+            move = tag == TAG_PLACE ? Move.place(bridge) : Move.delete(bridge);
+        } else if(tag == TAG_RESET && !isUndo) {
+            move = Move.reset();
+        } else {
+            return false;
+        }
+
+        if(isUndo) {
+            if(!move.inverse().get().applyTo(puzzle)) {
+                return false;
+            }
+
+            // The reverted move is only part of the history if it was made after the base snapshot.
+            if(move.equals(history.peek())) {
+                history.pop();
+            }
+
+            return true;
+        }
+
+        if(!move.applyTo(puzzle)) {
+            return false;
+        }
+
+        if(move.getType() == Move.Type.Reset) {
+            history.clear();
+        } else {
+            history.push(move);
+        }
+
+        return true;
+    }
+
+    /**
+     * Journal entries that are recorded in memory, but not yet appended to a journal.
+     */
+    public static class Entries {
+        private final ByteArrayOutputStream bytes;
+        private int size;
+
+        /**
+         * Creates an empty collection of entries.
+         */
+        public Entries() {
+            this.bytes = new ByteArrayOutputStream();
+            this.size = 0;
+        }
+
+        /**
+         * Records a move.
+         * @param move the move
+         */
+        public void add(Move move) {
+            write(move);
+            ++size;
+        }
+
+        /**
+         * Records undoing the given move, which must be the most recent move that was not undone yet.
+         * @param move the move that was undone, which cannot be a reset
+         */
+        public void addUndo(Move move) {
+            bytes.write(TAG_UNDO);
+            write(move);
+            ++size;
+        }
+
+        private void write(Move move) {
+            DataOutputStream stream = new DataOutputStream(bytes);
+
+            try {
+                switch(move.getType()) {
+                    case Place:
+                    case Delete:
+                        Bridge bridge = move.getBridge().get();
+
+                        stream.writeByte(move.getType() == Move.Type.Place ? TAG_PLACE : TAG_DELETE);
+                        VarInts.write(stream, bridge.getX1());
+                        VarInts.write(stream, bridge.getY1());
+                        VarInts.write(stream, bridge.getX2());
+                        VarInts.write(stream, bridge.getY2());
+                        break;
+
+                    default:
+                        stream.writeByte(TAG_RESET);
+                        break;
+                }
+            } catch (IOException e) {
+                // NOTE: Writing to a byte array output stream never fails.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Records all entries of the given collection after the entries of this collection.
+         * @param other the entries to record
+         */
+        public void addAll(Entries other) {
+            byte[] otherBytes = other.bytes.toByteArray();
+
+            bytes.write(otherBytes, 0, otherBytes.length);
+            size += other.size;
+        }
+
+        /**
+         * Creates a copy of this collection.
+         * @return the copy
+         */
+        public Entries copy() {
+            Entries copy = new Entries();
+            copy.addAll(this);
+
+            return copy;
+        }
+
+        /**
+         * Returns the amount of entries in this collection.
+         * @return the amount of entries
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Checks whether this collection is empty.
+         * @return {@code true} if this collection contains no entries, {@code false} otherwise
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Removes all entries from this collection.
+         */
+        public void clear() {
+            bytes.reset();
+            size = 0;
+        }
+    }
+}
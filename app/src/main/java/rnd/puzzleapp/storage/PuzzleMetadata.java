@@ -0,0 +1,168 @@
+package rnd.puzzleapp.storage;
+
+import java.util.Optional;
+
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+import rnd.puzzleapp.puzzle.PuzzleStatus;
+import rnd.puzzleapp.serialization.SerializedPuzzle;
+
+/**
+ * The metadata of a stored puzzle, which holds everything needed to list the puzzle without loading it.
+ */
+public class PuzzleMetadata {
+    private final String name;
+    private final PuzzleDifficulty difficulty;
+    private final int islandCount;
+    private final PuzzleStatus status;
+    private final boolean hasSolution;
+    private final String thumbnailKey;
+    private final String blankThumbnailKey;
+    private final long lastModified;
+    private final long created;
+
+    /**
+     * Creates a new puzzle metadata instance.
+     * @param name the name of the puzzle
+     * @param difficulty the difficulty of the puzzle, or {@code null} if it is not a default puzzle
+     * @param islandCount the amount of islands of the puzzle
+     * @param status the status of the puzzle
+     * @param hasSolution whether the solution of the puzzle is stored
+     * @param thumbnailKey the key of the thumbnail of the puzzle in the thumbnail store
+     * @param blankThumbnailKey the key of the thumbnail of the puzzle without bridges in the thumbnail store
+     * @param lastModified the time the puzzle was last saved, in milliseconds since the epoch
+     * @param created the time the puzzle was first saved, in milliseconds since the epoch
+     */
+    PuzzleMetadata(String name, PuzzleDifficulty difficulty, int islandCount, PuzzleStatus status,
+                   boolean hasSolution, String thumbnailKey, String blankThumbnailKey, long lastModified, long created) {
+        this.name = name;
+        this.difficulty = difficulty;
+        this.islandCount = islandCount;
+        this.status = status;
+        this.hasSolution = hasSolution;
+        this.thumbnailKey = thumbnailKey;
+        this.blankThumbnailKey = blankThumbnailKey;
+        this.lastModified = lastModified;
+        this.created = created;
+    }
+
+    /**
+     * Creates the metadata of the given stored puzzle, as if it was first saved at the given time. The
+     * {@link MetadataIndex} keeps the creation time of puzzles that are already indexed.
+     * @param puzzle the stored puzzle
+     * @param lastModified the time the puzzle was last saved, in milliseconds since the epoch
+     * @return the metadata
+     */
+    static PuzzleMetadata of(StoredPuzzle puzzle, long lastModified) {
+        return new PuzzleMetadata(puzzle.getName(), PuzzleDifficulty.fromPuzzleName(puzzle.getName()).orElse(null),
+                puzzle.getPuzzle().getIslands().size(), puzzle.getPuzzle().getStatus(),
+                puzzle.hasSolution(), puzzle.getThumbnailKey(), ThumbnailCache.getBlankKey(puzzle.getName(), puzzle.getPuzzle()),
+                lastModified, lastModified);
+    }
+
+    /**
+     * Creates the metadata of a stored puzzle without any bridges from a view of its layout, without
+     * loading the puzzle, as if it was first saved at the given time.
+     * @param name the name of the puzzle
+     * @param layout the view of the layout of the puzzle
+     * @param hasSolution whether the solution of the puzzle is stored
+     * @param lastModified the time the puzzle was last saved, in milliseconds since the epoch
+     * @return the metadata
+     */
+    static PuzzleMetadata ofUntouched(String name, SerializedPuzzle layout, boolean hasSolution, long lastModified) {
+        String blankThumbnailKey = ThumbnailCache.getBlankKey(name, layout);
+
+        return new PuzzleMetadata(name, PuzzleDifficulty.fromPuzzleName(name).orElse(null), layout.getIslandCount(),
+                PuzzleStatus.Untouched, hasSolution, blankThumbnailKey, blankThumbnailKey, lastModified, lastModified);
+    }
+
+    /**
+     * Returns a copy of this metadata with the given creation time.
+     * @param created the time the puzzle was first saved, in milliseconds since the epoch
+     * @return the copy
+     */
+    PuzzleMetadata withCreated(long created) {
+        return new PuzzleMetadata(name, difficulty, islandCount, status, hasSolution, thumbnailKey, blankThumbnailKey, lastModified, created);
+    }
+
+    /**
+     * Returns the metadata of the puzzle once it is reset, which follows from this metadata alone.
+     * @param lastModified the time the puzzle was reset, in milliseconds since the epoch
+     * @return the metadata of the reset puzzle
+     */
+    PuzzleMetadata reset(long lastModified) {
+        return new PuzzleMetadata(name, difficulty, islandCount, PuzzleStatus.Untouched, hasSolution, blankThumbnailKey,
+                blankThumbnailKey, lastModified, created);
+    }
+
+    /**
+     * Returns the name of the puzzle.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the difficulty of the puzzle.
+     * @return the difficulty, or an empty optional if the puzzle is not a default puzzle
+     */
+    public Optional<PuzzleDifficulty> getDifficulty() {
+        return Optional.ofNullable(difficulty);
+    }
+
+    /**
+     * Returns the amount of islands of the puzzle.
+     * @return the island count
+     */
+    public int getIslandCount() {
+        return islandCount;
+    }
+
+    /**
+     * Returns the status of the puzzle when it was last saved.
+     * @return the status
+     */
+    public PuzzleStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks whether the solution of the puzzle is stored.
+     * @return {@code true} if the solution is stored, {@code false} otherwise
+     */
+    public boolean hasSolution() {
+        return hasSolution;
+    }
+
+    /**
+     * Returns the key of the thumbnail of the puzzle in the thumbnail cache.
+     * @return the thumbnail key
+     */
+    public String getThumbnailKey() {
+        return thumbnailKey;
+    }
+
+    /**
+     * Returns the key of the thumbnail of the puzzle without bridges in the thumbnail cache.
+     * @return the thumbnail key
+     */
+    public String getBlankThumbnailKey() {
+        return blankThumbnailKey;
+    }
+
+    /**
+     * Returns the time the puzzle was last saved.
+     * @return the time in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the time the puzzle was first saved.
+     * @return the time in milliseconds since the epoch
+     */
+    public long getCreated() {
+        return created;
+    }
+}
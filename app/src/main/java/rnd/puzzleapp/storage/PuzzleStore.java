@@ -0,0 +1,427 @@
+package rnd.puzzleapp.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import rnd.puzzleapp.serialization.VarInts;
+
+/**
+ * A single file that stores a record for every puzzle, keyed by puzzle name. The file consists of a
+ * fixed size header, the records and an index of the offset and length of every record. The file is
+ * memory mapped, and the index is read into a map when the store is opened, so any record can be
+ * accessed without further reads. Updated records are appended to the end of the file, followed by a
+ * new index, after which the header is changed to point to the new index. The old record and index
+ * are left behind as garbage, which is removed by compacting the store once it outgrows the records.
+ * As every update writes a new index, batches of records should be put or removed at once. The index
+ * in memory only changes once the header points to the new index, so a failed update leaves the store
+ * as it was. The file and its mapping grow in chunks ahead of the end of the index, so most updates
+ * write into the existing mapping instead of remapping the whole file.
+ */
+public class PuzzleStore implements RecordStore {
+    private static final int MAGIC = 0x50555A53; // "PUZS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final long MIN_COMPACTION_GARBAGE = 64 * 1024;
+    private static final int MAP_CHUNK_SIZE = 16 * 1024;
+
+    private final File file;
+    private Map<String, Entry> index;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long liveBytes;
+    private long indexLength;
+    private long end;
+
+    private PuzzleStore(File file) {
+        this.file = file;
+        this.index = new LinkedHashMap<>();
+    }
+
+    /**
+     * Opens the store in the given file, creating an empty store if the file does not exist.
+     * @param file the file of the store
+     * @return the opened store
+     * @throws IOException if the file could not be opened, or is not a valid store
+     */
+    public static PuzzleStore open(File file) throws IOException {
+        PuzzleStore store = new PuzzleStore(file);
+
+        if(!file.exists()) {
+            writeEmpty(file);
+        }
+
+        store.openFile();
+
+        return store;
+    }
+
+    /**
+     * Returns the names of all records in this store.
+     * @return the names, in the order the records were first added
+     */
+    @Override
+    public synchronized Collection<String> getNames() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Checks whether this store contains a record with the given name.
+     * @param name the name of the record
+     * @return {@code true} if the record exists, {@code false} otherwise
+     */
+    @Override
+    public synchronized boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    /**
+     * Returns the record with the given name. The returned buffer is a read-only view of the mapped
+     * file, which stays valid after the record is updated or the store is compacted.
+     * @param name the name of the record
+     * @return the record, or an empty optional if no record with the given name exists
+     */
+    @Override
+    public synchronized Optional<ByteBuffer> get(String name) {
+        Entry entry = index.get(name);
+
+        if(entry == null) {
+            return Optional.empty();
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position((int)entry.offset);
+        record.limit((int)entry.offset + entry.length);
+
+        return Optional.of(record.slice());
+    }
+
+    /**
+     * Adds or replaces the record with the given name. The record is appended to the file, after which
+     * the store is compacted if it contains more garbage than records.
+     * @param name the name of the record
+     * @param record the record
+     * @throws IOException if the record could not be written
+     */
+    @Override
+    public synchronized void put(String name, byte[] record) throws IOException {
+        putAll(Collections.singletonMap(name, record));
+    }
+
+    /**
+     * Adds or replaces all given records. The records are appended to the file, followed by a single
+     * new index, so either all or none of the records are updated.
+     * @param records the records by name
+     * @throws IOException if the records could not be written
+     */
+    @Override
+    public synchronized void putAll(Map<String, byte[]> records) throws IOException {
+        if(records.isEmpty()) {
+            return;
+        }
+
+        Map<String, Entry> updated = new LinkedHashMap<>(index);
+        long updatedLiveBytes = liveBytes;
+        long offset = end;
+
+        for(Map.Entry<String, byte[]> record : records.entrySet()) {
+            ByteBuffer bytes = ByteBuffer.wrap(record.getValue());
+
+            while(bytes.hasRemaining()) {
+                channel.write(bytes, offset + bytes.position());
+            }
+
+            Entry previous = updated.put(record.getKey(), new Entry(offset, record.getValue().length));
+            updatedLiveBytes += record.getValue().length - (previous != null ? previous.length : 0);
+            offset += record.getValue().length;
+        }
+
+        commit(updated, updatedLiveBytes, offset);
+    }
+
+    /**
+     * Removes the record with the given name, if it exists.
+     * @param name the name of the record
+     * @throws IOException if the index could not be written
+     */
+    @Override
+    public synchronized void remove(String name) throws IOException {
+        removeAll(Collections.singleton(name));
+    }
+
+    /**
+     * Removes the records with the given names that exist, writing a single new index.
+     * @param names the names of the records
+     * @throws IOException if the index could not be written
+     */
+    @Override
+    public synchronized void removeAll(Collection<String> names) throws IOException {
+        Map<String, Entry> updated = new LinkedHashMap<>(index);
+        long updatedLiveBytes = liveBytes;
+
+        for(String name : names) {
+            Entry previous = updated.remove(name);
+
+            if(previous != null) {
+                updatedLiveBytes -= previous.length;
+            }
+        }
+
+        if(updated.size() < index.size()) {
+            commit(updated, updatedLiveBytes, end);
+        }
+    }
+
+    /**
+     * Closes this store and deletes its file.
+     * @return {@code true} if the file was deleted, {@code false} otherwise
+     */
+    @Override
+    public synchronized boolean delete() {
+        try {
+            closeFile();
+        } catch (IOException e) {
+            // The file is deleted regardless.
+        }
+
+        index.clear();
+        liveBytes = 0;
+
+        return file.delete();
+    }
+
+    /**
+     * Closes this store.
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closeFile();
+    }
+
+    /**
+     * Returns the amount of bytes in the file that are not part of a live record, the header or the index.
+     * @return the amount of garbage bytes
+     */
+    public synchronized long getGarbageBytes() {
+        return end - HEADER_SIZE - liveBytes - indexLength;
+    }
+
+    /**
+     * Rewrites the file with only the live records, in a temporary file that replaces the file once
+     * it is complete.
+     * @throws IOException if the file could not be rewritten
+     */
+    public synchronized void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".tmp");
+        Map<String, Entry> entries = new LinkedHashMap<>();
+
+        compacted.delete();
+
+        try (RandomAccessFile output = new RandomAccessFile(compacted, "rw")) {
+            FileChannel outputChannel = output.getChannel();
+            long offset = HEADER_SIZE;
+
+            for(Map.Entry<String, Entry> entry : index.entrySet()) {
+                ByteBuffer record = get(entry.getKey()).get();
+
+                entries.put(entry.getKey(), new Entry(offset, entry.getValue().length));
+                while(record.hasRemaining()) {
+                    offset += outputChannel.write(record, offset);
+                }
+            }
+
+            writeIndex(outputChannel, entries, offset);
+            outputChannel.force(true);
+        }
+
+        closeFile();
+
+        if(!compacted.renameTo(file)) {
+            compacted.delete();
+            openFile();
+            throw new IOException("Could not replace the store with its compacted copy");
+        }
+
+        openFile();
+    }
+
+    /**
+     * Writes the updated index after the given offset and points the header to it, after which the
+     * updated index replaces the index in memory and the mapping grows to cover it.
+     */
+    private void commit(Map<String, Entry> updated, long updatedLiveBytes, long indexOffset) throws IOException {
+        int length = writeIndex(channel, updated, indexOffset);
+
+        index = updated;
+        liveBytes = updatedLiveBytes;
+        indexLength = length;
+        end = indexOffset + length;
+        map(end);
+
+        long garbage = getGarbageBytes();
+        if(garbage > MIN_COMPACTION_GARBAGE && garbage > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Maps the file up to at least the given size. A mapping that is too small grows by half, in whole
+     * chunks, and the file is extended with it. The extension lies beyond the end of the index, so it is
+     * garbage that later updates overwrite.
+     */
+    private void map(long size) throws IOException {
+        if(size <= buffer.capacity()) {
+            return;
+        }
+
+        long capacity = Math.max(size, buffer.capacity() + buffer.capacity() / 2);
+        capacity = (capacity + MAP_CHUNK_SIZE - 1) / MAP_CHUNK_SIZE * MAP_CHUNK_SIZE;
+
+        if(randomAccessFile.length() < capacity) {
+            randomAccessFile.setLength(capacity);
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+    }
+
+    private void openFile() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        try {
+            readIndex();
+        } catch (IOException | RuntimeException e) {
+            closeFile();
+            throw e instanceof IOException ? (IOException)e : new IOException("Corrupt puzzle store", e);
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if(randomAccessFile != null) {
+            randomAccessFile.close();
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+
+    private void readIndex() throws IOException {
+        ByteBuffer header = buffer.duplicate();
+
+        if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a puzzle store");
+        }
+
+        int version = header.getInt();
+        if(version != VERSION) {
+            throw new IOException(String.format("Unsupported puzzle store version %d", version));
+        }
+
+        long indexOffset = header.getLong();
+        if(indexOffset < HEADER_SIZE || indexOffset > buffer.capacity()) {
+            throw new IOException(String.format("Invalid index offset %d", indexOffset));
+        }
+
+        ByteBuffer indexBuffer = buffer.duplicate();
+        indexBuffer.position((int)indexOffset);
+        int count = VarInts.readInt(indexBuffer);
+
+        index.clear();
+        liveBytes = 0;
+
+        for(int i = 0; i < count; ++i) {
+            byte[] name = new byte[VarInts.readInt(indexBuffer)];
+            indexBuffer.get(name);
+            long offset = VarInts.read(indexBuffer);
+            int length = VarInts.readInt(indexBuffer);
+
+            if(offset < HEADER_SIZE || offset + length > indexOffset) {
+                throw new IOException(String.format("Invalid record offset %d", offset));
+            }
+
+            index.put(new String(name, StandardCharsets.UTF_8), new Entry(offset, length));
+            liveBytes += length;
+        }
+
+        indexLength = indexBuffer.position() - indexOffset;
+        end = indexBuffer.position();
+    }
+
+    private static void writeEmpty(File file) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            writeIndex(output.getChannel(), new LinkedHashMap<>(), HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Writes the index at the given offset, and then the header pointing to it. The header is only
+     * written once the index and the records before it are synced to the disk, so a crash at any
+     * point leaves either the previous or the new index in use.
+     * @return the length of the index
+     */
+    private static int writeIndex(FileChannel channel, Map<String, Entry> entries, long offset) throws IOException {
+        ByteBuffer encoded = ByteBuffer.wrap(encodeIndex(entries));
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        header.putInt(MAGIC).putInt(VERSION).putLong(offset).flip();
+
+        while(encoded.hasRemaining()) {
+            channel.write(encoded, offset + encoded.position());
+        }
+
+        channel.force(false);
+
+        while(header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+
+        channel.force(false);
+
+        return encoded.capacity();
+    }
+
+    private static byte[] encodeIndex(Map<String, Entry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * entries.size() + 8);
+        DataOutputStream stream = new DataOutputStream(bytes);
+
+        VarInts.write(stream, entries.size());
+
+        for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+
+            VarInts.write(stream, name.length);
+            stream.write(name);
+            VarInts.write(stream, entry.getValue().offset);
+            VarInts.write(stream, entry.getValue().length);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The location of a record in the file.
+     */
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
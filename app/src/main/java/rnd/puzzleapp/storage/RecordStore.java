@@ -0,0 +1,75 @@
+package rnd.puzzleapp.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Represents a persistent store of records keyed by puzzle name.
+ */
+public interface RecordStore {
+    /**
+     * Returns the names of all records in this store.
+     * @return the names
+     */
+    Collection<String> getNames();
+
+    /**
+     * Checks whether this store contains a record with the given name.
+     * @param name the name of the record
+     * @return {@code true} if the record exists, {@code false} otherwise
+     */
+    boolean contains(String name);
+
+    /**
+     * Returns the record with the given name, as a read-only buffer that stays valid after the record
+     * is updated.
+     * @param name the name of the record
+     * @return the record, or an empty optional if no record with the given name exists
+     */
+    Optional<ByteBuffer> get(String name);
+
+    /**
+     * Adds or replaces the record with the given name.
+     * @param name the name of the record
+     * @param record the record
+     * @throws IOException if the record could not be written
+     */
+    void put(String name, byte[] record) throws IOException;
+
+    /**
+     * Adds or replaces all given records at once, which is far cheaper than putting them one by one.
+     * @param records the records by name
+     * @throws IOException if the records could not be written
+     */
+    void putAll(Map<String, byte[]> records) throws IOException;
+
+    /**
+     * Removes the record with the given name, if it exists.
+     * @param name the name of the record
+     * @throws IOException if the record could not be removed
+     */
+    void remove(String name) throws IOException;
+
+    /**
+     * Removes the records with the given names that exist at once, which is far cheaper than removing
+     * them one by one.
+     * @param names the names of the records
+     * @throws IOException if the records could not be removed
+     */
+    void removeAll(Collection<String> names) throws IOException;
+
+    /**
+     * Closes this store and deletes its files.
+     * @return {@code true} if all files were deleted, {@code false} otherwise
+     */
+    boolean delete();
+
+    /**
+     * Closes this store.
+     * @throws IOException if this store could not be closed
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,240 @@
+package rnd.puzzleapp.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A write-behind queue of items to save, which are written one at a time by a single background thread.
+ * Enqueueing an item that is still waiting to be written replaces the waiting item, so repeated saves
+ * of the same item only write its latest state. Items that are waiting or being written can be looked
+ * up by name, so that a load that follows a save sees the saved state even before it is written.
+ * An item that cannot be written is retried a few times, and is then kept as a failed item, which can
+ * still be looked up, and is written again along with the next item with the same name, or on a flush.
+ * @param <T> the type of the items to save
+ */
+public class SaveQueue<T> {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 250;
+
+    private final String threadName;
+    private final Predicate<T> writer;
+    private final BinaryOperator<T> merger;
+    private final Consumer<String> onFailure;
+    private final Map<String, T> pending;
+    private final Map<String, T> failed;
+    private String writingName;
+    private T writingItem;
+    private Thread thread;
+
+    /**
+     * Creates a new save queue.
+     * @param threadName the name of the writer thread
+     * @param writer writes an item, and returns whether it was written
+     * @param merger merges a waiting item with the item that replaces it, in that order
+     * @param onFailure invoked on the writer thread with the name of every item that could not be written
+     *                  after all attempts
+     */
+    public SaveQueue(String threadName, Predicate<T> writer, BinaryOperator<T> merger, Consumer<String> onFailure) {
+        this.threadName = threadName;
+        this.writer = writer;
+        this.merger = merger;
+        this.onFailure = onFailure;
+        this.pending = new LinkedHashMap<>();
+        this.failed = new LinkedHashMap<>();
+    }
+
+    /**
+     * Enqueues an item to be written, replacing any item with the same name that is still waiting or
+     * failed to be written.
+     * @param name the name of the item
+     * @param item the item, which must not be modified afterwards
+     */
+    public synchronized void enqueue(String name, T item) {
+        T failedItem = failed.remove(name);
+
+        pending.merge(name, failedItem != null ? merger.apply(failedItem, item) : item, merger);
+        start();
+    }
+
+    private void start() {
+        if(thread == null) {
+            thread = new Thread(this::run, threadName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Returns the latest item with the given name that is waiting, being written or failed to be written.
+     * @param name the name of the item
+     * @return the item, or an empty optional if no item with the given name is waiting, being written or
+     * failed to be written
+     */
+    public synchronized Optional<T> get(String name) {
+        T item = pending.get(name);
+
+        if(item == null && name.equals(writingName)) {
+            item = writingItem;
+        }
+
+        if(item == null) {
+            item = failed.get(name);
+        }
+
+        return Optional.ofNullable(item);
+    }
+
+    /**
+     * Returns the latest version of every item that is waiting, being written or failed to be written.
+     * @return the items
+     */
+    public synchronized Collection<T> getAll() {
+        Map<String, T> items = new LinkedHashMap<>(failed);
+
+        if(writingName != null) {
+            items.put(writingName, writingItem);
+        }
+
+        items.putAll(pending);
+
+        return new ArrayList<>(items.values());
+    }
+
+    /**
+     * Discards the waiting or failed item with the given name, and waits until an item with that name
+     * that is being written is written. Afterwards, the caller can write or delete the item itself without
+     * being overwritten by this queue.
+     * @param name the name of the item
+     */
+    public synchronized void cancel(String name) {
+        pending.remove(name);
+        awaitWhile(() -> name.equals(writingName));
+        failed.remove(name);
+    }
+
+    /**
+     * Discards all waiting and failed items, and waits until the item being written is written.
+     */
+    public synchronized void cancelAll() {
+        pending.clear();
+        awaitWhile(() -> writingName != null);
+        failed.clear();
+    }
+
+    /**
+     * Writes the failed items again, and waits until all waiting items are written, or failed to be
+     * written again.
+     */
+    public synchronized void flush() {
+        failed.forEach((name, item) -> pending.merge(name, item, (newer, older) -> merger.apply(older, newer)));
+        failed.clear();
+
+        if(!pending.isEmpty()) {
+            start();
+        }
+
+        awaitWhile(() -> !pending.isEmpty() || writingName != null);
+    }
+
+    private void awaitWhile(BooleanSupplier condition) {
+        boolean interrupted = false;
+
+        while(condition.getAsBoolean()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // Keep waiting, as returning early could let the writer overwrite the caller.
+                interrupted = true;
+            }
+        }
+
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while(true) {
+            String name;
+            T item;
+
+            synchronized(this) {
+                while(pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        thread = null;
+                        return;
+                    }
+                }
+
+                Iterator<Map.Entry<String, T>> iterator = pending.entrySet().iterator();
+                Map.Entry<String, T> next = iterator.next();
+                iterator.remove();
+                writingName = next.getKey();
+                writingItem = next.getValue();
+                name = writingName;
+                item = writingItem;
+            }
+
+            boolean isWritten = write(item);
+
+            // NOTE: Reported before the item stops being written, so that a flush returns after the report.
+            if(!isWritten) {
+                onFailure.accept(name);
+            }
+
+            synchronized(this) {
+                if(!isWritten) {
+                    // NOTE: A newer item with the same name might be waiting already, which takes over the failed one.
+                    if(pending.containsKey(writingName)) {
+                        pending.put(writingName, merger.apply(item, pending.get(writingName)));
+                    } else {
+                        failed.put(writingName, item);
+                    }
+                }
+
+                writingName = null;
+                writingItem = null;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes an item, retrying a few times with an increasing delay if it could not be written.
+     * @return {@code true} if the item was written, {@code false} otherwise
+     */
+    private boolean write(T item) {
+        for(int attempt = 1; ; ++attempt) {
+            try {
+                if(writer.test(item)) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                // The queue must keep running regardless, so this counts as a failed attempt.
+            }
+
+            if(attempt == MAX_ATTEMPTS) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package rnd.puzzleapp.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * A store that spreads its records over a fixed amount of {@link PuzzleStore} shards in a directory, by
+ * a hash of their names. Every update of a puzzle store writes its whole index, and compacting it
+ * rewrites all of its records, so splitting the records over shards bounds the cost of an update by
+ * the size of a single shard rather than by the amount of puzzles. Batches of records are grouped by
+ * shard, so a batch only updates the shards that hold its records, each of them once.
+ * A shard that cannot be opened at all is unavailable, and behaves as an empty shard that cannot be
+ * written to, so that the records of the other shards can still be used.
+ */
+public class ShardedStore implements RecordStore {
+    private static final String SHARD_NAME = "shard-%02d.store";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private final File directory;
+    private final PuzzleStore[] shards;
+
+    private ShardedStore(File directory, PuzzleStore[] shards) {
+        this.directory = directory;
+        this.shards = shards;
+    }
+
+    /**
+     * Opens the store in the given directory, creating the directory and any missing shard. A corrupt
+     * shard is moved aside, or deleted if it cannot be moved, so that an empty shard can take its place,
+     * while the other shards are kept. If no empty shard can take its place either, the shard is
+     * unavailable.
+     * @param directory the directory of the store
+     * @param shardCount the amount of shards, which must be the same every time the directory is opened
+     * @param onCorrupt invoked with the file of every corrupt shard and the reason it could not be opened,
+     *                  and once more if the shard is unavailable
+     * @return the opened store
+     * @throws IOException if the directory could not be created
+     */
+    public static ShardedStore open(File directory, int shardCount, BiConsumer<File, IOException> onCorrupt) throws IOException {
+        PuzzleStore[] shards = new PuzzleStore[shardCount];
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s", directory));
+        }
+
+        for(int i = 0; i < shardCount; ++i) {
+            File file = new File(directory, String.format(SHARD_NAME, i));
+
+            try {
+                shards[i] = PuzzleStore.open(file);
+            } catch (IOException e) {
+                onCorrupt.accept(file, e);
+                shards[i] = reopen(file, onCorrupt);
+            }
+        }
+
+        return new ShardedStore(directory, shards);
+    }
+
+    /**
+     * Moves a corrupt shard aside, or deletes it if it cannot be moved, and opens an empty shard in its
+     * place.
+     * @return the empty shard, or {@code null} if the shard is unavailable
+     */
+    private static PuzzleStore reopen(File file, BiConsumer<File, IOException> onCorrupt) {
+        if(!file.renameTo(new File(file.getPath() + CORRUPT_SUFFIX)) && !file.delete()) {
+            onCorrupt.accept(file, new IOException(String.format("Could not move corrupt shard %s aside", file.getName())));
+            return null;
+        }
+
+        try {
+            return PuzzleStore.open(file);
+        } catch (IOException e) {
+            onCorrupt.accept(file, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Collection<String> getNames() {
+        List<String> names = new ArrayList<>();
+
+        for(PuzzleStore shard : shards) {
+            if(shard != null) {
+                names.addAll(shard.getNames());
+            }
+        }
+
+        return names;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        PuzzleStore shard = getShard(name);
+
+        return shard != null && shard.contains(name);
+    }
+
+    @Override
+    public Optional<ByteBuffer> get(String name) {
+        PuzzleStore shard = getShard(name);
+
+        return shard != null ? shard.get(name) : Optional.empty();
+    }
+
+    @Override
+    public void put(String name, byte[] record) throws IOException {
+        getWritableShard(name).put(name, record);
+    }
+
+    /**
+     * Adds or replaces all given records, updating every shard that holds any of them once. The records
+     * of a single shard are updated atomically, but a batch that spans shards is not.
+     * @param records the records by name
+     * @throws IOException if the records could not be written
+     */
+    @Override
+    public void putAll(Map<String, byte[]> records) throws IOException {
+        Map<PuzzleStore, Map<String, byte[]>> batches = new HashMap<>();
+
+        for(Map.Entry<String, byte[]> record : records.entrySet()) {
+            batches.computeIfAbsent(getWritableShard(record.getKey()), s -> new LinkedHashMap<>()).put(record.getKey(), record.getValue());
+        }
+
+        for(Map.Entry<PuzzleStore, Map<String, byte[]>> batch : batches.entrySet()) {
+            batch.getKey().putAll(batch.getValue());
+        }
+    }
+
+    @Override
+    public void remove(String name) throws IOException {
+        PuzzleStore shard = getShard(name);
+
+        if(shard != null) {
+            shard.remove(name);
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> names) throws IOException {
+        Map<PuzzleStore, List<String>> batches = new HashMap<>();
+
+        for(String name : names) {
+            PuzzleStore shard = getShard(name);
+
+            // NOTE: An unavailable shard holds no records, so there is nothing to remove from it.
+            if(shard != null) {
+                batches.computeIfAbsent(shard, s -> new ArrayList<>()).add(name);
+            }
+        }
+
+        for(Map.Entry<PuzzleStore, List<String>> batch : batches.entrySet()) {
+            batch.getKey().removeAll(batch.getValue());
+        }
+    }
+
+    @Override
+    public boolean delete() {
+        boolean ok = true;
+
+        for(PuzzleStore shard : shards) {
+            ok &= shard == null || shard.delete();
+        }
+
+        return ok & directory.delete();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for(PuzzleStore shard : shards) {
+            if(shard != null) {
+                shard.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the shard that holds the record with the given name. As the hash of a string is specified,
+     * a name maps to the same shard on every device and in every version.
+     * @return the shard, or {@code null} if it is unavailable
+     */
+    private PuzzleStore getShard(String name) {
+        return shards[Math.floorMod(name.hashCode(), shards.length)];
+    }
+
+    /**
+     * Returns the shard that holds the record with the given name, for writing.
+     * @throws IOException if the shard is unavailable
+     */
+    private PuzzleStore getWritableShard(String name) throws IOException {
+        PuzzleStore shard = getShard(name);
+
+        if(shard == null) {
+            throw new IOException(String.format("The shard of %s is unavailable", name));
+        }
+
+        return shard;
+    }
+}
@@ -0,0 +1,187 @@
+package rnd.puzzleapp.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import rnd.puzzleapp.puzzle.CanonicalForm;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleStatus;
+import rnd.puzzleapp.serialization.PuzzleSerializer;
+import rnd.puzzleapp.solver.PuzzleSolver;
+import rnd.puzzleapp.solver.SolveResult;
+import rnd.puzzleapp.utils.FileSystem;
+
+/**
+ * A two-tier cache of puzzle solutions, keyed by the {@link CanonicalForm} of the island layout.
+ * Solutions are kept in an in-memory LRU tier, backed by a directory on disk. As the key is invariant
+ * under rotations and reflections, a solution found for one puzzle resolves all of its symmetric variants.
+ * Solutions are written to the disk tier atomically on a background thread, so that storing many
+ * solutions at once, such as those of the default puzzles, does not block the caller.
+ */
+public class SolutionCache {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final File directory;
+    private final Map<String, Puzzle> memory;
+    private final ExecutorService writer;
+
+    /**
+     * Creates a new solution cache.
+     * @param directory the directory of the disk tier, which is created if needed
+     * @param capacity the maximum amount of solutions kept in memory
+     */
+    public SolutionCache(File directory, int capacity) {
+        this.directory = directory;
+        this.memory = new LinkedHashMap<String, Puzzle>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Puzzle> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "solution-cache");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks up the solution of the given puzzle, which is returned in the orientation of that puzzle.
+     * @param puzzle the puzzle to look up, of which only the islands are considered
+     * @return the cached solution, or an empty optional if no solution is cached
+     */
+    public Optional<Puzzle> get(Puzzle puzzle) {
+        CanonicalForm form = CanonicalForm.of(puzzle);
+
+        return getCanonical(form).map(form::fromCanonical);
+    }
+
+    /**
+     * Stores the solution of the given puzzle in both tiers. The memory tier is updated immediately,
+     * the disk tier in the background.
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @param solution the solution of the puzzle, which must have the same islands as {@code puzzle}
+     */
+    public void put(Puzzle puzzle, Puzzle solution) {
+        CanonicalForm form = CanonicalForm.of(puzzle);
+        Puzzle canonicalSolution = form.toCanonical(solution);
+
+        synchronized (memory) {
+            memory.put(form.getKey(), canonicalSolution);
+        }
+
+        try {
+            writer.execute(() -> writeToDisk(form.getKey(), canonicalSolution));
+        } catch (RejectedExecutionException e) {
+            // The cache was closed, the solution is only kept in memory.
+        }
+    }
+
+    /**
+     * Returns the solution of the given puzzle, either from this cache or by solving it with the
+     * given solver. Solutions found by the solver are stored in this cache.
+     * @param puzzle the puzzle to solve, of which only the islands are considered
+     * @param solver the solver to use if no solution is cached
+     * @return the solution, or an empty optional if none is cached and the solver failed
+     */
+    public Optional<Puzzle> getOrSolve(Puzzle puzzle, PuzzleSolver solver) {
+        Optional<Puzzle> cached = get(puzzle);
+
+        if(cached.isPresent()) {
+            return cached;
+        }
+
+        Puzzle layout = puzzle.copy();
+        layout.reset();
+        SolveResult result = solver.solve(layout);
+
+        if(!result.isSolved()) {
+            return Optional.empty();
+        }
+
+        put(layout, result.getPuzzle());
+
+        return Optional.of(result.getPuzzle());
+    }
+
+    /**
+     * Removes all solutions from memory and stops writing solutions to the disk tier. Solutions that are
+     * still being written are discarded, so that the disk tier can safely be deleted afterwards.
+     */
+    public void close() {
+        writer.shutdownNow();
+
+        try {
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    private Optional<Puzzle> getCanonical(CanonicalForm form) {
+        Puzzle solution;
+
+        synchronized (memory) {
+            solution = memory.get(form.getKey());
+        }
+
+        boolean isLoaded = solution == null;
+
+        if(isLoaded) {
+            solution = readFromDisk(form.getKey());
+        }
+
+        // Guard against hash collisions and stale or corrupt entries, which can end up in either tier.
+        if(solution == null || !form.matches(solution) || solution.getStatus() != PuzzleStatus.Solved) {
+            return Optional.empty();
+        }
+
+        if(isLoaded) {
+            synchronized (memory) {
+                memory.put(form.getKey(), solution);
+            }
+        }
+
+        return Optional.of(solution);
+    }
+
+    private Puzzle readFromDisk(String key) {
+        File file = new File(directory, key);
+
+        if(!file.exists()) {
+            return null;
+        }
+
+        try {
+            return FileSystem.read(file, stream -> PuzzleSerializer.INSTANCE.deserialize(new DataInputStream(stream)));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Puzzle solution) {
+        if(!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+
+        try {
+            FileSystem.write(new File(directory, key), (stream, s) -> PuzzleSerializer.INSTANCE.serialize(new DataOutputStream(stream), s), solution);
+        } catch (IOException e) {
+            // The disk tier is best effort, and an entry is either written in full or not at all.
+        }
+    }
+}
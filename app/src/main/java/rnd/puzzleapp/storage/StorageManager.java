@@ -2,193 +2,791 @@ package rnd.puzzleapp.storage;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import rnd.puzzleapp.graphics.ThumbnailRenderer;
+import rnd.puzzleapp.pipeline.Pipeline;
+import rnd.puzzleapp.pipeline.StageMetrics;
+import rnd.puzzleapp.puzzle.DefaultPuzzle;
+import rnd.puzzleapp.puzzle.PackedPuzzle;
 import rnd.puzzleapp.puzzle.Puzzle;
-import rnd.puzzleapp.puzzle.PuzzleDifficulty;
-import rnd.puzzleapp.puzzle.PuzzleGenerator;
-import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+import rnd.puzzleapp.puzzle.PuzzleStatus;
+import rnd.puzzleapp.serialization.PuzzlePackSerializer;
+import rnd.puzzleapp.serialization.SerializedPuzzle;
+import rnd.puzzleapp.solver.SmartSolver;
+import rnd.puzzleapp.solver.SolutionVerifier;
 
 /**
  * Manages operations pertaining to the local storage.
  */
 public class StorageManager {
     private static final String PUZZLES_PATH = "puzzles";
+    private static final String STORE_PATH = "puzzles.shards";
+    private static final String THUMBNAIL_STORE_PATH = "thumbnails.shards";
+    private static final String STATE_STORE_PATH = "states.shards";
+    private static final int SHARD_COUNT = 16;
+    private static final String METADATA_INDEX_NAME = "puzzles.index";
+    private static final String JOURNALS_PATH = "journals";
+    private static final String SOLUTIONS_PATH = "solutions";
+    private static final String BAKED_PACK_ASSET = "packs/default.pack";
+    private static final int MAX_GENERATOR_THREADS = 4;
+    private static final int PIPELINE_QUEUE_CAPACITY = 4;
+    private static final int THUMBNAIL_MEMORY_FRACTION = 8;
+    private static final int MAX_LOADER_THREADS = 4;
+    private static final int METADATA_BATCH_SIZE = 24;
+    private static final Object METADATA_REBUILD_LOCK = new Object();
+
+    private static SolutionCache solutionCache;
+    private static RecordStore store;
+    private static RecordStore thumbnailStore;
+    private static RecordStore stateStore;
+    private static ThumbnailCache thumbnailCache;
+    private static MetadataIndex metadataIndex;
+    private static SaveQueue<StoredPuzzle> saveQueue;
+    private static volatile boolean isMetadataIndexStale;
 
     /**
-     * Loads stored puzzles from the local storage.
-     * @param context the context to load puzzles in
-     * @return a list of all stored puzzles that loaded successfully.
+     * Loads the metadata of all stored puzzles from the local storage, without loading the puzzles.
+     * Puzzles with a pending save are included in the state they will be saved in.
+     * @param context the context to load the metadata in
+     * @return the metadata of all stored puzzles
      */
-    public static List<StoredPuzzle> load(Context context) {
-        // .flatMap(Optional::stream) would've been nice, but requires Java 9.
-        return Arrays.stream(getPuzzlesPath(context).listFiles(File::isDirectory))
-                .map(StoredPuzzle::load)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+    public static List<PuzzleMetadata> loadMetadata(Context context) {
+        return loadMetadata(context, batch -> {});
+    }
+
+    /**
+     * Loads the metadata of all stored puzzles from the local storage, without loading the puzzles.
+     * Puzzles with a pending save are included in the state they will be saved in. If the metadata index
+     * does not match the puzzle store, the puzzles without metadata are loaded in parallel, and their
+     * metadata is published in batches as it is loaded, so that the first puzzles can be shown long
+     * before all puzzles are loaded.
+     * @param context the context to load the metadata in
+     * @param onBatch invoked on a background thread with every batch of metadata that becomes available
+     *                before all metadata is loaded, in no particular order
+     * @return the metadata of all stored puzzles
+     */
+    public static List<PuzzleMetadata> loadMetadata(Context context, Consumer<List<PuzzleMetadata>> onBatch) {
+        Map<String, PuzzleMetadata> metadata = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+
+        rebuildMetadataIndex(context, onBatch);
+
+        getMetadataIndex(context).getAll().forEach(m -> metadata.put(m.getName(), m));
+        getSaveQueue(context).getAll().forEach(p -> metadata.put(p.getName(), PuzzleMetadata.of(p, now)));
+
+        return new ArrayList<>(metadata.values());
+    }
+
+    /**
+     * Loads the metadata of a stored puzzle from the local storage, without loading the puzzle. If the
+     * puzzle has a pending save, the metadata reflects the state it will be saved in.
+     * @param context the context to load the metadata in
+     * @param name the name of the stored puzzle
+     * @return the metadata, or an empty optional if the puzzle does not exist
+     */
+    public static Optional<PuzzleMetadata> loadMetadata(Context context, String name) {
+        Optional<StoredPuzzle> pending = getSaveQueue(context).get(name);
+
+        if(pending.isPresent()) {
+            return Optional.of(PuzzleMetadata.of(pending.get(), System.currentTimeMillis()));
+        }
+
+        return getMetadataIndex(context).get(name);
     }
 
     /**
-     * Loads a stored puzzle from the local storage.
+     * Loads a stored puzzle from the local storage. If the puzzle has a pending save, a copy of the
+     * state it will be saved in is returned instead.
      * @param context the context to load the puzzle in
-     * @param name the name of the directory that contains the stored puzzle
+     * @param name the name of the stored puzzle
      * @return the loaded stored puzzle, or an empty optional if the loading failed.
      */
     public static Optional<StoredPuzzle> load(Context context, String name) {
-        return StoredPuzzle.load(getPuzzlePath(context, name));
+        Optional<StoredPuzzle> pending = getSaveQueue(context).get(name);
+
+        if(pending.isPresent()) {
+            return Optional.of(pending.get().copy());
+        }
+
+        return StoredPuzzle.load(getStore(context), getStateStore(context), getJournalsPath(context), name);
+    }
+
+    /**
+     * Loads the thumbnail of a stored puzzle into memory and pins it. If the thumbnail of the current
+     * state of the puzzle is not cached, it is rendered from the stored puzzle. This blocks until the
+     * thumbnail is loaded, so it must not be called on the main thread.
+     * @param context the context to load the thumbnail in
+     * @param metadata the metadata of the stored puzzle
+     * @return the pinned thumbnail, which must be unpinned with {@link StorageManager#unpinThumbnail(Context, Bitmap)}
+     * once it is no longer shown, or an empty optional if neither the thumbnail nor the puzzle could be loaded
+     */
+    public static Optional<Bitmap> loadThumbnail(Context context, PuzzleMetadata metadata) {
+        return getThumbnailCache(context).load(metadata.getThumbnailKey(), getThumbnailLoader(context, metadata));
+    }
+
+    /**
+     * Pins the thumbnail of a stored puzzle if it is in memory, without blocking.
+     * @param context the context to get the thumbnail in
+     * @param metadata the metadata of the stored puzzle
+     * @return the pinned thumbnail, which must be unpinned with {@link StorageManager#unpinThumbnail(Context, Bitmap)}
+     * once it is no longer shown, or an empty optional if it is not in memory
+     */
+    public static Optional<Bitmap> pinThumbnail(Context context, PuzzleMetadata metadata) {
+        return getThumbnailCache(context).pin(metadata.getThumbnailKey());
     }
 
     /**
-     * Saves a stored puzzle to the local storage.
+     * Unpins a thumbnail that is no longer shown, so that its memory can be reused.
+     * @param context the context to unpin the thumbnail in
+     * @param thumbnail the pinned thumbnail
+     */
+    public static void unpinThumbnail(Context context, Bitmap thumbnail) {
+        getThumbnailCache(context).unpin(thumbnail);
+    }
+
+    /**
+     * Schedules loading the thumbnail of a stored puzzle into memory in the background, so that it can
+     * be shown right away once it becomes visible.
+     * @param context the context to load the thumbnail in
+     * @param metadata the metadata of the stored puzzle
+     */
+    public static void preloadThumbnail(Context context, PuzzleMetadata metadata) {
+        getThumbnailCache(context).preload(metadata.getThumbnailKey(), getThumbnailLoader(context, metadata));
+    }
+
+    /**
+     * Returns a loader of a renderer of the puzzle of a stored puzzle, for when its thumbnail has to be
+     * rendered. A blank thumbnail only shows the islands, so it is rendered straight from a view of the
+     * layout record, unless the layout no longer matches the thumbnail key. Any other thumbnail is
+     * rendered from the loaded puzzle.
+     * @param context the context to load the puzzle in
+     * @param metadata the metadata of the stored puzzle
+     * @return the loader
+     */
+    private static Supplier<Optional<ThumbnailRenderer>> getThumbnailLoader(Context context, PuzzleMetadata metadata) {
+        Context applicationContext = context.getApplicationContext();
+        String name = metadata.getName();
+        String key = metadata.getThumbnailKey();
+
+        return () -> {
+            if(key.equals(metadata.getBlankThumbnailKey())) {
+                Optional<SerializedPuzzle> layout = StoredPuzzle.viewLayout(getStore(applicationContext), name);
+
+                if(layout.isPresent() && ThumbnailCache.getBlankKey(name, layout.get()).equals(key)) {
+                    return Optional.of(new ThumbnailRenderer(layout.get()));
+                }
+            }
+
+            return load(applicationContext, name).map(p -> new ThumbnailRenderer(p.getPuzzle()));
+        };
+    }
+
+    /**
+     * Saves a stored puzzle to the local storage, and updates its metadata. Any pending save of the
+     * puzzle is discarded, as the given puzzle is newer.
      * @param context the context to save the puzzle in
      * @param puzzle the stored puzzle to save
      * @return {@code true} of the puzzle was saved successfully, {@code false} otherwise.
      */
     public static boolean save(Context context, StoredPuzzle puzzle) {
-        return puzzle.save(getPuzzlePath(context, puzzle));
+        getSaveQueue(context).cancel(puzzle.getName());
+
+        return write(context, puzzle);
+    }
+
+    /**
+     * Saves a stored puzzle to the local storage on a background thread, without blocking. Saves of
+     * the same puzzle that are still pending are coalesced into a single save of its latest state.
+     * Until the puzzle is saved, loading it returns the state it will be saved in. The dirty mark of
+     * the given stored puzzle is cleared immediately, and it can be modified further.
+     * @param context the context to save the puzzle in
+     * @param puzzle the stored puzzle to save
+     */
+    public static void saveAsync(Context context, StoredPuzzle puzzle) {
+        getSaveQueue(context).enqueue(puzzle.getName(), puzzle.detach());
+    }
+
+    /**
+     * Writes a stored puzzle to the local storage, and updates its metadata. The thumbnail of the saved
+     * state is rendered afterwards in the background, if it is not cached yet.
+     * @param context the context to save the puzzle in
+     * @param puzzle the stored puzzle to save
+     * @return {@code true} of the puzzle was saved successfully, {@code false} otherwise.
+     */
+    private static boolean write(Context context, StoredPuzzle puzzle) {
+        if(!puzzle.save(getStore(context), getStateStore(context), getJournalsPath(context))) {
+            return false;
+        }
+
+        getThumbnailCache(context).prefetch(puzzle.getName(), puzzle.getPuzzle().copy());
+
+        try {
+            getMetadataIndex(context).put(PuzzleMetadata.of(puzzle, System.currentTimeMillis()));
+
+            return true;
+        } catch (IOException e) {
+            Log.e("PUZZLE_APP", String.format("Could not save metadata of puzzle %s: %s", puzzle.getName(), e.getMessage()));
+        }
+
+        return false;
     }
 
     /**
-     * Generates and saves all the default puzzles.
+     * Generates and saves all the default puzzles. If the app was built with a baked puzzle pack, the
+     * default puzzles are read from that pack instead of being generated. The puzzles stream through a
+     * pipeline of generation, verification, thumbnail rendering and saving, where every stage has its
+     * own threads and bounded input queue. There is no separate rating stage, as generation already
+     * rates every candidate to pick the one closest to the difficulty of the default puzzle, and baked
+     * puzzles were rated when the pack was built. Generation is by far the slowest stage, so it gets the
+     * bulk of the threads, while a single thread saves the puzzles. Thumbnails are rendered directly
+     * into a small pool of reusable bitmaps, so that rendering on several threads keeps memory bounded.
+     * As every default puzzle has its own deterministic seed, the generated puzzles do not depend on
+     * thread scheduling. This method blocks until all puzzles are saved.
      * @param context the context to save the puzzles in
+     * @param onSaved invoked on a background thread with the metadata of each puzzle that was saved successfully
      */
-    public static void generatePuzzles(Context context) {
-        for (PuzzleDifficulty difficulty : PuzzleDifficulty.values()) {
-            for (int i = 1; i <= 8; ++i) {
-                generate(context, difficulty, i);
+    public static void generatePuzzles(Context context, Consumer<PuzzleMetadata> onSaved) {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_GENERATOR_THREADS));
+        Optional<Collection<PackedPuzzle>> bakedPuzzles = loadBakedPuzzles(context);
+        List<StageMetrics> metrics;
+
+        try {
+            if(bakedPuzzles.isPresent()) {
+                metrics = addStages(context, Pipeline.create(PIPELINE_QUEUE_CAPACITY), threads)
+                        .run(bakedPuzzles.get(), onSaved);
+            } else {
+                Pipeline<DefaultPuzzle, PackedPuzzle> generation = Pipeline.<DefaultPuzzle>create(PIPELINE_QUEUE_CAPACITY)
+                        .map("generate", threads, p -> Optional.of(p.generate()));
+
+                metrics = addStages(context, generation, threads).run(DefaultPuzzle.all(), onSaved);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        metrics.forEach(m -> Log.i("PUZZLE_APP", m.toString()));
+    }
+
+    /**
+     * Adds the stages that verify, render and save default puzzles to the given pipeline.
+     * @param context the context to save the puzzles in
+     * @param pipeline the pipeline producing the default puzzles
+     * @param renderThreads the amount of threads rendering thumbnails
+     * @param <T> the type of the items entering the pipeline
+     * @return the extended pipeline, which produces the metadata of the saved puzzles
+     */
+    private static <T> Pipeline<T, PuzzleMetadata> addStages(Context context, Pipeline<T, PackedPuzzle> pipeline, int renderThreads) {
+        return pipeline
+                .filter("verify", 1, p -> SolutionVerifier.verify(p.getPuzzle(), p.getSolution()))
+                .map("render", renderThreads, p -> Optional.of(create(context, p)))
+                .map("store", 1, sp -> save(context, sp) ? loadMetadata(context, sp.getName()) : Optional.empty())
+                .onFailure(StorageManager::logFailure);
+    }
+
+    /**
+     * Logs a puzzle that failed in a stage of a pipeline, which drops that puzzle.
+     * @param stage the name of the stage
+     * @param cause the cause of the failure
+     */
+    private static void logFailure(String stage, Throwable cause) {
+        Log.e("PUZZLE_APP", String.format("Pipeline stage %s failed: %s", stage, cause), cause);
+    }
+
+    /**
+     * Loads the default puzzles from the puzzle pack baked into the app at build time, if one exists.
+     * @param context the context to load the puzzle pack in
+     * @return the baked puzzles, or an empty optional if no valid puzzle pack exists
+     */
+    private static Optional<Collection<PackedPuzzle>> loadBakedPuzzles(Context context) {
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(context.getAssets().open(BAKED_PACK_ASSET)))) {
+            return Optional.of(PuzzlePackSerializer.INSTANCE.deserialize(stream));
+        } catch (IOException e) {
+            // Either the app was built without baking puzzle packs, or the pack is corrupt.
+            return Optional.empty();
         }
     }
 
     /**
-     * Determines whether the default puzzles should be generated, by checking if the directory that
-     * contains all the puzzles does not exists.
+     * Determines whether the default puzzles should be generated, by checking if neither the puzzle
+     * store nor the directory of the legacy storage layout exists.
      * @param context the context to check in
      * @return {@code true} if the default puzzles should be generated, {@code false} otherwise.
      */
     public static boolean shouldGeneratePuzzles(Context context) {
-        return !new File(context.getFilesDir(), PUZZLES_PATH).exists();
+        return !new File(context.getFilesDir(), STORE_PATH).exists() && !getLegacyPuzzlesPath(context).exists();
     }
 
     /**
-     * Generates and saves a default puzzle.
-     * @param context the context to save the puzzle in
-     * @param difficulty the difficulty of the puzzle
-     * @param i the puzzle number
-     * @return {@code true} if the generated puzzle was stored successfully, {@code false} otherwise.
+     * Creates a stored puzzle from a default puzzle, and renders its thumbnail into the disk tier of the
+     * thumbnail cache.
+     * @param context the context to create the puzzle in
+     * @param packedPuzzle the default puzzle
+     * @return the created puzzle, which is not yet saved to local storage.
+     */
+    private static StoredPuzzle create(Context context, PackedPuzzle packedPuzzle) {
+        Puzzle puzzle = packedPuzzle.getPuzzle();
+        Puzzle solution = packedPuzzle.getSolution();
+
+        getSolutionCache(context).put(puzzle, solution);
+        getThumbnailCache(context).store(packedPuzzle.getName(), puzzle);
+
+        return StoredPuzzle.create(packedPuzzle.getName(), puzzle, solution);
+    }
+
+    /**
+     * Finds a solution for the given puzzle, either from the solution cache or by solving it. Any
+     * solution found by solving the puzzle is added to the solution cache.
+     * @param context the context to find the solution in
+     * @param puzzle the puzzle to find a solution for, of which only the islands are considered
+     * @return the solution, or an empty optional if no solution could be found
+     */
+    public static Optional<Puzzle> findSolution(Context context, Puzzle puzzle) {
+        return getSolutionCache(context).getOrSolve(puzzle, new SmartSolver());
+    }
+
+    /**
+     * Gets the solution cache, which is stored alongside the directory containing all stored puzzles.
+     * @param context the context to get the solution cache in
+     * @return the solution cache
      */
-    private static boolean generate(Context context, PuzzleDifficulty difficulty, int i) {
-        // Construct a deterministic pseudo-random seed from the difficulty and puzzle number.
-        long seed = ((long)difficulty.getName().hashCode() << 32L) | i;
-        PuzzleGenerator generator = new RandomPuzzleGenerator(seed, difficulty.getMinNodes(), difficulty.getMaxNodes());
-        Puzzle solution = generator.generate(true);
-        Puzzle puzzle = solution.copy();
-        puzzle.reset();
-        Bitmap thumbnail = new ThumbnailRenderer(puzzle).draw();
-        String name = String.format(Locale.US, "%s %d", difficulty.getName(), i);
-        StoredPuzzle storedPuzzle = StoredPuzzle.create(name, puzzle, solution, thumbnail);
+    public static synchronized SolutionCache getSolutionCache(Context context) {
+        if(solutionCache == null) {
+            File solutionsPath = new File(context.getFilesDir(), SOLUTIONS_PATH);
+            solutionCache = new SolutionCache(solutionsPath, SolutionCache.DEFAULT_CAPACITY);
+        }
 
-        return save(context, storedPuzzle);
+        return solutionCache;
     }
 
     /**
-     * Deletes all the stored puzzles, including the directory containing all the stored puzzles, from
-     * the local storage.
+     * Deletes all the stored puzzles, including the puzzle store itself and the cached solutions, from the
+     * local storage.
      * @param context the context to delete in
      * @return {@code true} if all puzzles where deleted successfully, {@code false} otherwise.
      */
-    public static boolean deleteAll(Context context) {
-        File puzzlesPath = getPuzzlesPath(context);
-        boolean ok = true;
+    public static synchronized boolean deleteAll(Context context) {
+        getSaveQueue(context).cancelAll();
+        open(context);
+        thumbnailCache.close();
 
-        for(File puzzlePath : puzzlesPath.listFiles(File::isDirectory)) {
-            for(File file : puzzlePath.listFiles()) {
-                ok &= file.delete();
-            }
+        boolean ok = store.delete();
+        ok &= thumbnailStore.delete();
+        ok &= stateStore.delete();
+        ok &= metadataIndex.clear();
+        ok &= deleteDirectory(getJournalsPath(context));
 
-            ok &= puzzlePath.delete();
+        if(solutionCache != null) {
+            solutionCache.close();
+            solutionCache = null;
         }
 
-        ok &= puzzlesPath.delete();
+        ok &= deleteDirectory(new File(context.getFilesDir(), SOLUTIONS_PATH));
+
+        store = null;
+        thumbnailStore = null;
+        stateStore = null;
+        thumbnailCache = null;
+        metadataIndex = null;
 
         return ok;
     }
 
     /**
-     * Deletes a stored puzzle from the local storage.
+     * Deletes a stored puzzle, together with its thumbnail and metadata, from the local storage.
      * @param context the context to delete in
-     * @param puzzle the stored puzzle to delete
+     * @param metadata the metadata of the stored puzzle to delete
      * @return {@code true} if the puzzle was deleted successfully, {@code false} otherwise.
      */
-    public static boolean delete(Context context, StoredPuzzle puzzle) {
-        File puzzlePath = getPuzzlePath(context, puzzle);
-        boolean ok = true;
+    public static boolean delete(Context context, PuzzleMetadata metadata) {
+        return delete(context, Collections.singletonList(metadata));
+    }
 
-        for(File file : puzzlePath.listFiles()) {
-            ok &= file.delete();
+    /**
+     * Deletes the given stored puzzles, together with their thumbnails and metadata, from the local
+     * storage at once. Every shard of the stores and the metadata index are only written once, and
+     * puzzles that are not deleted are never touched, so the metadata of the puzzles to delete is best
+     * found through the queries of the metadata index.
+     * @param context the context to delete in
+     * @param metadata the metadata of the stored puzzles to delete
+     * @return {@code true} if the puzzles were deleted successfully, {@code false} otherwise.
+     */
+    public static boolean delete(Context context, Collection<PuzzleMetadata> metadata) {
+        List<String> names = metadata.stream().map(PuzzleMetadata::getName).collect(Collectors.toList());
+
+        names.forEach(getSaveQueue(context)::cancel);
+
+        try {
+            getStore(context).removeAll(names);
+            getStateStore(context).removeAll(names);
+            getThumbnailCache(context).removeAll(names);
+            getMetadataIndex(context).removeAll(names);
+            names.forEach(name -> StoredPuzzle.getJournalFile(getJournalsPath(context), name).delete());
+
+            return true;
+        } catch (IOException e) {
+            Log.e("PUZZLE_APP", String.format("Could not delete %d puzzles: %s", names.size(), e.getMessage()));
         }
 
-        ok &= puzzlePath.delete();
+        return false;
+    }
 
-        return ok;
+    /**
+     * Resets all modified puzzles, which are found through the status index of the metadata, so that
+     * untouched puzzles are never touched.
+     * @param context the context to reset the puzzles in
+     * @return the updated metadata of the puzzles that were reset
+     */
+    public static List<PuzzleMetadata> resetModified(Context context) {
+        List<PuzzleMetadata> modified = new ArrayList<>();
+
+        // Pending saves are written first, so that the status index covers them.
+        getSaveQueue(context).flush();
+
+        for(PuzzleStatus status : PuzzleStatus.values()) {
+            if(status != PuzzleStatus.Untouched) {
+                modified.addAll(getMetadataIndex(context).getByStatus(status));
+            }
+        }
+
+        return reset(context, modified);
+    }
+
+    /**
+     * Resets the given stored puzzles. As the layout of a puzzle is stored apart from its play state,
+     * the puzzles are reset in a single batch that only replaces their state records, without loading
+     * them, rendering their thumbnails or rewriting their layouts. The thumbnail of the blank state of
+     * a puzzle is rendered once the puzzle is created and kept apart from the thumbnail of its latest
+     * state, and the metadata of a reset puzzle follows from its metadata before the reset. The
+     * metadata index is written once for all reset puzzles.
+     * @param context the context to reset the puzzles in
+     * @param metadata the metadata of the stored puzzles to reset
+     * @return the updated metadata of the puzzles that were reset
+     */
+    public static List<PuzzleMetadata> reset(Context context, Collection<PuzzleMetadata> metadata) {
+        List<PuzzleMetadata> reset = new ArrayList<>();
+        List<String> names = metadata.stream().map(PuzzleMetadata::getName).collect(Collectors.toList());
+        long now = System.currentTimeMillis();
+
+        names.forEach(getSaveQueue(context)::cancel);
+
+        try {
+            Set<String> truncated = StoredPuzzle.resetStates(getStore(context), getStateStore(context), getJournalsPath(context), names);
+
+            for(PuzzleMetadata m : metadata) {
+                if(truncated.contains(m.getName())) {
+                    reset.add(m.reset(now));
+                }
+            }
+
+            getMetadataIndex(context).putAll(reset);
+        } catch (IOException e) {
+            Log.e("PUZZLE_APP", String.format("Could not reset %d puzzles: %s", names.size(), e.getMessage()));
+        }
+
+        return reset;
     }
 
     /**
      * Checks whether a stored puzzle exists on the local storage.
      * @param context the context to check in
-     * @param name the name of the directory containing the stored puzzle
+     * @param name the name of the stored puzzle
      * @return {@code true} if the puzzle exists, {@code false} otherwise.
      */
     public static boolean puzzleExists(Context context, String name) {
-        File puzzlesPath = new File(context.getFilesDir(), PUZZLES_PATH);
+        return getSaveQueue(context).get(name).isPresent() || getStore(context).contains(name);
+    }
 
-        return puzzlesPath.exists() && new File(puzzlesPath, name).exists();
+    /**
+     * Gets the queue of pending saves, creating it if needed.
+     * @param context the context to get the queue in
+     * @return the queue of pending saves
+     */
+    private static synchronized SaveQueue<StoredPuzzle> getSaveQueue(Context context) {
+        if(saveQueue == null) {
+            Context applicationContext = context.getApplicationContext();
+
+            saveQueue = new SaveQueue<>("puzzle-save-queue", p -> write(applicationContext, p), (older, newer) -> newer.absorb(older),
+                    name -> Log.e("PUZZLE_APP", String.format("Could not save puzzle %s, keeping its changes until the next save", name)));
+        }
+
+        return saveQueue;
     }
 
     /**
-     * Gets the directory containing all the stored puzzles, creating it if needed.
-     * @param context the context to get the directory in
-     * @return the directory containing all the stored puzzles.
+     * Gets the puzzle store, opening it if needed.
+     * @param context the context to get the puzzle store in
+     * @return the puzzle store
+     */
+    private static synchronized RecordStore getStore(Context context) {
+        open(context);
+
+        return store;
+    }
+
+    /**
+     * Gets the store of the play states of the stored puzzles, opening it if needed.
+     * @param context the context to get the state store in
+     * @return the state store
+     */
+    private static synchronized RecordStore getStateStore(Context context) {
+        open(context);
+
+        return stateStore;
+    }
+
+    /**
+     * Gets the thumbnail cache, opening the thumbnail store if needed.
+     * @param context the context to get the thumbnail cache in
+     * @return the thumbnail cache
+     */
+    private static synchronized ThumbnailCache getThumbnailCache(Context context) {
+        open(context);
+
+        return thumbnailCache;
+    }
+
+    /**
+     * Gets the metadata index, opening it if needed.
+     * @param context the context to get the metadata index in
+     * @return the metadata index
      */
-    private static File getPuzzlesPath(Context context) {
-        File puzzlesPath = new File(context.getFilesDir(), PUZZLES_PATH);
-        if(!puzzlesPath.exists()) {
-            puzzlesPath.mkdir();
+    private static synchronized MetadataIndex getMetadataIndex(Context context) {
+        open(context);
+
+        return metadataIndex;
+    }
+
+    /**
+     * Opens the stores on a background thread, which moves any puzzles stored in the legacy storage
+     * layout into them. This is started once the app starts, so that the migration runs before any
+     * activity needs the stores, instead of on the main thread of the first activity that does.
+     * @param context the context to open the stores in
+     */
+    public static void openAsync(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> open(applicationContext), "storage-open");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Opens the puzzle store, the state store, the thumbnail store and the metadata index, if they are
+     * not opened yet. All stores are sharded, so that saving a puzzle only rewrites the index of a single
+     * shard, and appends a single record to the metadata index.
+     * The thumbnail cache keeps up to an eighth of the available heap in memory, as RGB_565 bitmaps.
+     * Puzzles stored in the legacy storage layout, where every puzzle has its own directory, are moved
+     * into the stores when they are opened. If the metadata index does not match the puzzle store, it
+     * is marked stale, and rebuilt once the metadata of all puzzles is loaded.
+     * @param context the context to open the stores in
+     */
+    private static synchronized void open(Context context) {
+        if(store != null) {
+            return;
         }
 
-        return puzzlesPath;
+        store = openStore(context, STORE_PATH);
+        stateStore = openStore(context, STATE_STORE_PATH);
+        thumbnailStore = openStore(context, THUMBNAIL_STORE_PATH);
+        thumbnailCache = new ThumbnailCache(thumbnailStore, Runtime.getRuntime().maxMemory() / THUMBNAIL_MEMORY_FRACTION);
+        metadataIndex = MetadataIndex.load(new File(context.getFilesDir(), METADATA_INDEX_NAME));
+        getJournalsPath(context).mkdirs();
+        migrateLegacyPuzzles(getLegacyPuzzlesPath(context), store, stateStore, getJournalsPath(context));
+
+        isMetadataIndexStale = !new HashSet<>(metadataIndex.getNames()).equals(new HashSet<>(store.getNames()));
     }
 
     /**
-     * Gets the directory containing the stored puzzle, creating it if needed.
-     * @param context the context to get the directory ib
-     * @param puzzle the stored puzzle
-     * @return the directory containing the puzzle
+     * Opens a sharded store in the local storage. A corrupt shard is moved aside, so that an empty
+     * shard can take its place.
+     * @param context the context to open the store in
+     * @param path the directory name of the store
+     * @return the opened store
      */
-    private static File getPuzzlePath(Context context, StoredPuzzle puzzle) {
-        return getPuzzlePath(context, puzzle.getName());
+    private static RecordStore openStore(Context context, String path) {
+        try {
+            return ShardedStore.open(new File(context.getFilesDir(), path), SHARD_COUNT,
+                    (file, e) -> Log.e("PUZZLE_APP", String.format("Could not open shard %s: %s", file.getName(), e.getMessage())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Gets the directory containing the stored puzzle, creating it if needed.
-     * @param context the context to get the directory ib
-     * @param name the name of the directory containing the puzzle
-     * @return the directory containing the puzzle
+     * Makes the metadata index match the puzzle store if it is stale, keeping the metadata of puzzles
+     * that are still stored and loading the puzzles that have no metadata. The puzzles are loaded on a
+     * bounded amount of threads, without holding the lock of the storage manager, so that the puzzles
+     * that are already published can be used meanwhile. Puzzles without bridges, which make up most of
+     * a large collection of puzzles, are not loaded at all, but read straight from their layout records.
+     * @param context the context to rebuild the metadata index in
+     * @param onBatch invoked on a background thread with every batch of metadata that becomes available
      */
-    private static File getPuzzlePath(Context context, String name) {
-        File puzzlePath = new File(getPuzzlesPath(context), name);
-        if(!puzzlePath.exists()) {
-            puzzlePath.mkdir();
+    private static void rebuildMetadataIndex(Context context, Consumer<List<PuzzleMetadata>> onBatch) {
+        RecordStore puzzleStore = getStore(context);
+        RecordStore puzzleStateStore = getStateStore(context);
+        MetadataIndex index = getMetadataIndex(context);
+        File journalsPath = getJournalsPath(context);
+
+        synchronized(METADATA_REBUILD_LOCK) {
+            if(!isMetadataIndexStale) {
+                return;
+            }
+
+            int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LOADER_THREADS));
+            long now = System.currentTimeMillis();
+            List<String> missing = new ArrayList<>();
+            List<PuzzleMetadata> loaded = new ArrayList<>();
+            List<PuzzleMetadata> batch = new ArrayList<>();
+
+            for(String name : puzzleStore.getNames()) {
+                Optional<PuzzleMetadata> existing = index.get(name);
+
+                if(existing.isPresent()) {
+                    batch.add(existing.get());
+                } else {
+                    missing.add(name);
+                }
+            }
+
+            if(!batch.isEmpty()) {
+                onBatch.accept(new ArrayList<>(batch));
+                batch.clear();
+            }
+
+            try {
+                Pipeline.<String>create(PIPELINE_QUEUE_CAPACITY)
+                        .map("load", threads, name -> loadMetadata(puzzleStore, puzzleStateStore, journalsPath, name, now))
+                        .onFailure(StorageManager::logFailure)
+                        .run(missing, metadata -> {
+                            loaded.add(metadata);
+                            batch.add(metadata);
+
+                            if(batch.size() >= METADATA_BATCH_SIZE) {
+                                onBatch.accept(new ArrayList<>(batch));
+                                batch.clear();
+                            }
+                        });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if(!batch.isEmpty()) {
+                onBatch.accept(batch);
+            }
+
+            try {
+                // NOTE: Puzzles might be saved or deleted while loading, of which the index is already up to date.
+                index.putAbsent(loaded);
+                index.removeIf(name -> !puzzleStore.contains(name));
+                isMetadataIndexStale = false;
+            } catch (IOException e) {
+                Log.e("PUZZLE_APP", String.format("Could not save metadata index: %s", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Determines the metadata of a stored puzzle, from its layout record if the puzzle has no bridges, or
+     * by loading it otherwise.
+     */
+    private static Optional<PuzzleMetadata> loadMetadata(RecordStore puzzleStore, RecordStore puzzleStateStore, File journalsPath,
+                                                         String name, long now) {
+        Optional<PuzzleMetadata> untouched = StoredPuzzle.loadUntouchedMetadata(puzzleStore, puzzleStateStore, journalsPath, name, now);
+
+        if(untouched.isPresent()) {
+            return untouched;
         }
 
-        return puzzlePath;
+        return StoredPuzzle.load(puzzleStore, puzzleStateStore, journalsPath, name).map(p -> PuzzleMetadata.of(p, now));
+    }
+
+    /**
+     * Moves all puzzles stored in the legacy storage layout into the given store, deleting the legacy
+     * directories of the puzzles that were moved successfully. Puzzles that could not be read or saved
+     * are left in place, so they are tried again the next time the stores are opened, and the directory
+     * of the legacy storage layout is only deleted once it is empty.
+     * @param puzzlesPath the directory containing all the puzzles in the legacy storage layout
+     * @param puzzleStore the puzzle store to move the puzzles to
+     * @param puzzleStateStore the store to move the play states of the puzzles to
+     * @param journalsPath the directory containing the journals of the puzzles
+     */
+    private static void migrateLegacyPuzzles(File puzzlesPath, RecordStore puzzleStore, RecordStore puzzleStateStore, File journalsPath) {
+        File[] puzzlePaths = puzzlesPath.listFiles(File::isDirectory);
+
+        if(puzzlePaths == null) {
+            return;
+        }
+
+        for(File puzzlePath : puzzlePaths) {
+            Optional<StoredPuzzle> puzzle = StoredPuzzle.loadLegacy(puzzlePath);
+
+            if(puzzle.isPresent() && puzzle.get().save(puzzleStore, puzzleStateStore, journalsPath)) {
+                deleteDirectory(puzzlePath);
+            } else {
+                Log.e("PUZZLE_APP", String.format("Could not move legacy puzzle %s", puzzlePath.getName()));
+            }
+        }
+
+        String[] remaining = puzzlesPath.list();
+
+        if(remaining != null && remaining.length == 0) {
+            puzzlesPath.delete();
+        }
+    }
+
+    /**
+     * Gets the directory containing the move journals of all stored puzzles.
+     * @param context the context to get the directory in
+     * @return the directory, which might not exist
+     */
+    private static File getJournalsPath(Context context) {
+        return new File(context.getFilesDir(), JOURNALS_PATH);
+    }
+
+    /**
+     * Deletes a directory and the files it contains.
+     * @param path the directory to delete
+     * @return {@code true} if the directory was deleted or did not exist, {@code false} otherwise.
+     */
+    private static boolean deleteDirectory(File path) {
+        File[] files = path.listFiles();
+
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+
+        return !path.exists() || path.delete();
+    }
+
+    /**
+     * Gets the directory containing all the stored puzzles in the legacy storage layout.
+     * @param context the context to get the directory in
+     * @return the directory, which might not exist
+     */
+    private static File getLegacyPuzzlesPath(Context context) {
+        return new File(context.getFilesDir(), PUZZLES_PATH);
     }
 }
@@ -1,44 +1,82 @@
 package rnd.puzzleapp.storage;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.support.annotation.NonNull;
+import android.util.Log;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
-import rnd.puzzleapp.graphics.ThumbnailRenderer;
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.CandidateEdges;
+import rnd.puzzleapp.puzzle.Move;
 import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.SolutionVector;
 import rnd.puzzleapp.serialization.PuzzleSerializer;
+import rnd.puzzleapp.serialization.SerializedPuzzle;
+import rnd.puzzleapp.serialization.VarInts;
 import rnd.puzzleapp.utils.FileSystem;
 
 /**
- * Represents a puzzle that is stored on the local storage.
+ * Represents a puzzle that is stored on the local storage. A stored puzzle is saved as a layout record
+ * and a state record, each in its own {@link RecordStore}. The layout record holds the immutable part
+ * of the puzzle, which is the puzzle without bridges and the solution, each preceded by its length,
+ * and the flags of the record. A length of 0 marks a missing solution. The solution is stored as a
+ * {@link SolutionVector} over the candidate edges of the puzzle, and only decoded into a puzzle once
+ * it is requested. The state record holds the mutable play state, which is the generation of the state
+ * and the bridges as a vector over the same candidate edges, and is empty for a puzzle without bridges.
+ * The state record is the base snapshot of the play state, on top of which the moves made while
+ * playing are appended to a {@link MoveJournal}, so that saving a played puzzle rewrites neither
+ * record. Once the journal grows too large, the current state is written as a new state record and
+ * the journal is started over. As resetting a puzzle only replaces its state record, any amount of
+ * puzzles can be reset in a single batch without loading them. The layout of a stored puzzle can be
+ * read as a {@link SerializedPuzzle} straight from its record, which suits reading the islands of many
+ * puzzles without materializing them.
+ * The thumbnail is not part of a stored puzzle, but is kept in a {@link ThumbnailCache} under the
+ * thumbnail key, which changes along with the puzzle, so saving never waits on rendering a thumbnail.
  */
 public class StoredPuzzle {
     private static final String PUZZLE_NAME = "puzzle";
     private static final String SOLUTION_NAME = "solution";
     private static final String THUMBNAIL_NAME = "thumbnail";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final int MAX_JOURNAL_ENTRIES = 1024;
+    private static final int FLAG_SOLUTION_VECTOR = 1;
+    private static final int FLAG_STATE_VECTOR = 1;
 
     private final String name;
     private final Puzzle puzzle;
-    private final Puzzle solution;
-    private Bitmap thumbnail;
+    private final Deque<Move> history;
+    private final MoveJournal.Entries unsavedEntries;
+    private Puzzle solution;
+    private SolutionVector solutionVector;
+    private List<Bridge> edges;
+    private MoveJournal journal;
     private boolean isDirty;
-    private boolean isThumbnailDirty;
+    private boolean isLayoutDirty;
 
-    private StoredPuzzle(String name, Puzzle puzzle, Puzzle solution, Bitmap thumbnail, boolean isDirty) {
+    private StoredPuzzle(String name, Puzzle puzzle, Puzzle solution, boolean isDirty) {
         this.name = name;
         this.puzzle = puzzle;
+        this.history = new ArrayDeque<>();
+        this.unsavedEntries = new MoveJournal.Entries();
         this.solution = solution;
-        this.thumbnail = thumbnail;
+        this.journal = null;
         this.isDirty = isDirty;
-        this.isThumbnailDirty = false;
+        this.isLayoutDirty = isDirty;
     }
 
     /**
@@ -62,16 +100,37 @@ public class StoredPuzzle {
      * @return the solution if one exists, or an empty optional otherwise
      */
     public Optional<Puzzle> getSolution() {
+        if(solution == null && solutionVector != null) {
+            solution = solutionVector.toPuzzle(puzzle, getEdges());
+        }
+
         return Optional.ofNullable(solution);
     }
 
     /**
-     * Returns the thumbnail of this stored puzzle. Note that this thumbnail will not reflect changes
-     * made to the puzzle until this stored puzzle is saved.
-     * @return the thumbnail
+     * Checks whether this stored puzzle has a solution, without decoding it.
+     * @return {@code true} if a solution exists, {@code false} otherwise
+     */
+    public boolean hasSolution() {
+        return solution != null || solutionVector != null;
+    }
+
+    /**
+     * Sets the solution of this stored puzzle, and marks this stored puzzle as dirty.
+     * @param solution the solution
      */
-    public Bitmap getThumbnail() {
-        return thumbnail;
+    public void setSolution(@NonNull Puzzle solution) {
+        this.solution = solution;
+        this.solutionVector = null;
+        this.isLayoutDirty = true;
+    }
+
+    /**
+     * Returns the key of the thumbnail of the current state of this stored puzzle in the thumbnail cache.
+     * @return the thumbnail key
+     */
+    public String getThumbnailKey() {
+        return ThumbnailCache.getKey(name, puzzle);
     }
 
     /**
@@ -79,68 +138,299 @@ public class StoredPuzzle {
      * @return {@code true} if this stored puzzle is marked dirty, {@code false} otherwise.
      */
     public boolean isDirty() {
-        return isDirty;
+        return isDirty || isLayoutDirty || !unsavedEntries.isEmpty();
     }
 
     /**
-     * Marks this stored puzzle as dirty, meaning it contains unsaved changes.
+     * Marks this stored puzzle as dirty, meaning it contains unsaved changes. This causes the whole
+     * play state to be written on the next save, so moves made while playing should be recorded with
+     * {@link StoredPuzzle#recordMove(Move)} instead.
      */
     public void markDirty() {
         isDirty = true;
-        isThumbnailDirty = true;
     }
 
     /**
-     * Attempts to save this stored puzzle to the local storage. If required the thumbnail is rendered
-     * before writing it to local storage. If this stored puzzle is saved successfully, the dirty mark
-     * is cleared.
-     * @param path the directory to save the puzzle in
-     * @return {@code true} if the puzzle was saved successfully, {@code false} otherwise.
+     * Records a move that was just applied to the puzzle of this stored puzzle, which is appended to
+     * the journal on the next save.
+     * @param move the applied move
      */
-    public boolean save(File path) {
-        File puzzlePath = new File(path, PUZZLE_NAME);
-        File solutionPath = new File(path, SOLUTION_NAME);
-        File thumbnailPath = new File(path, THUMBNAIL_NAME);
-        boolean saved = true;
+    public void recordMove(Move move) {
+        unsavedEntries.add(move);
+
+        if(move.getType() == Move.Type.Reset) {
+            history.clear();
+        } else {
+            history.push(move);
+        }
+    }
+
+    /**
+     * Checks whether a move can be undone.
+     * @return {@code true} if a move can be undone, {@code false} otherwise
+     */
+    public boolean canUndo() {
+        return !history.isEmpty();
+    }
+
+    /**
+     * Reverts the most recent move that was not undone yet, and records doing so. The undo history
+     * consists of the moves since the last reset, and survives saving and loading this stored puzzle
+     * until the journal is started over.
+     * @return {@code true} if a move was undone, {@code false} otherwise
+     */
+    public boolean undo() {
+        Move move = history.peek();
 
-        if(isThumbnailDirty) {
-            thumbnail = renderThumbnail(puzzle);
-            isThumbnailDirty = false;
+        if(move == null || !move.inverse().map(m -> m.applyTo(puzzle)).orElse(false)) {
+            return false;
         }
 
-        saved &= FileSystem.save(puzzlePath, StoredPuzzle::puzzleSaver, puzzle);
-        saved &= FileSystem.save(solutionPath, StoredPuzzle::puzzleSaver, solution);
-        saved &= FileSystem.save(thumbnailPath, StoredPuzzle::thumbnailSaver, thumbnail);
+        history.pop();
+        unsavedEntries.addUndo(move);
+
+        return true;
+    }
+
+    /**
+     * Creates a copy of this stored puzzle, including its unsaved changes, which can be saved while the
+     * puzzle of this stored puzzle is modified further.
+     * @return the copy
+     */
+    StoredPuzzle copy() {
+        StoredPuzzle copy = new StoredPuzzle(name, puzzle.copy(), solution, isDirty);
+        copy.solutionVector = solutionVector;
+        copy.edges = edges;
+        copy.isLayoutDirty = isLayoutDirty;
+        copy.history.addAll(history);
+        copy.unsavedEntries.addAll(unsavedEntries);
+        // The journal is shared, as every copy appends to the same file.
+        copy.journal = journal;
+
+        return copy;
+    }
+
+    /**
+     * Creates a copy of this stored puzzle that takes over its unsaved changes, after which this stored
+     * puzzle is no longer marked dirty.
+     * @return the copy, which is responsible for saving the changes
+     */
+    StoredPuzzle detach() {
+        StoredPuzzle copy = copy();
+
+        isDirty = false;
+        isLayoutDirty = false;
+        unsavedEntries.clear();
+
+        return copy;
+    }
+
+    /**
+     * Takes over the unsaved changes of an older copy of this stored puzzle that will never be saved.
+     * The unsaved journal entries of the older copy precede those of this stored puzzle.
+     * @param older the older copy
+     * @return this stored puzzle
+     */
+    StoredPuzzle absorb(StoredPuzzle older) {
+        MoveJournal.Entries entries = older.unsavedEntries.copy();
+
+        entries.addAll(unsavedEntries);
+        unsavedEntries.clear();
+        unsavedEntries.addAll(entries);
+        isDirty |= older.isDirty;
+        isLayoutDirty |= older.isLayoutDirty;
+
+        return this;
+    }
+
+    /**
+     * Attempts to save this stored puzzle to the local storage. The layout record is only written for a
+     * new puzzle or a changed solution. Recorded moves are appended to the journal, unless the whole
+     * play state must be written, or the journal has grown too large, in which case the play state is
+     * written as a new state record and the journal is started over. If this stored puzzle is saved
+     * successfully, the dirty mark is cleared.
+     * @param store the store to save the layout in
+     * @param stateStore the store to save the play state in
+     * @param journalDirectory the directory to save the journal in
+     * @return {@code true} if the puzzle was saved successfully, {@code false} otherwise.
+     */
+    public boolean save(RecordStore store, RecordStore stateStore, File journalDirectory) {
+        File journalFile = getJournalFile(journalDirectory, name);
+
+        try {
+            if(journal == null) {
+                // NOTE: A new stored puzzle might replace a stored puzzle with the same name, of which the
+                // state and journal must never be applied to the new layout, not even after a crash.
+                journalFile.delete();
+                stateStore.remove(name);
+            }
+
+            if(journal == null || isLayoutDirty) {
+                store.put(name, toRecord());
+            }
+
+            if(journal == null || isDirty || journal.size() + unsavedEntries.size() > MAX_JOURNAL_ENTRIES) {
+                writeState(stateStore, journalFile);
+            } else if(!unsavedEntries.isEmpty()) {
+                journal.append(unsavedEntries);
+            }
 
-        if(saved) {
             isDirty = false;
+            isLayoutDirty = false;
+            unsavedEntries.clear();
+
+            return true;
+        } catch (IOException e) {
+            Log.e("PUZZLE_APP", String.format("Could not save puzzle %s: %s", name, e.getMessage()));
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes the current play state as a new state record with the next generation, and then starts
+     * the journal over.
+     */
+    private void writeState(RecordStore stateStore, File journalFile) throws IOException {
+        long generation = journal != null ? journal.getGeneration() + 1 : 1;
+
+        stateStore.put(name, toStateRecord(generation));
+
+        if(journal == null) {
+            journal = MoveJournal.create(journalFile, generation);
+        } else {
+            journal.reset(generation);
+        }
+    }
+
+    /**
+     * Resets the play state of the given stored puzzles in a single batch, without loading them. The
+     * state record of every puzzle is replaced by an empty state record of the next generation, which
+     * also makes its journal stale, so the journals are merely deleted afterwards to free their space.
+     * The state records of a shard are replaced atomically, and every puzzle is either reset entirely
+     * or not at all.
+     * @param store the store of the layouts
+     * @param stateStore the store of the play states
+     * @param journalDirectory the directory of the journals
+     * @param names the names of the puzzles to reset
+     * @return the names of the puzzles that were reset, which excludes puzzles that do not exist
+     * @throws IOException if the state records could not be written
+     */
+    public static Set<String> resetStates(RecordStore store, RecordStore stateStore, File journalDirectory,
+                                          Collection<String> names) throws IOException {
+        Map<String, byte[]> states = new LinkedHashMap<>();
+
+        for(String name : names) {
+            if(store.contains(name)) {
+                Optional<ByteBuffer> state = stateStore.get(name);
+                long generation = state.isPresent() ? VarInts.read(state.get()) : 0;
+
+                states.put(name, toEmptyStateRecord(generation + 1));
+            }
+        }
+
+        stateStore.putAll(states);
+        states.keySet().forEach(name -> getJournalFile(journalDirectory, name).delete());
+
+        return states.keySet();
+    }
+
+    /**
+     * Attempts to load a stored puzzle from the local storage, without its thumbnail. The moves in its
+     * journal are replayed on the stored play state.
+     * @param store the store to load the layout from
+     * @param stateStore the store to load the play state from
+     * @param journalDirectory the directory to load the journal from
+     * @param name the name of the puzzle
+     * @return the loaded puzzle, or an empty optional if the loading failed.
+     */
+    public static Optional<StoredPuzzle> load(RecordStore store, RecordStore stateStore, File journalDirectory, String name) {
+        Optional<ByteBuffer> record = store.get(name);
+
+        if(record.isPresent()) {
+            try {
+                return Optional.of(fromRecord(name, record.get(), stateStore.get(name), getJournalFile(journalDirectory, name)));
+            } catch (IOException | RuntimeException e) {
+                Log.e("PUZZLE_APP", String.format("Could not load puzzle %s: %s", name, e.getMessage()));
+            }
         }
 
-        return saved;
+        return Optional.empty();
     }
 
     /**
-     * Attempts to load a stored puzzle from the local storage. If no stored thumbnail exists one is
-     * rendered from the loaded puzzle.
+     * Returns a read-only view of the layout of a stored puzzle, which holds its islands without any
+     * bridges, straight from its layout record.
+     * @param store the store of the layouts
+     * @param name the name of the puzzle
+     * @return the view of the layout, or an empty optional if the puzzle does not exist or could not be read
+     */
+    public static Optional<SerializedPuzzle> viewLayout(RecordStore store, String name) {
+        Optional<ByteBuffer> record = store.get(name);
+
+        if(record.isPresent()) {
+            try {
+                return Optional.of(PuzzleSerializer.INSTANCE.view(sliceSection(record.get())));
+            } catch (IOException | RuntimeException e) {
+                Log.e("PUZZLE_APP", String.format("Could not read layout of puzzle %s: %s", name, e.getMessage()));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the metadata of a stored puzzle that has no bridges straight from its layout record, without
+     * loading the puzzle. This is the case for any puzzle that was never played, or was reset since.
+     * @param store the store of the layouts
+     * @param stateStore the store of the play states
+     * @param journalDirectory the directory of the journals
+     * @param name the name of the puzzle
+     * @param lastModified the time the puzzle was last saved, in milliseconds since the epoch
+     * @return the metadata, or an empty optional if the puzzle might have bridges, in which case it has to
+     * be loaded to determine its metadata, or does not exist
+     */
+    static Optional<PuzzleMetadata> loadUntouchedMetadata(RecordStore store, RecordStore stateStore, File journalDirectory,
+                                                          String name, long lastModified) {
+        Optional<ByteBuffer> record = store.get(name);
+        Optional<ByteBuffer> state = stateStore.get(name);
+
+        if(!record.isPresent() || (state.isPresent() && !isEmptyState(state.get()))
+                || MoveJournal.hasEntries(getJournalFile(journalDirectory, name))) {
+            return Optional.empty();
+        }
+
+        try {
+            SerializedPuzzle layout = PuzzleSerializer.INSTANCE.view(sliceSection(record.get()));
+            boolean hasSolution = sliceSection(record.get()).hasRemaining();
+
+            return Optional.of(PuzzleMetadata.ofUntouched(name, layout, hasSolution, lastModified));
+        } catch (IOException | RuntimeException e) {
+            // The puzzle is loaded instead, which reports why it could not be read.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Attempts to load a stored puzzle from a directory of the legacy storage layout, which stores the
+     * puzzle, solution and thumbnail as separate files. The PNG encoded thumbnail is not loaded, as the
+     * thumbnail cache renders it again once it is needed.
      * @param path the directory to load the puzzle from
      * @return the loaded puzzle, or an empty optional if the loading failed.
      */
-    public static Optional<StoredPuzzle> load(File path) {
+    public static Optional<StoredPuzzle> loadLegacy(File path) {
         File puzzlePath = new File(path, PUZZLE_NAME);
         File solutionPath = new File(path, SOLUTION_NAME);
-        File thumbnailPath = new File(path, THUMBNAIL_NAME);
 
         Optional<Puzzle> loadedPuzzle = FileSystem.load(puzzlePath, StoredPuzzle::puzzleLoader);
 
         if(loadedPuzzle.isPresent()) {
             Optional<Puzzle> loadedSolution = FileSystem.loadIfExists(solutionPath, StoredPuzzle::puzzleLoader);
-            Optional<Bitmap> loadedThumbnail = FileSystem.loadIfExists(thumbnailPath, BitmapFactory::decodeStream);
 
             Puzzle puzzle = loadedPuzzle.get();
             Puzzle solution = loadedSolution.orElse(null);
-            Bitmap thumbnail = loadedThumbnail.orElse(renderThumbnail(puzzle));
 
-            return Optional.of(new StoredPuzzle(path.getName(), puzzle, solution, thumbnail, false));
+            return Optional.of(new StoredPuzzle(path.getName(), puzzle, solution, false));
         }
 
         return Optional.empty();
@@ -151,33 +441,248 @@ public class StoredPuzzle {
      * @param name the name of the puzzle, which must be a valid directory name
      * @param puzzle the actual puzzle
      * @param solution the solution of the puzzle if one exists, {@code null} otherwise
-     * @param thumbnail the current thumbnail of the puzzle, or {@code null} to create one
      * @return the newly created instance, which is not yet saved to local storage.
      */
-    public static StoredPuzzle create(String name, @NonNull Puzzle puzzle, Puzzle solution, Bitmap thumbnail) {
-        if(thumbnail == null) {
-            thumbnail = renderThumbnail(puzzle);
+    public static StoredPuzzle create(String name, @NonNull Puzzle puzzle, Puzzle solution) {
+        return new StoredPuzzle(name, puzzle, solution, true);
+    }
+
+    /**
+     * Returns the file of the journal of a stored puzzle.
+     * @param journalDirectory the directory containing the journals
+     * @param name the name of the stored puzzle
+     * @return the journal file
+     */
+    static File getJournalFile(File journalDirectory, String name) {
+        return new File(journalDirectory, name + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Returns the candidate edges of the puzzle, which are the same for every board of the puzzle.
+     */
+    private List<Bridge> getEdges() {
+        if(edges == null) {
+            edges = CandidateEdges.of(puzzle.getIslands());
         }
 
-        return new StoredPuzzle(name, puzzle, solution, thumbnail, true);
+        return edges;
     }
 
-    private static Bitmap renderThumbnail(Puzzle puzzle) {
-        return new ThumbnailRenderer(puzzle).draw();
+    private byte[] toRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        Puzzle layout = puzzle.copy();
+
+        if(solutionVector == null && solution != null) {
+            // NOTE: A solution with a bridge that is not a candidate edge cannot be a vector, and is serialized as a puzzle instead.
+            solutionVector = SolutionVector.of(getEdges(), solution).orElse(null);
+        }
+
+        layout.reset();
+        writeSection(stream, serialize(layout));
+
+        if(solutionVector != null) {
+            ByteArrayOutputStream solutionBytes = new ByteArrayOutputStream();
+            DataOutputStream solutionStream = new DataOutputStream(solutionBytes);
+
+            VarInts.write(solutionStream, solutionVector.getEdgeCount());
+            solutionStream.write(solutionVector.toBytes());
+            writeSection(stream, solutionBytes.toByteArray());
+        } else {
+            writeSection(stream, solution != null ? serialize(solution) : new byte[0]);
+        }
+
+        VarInts.write(stream, solutionVector != null ? FLAG_SOLUTION_VECTOR : 0);
+
+        return bytes.toByteArray();
     }
 
-    private static Puzzle puzzleLoader(FileInputStream stream) throws IOException {
-        return PuzzleSerializer.INSTANCE.deserialize(new DataInputStream(stream));
+    /**
+     * Encodes the play state as its generation, its flags and the bridges, which are stored as a vector
+     * over the candidate edges, or as a serialized puzzle if a bridge is not a candidate edge.
+     */
+    private byte[] toStateRecord(long generation) throws IOException {
+        if(puzzle.getBridges().isEmpty()) {
+            return toEmptyStateRecord(generation);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        Optional<SolutionVector> vector = SolutionVector.of(getEdges(), puzzle);
+
+        VarInts.write(stream, generation);
+        VarInts.write(stream, vector.isPresent() ? FLAG_STATE_VECTOR : 0);
+
+        if(vector.isPresent()) {
+            VarInts.write(stream, vector.get().getEdgeCount());
+            stream.write(vector.get().toBytes());
+        } else {
+            stream.write(serialize(puzzle));
+        }
+
+        return bytes.toByteArray();
     }
 
-    private static void puzzleSaver(FileOutputStream stream, Puzzle instance) throws IOException {
-        PuzzleSerializer.INSTANCE.serialize(new DataOutputStream(stream), instance);
+    private static byte[] toEmptyStateRecord(long generation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+
+        VarInts.write(stream, generation);
+        VarInts.write(stream, 0);
+
+        return bytes.toByteArray();
     }
 
-    private static void thumbnailSaver(FileOutputStream stream, Bitmap thumbnail) throws IOException {
-        // NOTE: quality is ignored with PNG format.
-        if (!thumbnail.compress(Bitmap.CompressFormat.PNG, 100, stream)) {
-            throw new IOException("Failed to compress thumbnail");
+    private static StoredPuzzle fromRecord(String name, ByteBuffer record, Optional<ByteBuffer> state, File journalFile) throws IOException {
+        SerializedPuzzle layout = PuzzleSerializer.INSTANCE.view(sliceSection(record));
+        byte[] solutionBytes = readSection(record);
+        int flags = VarInts.readInt(record);
+
+        Puzzle puzzle = layout.toPuzzle();
+        List<Bridge> edges = layout.getCandidateEdges();
+        long generation = 0;
+
+        if(state.isPresent()) {
+            generation = VarInts.read(state.get());
+            puzzle = readState(state.get(), puzzle, edges);
+        }
+
+        StoredPuzzle storedPuzzle = new StoredPuzzle(name, puzzle, null, false);
+        storedPuzzle.edges = edges;
+
+        if(solutionBytes.length > 0 && (flags & FLAG_SOLUTION_VECTOR) != 0) {
+            storedPuzzle.solutionVector = readSolutionVector(ByteBuffer.wrap(solutionBytes), puzzle, edges);
+        } else if(solutionBytes.length > 0) {
+            storedPuzzle.solution = deserialize(solutionBytes);
         }
+
+        storedPuzzle.journal = MoveJournal.open(journalFile, generation, puzzle, storedPuzzle.history);
+
+        return storedPuzzle;
+    }
+
+    /**
+     * Reads the bridges of a state record, of which the generation was already read, and adds them to
+     * the layout of the puzzle.
+     * @return the board with the bridges of the state
+     */
+    private static Puzzle readState(ByteBuffer state, Puzzle layout, List<Bridge> edges) throws IOException {
+        int flags = VarInts.readInt(state);
+
+        if(!state.hasRemaining()) {
+            return layout;
+        } else if((flags & FLAG_STATE_VECTOR) == 0) {
+            byte[] bytes = new byte[state.remaining()];
+            state.get(bytes);
+
+            return deserialize(bytes);
+        }
+
+        int edgeCount = VarInts.readInt(state);
+
+        if(edgeCount != edges.size()) {
+            throw new IOException(String.format("State has %d edges, but the puzzle has %d", edgeCount, edges.size()));
+        }
+
+        byte[] packed = new byte[state.remaining()];
+        state.get(packed);
+
+        try {
+            return SolutionVector.fromBytes(edgeCount, packed).toPuzzle(layout, edges);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid state: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Reads a solution vector, and validates it against the islands of the puzzle.
+     */
+    private static SolutionVector readSolutionVector(ByteBuffer section, Puzzle puzzle, List<Bridge> edges) throws IOException {
+        int edgeCount = VarInts.readInt(section);
+
+        if(edgeCount != edges.size()) {
+            throw new IOException(String.format("Solution has %d edges, but the puzzle has %d", edgeCount, edges.size()));
+        }
+
+        byte[] packed = new byte[section.remaining()];
+        section.get(packed);
+
+        SolutionVector vector;
+
+        try {
+            vector = SolutionVector.fromBytes(edgeCount, packed);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("Invalid solution: %s", e.getMessage()));
+        }
+
+        if(!vector.hasRequiredBridgeCounts(puzzle.getIslands(), edges)) {
+            throw new IOException("Solution does not satisfy the required bridge counts");
+        }
+
+        return vector;
+    }
+
+    private static void writeSection(DataOutputStream stream, byte[] section) throws IOException {
+        VarInts.write(stream, section.length);
+        stream.write(section);
+    }
+
+    /**
+     * Checks whether a state record holds no bridges, without decoding it.
+     */
+    private static boolean isEmptyState(ByteBuffer state) {
+        try {
+            VarInts.read(state);
+            VarInts.read(state);
+
+            return !state.hasRemaining();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a section of a record as a slice of the record, without copying it.
+     */
+    private static ByteBuffer sliceSection(ByteBuffer record) throws IOException {
+        int length = VarInts.readInt(record);
+
+        if(length < 0 || length > record.remaining()) {
+            throw new IOException(String.format("Invalid section length %d", length));
+        }
+
+        ByteBuffer section = record.slice();
+        section.limit(length);
+        record.position(record.position() + length);
+
+        return section;
+    }
+
+    private static byte[] readSection(ByteBuffer record) throws IOException {
+        int length = VarInts.readInt(record);
+
+        if(length < 0 || length > record.remaining()) {
+            throw new IOException(String.format("Invalid section length %d", length));
+        }
+
+        byte[] section = new byte[length];
+        record.get(section);
+
+        return section;
+    }
+
+    private static byte[] serialize(Puzzle puzzle) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PuzzleSerializer.INSTANCE.serialize(new DataOutputStream(bytes), puzzle);
+
+        return bytes.toByteArray();
+    }
+
+    private static Puzzle deserialize(byte[] bytes) throws IOException {
+        return PuzzleSerializer.INSTANCE.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static Puzzle puzzleLoader(InputStream stream) throws IOException {
+        return PuzzleSerializer.INSTANCE.deserialize(new DataInputStream(stream));
     }
 }
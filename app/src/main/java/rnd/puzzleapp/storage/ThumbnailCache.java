@@ -0,0 +1,540 @@
+package rnd.puzzleapp.storage;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import rnd.puzzleapp.graphics.BitmapPool;
+import rnd.puzzleapp.graphics.ThumbnailRenderer;
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.serialization.SerializedPuzzle;
+import rnd.puzzleapp.utils.SizedLruCache;
+
+/**
+ * A two-tier cache of puzzle thumbnails. Decoded thumbnails are kept in an in-memory LRU tier bounded
+ * by bytes, backed by a {@link RecordStore} that holds one thumbnail per puzzle as raw RGB_565 pixels,
+ * which are compressed with the fastest deflate level instead of PNG. Thumbnails are keyed by the name
+ * of the puzzle and a hash of its state, so a thumbnail is outdated as soon as the puzzle changes,
+ * without any explicit invalidation. Besides the thumbnail of the latest state, the disk tier keeps the
+ * thumbnail of the blank state of every puzzle, so that a puzzle that is reset shows its thumbnail
+ * without rendering it again. Thumbnails are read and rendered on a single background thread
+ * with a low priority, so neither saving a puzzle nor the main thread ever waits on rendering or
+ * compression.
+ * <p>
+ * The bitmaps of the memory tier come from a pool, so that thumbnails evicted from memory are reused
+ * for the next thumbnails that are decoded, instead of allocating a bitmap for every thumbnail shown.
+ * A thumbnail that is shown must be pinned, which keeps its bitmap from being reused while it is
+ * pinned, even if it is evicted. Thumbnails that are only written to the disk tier are rendered into a
+ * separate small pool, which bounds the memory of rendering them concurrently.
+ */
+public class ThumbnailCache {
+    private static final int MAGIC = 0x54484D35; // "THM5"
+    private static final Bitmap.Config CONFIG = Bitmap.Config.RGB_565;
+    private static final int BYTES_PER_PIXEL = 2;
+    private static final int SIZE = ThumbnailRenderer.THUMBNAIL_SIZE;
+    private static final long THUMBNAIL_BYTES = (long)SIZE * SIZE * BYTES_PER_PIXEL;
+    private static final char KEY_SEPARATOR = '#';
+    private static final String BLANK_MARKER = "blank";
+    private static final int MAX_RENDERING_THUMBNAILS = 4;
+    private static final int MAX_IDLE_THUMBNAILS = 8;
+
+    private final RecordStore store;
+    private final SizedLruCache<String, Bitmap> memory;
+    private final BitmapPool memoryPool;
+    private final BitmapPool renderPool;
+    private final Map<Bitmap, Integer> pins;
+    private final Set<Bitmap> evictedPins;
+    private final ExecutorService renderer;
+    private final Map<String, CompletableFuture<Optional<Bitmap>>> rendering;
+
+    /**
+     * Creates a new thumbnail cache.
+     * @param store the store of the disk tier
+     * @param capacity the maximum amount of bytes of the thumbnails kept in memory, not counting evicted
+     *                 thumbnails that are still pinned
+     */
+    public ThumbnailCache(RecordStore store, long capacity) {
+        this.store = store;
+        this.memory = new SizedLruCache<>(capacity, Bitmap::getByteCount, this::onEvicted);
+        this.memoryPool = new BitmapPool(capacity + THUMBNAIL_BYTES * MAX_IDLE_THUMBNAILS, CONFIG);
+        this.renderPool = new BitmapPool(THUMBNAIL_BYTES * MAX_RENDERING_THUMBNAILS, CONFIG);
+        this.pins = new IdentityHashMap<>();
+        this.evictedPins = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.renderer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "thumbnail-renderer");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.rendering = new HashMap<>();
+    }
+
+    /**
+     * Returns the thumbnail key of a puzzle in the given state.
+     * @param name the name of the puzzle
+     * @param puzzle the puzzle
+     * @return the thumbnail key
+     */
+    public static String getKey(String name, Puzzle puzzle) {
+        if(puzzle.getBridges().isEmpty()) {
+            return getBlankKey(name, puzzle);
+        }
+
+        // 64-bit FNV-1a over the islands and bridges, which are kept sorted by the puzzle.
+        long hash = hashIslands(puzzle);
+
+        for(Bridge bridge : puzzle.getBridges()) {
+            hash = mix(mix(mix(mix(hash, bridge.getX1()), bridge.getY1()), bridge.getX2()), bridge.getY2());
+        }
+
+        return name + KEY_SEPARATOR + Long.toHexString(hash);
+    }
+
+    /**
+     * Returns the thumbnail key of a puzzle without any bridges, which is the key of the puzzle once it
+     * is reset.
+     * @param name the name of the puzzle
+     * @param puzzle the puzzle, of which only the islands are considered
+     * @return the thumbnail key
+     */
+    public static String getBlankKey(String name, Puzzle puzzle) {
+        return name + KEY_SEPARATOR + BLANK_MARKER + Long.toHexString(hashIslands(puzzle));
+    }
+
+    /**
+     * Returns the thumbnail key of a serialized puzzle without any bridges, which is the same key as that
+     * of the materialized puzzle.
+     * @param name the name of the puzzle
+     * @param puzzle the view of the puzzle, of which only the islands are considered
+     * @return the thumbnail key
+     */
+    public static String getBlankKey(String name, SerializedPuzzle puzzle) {
+        return name + KEY_SEPARATOR + BLANK_MARKER + Long.toHexString(hashIslands(puzzle));
+    }
+
+    /**
+     * Pins the thumbnail with the given key if it is in memory, without blocking.
+     * @param key the thumbnail key
+     * @return the pinned thumbnail, which must be unpinned once it is no longer shown, or an empty
+     * optional if it is not in memory
+     */
+    public Optional<Bitmap> pin(String key) {
+        synchronized(memory) {
+            Optional<Bitmap> thumbnail = memory.get(key);
+            thumbnail.ifPresent(t -> pins.merge(t, 1, Integer::sum));
+
+            return thumbnail;
+        }
+    }
+
+    /**
+     * Unpins a thumbnail, after which its bitmap is reused once it is both evicted and no longer pinned.
+     * @param thumbnail the pinned thumbnail, which must not be used afterwards
+     */
+    public void unpin(Bitmap thumbnail) {
+        synchronized(memory) {
+            Integer count = pins.get(thumbnail);
+
+            if(count == null) {
+                return;
+            } else if(count > 1) {
+                pins.put(thumbnail, count - 1);
+            } else {
+                pins.remove(thumbnail);
+
+                if(evictedPins.remove(thumbnail)) {
+                    memoryPool.release(thumbnail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the thumbnail with the given key into memory from the disk tier, or renders it if the disk
+     * tier does not hold it either, and pins it. This blocks until the thumbnail is loaded, so it must not
+     * be called on the main thread.
+     * @param key the thumbnail key
+     * @param loader loads a renderer of the puzzle of the thumbnail if it has to be rendered
+     * @return the pinned thumbnail, which must be unpinned once it is no longer shown, or an empty optional
+     * if it could not be loaded
+     */
+    public Optional<Bitmap> load(String key, Supplier<Optional<ThumbnailRenderer>> loader) {
+        Optional<Bitmap> thumbnail = pin(key);
+
+        if(thumbnail.isPresent()) {
+            return thumbnail;
+        }
+
+        try {
+            if(render(key, loader).get().isPresent()) {
+                // NOTE: The thumbnail might have been evicted already, if the memory tier is tiny.
+                return pin(key);
+            }
+        } catch (ExecutionException e) {
+            Log.e("PUZZLE_APP", String.format("Could not render thumbnail %s: %s", key, e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Schedules loading the thumbnail with the given key into memory, unless it is in memory already.
+     * @param key the thumbnail key
+     * @param loader loads a renderer of the puzzle of the thumbnail if it has to be rendered
+     */
+    public void preload(String key, Supplier<Optional<ThumbnailRenderer>> loader) {
+        if(!memory.get(key).isPresent()) {
+            render(key, loader);
+        }
+    }
+
+    /**
+     * Schedules rendering the thumbnail of a puzzle that was just saved, unless it is already cached.
+     * @param name the name of the puzzle
+     * @param puzzle the puzzle, which must not be modified afterwards
+     */
+    public void prefetch(String name, Puzzle puzzle) {
+        String key = getKey(name, puzzle);
+
+        if(!memory.get(key).isPresent() && !isStored(key)) {
+            render(key, () -> Optional.of(new ThumbnailRenderer(puzzle)));
+        }
+    }
+
+    /**
+     * Renders the thumbnail of a puzzle on the calling thread, and writes it to the disk tier only, which
+     * suits puzzles of which the thumbnail is not about to be shown. As the thumbnail is rendered into a
+     * pooled bitmap, any amount of threads can do so concurrently, while only a few thumbnails are ever
+     * held in memory at once. Threads wait for a pooled bitmap to become available if needed.
+     * @param name the name of the puzzle
+     * @param puzzle the puzzle
+     * @return {@code true} if the thumbnail was written, {@code false} if the thread was interrupted
+     */
+    public boolean store(String name, Puzzle puzzle) {
+        Bitmap bitmap;
+
+        try {
+            bitmap = renderPool.acquire(SIZE, SIZE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        try {
+            write(getKey(name, puzzle), new ThumbnailRenderer(puzzle).draw(bitmap));
+        } finally {
+            renderPool.release(bitmap);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the thumbnails of a puzzle from both tiers.
+     * @param name the name of the puzzle
+     * @throws IOException if the thumbnail could not be removed from the disk tier
+     */
+    public void remove(String name) throws IOException {
+        removeAll(Collections.singleton(name));
+    }
+
+    /**
+     * Removes the thumbnails of the given puzzles from both tiers at once.
+     * @param names the names of the puzzles
+     * @throws IOException if the thumbnails could not be removed from the disk tier
+     */
+    public void removeAll(Collection<String> names) throws IOException {
+        Set<String> removed = new HashSet<>(names);
+
+        List<String> recordNames = new ArrayList<>();
+
+        removed.forEach(name -> {
+            recordNames.add(name);
+            recordNames.add(getBlankRecordName(name));
+        });
+
+        memory.removeIf(key -> removed.contains(getName(key)));
+        store.removeAll(recordNames);
+    }
+
+    /**
+     * Removes all thumbnails from memory and stops rendering. Thumbnails that are still being rendered
+     * are not written to the disk tier, and are returned as missing.
+     */
+    public synchronized void close() {
+        renderer.shutdownNow();
+        rendering.values().forEach(f -> f.complete(Optional.empty()));
+        rendering.clear();
+        memory.clear();
+    }
+
+    /**
+     * Reads a thumbnail from the disk tier, or renders and writes it if the disk tier does not hold it,
+     * on the renderer thread. The thumbnail is then added to the memory tier, unless this cache was closed
+     * in the meantime. A thumbnail that is already being loaded is only loaded once.
+     */
+    private synchronized CompletableFuture<Optional<Bitmap>> render(String key, Supplier<Optional<ThumbnailRenderer>> loader) {
+        CompletableFuture<Optional<Bitmap>> future = rendering.get(key);
+
+        if(future != null) {
+            return future;
+        }
+
+        CompletableFuture<Optional<Bitmap>> rendered = new CompletableFuture<>();
+        rendering.put(key, rendered);
+
+        try {
+            renderer.execute(() -> {
+                try {
+                    Optional<Bitmap> thumbnail = read(key);
+
+                    if(!thumbnail.isPresent()) {
+                        thumbnail = loader.get().map(this::draw);
+                        thumbnail.ifPresent(t -> write(key, t));
+                    }
+
+                    synchronized(this) {
+                        if(rendered.isDone()) {
+                            thumbnail.ifPresent(memoryPool::release);
+                        } else {
+                            thumbnail.ifPresent(t -> memory.put(key, t));
+                        }
+                    }
+
+                    rendered.complete(thumbnail);
+                } catch (RuntimeException e) {
+                    rendered.completeExceptionally(e);
+                } finally {
+                    synchronized(this) {
+                        rendering.remove(key, rendered);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // This cache was closed.
+            rendering.remove(key);
+            rendered.complete(Optional.empty());
+        }
+
+        return rendered;
+    }
+
+    /**
+     * Renders a thumbnail into a bitmap of the memory pool, which is returned to the pool if rendering fails.
+     */
+    private Bitmap draw(ThumbnailRenderer thumbnailRenderer) {
+        Bitmap bitmap = memoryPool.obtain(SIZE, SIZE);
+
+        try {
+            return thumbnailRenderer.draw(bitmap);
+        } catch (RuntimeException e) {
+            memoryPool.release(bitmap);
+            throw e;
+        }
+    }
+
+    /**
+     * Invoked with every thumbnail that leaves the memory tier, while holding its lock.
+     */
+    private void onEvicted(Bitmap thumbnail) {
+        if(pins.containsKey(thumbnail)) {
+            evictedPins.add(thumbnail);
+        } else {
+            memoryPool.release(thumbnail);
+        }
+    }
+
+    private Optional<Bitmap> read(String key) {
+        Optional<ByteBuffer> record = store.get(getRecordName(key));
+
+        if(!record.isPresent()) {
+            return Optional.empty();
+        }
+
+        try {
+            return decode(record.get(), key);
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            Log.e("PUZZLE_APP", String.format("Could not read thumbnail %s: %s", key, e.getMessage()));
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Checks whether the disk tier holds the thumbnail with the given key, without decoding it.
+     */
+    private boolean isStored(String key) {
+        return store.get(getRecordName(key)).map(record -> {
+            try {
+                return hasKey(record, key);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }).orElse(false);
+    }
+
+    private void write(String key, Bitmap thumbnail) {
+        try {
+            store.put(getRecordName(key), encode(key, thumbnail));
+        } catch (IOException | RuntimeException e) {
+            // NOTE: The store is closed once all puzzles are deleted, after which late renders are dropped.
+            Log.e("PUZZLE_APP", String.format("Could not write thumbnail %s: %s", key, e.getMessage()));
+        }
+    }
+
+    /**
+     * Encodes a thumbnail as its key, its dimensions and its deflated raw pixels.
+     */
+    private static byte[] encode(String key, Bitmap thumbnail) throws IOException {
+        ByteBuffer pixels = ByteBuffer.allocate(thumbnail.getByteCount());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] chunk = new byte[8192];
+
+        thumbnail.copyPixelsToBuffer(pixels);
+
+        stream.writeInt(MAGIC);
+        stream.writeUTF(key);
+        stream.writeShort(thumbnail.getWidth());
+        stream.writeShort(thumbnail.getHeight());
+
+        try {
+            deflater.setInput(pixels.array());
+            deflater.finish();
+
+            while(!deflater.finished()) {
+                stream.write(chunk, 0, deflater.deflate(chunk));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a thumbnail into a pooled bitmap, if it has the given key. A thumbnail with another key
+     * belongs to an older state of the puzzle, and is overwritten once the current state is rendered.
+     */
+    private Optional<Bitmap> decode(ByteBuffer record, String key) throws IOException, DataFormatException {
+        if(!hasKey(record, key)) {
+            return Optional.empty();
+        }
+
+        int width = record.getShort() & 0xFFFF;
+        int height = record.getShort() & 0xFFFF;
+        byte[] compressed = new byte[record.remaining()];
+        byte[] pixels = new byte[width * height * BYTES_PER_PIXEL];
+        Inflater inflater = new Inflater();
+
+        record.get(compressed);
+
+        try {
+            inflater.setInput(compressed);
+
+            if(inflater.inflate(pixels) != pixels.length || !inflater.finished()) {
+                throw new IOException("Truncated thumbnail");
+            }
+        } finally {
+            inflater.end();
+        }
+
+        Bitmap thumbnail = memoryPool.obtain(width, height);
+        thumbnail.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+
+        return Optional.of(thumbnail);
+    }
+
+    /**
+     * Reads the header of a thumbnail, and checks whether it has the given key.
+     */
+    private static boolean hasKey(ByteBuffer record, String key) {
+        if(record.remaining() < 4 || record.getInt() != MAGIC) {
+            // Thumbnails of earlier versions of the app were stored as PNG or as ARGB_8888 pixels.
+            return false;
+        }
+
+        byte[] storedKey = new byte[record.getShort() & 0xFFFF];
+        record.get(storedKey);
+
+        return key.equals(new String(storedKey, StandardCharsets.UTF_8));
+    }
+
+    private static String getName(String key) {
+        int separator = key.lastIndexOf(KEY_SEPARATOR);
+
+        return separator >= 0 ? key.substring(0, separator) : key;
+    }
+
+    /**
+     * Returns the name of the record of the disk tier that holds the thumbnail with the given key. The
+     * thumbnail of the blank state of a puzzle has a record of its own, so that it is not overwritten.
+     */
+    private static String getRecordName(String key) {
+        int separator = key.lastIndexOf(KEY_SEPARATOR);
+
+        return key.startsWith(BLANK_MARKER, separator + 1) ? getBlankRecordName(getName(key)) : getName(key);
+    }
+
+    private static String getBlankRecordName(String name) {
+        return name + KEY_SEPARATOR + BLANK_MARKER;
+    }
+
+    private static long hashIslands(Puzzle puzzle) {
+        long hash = 0xCBF29CE484222325L;
+
+        for(Island island : puzzle.getIslands()) {
+            hash = mix(mix(mix(hash, island.getX()), island.getY()), island.getRequiredBridges());
+        }
+
+        return hash;
+    }
+
+    private static long hashIslands(SerializedPuzzle puzzle) {
+        long hash = 0xCBF29CE484222325L;
+
+        // NOTE: The islands of a view are in the same sorted order as those of the materialized puzzle.
+        for(int i = 0; i < puzzle.getIslandCount(); ++i) {
+            hash = mix(mix(mix(hash, puzzle.getX(i)), puzzle.getY(i)), puzzle.getRequiredBridges(i));
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+}
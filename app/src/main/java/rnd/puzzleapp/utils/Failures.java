@@ -0,0 +1,32 @@
+package rnd.puzzleapp.utils;
+
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Utility methods that aid in isolating the failure of a single work item, such as one puzzle of a
+ * batch, from the work items that follow it.
+ */
+public class Failures {
+    /**
+     * Performs the given {@code computation}, and recovers from its failure using the given {@code recovery}.
+     * Besides exceptions, a {@link StackOverflowError} counts as a failure of the computation, as the
+     * recursive solvers can run out of stack on large puzzles without leaving the thread in a broken
+     * state. All other errors are propagated.
+     * @param computation the computation to perform
+     * @param recovery the function that accepts the cause of the failure and returns the result instead
+     * @param <T> the result type
+     * @return the result of the {@code computation}, or the result of the {@code recovery} if it failed
+     */
+    public static <T> T recover(Callable<T> computation, Function<Throwable, T> recovery) {
+        try {
+            return computation.call();
+        } catch (Exception | StackOverflowError e) {
+            if(e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            return recovery.apply(e);
+        }
+    }
+}
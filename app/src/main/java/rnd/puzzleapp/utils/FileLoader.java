@@ -1,10 +1,10 @@
 package rnd.puzzleapp.utils;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
- * Represents an operation that accepts a {@link FileInputStream} and returns an instance loaded from that stream.
+ * Represents an operation that accepts an {@link InputStream} and returns an instance loaded from that stream.
  * @param <T> the instance type
  */
 @FunctionalInterface
@@ -15,5 +15,5 @@ public interface FileLoader<T> {
      * @return the loaded instance, or {@code null} if the loading failed.
      * @throws IOException if the loading encountered an exception
      */
-    T load(FileInputStream stream) throws IOException;
+    T load(InputStream stream) throws IOException;
 }
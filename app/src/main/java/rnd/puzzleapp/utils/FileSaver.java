@@ -1,10 +1,10 @@
 package rnd.puzzleapp.utils;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
- * Represents an operation that accepts a {@link FileOutputStream} and an {@code instance} to be saved to that stream.
+ * Represents an operation that accepts an {@link OutputStream} and an {@code instance} to be saved to that stream.
  * @param <T> the instance type
  */
 @FunctionalInterface
@@ -15,5 +15,5 @@ public interface FileSaver<T> {
      * @param instance the instance to save
      * @throws IOException if the saving encountered an exception
      */
-    void save(FileOutputStream  stream, T instance) throws IOException;
+    void save(OutputStream stream, T instance) throws IOException;
 }
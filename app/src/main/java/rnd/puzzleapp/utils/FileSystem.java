@@ -2,16 +2,30 @@ package rnd.puzzleapp.utils;
 
 import android.util.Log;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Optional;
 
 /**
- * Utility methods that aid in filesystem operations.
+ * Utility methods that aid in filesystem operations. Files are saved by serializing them into a reusable
+ * in-memory buffer first, which is then written to a temporary file with a single write, synced to
+ * the disk and renamed over the original file. A crash while saving thus leaves either the old or the
+ * new file, but never a partially written one. Files are loaded by reading them in full with a single
+ * read, after which they are deserialized from memory.
  */
 public class FileSystem {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+    private static final ThreadLocal<ReusableBuffer> BUFFERS = ThreadLocal.withInitial(ReusableBuffer::new);
+
     /**
      * Attempts to load the {@code file} using the given {@code loader}.
      * @param file the file to load from
@@ -20,8 +34,8 @@ public class FileSystem {
      * @return the loaded instance returned by the {@code loader}, or an empty optional if the loading failed.
      */
     public static <T> Optional<T> load(File file, FileLoader<T> loader) {
-        try (FileInputStream stream = new FileInputStream(file)) {
-            return Optional.ofNullable(loader.load(stream));
+        try {
+            return Optional.ofNullable(read(file, loader));
         } catch (IOException e) {
             Log.e("PUZZLE_APP", String.format("Could not load file %s: %s", file.getName(), e.getMessage()));
         }
@@ -38,15 +52,7 @@ public class FileSystem {
      * {@code file} does not exists or the loading failed.
      */
     public static <T> Optional<T> loadIfExists(File file, FileLoader<T> loader) {
-        if(file.exists()) {
-            try (FileInputStream stream = new FileInputStream(file)) {
-                return Optional.ofNullable(loader.load(stream));
-            } catch (IOException e) {
-                Log.e("PUZZLE_APP", String.format("Could not load file %s: %s", file.getName(), e.getMessage()));
-            }
-        }
-
-        return Optional.empty();
+        return file.exists() ? load(file, loader) : Optional.empty();
     }
 
     /**
@@ -58,8 +64,8 @@ public class FileSystem {
      * @return {@code true} if the {@code instance} was saved successfully, or {@code false} otherwise.
      */
     public static <T> boolean save(File file, FileSaver<T> saver, T instance) {
-        try (FileOutputStream stream = new FileOutputStream(file)) {
-            saver.save(stream, instance);
+        try {
+            write(file, saver, instance);
 
             return true;
         } catch (IOException e) {
@@ -68,4 +74,104 @@ public class FileSystem {
 
         return false;
     }
+
+    /**
+     * Reads the {@code file} in full and loads it from memory using the given {@code loader}.
+     * @param file the file to load from
+     * @param loader the loader to use for loading from the file
+     * @param <T> the type returned by the {@code loader}
+     * @return the loaded instance returned by the {@code loader}
+     * @throws IOException if the file could not be read, or the {@code loader} failed
+     */
+    public static <T> T read(File file, FileLoader<T> loader) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            long size = channel.size();
+
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("File %s is too large", file.getName()));
+            }
+
+            ByteBuffer contents = ByteBuffer.allocate((int)size);
+
+            while(contents.hasRemaining()) {
+                if(channel.read(contents) < 0) {
+                    throw new EOFException(String.format("File %s was truncated while reading", file.getName()));
+                }
+            }
+
+            return loader.load(new ByteArrayInputStream(contents.array()));
+        }
+    }
+
+    /**
+     * Saves the given {@code instance} to the {@code file} using the given {@code saver}, replacing the
+     * file atomically once the new contents are synced to the disk.
+     * @param file the file to save to
+     * @param saver the saver to use for saving to the file
+     * @param instance the instance to save
+     * @param <T> the type of the instance to save
+     * @throws IOException if the {@code saver} failed, or the file could not be written
+     */
+    public static <T> void write(File file, FileSaver<T> saver, T instance) throws IOException {
+        ReusableBuffer buffer = BUFFERS.get();
+
+        try {
+            saver.save(buffer, instance);
+            write(file, buffer.toByteBuffer());
+        } finally {
+            // Do not keep a single large file alive in the buffer of every thread that ever saved one.
+            if(buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                BUFFERS.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+
+    /**
+     * Writes the given contents to a temporary file with a single write, syncs it to the disk and then
+     * renames it over the {@code file}.
+     * @param file the file to write
+     * @param contents the contents of the file
+     * @throws IOException if the file could not be written
+     */
+    public static void write(File file, ByteBuffer contents) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            FileChannel channel = stream.getChannel();
+
+            while(contents.hasRemaining()) {
+                channel.write(contents);
+            }
+
+            channel.force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        if(!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException(String.format("Could not replace file %s", file.getName()));
+        }
+    }
+
+    /**
+     * A byte array output stream of which the buffer can be wrapped without copying it.
+     */
+    private static class ReusableBuffer extends ByteArrayOutputStream {
+        ReusableBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package rnd.puzzleapp.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A thread safe in-memory cache that evicts the least recently used values once the total size of its
+ * values exceeds its capacity. Unlike a cache bounded by the amount of values, this keeps the memory
+ * use bounded when values differ greatly in size. Values that leave the cache, whether they are evicted,
+ * replaced or removed, are passed to a listener, so that their resources can be reused.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class SizedLruCache<K, V> {
+    private final long capacity;
+    private final ToIntFunction<V> sizer;
+    private final Consumer<V> onRemoved;
+    private final Map<K, V> values;
+    private long size;
+
+    /**
+     * Creates a new empty cache.
+     * @param capacity the maximum total size of the values
+     * @param sizer returns the size of a value, which must not change while it is cached
+     */
+    public SizedLruCache(long capacity, ToIntFunction<V> sizer) {
+        this(capacity, sizer, value -> {});
+    }
+
+    /**
+     * Creates a new empty cache.
+     * @param capacity the maximum total size of the values
+     * @param sizer returns the size of a value, which must not change while it is cached
+     * @param onRemoved invoked with every value that leaves the cache, while holding the lock of the cache
+     */
+    public SizedLruCache(long capacity, ToIntFunction<V> sizer, Consumer<V> onRemoved) {
+        this.capacity = capacity;
+        this.sizer = sizer;
+        this.onRemoved = onRemoved;
+        this.values = new LinkedHashMap<>(16, 0.75f, true);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the value of the given key, and marks it as most recently used.
+     * @param key the key
+     * @return the value, or an empty optional if the key is not cached
+     */
+    public synchronized Optional<V> get(K key) {
+        return Optional.ofNullable(values.get(key));
+    }
+
+    /**
+     * Adds or replaces the value of the given key, after which the least recently used values are
+     * evicted until the total size fits the capacity. A value larger than the capacity is not cached,
+     * and passed to the listener right away.
+     * @param key the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        if(values.get(key) == value) {
+            return;
+        }
+
+        remove(key);
+
+        int valueSize = sizer.applyAsInt(value);
+
+        if(valueSize > capacity) {
+            onRemoved.accept(value);
+            return;
+        }
+
+        Iterator<V> eldest = values.values().iterator();
+
+        while(size + valueSize > capacity) {
+            V evicted = eldest.next();
+
+            size -= sizer.applyAsInt(evicted);
+            eldest.remove();
+            onRemoved.accept(evicted);
+        }
+
+        values.put(key, value);
+        size += valueSize;
+    }
+
+    /**
+     * Removes the value of the given key, if it is cached.
+     * @param key the key
+     */
+    public synchronized void remove(K key) {
+        V value = values.remove(key);
+
+        if(value != null) {
+            size -= sizer.applyAsInt(value);
+            onRemoved.accept(value);
+        }
+    }
+
+    /**
+     * Removes the values of all keys that match the given predicate.
+     * @param predicate the predicate that matches the keys to remove
+     */
+    public synchronized void removeIf(Predicate<K> predicate) {
+        Iterator<Map.Entry<K, V>> iterator = values.entrySet().iterator();
+
+        while(iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+
+            if(predicate.test(entry.getKey())) {
+                size -= sizer.applyAsInt(entry.getValue());
+                iterator.remove();
+                onRemoved.accept(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes all values.
+     */
+    public synchronized void clear() {
+        values.values().forEach(onRemoved);
+        values.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the total size of the cached values.
+     * @return the total size
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+}
@@ -4,11 +4,14 @@ import android.app.ProgressDialog;
 import android.content.Context;
 import android.os.AsyncTask;
 
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
- * Utility methods to create async tasks.
+ * Utility methods to create async tasks. Unless an executor is given, the tasks run one at a time on
+ * the serial executor of {@link AsyncTask}, so long running tasks should be given an executor of their
+ * own, so they do not hold up all other tasks.
  */
 public class Threading {
 
@@ -21,6 +24,16 @@ public class Threading {
         new VoidTaskWrapper(task, onCompletion).execute();
     }
 
+    /**
+     * Executes a new async task on the given executor.
+     * @param executor the executor to perform the task on
+     * @param task the task to perform on a background thread
+     * @param onCompletion the task to perform on the main thread once the background task completes
+     */
+    public static void asyncOn(Executor executor, Action task, Action onCompletion) {
+        new VoidTaskWrapper(task, onCompletion).executeOnExecutor(executor);
+    }
+
     /**
      * Executes a new async task and displays a progress dialog while the task is being executed.
      * @param context the context to show the dialog in
@@ -43,6 +56,18 @@ public class Threading {
         new TaskWrapper<>(task, onCompletion).execute();
     }
 
+    /**
+     * Executes a new async task on the given executor.
+     * @param executor the executor to perform the task on
+     * @param task the task to perform on a background thread
+     * @param onCompletion the task to perform on the main thread once the background task completes,
+     *                     that consumes the result of the {@code task}
+     * @param <T> the type of the {@code task} result
+     */
+    public static <T> void asyncOn(Executor executor, Supplier<T> task, Consumer<T> onCompletion) {
+        new TaskWrapper<>(task, onCompletion).executeOnExecutor(executor);
+    }
+
     /**
      * Executes a new async task and displays a progress dialog while the task is being executed.
      * @param context the context to show the dialog in
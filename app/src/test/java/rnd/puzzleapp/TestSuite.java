@@ -3,16 +3,52 @@ package rnd.puzzleapp;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import rnd.puzzleapp.pipeline.PipelineTest;
 import rnd.puzzleapp.puzzle.BridgeTest;
+import rnd.puzzleapp.puzzle.CandidateEdgesTest;
+import rnd.puzzleapp.puzzle.CanonicalFormTest;
+import rnd.puzzleapp.puzzle.OccupancyGridTest;
+import rnd.puzzleapp.puzzle.RandomPuzzleGeneratorTest;
+import rnd.puzzleapp.puzzle.SolutionVectorTest;
 import rnd.puzzleapp.puzzle.SpanTest;
+import rnd.puzzleapp.serialization.PuzzleSerializerTest;
+import rnd.puzzleapp.solver.DifficultyRaterTest;
+import rnd.puzzleapp.solver.SolutionCounterTest;
+import rnd.puzzleapp.storage.MetadataIndexTest;
+import rnd.puzzleapp.storage.MoveJournalTest;
+import rnd.puzzleapp.storage.PuzzleStoreTest;
+import rnd.puzzleapp.storage.SaveQueueTest;
+import rnd.puzzleapp.storage.ShardedStoreTest;
+import rnd.puzzleapp.storage.SolutionCacheTest;
+import rnd.puzzleapp.storage.StoredPuzzleTest;
 import rnd.puzzleapp.utils.CollectionsTest;
+import rnd.puzzleapp.utils.FileSystemTest;
+import rnd.puzzleapp.utils.SizedLruCacheTest;
 
 @RunWith(Suite.class)
 
 @Suite.SuiteClasses({
         SpanTest.class,
         BridgeTest.class,
-        CollectionsTest.class
+        CandidateEdgesTest.class,
+        CanonicalFormTest.class,
+        SolutionVectorTest.class,
+        OccupancyGridTest.class,
+        RandomPuzzleGeneratorTest.class,
+        SolutionCounterTest.class,
+        DifficultyRaterTest.class,
+        PipelineTest.class,
+        PuzzleSerializerTest.class,
+        PuzzleStoreTest.class,
+        ShardedStoreTest.class,
+        MetadataIndexTest.class,
+        SaveQueueTest.class,
+        SolutionCacheTest.class,
+        MoveJournalTest.class,
+        StoredPuzzleTest.class,
+        CollectionsTest.class,
+        FileSystemTest.class,
+        SizedLruCacheTest.class
 })
 
 public class TestSuite {
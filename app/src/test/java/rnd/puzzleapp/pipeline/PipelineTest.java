@@ -0,0 +1,101 @@
+package rnd.puzzleapp.pipeline;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class PipelineTest {
+    private static List<Integer> range(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void stages() throws InterruptedException {
+        Set<String> outputs = ConcurrentHashMap.newKeySet();
+        List<StageMetrics> metrics = Pipeline.<Integer>create(2)
+                .map("square", 3, i -> Optional.of(i * i))
+                .filter("even", 2, i -> i % 2 == 0)
+                .map("format", 1, i -> Optional.of(Integer.toString(i)))
+                .run(range(100), outputs::add);
+
+        assertEquals(50, outputs.size());
+        assertTrue(outputs.contains("9604"));
+        assertEquals(3, metrics.size());
+        assertEquals(100, metrics.get(0).getProcessed());
+        assertEquals(50, metrics.get(1).getDropped());
+        assertEquals(50, metrics.get(2).getProcessed());
+    }
+
+    @Test
+    public void failures() throws InterruptedException {
+        AtomicInteger outputs = new AtomicInteger();
+        List<Throwable> causes = new CopyOnWriteArrayList<>();
+        List<StageMetrics> metrics = Pipeline.<Integer>create(1)
+                .map("divide", 2, i -> Optional.of(100 / i))
+                .onFailure((stage, cause) -> causes.add(cause))
+                .run(range(10), i -> outputs.incrementAndGet());
+
+        assertEquals(9, outputs.get());
+        assertEquals(1, metrics.get(0).getFailed());
+        assertEquals(1, causes.size());
+        assertTrue(causes.get(0) instanceof ArithmeticException);
+    }
+
+    @Test(timeout = 10000)
+    public void stoppedThread() throws InterruptedException {
+        AtomicInteger outputs = new AtomicInteger();
+        List<String> stages = new CopyOnWriteArrayList<>();
+        List<StageMetrics> metrics = Pipeline.<Integer>create(1)
+                .map("allocate", 1, i -> {
+                    if(i == 3) {
+                        throw new OutOfMemoryError();
+                    }
+
+                    return Optional.of(i);
+                })
+                .onFailure((stage, cause) -> stages.add(stage))
+                .run(range(10), i -> outputs.incrementAndGet());
+
+        // The only thread of the stage stopped at the fourth item, and dropped the items after it.
+        assertEquals(3, outputs.get());
+        assertEquals(6, metrics.get(0).getFailed());
+        assertEquals(Collections.singletonList("allocate"), stages);
+    }
+
+    @Test
+    public void backpressure() throws InterruptedException {
+        int capacity = 2;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        Pipeline.<Integer>create(capacity)
+                .map("enter", 1, i -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return Optional.of(i);
+                })
+                .map("slow", 1, i -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    inFlight.decrementAndGet();
+                    return Optional.of(i);
+                })
+                .run(range(50), i -> { });
+
+        // At most one item in each thread of both stages, plus the items in the queue between them.
+        assertTrue(maxInFlight.get() <= capacity + 2);
+    }
+}
@@ -0,0 +1,47 @@
+package rnd.puzzleapp.puzzle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CandidateEdgesTest {
+    @Test
+    public void crossings() {
+        for(int seed = 0; seed < 8; ++seed) {
+            Puzzle puzzle = new RandomPuzzleGenerator(seed, 64, 64, true).generate(false);
+            List<Bridge> edges = CandidateEdges.of(puzzle.getIslands());
+            int[][] crossings = CandidateEdges.crossings(edges);
+
+            for(int i = 0; i < edges.size(); ++i) {
+                List<Integer> expected = new ArrayList<>();
+
+                for(int j = 0; j < edges.size(); ++j) {
+                    if(edges.get(j).getOrientation() != edges.get(i).getOrientation() && edges.get(j).intersects(edges.get(i))) {
+                        expected.add(j);
+                    }
+                }
+
+                assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), crossings[i]);
+            }
+        }
+    }
+
+    @Test
+    public void cross() {
+        Puzzle puzzle = new Puzzle();
+        puzzle.addIsland(new Island(0, 1, 1));
+        puzzle.addIsland(new Island(2, 1, 1));
+        puzzle.addIsland(new Island(1, 0, 1));
+        puzzle.addIsland(new Island(1, 2, 1));
+
+        List<Bridge> edges = CandidateEdges.of(puzzle.getIslands());
+        int[][] crossings = CandidateEdges.crossings(edges);
+
+        assertEquals(2, edges.size());
+        assertArrayEquals(new int[] { 1 }, crossings[0]);
+        assertArrayEquals(new int[] { 0 }, crossings[1]);
+    }
+}
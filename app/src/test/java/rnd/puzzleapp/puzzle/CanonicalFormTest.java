@@ -0,0 +1,79 @@
+package rnd.puzzleapp.puzzle;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CanonicalFormTest {
+    private static Puzzle solution;
+
+    @BeforeClass
+    public static void setup() {
+        solution = new RandomPuzzleGenerator(3, 16, 16).generate(true);
+    }
+
+    private static Puzzle rotate(Puzzle puzzle) {
+        int height = puzzle.getHeight();
+        Puzzle rotated = new Puzzle();
+
+        puzzle.getIslands().forEach(i -> rotated.addIsland(new Island(height - 1 - i.getY(), i.getX(), i.getRequiredBridges())));
+        puzzle.getBridges().forEach(b -> rotated.addBridge(Bridge.create(
+                rotated.getIsland(height - 1 - b.getY1(), b.getX1()).get(),
+                rotated.getIsland(height - 1 - b.getY2(), b.getX2()).get())));
+
+        return rotated;
+    }
+
+    private static Puzzle mirror(Puzzle puzzle) {
+        int width = puzzle.getWidth();
+        Puzzle mirrored = new Puzzle();
+
+        puzzle.getIslands().forEach(i -> mirrored.addIsland(new Island(width - 1 - i.getX(), i.getY(), i.getRequiredBridges())));
+        puzzle.getBridges().forEach(b -> mirrored.addBridge(Bridge.create(
+                mirrored.getIsland(width - 1 - b.getX1(), b.getY1()).get(),
+                mirrored.getIsland(width - 1 - b.getX2(), b.getY2()).get())));
+
+        return mirrored;
+    }
+
+    @Test
+    public void keyInvariantUnderSymmetries() {
+        String key = CanonicalForm.of(solution).getKey();
+        Puzzle puzzle = solution;
+
+        for(int i = 0; i < 4; ++i) {
+            puzzle = rotate(puzzle);
+
+            assertEquals(key, CanonicalForm.of(puzzle).getKey());
+            assertEquals(key, CanonicalForm.of(mirror(puzzle)).getKey());
+        }
+    }
+
+    @Test
+    public void keyDiffersForDifferentLayouts() {
+        Puzzle other = new RandomPuzzleGenerator(4, 16, 16).generate(true);
+
+        assertNotEquals(CanonicalForm.of(solution).getKey(), CanonicalForm.of(other).getKey());
+    }
+
+    @Test
+    public void roundTrip() {
+        Puzzle variant = mirror(rotate(solution));
+        CanonicalForm form = CanonicalForm.of(variant);
+        Puzzle canonical = form.toCanonical(variant);
+
+        assertTrue(form.matches(canonical));
+        assertEquals(PuzzleStatus.Solved, canonical.getStatus());
+        assertEquals(variant, form.fromCanonical(canonical));
+    }
+
+    @Test
+    public void solutionTransfersBetweenVariants() {
+        Puzzle variant = rotate(mirror(solution));
+        Puzzle canonicalSolution = CanonicalForm.of(solution).toCanonical(solution);
+        Puzzle transferred = CanonicalForm.of(variant).fromCanonical(canonicalSolution);
+
+        assertEquals(variant, transferred);
+    }
+}
@@ -0,0 +1,103 @@
+package rnd.puzzleapp.puzzle;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class OccupancyGridTest {
+    private static Puzzle solution;
+
+    @BeforeClass
+    public static void setup() {
+        solution = new RandomPuzzleGenerator(5, 24, 24).generate(true);
+    }
+
+    private static List<Island> sortedNeighbors(Puzzle puzzle, Island island) {
+        return puzzle.getNeighbors(island).sorted(Comparator.naturalOrder()).collect(Collectors.toList());
+    }
+
+    private static void assertSameQueries(Puzzle expected, Puzzle actual) {
+        for(int x = -1; x <= expected.getWidth(); ++x) {
+            for(int y = -1; y <= expected.getHeight(); ++y) {
+                assertEquals(expected.getIsland(x, y), actual.getIsland(x, y));
+                assertEquals(expected.getBridge(x, y), actual.getBridge(x, y));
+            }
+        }
+
+        for(Island island : expected.getIslands()) {
+            assertEquals(expected.getBridgeCount(island), actual.getBridgeCount(island));
+            assertEquals(sortedNeighbors(expected, island), sortedNeighbors(actual, island));
+        }
+
+        assertEquals(expected.getPossibleBridges(), actual.getPossibleBridges());
+        assertEquals(expected.getStatus(), actual.getStatus());
+    }
+
+    @Test
+    public void matchesLinearQueries() {
+        Puzzle linear = solution.copy();
+        Puzzle grid = solution.copy().enableOccupancyGrid();
+
+        assertTrue(grid.hasOccupancyGrid());
+        assertSameQueries(linear, grid);
+    }
+
+    @Test
+    public void consistentAfterMutations() {
+        Random random = new Random(7);
+        Puzzle linear = solution.copy();
+        Puzzle grid = solution.copy().enableOccupancyGrid();
+
+        linear.reset();
+        grid.reset();
+        assertSameQueries(linear, grid);
+
+        for(int i = 0; i < 200; ++i) {
+            List<Bridge> possible = linear.getPossibleBridges();
+
+            if(!possible.isEmpty() && (linear.getBridges().isEmpty() || random.nextBoolean())) {
+                Bridge bridge = possible.get(random.nextInt(possible.size()));
+
+                assertTrue(linear.placeBridge(bridge));
+                assertTrue(grid.placeBridge(bridge));
+            } else if(!linear.getBridges().isEmpty()) {
+                Bridge bridge = linear.getBridges().get(random.nextInt(linear.getBridges().size()));
+
+                assertTrue(linear.deleteBridge(bridge));
+                assertTrue(grid.deleteBridge(bridge));
+            }
+
+            assertSameQueries(linear, grid);
+        }
+
+        assertTrue(grid.hasOccupancyGrid());
+        assertTrue(grid.fastCopy().hasOccupancyGrid());
+        assertEquals(linear, grid.copy());
+    }
+
+    @Test
+    public void sparseForLargeCoordinates() {
+        Puzzle puzzle = new Puzzle().enableOccupancyGrid();
+        Island island1 = new Island(0, 0, 1);
+        Island island2 = new Island(OccupancyGrid.MAX_DENSE_CELLS, 0, 2);
+        Island island3 = new Island(OccupancyGrid.MAX_DENSE_CELLS, OccupancyGrid.MAX_DENSE_CELLS, 1);
+
+        puzzle.addIsland(island1);
+        puzzle.addIsland(island2);
+        puzzle.addIsland(island3);
+
+        assertTrue(puzzle.placeBridge(Bridge.create(island1, island2)));
+        assertTrue(puzzle.placeBridge(Bridge.create(island2, island3)));
+        assertTrue(puzzle.hasOccupancyGrid());
+        assertEquals(island2, puzzle.getIsland(OccupancyGrid.MAX_DENSE_CELLS, 0).get());
+        assertEquals(Bridge.create(island1, island2), puzzle.getBridge(1, 0).get());
+        assertFalse(puzzle.canPlaceBridge(new Bridge(5, -1, 5, 1)));
+        assertEquals(PuzzleStatus.Solved, puzzle.getStatus());
+    }
+}
@@ -0,0 +1,52 @@
+package rnd.puzzleapp.puzzle;
+
+import org.junit.Test;
+
+import rnd.puzzleapp.solver.SolutionVerifier;
+
+import static org.junit.Assert.*;
+
+public class RandomPuzzleGeneratorTest {
+    private static void assertValid(Puzzle solution, int islands) {
+        Puzzle puzzle = solution.copy();
+        puzzle.reset();
+
+        assertEquals(islands, solution.getIslands().size());
+        assertTrue(SolutionVerifier.verify(puzzle, solution));
+    }
+
+    @Test
+    public void defaultMode() {
+        assertValid(new RandomPuzzleGenerator(1, 32, 32).generate(true), 32);
+    }
+
+    @Test
+    public void scalableMode() {
+        assertValid(new RandomPuzzleGenerator(1, 32, 32, true).generate(true), 32);
+        assertValid(new RandomPuzzleGenerator(2, 2000, 2000, true).generate(true), 2000);
+    }
+
+    @Test
+    public void deterministic() {
+        assertEquals(new RandomPuzzleGenerator(3, 64, 64, true).generate(true),
+                new RandomPuzzleGenerator(3, 64, 64, true).generate(true));
+    }
+
+    @Test
+    public void budgetExhausted() {
+        GenerationResult result = new RandomPuzzleGenerator(4, 500, 500).generate(true, new GenerationBudget(100, 60000));
+
+        assertFalse(result.isGenerated());
+        assertEquals(GenerationResult.Failure.RoundLimitReached, result.getFailure());
+        assertEquals(100, result.getStats().getRounds());
+    }
+
+    @Test
+    public void budgetSufficient() {
+        GenerationResult result = new RandomPuzzleGenerator(4, 48, 48).generate(true, new GenerationBudget(100000, 60000));
+
+        assertTrue(result.isGenerated());
+        assertValid(result.getPuzzle(), 48);
+        assertTrue(result.getStats().getAttempts(GenerationStats.Operation.NodeAddition) > 0);
+    }
+}
@@ -0,0 +1,49 @@
+package rnd.puzzleapp.puzzle;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SolutionVectorTest {
+    private static Puzzle solution;
+    private static List<Bridge> edges;
+
+    @BeforeClass
+    public static void setup() {
+        solution = new RandomPuzzleGenerator(7, 12, 12).generate(true);
+        edges = CandidateEdges.of(solution.getIslands());
+    }
+
+    @Test
+    public void roundTrip() {
+        SolutionVector vector = SolutionVector.of(edges, solution).get();
+        SolutionVector decoded = SolutionVector.fromBytes(edges.size(), vector.toBytes());
+
+        assertEquals(vector, decoded);
+        assertTrue(decoded.hasRequiredBridgeCounts(solution.getIslands(), edges));
+        assertEquals(solution, decoded.toPuzzle(solution, edges));
+        assertEquals((edges.size() + 3) / 4, vector.toBytes().length);
+    }
+
+    @Test
+    public void differentBoardsDiffer() {
+        Puzzle board = solution.copy();
+        board.deleteBridge(board.getBridges().get(0));
+
+        SolutionVector vector = SolutionVector.of(edges, board).get();
+
+        assertNotEquals(SolutionVector.of(edges, solution).get(), vector);
+        assertFalse(vector.hasRequiredBridgeCounts(board.getIslands(), edges));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidMultiplicity() {
+        byte[] packed = new byte[(edges.size() + 3) / 4];
+        packed[0] = 3;
+
+        SolutionVector.fromBytes(edges.size(), packed);
+    }
+}
@@ -0,0 +1,149 @@
+package rnd.puzzleapp.serialization;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.CandidateEdges;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+
+import static org.junit.Assert.*;
+
+public class PuzzleSerializerTest {
+    private static byte[] serialize(Puzzle puzzle) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PuzzleSerializer.INSTANCE.serialize(new DataOutputStream(bytes), puzzle);
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] serializeLegacy(Puzzle puzzle) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+
+        IslandSerializer.INSTANCE.serializeCollection(stream, puzzle.getIslands());
+        BridgeSerializer.INSTANCE.serializeCollection(stream, puzzle.getBridges());
+
+        return bytes.toByteArray();
+    }
+
+    private static Puzzle deserialize(byte[] bytes) throws IOException {
+        return PuzzleSerializer.INSTANCE.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static void assertSamePuzzle(Puzzle expected, Puzzle actual) {
+        assertEquals(expected.getIslands(), actual.getIslands());
+        assertEquals(expected.getBridges(), actual.getBridges());
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.addIsland(new Island(-2, 0, 3));
+        puzzle.addIsland(new Island(-2, 4, 1));
+        puzzle.addIsland(new Island(3, 0, 2));
+        puzzle.addBridge(new Bridge(-2, 0, 3, 0));
+        puzzle.addBridge(new Bridge(-2, 0, 3, 0));
+        puzzle.addBridge(new Bridge(-2, 0, -2, 4));
+
+        assertSamePuzzle(puzzle, deserialize(serialize(puzzle)));
+
+        for(int seed = 0; seed < 16; ++seed) {
+            Puzzle solution = new RandomPuzzleGenerator(seed, 8, 64).generate(true);
+            assertSamePuzzle(solution, deserialize(serialize(solution)));
+        }
+    }
+
+    @Test
+    public void rawBridges() throws IOException {
+        Puzzle puzzle = new Puzzle();
+
+        // The bridge skips the middle island, so it cannot be stored as a neighbor reference.
+        puzzle.addIsland(new Island(0, 0, 1));
+        puzzle.addIsland(new Island(2, 0, 0));
+        puzzle.addIsland(new Island(4, 0, 1));
+        puzzle.addBridge(new Bridge(0, 0, 4, 0));
+
+        assertSamePuzzle(puzzle, deserialize(serialize(puzzle)));
+    }
+
+    @Test
+    public void legacyFormat() throws IOException {
+        Puzzle solution = new RandomPuzzleGenerator(7, 32, 32).generate(true);
+        byte[] legacy = serializeLegacy(solution);
+
+        assertSamePuzzle(solution, deserialize(legacy));
+        assertTrue(legacy.length >= 5 * serialize(solution).length);
+    }
+
+    @Test
+    public void view() throws IOException {
+        Puzzle first = new RandomPuzzleGenerator(5, 16, 16).generate(true);
+        Puzzle second = new RandomPuzzleGenerator(6, 16, 16).generate(true);
+        byte[] firstBytes = serialize(first);
+        byte[] secondBytes = serialize(second);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(firstBytes.length + secondBytes.length);
+
+        buffer.put(firstBytes).put(secondBytes).flip();
+
+        // Views are read back to back from a buffer without an accessible array, like a memory mapped store.
+        for(Puzzle puzzle : new Puzzle[] { first, second }) {
+            SerializedPuzzle view = PuzzleSerializer.INSTANCE.view(buffer);
+
+            assertEquals(puzzle.getIslands().size(), view.getIslandCount());
+            assertEquals(puzzle.getWidth(), view.getWidth());
+            assertEquals(puzzle.getHeight(), view.getHeight());
+            assertEquals(CandidateEdges.of(puzzle.getIslands()), view.getCandidateEdges());
+            assertEquals(puzzle.getBridges().stream().distinct().count(), view.getBridgeCount());
+
+            for(int i = 0; i < view.getIslandCount(); ++i) {
+                assertEquals(puzzle.getBridgeCount(puzzle.getIslands().get(i)), view.getDegree(i));
+            }
+
+            assertSamePuzzle(puzzle, view.toPuzzle());
+        }
+
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void viewRawBridges() throws IOException {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.addIsland(new Island(0, 0, 2));
+        puzzle.addIsland(new Island(2, 0, 0));
+        puzzle.addIsland(new Island(4, 0, 2));
+        puzzle.addBridge(new Bridge(0, 0, 4, 0));
+        puzzle.addBridge(new Bridge(0, 0, 4, 0));
+
+        SerializedPuzzle view = PuzzleSerializer.INSTANCE.view(ByteBuffer.wrap(serialize(puzzle)));
+
+        assertEquals(1, view.getBridgeCount());
+        assertEquals(2, view.getMultiplicity(0));
+        assertEquals(2, view.getDegree(2));
+        assertEquals(0, view.getDegree(1));
+        assertSamePuzzle(puzzle, view.toPuzzle());
+    }
+
+    @Test(expected = IOException.class)
+    public void viewLegacyFormat() throws IOException {
+        PuzzleSerializer.INSTANCE.view(ByteBuffer.wrap(serializeLegacy(new RandomPuzzleGenerator(7, 8, 8).generate(true))));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruption() throws IOException {
+        byte[] bytes = serialize(new RandomPuzzleGenerator(3, 16, 16).generate(true));
+
+        bytes[bytes.length / 2] ^= 0x10;
+        deserialize(bytes);
+    }
+}
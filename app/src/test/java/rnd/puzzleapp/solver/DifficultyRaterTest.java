@@ -0,0 +1,90 @@
+package rnd.puzzleapp.solver;
+
+import org.junit.Test;
+
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+import rnd.puzzleapp.puzzle.UniquePuzzleGenerator;
+
+import static org.junit.Assert.*;
+
+public class DifficultyRaterTest {
+    private static Puzzle square(int requiredBridges) {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.getIslands().add(new Island(0, 0, requiredBridges));
+        puzzle.getIslands().add(new Island(2, 0, requiredBridges));
+        puzzle.getIslands().add(new Island(0, 2, requiredBridges));
+        puzzle.getIslands().add(new Island(2, 2, requiredBridges));
+
+        return puzzle;
+    }
+
+    @Test
+    public void forced() {
+        Puzzle puzzle = new Puzzle();
+        puzzle.getIslands().add(new Island(0, 0, 2));
+        puzzle.getIslands().add(new Island(0, 3, 2));
+
+        DifficultyRating rating = DifficultyRater.rate(puzzle);
+
+        assertTrue(rating.isSolved());
+        assertEquals(DifficultyRating.Tier.Basic, rating.getHardestTier());
+        assertEquals(0, rating.getScore(), 0);
+    }
+
+    @Test
+    public void isolation() {
+        // Two double bridges would satisfy every island, but would leave the square disconnected.
+        DifficultyRating rating = DifficultyRater.rate(square(2));
+
+        assertTrue(rating.isSolved());
+        assertEquals(DifficultyRating.Tier.Isolation, rating.getHardestTier());
+        assertEquals(0, rating.getBranches());
+    }
+
+    @Test
+    public void branching() {
+        DifficultyRating rating = DifficultyRater.rate(square(3));
+
+        assertTrue(rating.isSolved());
+        assertTrue(rating.getBranches() > 0);
+        assertTrue(rating.getScore() > DifficultyRater.rate(square(2)).getScore());
+        assertEquals(PuzzleDifficulty.VeryHard, PuzzleDifficulty.fromScore(rating.getScore()));
+    }
+
+    @Test
+    public void exhausted() {
+        DifficultyRating rating = DifficultyRater.rate(square(3), 1);
+
+        assertTrue(rating.isExhausted());
+        assertFalse(rating.isSolved());
+        assertEquals(PuzzleDifficulty.VeryHard, PuzzleDifficulty.fromScore(rating.getScore()));
+        assertFalse(DifficultyRater.rate(square(3)).isExhausted());
+    }
+
+    @Test(timeout = 30000)
+    public void large() {
+        Puzzle puzzle = new RandomPuzzleGenerator(0, 1000, 1000, true).generate(false);
+        DifficultyRating rating = DifficultyRater.rate(puzzle);
+
+        // The budget bounds the work on puzzles far beyond the size of any default puzzle.
+        assertTrue(rating.isSolved() || rating.isExhausted());
+    }
+
+    @Test
+    public void unsolvable() {
+        assertFalse(DifficultyRater.rate(square(5)).isSolved());
+    }
+
+    @Test
+    public void generated() {
+        for(int seed = 0; seed < 8; ++seed) {
+            Puzzle puzzle = new UniquePuzzleGenerator(seed, 16, 32).generate(false);
+
+            assertTrue(DifficultyRater.rate(puzzle).isSolved());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package rnd.puzzleapp.solver;
+
+import org.junit.Test;
+
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.UniquePuzzleGenerator;
+
+import static org.junit.Assert.*;
+
+public class SolutionCounterTest {
+    private static Puzzle square(int requiredBridges) {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.getIslands().add(new Island(0, 0, requiredBridges));
+        puzzle.getIslands().add(new Island(2, 0, requiredBridges));
+        puzzle.getIslands().add(new Island(0, 2, requiredBridges));
+        puzzle.getIslands().add(new Island(2, 2, requiredBridges));
+
+        return puzzle;
+    }
+
+    @Test
+    public void countSolutions() {
+        // Two double bridges would also satisfy every island, but would leave the square disconnected.
+        assertTrue(SolutionCounter.count(square(2), 2, 1000).isUnique());
+        assertEquals(2, SolutionCounter.count(square(3), 3, 1000).getCount());
+        assertEquals(0, SolutionCounter.count(square(5), 2, 1000).getCount());
+    }
+
+    @Test
+    public void addIsland() {
+        SolutionCounter counter = new SolutionCounter(square(3));
+
+        counter.addIsland(new Island(1, 0, 2));
+        counter.setRequiredBridges(0, 0, 2);
+        counter.setRequiredBridges(2, 0, 2);
+
+        assertEquals(5, counter.getEdges().size());
+        assertTrue(counter.count(2, 1000).isUnique());
+    }
+
+    @Test
+    public void uniqueGenerator() {
+        for(int seed = 0; seed < 8; ++seed) {
+            Puzzle solution = new UniquePuzzleGenerator(seed, 32, 64).generate(true);
+            Puzzle puzzle = solution.copy();
+            puzzle.reset();
+
+            assertTrue(SolutionVerifier.verify(puzzle, solution));
+            assertTrue(SolutionCounter.count(puzzle, 2, 1000000).isUnique());
+        }
+    }
+}
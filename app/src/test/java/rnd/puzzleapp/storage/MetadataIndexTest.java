@@ -0,0 +1,153 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+import rnd.puzzleapp.puzzle.PuzzleStatus;
+
+import static org.junit.Assert.*;
+
+public class MetadataIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> names(List<PuzzleMetadata> metadata) {
+        return metadata.stream().map(PuzzleMetadata::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void putAndReload() throws IOException {
+        File file = new File(folder.getRoot(), "index");
+        MetadataIndex index = MetadataIndex.load(file);
+
+        index.put(new PuzzleMetadata("Hard 1", PuzzleDifficulty.Hard, 24, PuzzleStatus.Unsolved, true, "Hard 1", "blank", 42, 42));
+        index.put(new PuzzleMetadata("Custom", null, 8, PuzzleStatus.Untouched, false, "Custom", "blank", 7, 7));
+        index.remove("Missing");
+
+        PuzzleMetadata hard = MetadataIndex.load(file).get("Hard 1").get();
+        PuzzleMetadata custom = MetadataIndex.load(file).get("Custom").get();
+
+        assertEquals(PuzzleDifficulty.Hard, hard.getDifficulty().get());
+        assertEquals(24, hard.getIslandCount());
+        assertEquals(PuzzleStatus.Unsolved, hard.getStatus());
+        assertTrue(hard.hasSolution());
+        assertEquals(42, hard.getLastModified());
+        assertFalse(custom.getDifficulty().isPresent());
+
+        index.replaceAll(Collections.singletonList(custom));
+        assertEquals(Collections.singletonList("Custom"), MetadataIndex.load(file).getNames());
+    }
+
+    @Test
+    public void putAbsentKeepsNewerMetadata() throws IOException {
+        File file = new File(folder.getRoot(), "index");
+        MetadataIndex index = MetadataIndex.load(file);
+        PuzzleMetadata saved = new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Solved, true, "Easy 1", "blank", 9, 9);
+        PuzzleMetadata loaded = new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Untouched, true, "Easy 1", "blank", 3, 3);
+        PuzzleMetadata other = new PuzzleMetadata("Easy 2", PuzzleDifficulty.Easy, 7, PuzzleStatus.Untouched, true, "Easy 2", "blank", 3, 3);
+
+        index.put(saved);
+        index.put(new PuzzleMetadata("Deleted", null, 4, PuzzleStatus.Untouched, false, "Deleted", "blank", 1, 1));
+        index.putAbsent(Arrays.asList(loaded, other));
+        index.removeIf("Deleted"::equals);
+
+        MetadataIndex reloaded = MetadataIndex.load(file);
+
+        assertEquals(PuzzleStatus.Solved, reloaded.get("Easy 1").get().getStatus());
+        assertTrue(reloaded.get("Easy 2").isPresent());
+        assertFalse(reloaded.get("Deleted").isPresent());
+    }
+
+    @Test
+    public void secondaryIndexes() throws IOException {
+        File file = new File(folder.getRoot(), "index");
+        MetadataIndex index = MetadataIndex.load(file);
+
+        index.putAll(Arrays.asList(
+                new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Untouched, true, "Easy 1", "blank", 10, 10),
+                new PuzzleMetadata("Easy 2", PuzzleDifficulty.Easy, 7, PuzzleStatus.Solved, true, "Easy 2", "blank", 20, 20),
+                new PuzzleMetadata("Custom", null, 8, PuzzleStatus.Unsolved, false, "Custom", "blank", 30, 30)));
+
+        // Replacing a puzzle moves it to its new status, but keeps its creation time.
+        index.put(new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Unsolved, true, "Easy 1", "blank", 40, 40));
+        index.removeAll(Arrays.asList("Easy 2", "Missing"));
+
+        MetadataIndex reloaded = MetadataIndex.load(file);
+
+        assertTrue(reloaded.getByStatus(PuzzleStatus.Untouched).isEmpty());
+        assertTrue(reloaded.getByStatus(PuzzleStatus.Solved).isEmpty());
+        assertEquals(2, reloaded.getByStatus(PuzzleStatus.Unsolved).size());
+        assertEquals("Easy 1", reloaded.getByDifficulty(PuzzleDifficulty.Easy).get(0).getName());
+        assertEquals("Custom", reloaded.getByDifficulty(null).get(0).getName());
+        assertEquals(10, reloaded.get("Easy 1").get().getCreated());
+        assertEquals(40, reloaded.get("Easy 1").get().getLastModified());
+        assertEquals(Collections.singletonList("Easy 1"), names(reloaded.getCreatedBetween(0, 30)));
+        assertEquals(Arrays.asList("Easy 1", "Custom"), names(reloaded.getCreatedBetween(10, 31)));
+    }
+
+    @Test
+    public void corruptFile() throws IOException {
+        File file = new File(folder.getRoot(), "index");
+
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[] { 1, 2, 3 });
+        }
+
+        assertTrue(MetadataIndex.load(file).getAll().isEmpty());
+    }
+
+    @Test
+    public void appendsAndCompacts() throws IOException {
+        File file = new File(folder.getRoot(), "index");
+        MetadataIndex index = MetadataIndex.load(file);
+
+        index.put(new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Untouched, true, "Easy 1", "blank", 1, 1));
+        long snapshotLength = file.length();
+
+        index.put(new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Unsolved, true, "Easy 1", "blank", 2, 2));
+        assertTrue(file.length() > snapshotLength);
+        assertEquals(PuzzleStatus.Unsolved, MetadataIndex.load(file).get("Easy 1").get().getStatus());
+
+        for(int i = 0; i < 1000; ++i) {
+            index.put(new PuzzleMetadata("Custom " + i % 10, null, 8, PuzzleStatus.Unsolved, false, "Custom", "blank", i, i));
+        }
+        index.remove("Custom 9");
+
+        MetadataIndex reloaded = MetadataIndex.load(file);
+
+        assertEquals(10, reloaded.getNames().size());
+        assertEquals(998, reloaded.get("Custom 8").get().getLastModified());
+        assertEquals(8, reloaded.get("Custom 8").get().getCreated());
+        assertFalse(reloaded.get("Custom 9").isPresent());
+        assertTrue(file.length() < 100 * 300);
+    }
+
+    @Test
+    public void partiallyWrittenRecord() throws IOException {
+        File file = new File(folder.getRoot(), "index");
+        MetadataIndex index = MetadataIndex.load(file);
+
+        index.put(new PuzzleMetadata("Easy 1", PuzzleDifficulty.Easy, 6, PuzzleStatus.Untouched, true, "Easy 1", "blank", 1, 1));
+        index.put(new PuzzleMetadata("Easy 2", PuzzleDifficulty.Easy, 7, PuzzleStatus.Untouched, true, "Easy 2", "blank", 2, 2));
+
+        try (FileOutputStream stream = new FileOutputStream(file, true)) {
+            stream.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 });
+        }
+
+        MetadataIndex reloaded = MetadataIndex.load(file);
+        assertEquals(Arrays.asList("Easy 1", "Easy 2"), reloaded.getNames());
+
+        reloaded.remove("Easy 1");
+        assertEquals(Collections.singletonList("Easy 2"), MetadataIndex.load(file).getNames());
+    }
+}
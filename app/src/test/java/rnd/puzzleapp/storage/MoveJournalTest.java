@@ -0,0 +1,121 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Move;
+import rnd.puzzleapp.puzzle.Puzzle;
+
+import static org.junit.Assert.*;
+
+public class MoveJournalTest {
+    private static final Bridge TOP = new Bridge(0, 0, 2, 0);
+    private static final Bridge LEFT = new Bridge(0, 0, 0, 2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Puzzle createPuzzle() {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.addIsland(new Island(0, 0, 4));
+        puzzle.addIsland(new Island(2, 0, 2));
+        puzzle.addIsland(new Island(0, 2, 2));
+
+        return puzzle;
+    }
+
+    @Test
+    public void appendAndReplay() throws IOException {
+        File file = new File(folder.getRoot(), "journal");
+        MoveJournal journal = MoveJournal.create(file, 3);
+        MoveJournal.Entries entries = new MoveJournal.Entries();
+
+        entries.add(Move.place(TOP));
+        entries.add(Move.place(TOP));
+        journal.append(entries);
+
+        entries.clear();
+        entries.add(Move.place(LEFT));
+        entries.add(Move.delete(TOP));
+        entries.addUndo(Move.delete(TOP));
+        journal.append(entries);
+
+        Puzzle puzzle = createPuzzle();
+        Deque<Move> history = new ArrayDeque<>();
+        MoveJournal reopened = MoveJournal.open(file, 3, puzzle, history);
+
+        assertEquals(5, reopened.size());
+        assertEquals(2, puzzle.getBridgeCount(TOP));
+        assertEquals(1, puzzle.getBridgeCount(LEFT));
+        assertEquals(Move.place(LEFT), history.peek());
+        assertEquals(3, history.size());
+    }
+
+    @Test
+    public void staleJournalIsIgnored() throws IOException {
+        File file = new File(folder.getRoot(), "journal");
+        MoveJournal.Entries entries = new MoveJournal.Entries();
+
+        entries.add(Move.place(TOP));
+        MoveJournal.create(file, 1).append(entries);
+
+        Puzzle puzzle = createPuzzle();
+        MoveJournal journal = MoveJournal.open(file, 2, puzzle, new ArrayDeque<>());
+
+        assertEquals(0, journal.size());
+        assertTrue(puzzle.getBridges().isEmpty());
+
+        // Appending to a stale journal starts it over.
+        entries.clear();
+        entries.add(Move.place(LEFT));
+        journal.append(entries);
+
+        puzzle = createPuzzle();
+        MoveJournal.open(file, 2, puzzle, new ArrayDeque<>());
+
+        assertEquals(0, puzzle.getBridgeCount(TOP));
+        assertEquals(1, puzzle.getBridgeCount(LEFT));
+    }
+
+    @Test
+    public void tornEntryIsOverwritten() throws IOException {
+        File file = new File(folder.getRoot(), "journal");
+        MoveJournal.Entries entries = new MoveJournal.Entries();
+
+        entries.add(Move.place(TOP));
+        MoveJournal.create(file, 1).append(entries);
+
+        // A place entry of which only the tag and first coordinate were written.
+        try (FileOutputStream stream = new FileOutputStream(file, true)) {
+            stream.write(new byte[] { 1, 0 });
+        }
+
+        Puzzle puzzle = createPuzzle();
+        MoveJournal journal = MoveJournal.open(file, 1, puzzle, new ArrayDeque<>());
+
+        assertEquals(1, journal.size());
+        assertEquals(1, puzzle.getBridges().size());
+
+        entries.clear();
+        entries.add(Move.reset());
+        entries.add(Move.place(LEFT));
+        journal.append(entries);
+
+        puzzle = createPuzzle();
+        Deque<Move> history = new ArrayDeque<>();
+        assertEquals(3, MoveJournal.open(file, 1, puzzle, history).size());
+        assertEquals(0, puzzle.getBridgeCount(TOP));
+        assertEquals(1, puzzle.getBridgeCount(LEFT));
+        assertEquals(1, history.size());
+    }
+}
@@ -0,0 +1,96 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PuzzleStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(PuzzleStore store, String name) {
+        ByteBuffer record = store.get(name).get();
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void putAndReopen() throws IOException {
+        File file = new File(folder.getRoot(), "store");
+        PuzzleStore store = PuzzleStore.open(file);
+
+        store.put("a", "first".getBytes(StandardCharsets.UTF_8));
+        store.put("b", "second".getBytes(StandardCharsets.UTF_8));
+        store.put("a", "third".getBytes(StandardCharsets.UTF_8));
+        store.remove("b");
+        store.close();
+
+        store = PuzzleStore.open(file);
+
+        assertEquals("third", read(store, "a"));
+        assertFalse(store.contains("b"));
+        assertFalse(store.get("b").isPresent());
+        assertEquals(1, store.getNames().size());
+    }
+
+    @Test
+    public void failedPut() throws IOException {
+        File file = new File(folder.getRoot(), "store");
+        PuzzleStore store = PuzzleStore.open(file);
+        Map<String, byte[]> records = new LinkedHashMap<>();
+
+        store.put("a", "first".getBytes(StandardCharsets.UTF_8));
+        records.put("a", "second".getBytes(StandardCharsets.UTF_8));
+        records.put("b", null);
+
+        try {
+            store.putAll(records);
+            fail();
+        } catch (NullPointerException e) {
+            // The first record was written before the second one failed, but was never committed.
+        }
+
+        assertEquals("first", read(store, "a"));
+        assertFalse(store.contains("b"));
+
+        store.put("b", "third".getBytes(StandardCharsets.UTF_8));
+        store.close();
+        store = PuzzleStore.open(file);
+
+        assertEquals("first", read(store, "a"));
+        assertEquals("third", read(store, "b"));
+    }
+
+    @Test
+    public void compaction() throws IOException {
+        File file = new File(folder.getRoot(), "store");
+        PuzzleStore store = PuzzleStore.open(file);
+        byte[] record = new byte[4096];
+
+        for(int i = 0; i < 64; ++i) {
+            record[0] = (byte)i;
+            store.put("a", record);
+            store.put("b", "kept".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Without compaction the file would hold every version of both records.
+        assertTrue(file.length() < 32 * record.length);
+        assertEquals(63, store.get("a").get().get(0));
+        assertEquals("kept", read(store, "b"));
+
+        store.compact();
+        assertEquals(0, store.getGarbageBytes());
+        assertEquals("kept", read(PuzzleStore.open(file), "b"));
+    }
+}
@@ -0,0 +1,108 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SaveQueueTest {
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SaveQueue<String> createQueue() {
+        return new SaveQueue<>("test-save-queue", item -> {
+            writing.countDown();
+
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            written.add(item);
+            return true;
+        }, (older, newer) -> newer, name -> {});
+    }
+
+    @Test
+    public void coalescesPendingItems() throws InterruptedException {
+        SaveQueue<String> queue = createQueue();
+
+        queue.enqueue("a", "a1");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // "a1" is being written, so these wait and replace each other.
+        queue.enqueue("a", "a2");
+        queue.enqueue("b", "b1");
+        queue.enqueue("a", "a3");
+
+        assertEquals("a3", queue.get("a").get());
+        assertEquals(2, queue.getAll().size());
+
+        release.countDown();
+        queue.flush();
+
+        assertEquals(3, written.size());
+        assertEquals("a1", written.get(0));
+        assertTrue(written.contains("a3"));
+        assertTrue(written.contains("b1"));
+        assertFalse(written.contains("a2"));
+        assertFalse(queue.get("a").isPresent());
+    }
+
+    @Test
+    public void cancelDiscardsPendingItem() throws InterruptedException {
+        SaveQueue<String> queue = createQueue();
+
+        queue.enqueue("a", "a1");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        queue.enqueue("b", "b1");
+
+        assertEquals("a1", queue.get("a").get());
+
+        queue.cancel("b");
+        release.countDown();
+        queue.cancel("a");
+
+        assertEquals(Collections.singletonList("a1"), written);
+        assertFalse(queue.get("a").isPresent());
+        assertFalse(queue.get("b").isPresent());
+    }
+
+    @Test
+    public void keepsFailedItems() {
+        AtomicBoolean isFailing = new AtomicBoolean(true);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        SaveQueue<String> queue = new SaveQueue<>("test-save-queue", item -> {
+            if(isFailing.get()) {
+                return false;
+            }
+
+            written.add(item);
+            return true;
+        }, (older, newer) -> older + "+" + newer, failures::add);
+
+        queue.enqueue("a", "a1");
+        queue.flush();
+
+        // The failed item can still be read, and is taken over by the next item with the same name.
+        assertEquals(Collections.singletonList("a"), failures);
+        assertEquals("a1", queue.get("a").get());
+        assertEquals(1, queue.getAll().size());
+        assertTrue(written.isEmpty());
+
+        isFailing.set(false);
+        queue.enqueue("a", "a2");
+        queue.flush();
+
+        assertEquals(Collections.singletonList("a1+a2"), written);
+        assertFalse(queue.get("a").isPresent());
+    }
+}
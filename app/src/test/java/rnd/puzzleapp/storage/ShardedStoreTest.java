@@ -0,0 +1,114 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ShardedStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(RecordStore store, String name) {
+        ByteBuffer record = store.get(name).get();
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ShardedStore open(File directory, List<File> corrupt) throws IOException {
+        return ShardedStore.open(directory, 4, (file, e) -> corrupt.add(file));
+    }
+
+    @Test
+    public void batchesAndReopen() throws IOException {
+        File directory = new File(folder.getRoot(), "store");
+        List<File> corrupt = new ArrayList<>();
+        ShardedStore store = open(directory, corrupt);
+        Map<String, byte[]> records = new LinkedHashMap<>();
+
+        for(int i = 0; i < 32; ++i) {
+            records.put("Puzzle " + i, ("record " + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        store.putAll(records);
+        store.put("Puzzle 0", "updated".getBytes(StandardCharsets.UTF_8));
+        store.removeAll(Arrays.asList("Puzzle 1", "Puzzle 2", "Missing"));
+        store.close();
+
+        store = open(directory, corrupt);
+
+        assertEquals(30, store.getNames().size());
+        assertEquals("updated", read(store, "Puzzle 0"));
+        assertEquals("record 31", read(store, "Puzzle 31"));
+        assertFalse(store.contains("Puzzle 1"));
+        assertTrue(corrupt.isEmpty());
+    }
+
+    @Test
+    public void corruptShard() throws IOException {
+        File directory = new File(folder.getRoot(), "store");
+        List<File> corrupt = new ArrayList<>();
+        ShardedStore store = open(directory, corrupt);
+
+        for(int i = 0; i < 16; ++i) {
+            store.put("Puzzle " + i, "kept".getBytes(StandardCharsets.UTF_8));
+        }
+
+        store.close();
+
+        try (FileOutputStream stream = new FileOutputStream(new File(directory, "shard-00.store"))) {
+            stream.write(new byte[] { 1, 2, 3 });
+        }
+
+        ShardedStore reopened = open(directory, corrupt);
+
+        // Only the records of the corrupt shard are lost.
+        assertEquals(1, corrupt.size());
+        assertTrue(new File(directory, "shard-00.store.corrupt").exists());
+        assertTrue(reopened.getNames().size() < 16);
+        assertFalse(reopened.getNames().isEmpty());
+        reopened.getNames().forEach(name -> assertEquals("kept", read(reopened, name)));
+    }
+
+    @Test
+    public void unavailableShard() throws IOException {
+        File directory = new File(folder.getRoot(), "store");
+        List<File> corrupt = new ArrayList<>();
+
+        // A shard that is a non-empty directory can neither be opened, moved aside nor deleted.
+        assertTrue(new File(directory, "shard-00.store/child").mkdirs());
+        assertTrue(new File(directory, "shard-00.store.corrupt/child").mkdirs());
+
+        ShardedStore store = open(directory, corrupt);
+        int failed = 0;
+
+        for(int i = 0; i < 16; ++i) {
+            try {
+                store.put("Puzzle " + i, "kept".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                ++failed;
+            }
+        }
+
+        assertEquals(2, corrupt.size());
+        assertTrue(failed > 0);
+        assertEquals(16 - failed, store.getNames().size());
+        store.getNames().forEach(name -> assertEquals("kept", read(store, name)));
+        store.removeAll(Arrays.asList("Puzzle 0", "Puzzle 1", "Puzzle 2", "Puzzle 3"));
+        store.close();
+    }
+}
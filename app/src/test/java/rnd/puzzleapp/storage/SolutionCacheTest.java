@@ -0,0 +1,167 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.CanonicalForm;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+import rnd.puzzleapp.serialization.PuzzleSerializer;
+import rnd.puzzleapp.solver.SmartSolver;
+import rnd.puzzleapp.utils.FileSystem;
+
+import static org.junit.Assert.*;
+
+public class SolutionCacheTest {
+    private static Puzzle solution;
+    private static Puzzle other;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setup() {
+        solution = new RandomPuzzleGenerator(3, 16, 16).generate(true);
+        other = new RandomPuzzleGenerator(4, 16, 16).generate(true);
+    }
+
+    private static Puzzle layout(Puzzle puzzle) {
+        Puzzle layout = puzzle.copy();
+        layout.reset();
+
+        return layout;
+    }
+
+    private static Puzzle rotate(Puzzle puzzle) {
+        int height = puzzle.getHeight();
+        Puzzle rotated = new Puzzle();
+
+        puzzle.getIslands().forEach(i -> rotated.addIsland(new Island(height - 1 - i.getY(), i.getX(), i.getRequiredBridges())));
+        puzzle.getBridges().forEach(b -> rotated.addBridge(Bridge.create(
+                rotated.getIsland(height - 1 - b.getY1(), b.getX1()).get(),
+                rotated.getIsland(height - 1 - b.getY2(), b.getX2()).get())));
+
+        return rotated;
+    }
+
+    private static File getFile(File directory, Puzzle puzzle) {
+        return new File(directory, CanonicalForm.of(puzzle).getKey());
+    }
+
+    private static void write(File file, Puzzle puzzle) throws IOException {
+        FileSystem.write(file, (stream, p) -> PuzzleSerializer.INSTANCE.serialize(new DataOutputStream(stream), p), puzzle);
+    }
+
+    private static void awaitFile(File file) throws InterruptedException {
+        for(int i = 0; i < 100 && !file.exists(); ++i) {
+            Thread.sleep(50);
+        }
+
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void memoryHit() {
+        SolutionCache cache = new SolutionCache(new File(folder.getRoot(), "solutions"), SolutionCache.DEFAULT_CAPACITY);
+
+        assertFalse(cache.get(layout(solution)).isPresent());
+
+        cache.put(layout(solution), solution);
+
+        assertEquals(solution, cache.get(layout(solution)).get());
+        // A cached solution is returned without solving the puzzle.
+        assertEquals(solution, cache.getOrSolve(layout(solution), p -> { throw new AssertionError("Solved a cached puzzle"); }).get());
+        cache.close();
+    }
+
+    @Test
+    public void diskHit() throws InterruptedException {
+        File directory = new File(folder.getRoot(), "solutions");
+        SolutionCache cache = new SolutionCache(directory, SolutionCache.DEFAULT_CAPACITY);
+
+        Puzzle solved = cache.getOrSolve(layout(solution), new SmartSolver()).get();
+        awaitFile(getFile(directory, solution));
+        cache.close();
+
+        SolutionCache reopened = new SolutionCache(directory, SolutionCache.DEFAULT_CAPACITY);
+
+        assertEquals(solved, reopened.get(layout(solution)).get());
+        assertFalse(reopened.get(layout(other)).isPresent());
+        reopened.close();
+    }
+
+    @Test
+    public void symmetricVariant() {
+        SolutionCache cache = new SolutionCache(new File(folder.getRoot(), "solutions"), SolutionCache.DEFAULT_CAPACITY);
+        Puzzle variant = rotate(solution);
+
+        cache.put(layout(solution), solution);
+
+        // The solution is returned in the orientation of the variant.
+        assertEquals(variant, cache.get(layout(variant)).get());
+        cache.close();
+    }
+
+    @Test
+    public void rejectsCollisionsAndCorruptEntries() throws IOException {
+        File directory = new File(folder.getRoot(), "solutions");
+        assertTrue(directory.mkdirs());
+
+        // A solution of another layout stored under the key, as after a hash collision.
+        write(getFile(directory, solution), CanonicalForm.of(other).toCanonical(other));
+        // An unsolved entry, and an entry that is not a puzzle at all.
+        write(getFile(directory, other), CanonicalForm.of(other).toCanonical(layout(other)));
+
+        Puzzle third = new RandomPuzzleGenerator(5, 16, 16).generate(true);
+
+        try (FileOutputStream stream = new FileOutputStream(getFile(directory, third))) {
+            stream.write(new byte[] { 1, 2, 3 });
+        }
+
+        SolutionCache cache = new SolutionCache(directory, SolutionCache.DEFAULT_CAPACITY);
+
+        assertFalse(cache.get(layout(solution)).isPresent());
+        assertFalse(cache.get(layout(other)).isPresent());
+        assertFalse(cache.get(layout(third)).isPresent());
+
+        // The memory tier is guarded in the same way.
+        cache.put(layout(third), layout(third));
+        assertFalse(cache.get(layout(third)).isPresent());
+        cache.close();
+    }
+
+    @Test
+    public void closeDiscardsPendingWrites() throws InterruptedException {
+        File directory = new File(folder.getRoot(), "solutions");
+        SolutionCache cache = new SolutionCache(directory, SolutionCache.DEFAULT_CAPACITY);
+
+        for(int seed = 0; seed < 8; ++seed) {
+            Puzzle puzzle = new RandomPuzzleGenerator(seed, 24, 24).generate(true);
+            cache.put(layout(puzzle), puzzle);
+        }
+
+        cache.close();
+
+        String[] written = directory.list();
+        int count = written != null ? written.length : 0;
+
+        // Nothing is written once the cache is closed, not even solutions put afterwards.
+        cache.put(layout(solution), solution);
+        Thread.sleep(200);
+
+        String[] later = directory.list();
+        assertEquals(count, later != null ? later.length : 0);
+        assertFalse(getFile(directory, solution).exists());
+        // Solutions put after closing are only kept in memory.
+        assertEquals(solution, cache.get(layout(solution)).get());
+    }
+}
@@ -0,0 +1,110 @@
+package rnd.puzzleapp.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Move;
+import rnd.puzzleapp.puzzle.Puzzle;
+
+import static org.junit.Assert.*;
+
+public class StoredPuzzleTest {
+    private static final Bridge TOP = new Bridge(0, 0, 2, 0);
+    private static final Bridge LEFT = new Bridge(0, 0, 0, 2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PuzzleStore store;
+    private PuzzleStore stateStore;
+    private File journals;
+
+    private static Puzzle createPuzzle() {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.addIsland(new Island(0, 0, 4));
+        puzzle.addIsland(new Island(2, 0, 2));
+        puzzle.addIsland(new Island(0, 2, 2));
+
+        return puzzle;
+    }
+
+    private StoredPuzzle load(String name) {
+        return StoredPuzzle.load(store, stateStore, journals, name).get();
+    }
+
+    @Before
+    public void open() throws IOException {
+        store = PuzzleStore.open(new File(folder.getRoot(), "layouts"));
+        stateStore = PuzzleStore.open(new File(folder.getRoot(), "states"));
+        journals = folder.newFolder("journals");
+    }
+
+    @Test
+    public void playStateIsStoredApart() {
+        Puzzle solution = createPuzzle();
+        solution.addBridge(TOP);
+        solution.addBridge(TOP);
+        solution.addBridge(LEFT);
+        solution.addBridge(LEFT);
+
+        Puzzle puzzle = createPuzzle();
+        puzzle.addBridge(TOP);
+        assertTrue(StoredPuzzle.create("Custom", puzzle, solution).save(store, stateStore, journals));
+
+        StoredPuzzle loaded = load("Custom");
+        int layoutLength = store.get("Custom").get().remaining();
+
+        // The layout is viewed straight from its record, without the bridges of the play state.
+        assertEquals(3, StoredPuzzle.viewLayout(store, "Custom").get().getIslandCount());
+        assertEquals(0, StoredPuzzle.viewLayout(store, "Custom").get().getBridgeCount());
+
+        assertEquals(Collections.singletonList(TOP), loaded.getPuzzle().getBridges());
+        assertEquals(solution, loaded.getSolution().get());
+
+        // Moves are journaled, and saving the whole play state never rewrites the layout.
+        loaded.getPuzzle().addBridge(LEFT);
+        loaded.recordMove(Move.place(LEFT));
+        assertTrue(loaded.save(store, stateStore, journals));
+        assertEquals(Arrays.asList(LEFT, TOP), load("Custom").getPuzzle().getBridges());
+
+        loaded.markDirty();
+        assertTrue(loaded.save(store, stateStore, journals));
+        assertEquals(Arrays.asList(LEFT, TOP), load("Custom").getPuzzle().getBridges());
+        assertEquals(layoutLength, store.get("Custom").get().remaining());
+    }
+
+    @Test
+    public void resetStates() throws IOException {
+        Puzzle puzzle = createPuzzle();
+        puzzle.addBridge(TOP);
+        assertTrue(StoredPuzzle.create("Played", puzzle, null).save(store, stateStore, journals));
+        assertTrue(StoredPuzzle.create("Untouched", createPuzzle(), null).save(store, stateStore, journals));
+
+        StoredPuzzle played = load("Played");
+        played.getPuzzle().addBridge(LEFT);
+        played.recordMove(Move.place(LEFT));
+        assertTrue(played.save(store, stateStore, journals));
+
+        assertEquals(2, StoredPuzzle.resetStates(store, stateStore, journals, Arrays.asList("Played", "Untouched", "Missing")).size());
+
+        // The journal of the previous state is never replayed on the reset state.
+        assertTrue(load("Played").getPuzzle().getBridges().isEmpty());
+        assertEquals(createPuzzle().getIslands(), load("Played").getPuzzle().getIslands());
+
+        StoredPuzzle reset = load("Played");
+        reset.getPuzzle().addBridge(LEFT);
+        reset.recordMove(Move.place(LEFT));
+        assertTrue(reset.save(store, stateStore, journals));
+        assertEquals(Collections.singletonList(LEFT), load("Played").getPuzzle().getBridges());
+    }
+}
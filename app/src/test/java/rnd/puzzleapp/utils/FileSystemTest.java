@@ -0,0 +1,67 @@
+package rnd.puzzleapp.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class FileSystemTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws IOException {
+        File file = new File(folder.getRoot(), "file");
+
+        for(int count = 1000; count <= 100000; count *= 10) {
+            FileSystem.write(file, (stream, n) -> {
+                DataOutputStream output = new DataOutputStream(stream);
+                for(int i = 0; i < n; ++i) {
+                    output.writeInt(i);
+                }
+            }, count);
+
+            int expected = count;
+            int sum = FileSystem.read(file, stream -> {
+                DataInputStream input = new DataInputStream(stream);
+                int total = 0;
+                for(int i = 0; i < expected; ++i) {
+                    assertEquals(i, input.readInt());
+                    ++total;
+                }
+                assertEquals(-1, input.read());
+                return total;
+            });
+
+            assertEquals(count, sum);
+            assertEquals(4L * count, file.length());
+        }
+
+        assertArrayEquals(new String[] { "file" }, folder.getRoot().list());
+    }
+
+    @Test
+    public void failedWriteKeepsFile() throws IOException {
+        File file = new File(folder.getRoot(), "file");
+
+        FileSystem.write(file, (stream, b) -> stream.write(b), 42);
+
+        try {
+            FileSystem.write(file, (stream, b) -> {
+                stream.write(b);
+                throw new IOException("Interrupted save");
+            }, 7);
+            fail();
+        } catch (IOException e) {
+            // The previous contents must survive a failed save.
+        }
+
+        assertEquals(Integer.valueOf(42), FileSystem.read(file, stream -> stream.read()));
+    }
+}
@@ -0,0 +1,87 @@
+package rnd.puzzleapp.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class SizedLruCacheTest {
+    private static SizedLruCache<String, String> createCache(long capacity) {
+        return new SizedLruCache<>(capacity, String::length);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        SizedLruCache<String, String> cache = createCache(6);
+
+        cache.put("a", "aa");
+        cache.put("b", "bb");
+        cache.put("c", "cc");
+        cache.get("a");
+        cache.put("d", "dd");
+
+        assertEquals(Optional.of("aa"), cache.get("a"));
+        assertFalse(cache.get("b").isPresent());
+        assertEquals(Optional.of("cc"), cache.get("c"));
+        assertEquals(Optional.of("dd"), cache.get("d"));
+        assertEquals(6, cache.getSize());
+    }
+
+    @Test
+    public void skipsValuesLargerThanCapacity() {
+        SizedLruCache<String, String> cache = createCache(4);
+
+        cache.put("a", "aa");
+        cache.put("b", "bbbbb");
+
+        assertEquals(Optional.of("aa"), cache.get("a"));
+        assertFalse(cache.get("b").isPresent());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void replacingValueUpdatesSize() {
+        SizedLruCache<String, String> cache = createCache(10);
+
+        cache.put("a", "aaaa");
+        cache.put("a", "a");
+
+        assertEquals(Optional.of("a"), cache.get("a"));
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void removeIfRemovesMatchingKeys() {
+        SizedLruCache<String, String> cache = createCache(10);
+
+        cache.put("x#1", "aa");
+        cache.put("x#2", "bb");
+        cache.put("y#1", "cc");
+        cache.removeIf(key -> key.startsWith("x#"));
+
+        assertFalse(cache.get("x#1").isPresent());
+        assertFalse(cache.get("x#2").isPresent());
+        assertEquals(Optional.of("cc"), cache.get("y#1"));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void notifiesRemovedValues() {
+        List<String> removed = new ArrayList<>();
+        SizedLruCache<String, String> cache = new SizedLruCache<>(4, String::length, removed::add);
+
+        cache.put("a", "aa");
+        cache.put("b", "bb");
+        cache.put("b", "bb");
+        cache.put("c", "cc");
+        cache.put("d", "ddddd");
+        cache.remove("b");
+        cache.clear();
+
+        assertEquals(Arrays.asList("aa", "ddddd", "bb", "cc"), removed);
+    }
+}
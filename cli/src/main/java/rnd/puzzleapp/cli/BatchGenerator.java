@@ -0,0 +1,143 @@
+package rnd.puzzleapp.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import rnd.puzzleapp.puzzle.GenerationBudget;
+import rnd.puzzleapp.puzzle.GenerationResult;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleGenerator;
+import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+import rnd.puzzleapp.puzzle.UniquePuzzleGenerator;
+import rnd.puzzleapp.solver.DifficultyRater;
+import rnd.puzzleapp.solver.PuzzleSolver;
+import rnd.puzzleapp.solver.SolutionVerifier;
+import rnd.puzzleapp.solver.SolveResult;
+import rnd.puzzleapp.utils.Failures;
+
+/**
+ * Generates puzzles over a range of seeds, solves them with the selected solver, verifies the
+ * solutions, rates their difficulty unless disabled and optionally writes the puzzles in the format
+ * of the app.
+ */
+public class BatchGenerator {
+    private final long fromSeed;
+    private final long toSeed;
+    private final int minIslands;
+    private final int maxIslands;
+    private final boolean isScalable;
+    private final boolean isUnique;
+    private final boolean isRated;
+    private final GenerationBudget budget;
+    private final SolverType solverType;
+    private final File output;
+    private final String prefix;
+    private final BatchRunner runner;
+    private final ThreadLocal<PuzzleSolver> solvers;
+
+    /**
+     * Creates a new batch generator from the given command-line options.
+     * @param options the options
+     */
+    public BatchGenerator(Options options) {
+        this.fromSeed = options.getLong("from", 0);
+        this.toSeed = options.getLong("to", fromSeed + 99);
+        this.minIslands = options.getInt("min", 8);
+        this.maxIslands = options.getInt("max", minIslands);
+        this.isScalable = options.getString("mode", "default").equals("scalable");
+        this.isUnique = options.getString("mode", "default").equals("unique");
+        this.isRated = options.getString("rate", "yes").equals("yes");
+        this.budget = options.has("max-rounds") || options.has("max-millis") ?
+                new GenerationBudget(options.getLong("max-rounds", Long.MAX_VALUE), options.getLong("max-millis", Long.MAX_VALUE)) :
+                null;
+        this.solverType = SolverType.fromName(options.getString("solver", "smart"));
+        this.output = options.getFile("output");
+        this.prefix = options.getString("prefix", "Random");
+        this.runner = new BatchRunner(options.getThreads(), options.getFile("report"));
+        this.solvers = ThreadLocal.withInitial(solverType::create);
+
+        if(toSeed < fromSeed) {
+            throw new IllegalArgumentException("Option --to cannot be below --from");
+        } else if(minIslands < 2) {
+            throw new IllegalArgumentException("Option --min must be at least 2");
+        } else if(maxIslands < minIslands) {
+            throw new IllegalArgumentException("Option --max cannot be below --min");
+        } else if(!isScalable && !isUnique && !options.getString("mode", "default").equals("default")) {
+            throw new IllegalArgumentException("Option --mode must be default, scalable or unique");
+        } else if(!isRated && !options.getString("rate", "yes").equals("no")) {
+            throw new IllegalArgumentException("Option --rate must be yes or no");
+        }
+    }
+
+    /**
+     * Runs the batch.
+     * @return {@code true} if all puzzles were valid, solved and written, {@code false} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting for the batch
+     */
+    public boolean run() throws InterruptedException {
+        List<Callable<BatchResult>> tasks = new ArrayList<>();
+
+        for(long seed = fromSeed; seed <= toSeed; ++seed) {
+            long taskSeed = seed;
+            tasks.add(() -> process(taskSeed));
+        }
+
+        return runner.run("Generated", tasks);
+    }
+
+    private BatchResult process(long seed) {
+        String name = String.format(Locale.US, "%s %d", prefix, seed);
+        long start = System.nanoTime();
+        PuzzleGenerator generator = isUnique ?
+                new UniquePuzzleGenerator(seed, minIslands, maxIslands) :
+                new RandomPuzzleGenerator(seed, minIslands, maxIslands, isScalable);
+        Puzzle solution;
+
+        // NOTE: Only budgeted generation rebalances the operation biases, which changes the generated puzzles.
+        if(budget != null) {
+            GenerationResult result = generator.generate(true, budget);
+
+            if(!result.isGenerated()) {
+                String error = String.format("Generation failed: %s (%s)", result.getFailure(), result.getStats());
+
+                return new BatchResult(name, 0, false, false, System.nanoTime() - start, error);
+            }
+
+            solution = result.getPuzzle();
+        } else {
+            solution = generator.generate(true);
+        }
+
+        Puzzle puzzle = solution.copy();
+        puzzle.reset();
+
+        boolean isValid = SolutionVerifier.verify(puzzle, solution);
+        double score = isRated ? DifficultyRater.rate(puzzle).getScore() : Double.NaN;
+        PuzzleSolver solver = solvers.get();
+        String error = solver == null ? null :
+                Failures.recover(() -> solve(solver, puzzle), e -> String.format("Solver failed: %s", e));
+        boolean isSolved = error == null;
+
+        // NOTE: The generated solution is written rather than the one found by the solver, so that the
+        // output only depends on the seed and not on the selected solver.
+        if(output != null && isValid) {
+            try {
+                PuzzleFiles.write(new File(output, name), puzzle, solution);
+            } catch (IOException e) {
+                error = e.getMessage();
+            }
+        }
+
+        return new BatchResult(name, puzzle.getIslands().size(), isValid, isSolved, System.nanoTime() - start, error, score);
+    }
+
+    private static String solve(PuzzleSolver solver, Puzzle puzzle) {
+        SolveResult result = solver.solve(puzzle);
+
+        return result.isSolved() && SolutionVerifier.verify(puzzle, result.getPuzzle()) ? null : "No solution";
+    }
+}
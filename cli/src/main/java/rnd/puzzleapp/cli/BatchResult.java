@@ -0,0 +1,125 @@
+package rnd.puzzleapp.cli;
+
+import java.util.Locale;
+
+/**
+ * The outcome of processing a single puzzle in a batch.
+ */
+public class BatchResult {
+    private final String name;
+    private final int islandCount;
+    private final boolean isValid;
+    private final boolean isSolved;
+    private final long nanos;
+    private final String error;
+    private final double score;
+
+    /**
+     * Creates a new batch result.
+     * @param name the name of the puzzle
+     * @param islandCount the amount of islands of the puzzle
+     * @param isValid whether the solution of the puzzle passed verification
+     * @param isSolved whether the selected solver solved the puzzle, which is {@code true} if no
+     *                 solver was selected
+     * @param nanos the time spent processing the puzzle, in nanoseconds
+     * @param error the error that occurred while processing the puzzle, or {@code null} if none occurred
+     */
+    public BatchResult(String name, int islandCount, boolean isValid, boolean isSolved, long nanos, String error) {
+        this(name, islandCount, isValid, isSolved, nanos, error, Double.NaN);
+    }
+
+    /**
+     * Creates a new batch result of a rated puzzle.
+     * @param name the name of the puzzle
+     * @param islandCount the amount of islands of the puzzle
+     * @param isValid whether the solution of the puzzle passed verification
+     * @param isSolved whether the selected solver solved the puzzle, which is {@code true} if no
+     *                 solver was selected
+     * @param nanos the time spent processing the puzzle, in nanoseconds
+     * @param error the error that occurred while processing the puzzle, or {@code null} if none occurred
+     * @param score the difficulty score of the puzzle, or {@code Double.NaN} if it was not rated
+     */
+    public BatchResult(String name, int islandCount, boolean isValid, boolean isSolved, long nanos, String error, double score) {
+        this.name = name;
+        this.islandCount = islandCount;
+        this.isValid = isValid;
+        this.isSolved = isSolved;
+        this.nanos = nanos;
+        this.error = error;
+        this.score = score;
+    }
+
+    /**
+     * Checks whether the solution of the puzzle passed verification.
+     * @return {@code true} if the solution is valid, {@code false} otherwise
+     */
+    public boolean isValid() {
+        return isValid;
+    }
+
+    /**
+     * Checks whether the selected solver solved the puzzle.
+     * @return {@code true} if the puzzle was solved or no solver was selected, {@code false} otherwise
+     */
+    public boolean isSolved() {
+        return isSolved;
+    }
+
+    /**
+     * Checks whether an error occurred while processing the puzzle.
+     * @return {@code true} if an error occurred, {@code false} otherwise
+     */
+    public boolean hasError() {
+        return error != null;
+    }
+
+    /**
+     * Checks whether the puzzle was processed without any problems.
+     * @return {@code true} if the puzzle is valid, solved and no error occurred, {@code false} otherwise
+     */
+    public boolean isOk() {
+        return isValid && isSolved && error == null;
+    }
+
+    /**
+     * Returns the time spent processing the puzzle.
+     * @return the time, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Checks whether the puzzle was rated.
+     * @return {@code true} if the puzzle has a difficulty score, {@code false} otherwise
+     */
+    public boolean isRated() {
+        return !Double.isNaN(score);
+    }
+
+    /**
+     * Returns the difficulty score of the puzzle.
+     * @return the score, or {@code Double.NaN} if the puzzle was not rated
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Formats this result as a tab separated report line.
+     * @return the report line
+     */
+    public String toReportLine() {
+        return String.format(Locale.US, "%s\t%d\t%b\t%b\t%.3f\t%s\t%s",
+                name, islandCount, isValid, isSolved, nanos / 1e6, isRated() ? String.format(Locale.US, "%.3f", score) : "",
+                error == null ? "" : error);
+    }
+
+    /**
+     * Returns the header of a tab separated report.
+     * @return the report header
+     */
+    public static String getReportHeader() {
+        return "name\tislands\tvalid\tsolved\tmillis\tscore\terror";
+    }
+}
@@ -0,0 +1,129 @@
+package rnd.puzzleapp.cli;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+
+/**
+ * Runs batch tasks on a fixed pool of worker threads, and reports on their results.
+ */
+public class BatchRunner {
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final int threads;
+    private final File report;
+
+    /**
+     * Creates a new batch runner.
+     * @param threads the amount of worker threads
+     * @param report the file to write a tab separated report to, or {@code null} to skip the report
+     */
+    public BatchRunner(int threads, File report) {
+        this.threads = threads;
+        this.report = report;
+    }
+
+    /**
+     * Runs all given tasks and prints a summary once all of them completed.
+     * @param description a short description of the batch, used in the summary
+     * @param tasks the tasks to run
+     * @return {@code true} if all tasks completed without any problems, {@code false} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting for the tasks
+     */
+    public boolean run(String description, List<Callable<BatchResult>> tasks) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<BatchResult>> futures = new ArrayList<>(tasks.size());
+        List<BatchResult> results = new ArrayList<>(tasks.size());
+        long start = System.nanoTime();
+
+        try {
+            tasks.forEach(t -> futures.add(executor.submit(t)));
+
+            // Collect in submission order, so the report is ordered the same way as the tasks.
+            for(int i = 1; i <= futures.size(); ++i) {
+                results.add(futures.get(i - 1).get());
+
+                if(i % PROGRESS_INTERVAL == 0) {
+                    System.out.printf(Locale.US, "%d/%d\n", i, tasks.size());
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch task failed unexpectedly", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long invalid = results.stream().filter(r -> !r.isValid()).count();
+        long unsolved = results.stream().filter(r -> !r.isSolved()).count();
+        long errors = results.stream().filter(BatchResult::hasError).count();
+
+        System.out.printf(Locale.US, "%s %d puzzles in %.2fs (%.1f puzzles/s) on %d threads\n",
+                description, results.size(), seconds, results.size() / seconds, threads);
+        System.out.printf(Locale.US, "invalid: %d, unsolved: %d, errors: %d\n", invalid, unsolved, errors);
+
+        if(!results.isEmpty()) {
+            long[] nanos = results.stream().mapToLong(BatchResult::getNanos).sorted().toArray();
+
+            System.out.printf(Locale.US, "p50: %.1fms, p99: %.1fms, max: %.1fms\n",
+                    percentile(nanos, 50) / 1e6, percentile(nanos, 99) / 1e6, nanos[nanos.length - 1] / 1e6);
+        }
+
+        if(results.stream().anyMatch(BatchResult::isRated)) {
+            printDifficulties(results);
+        }
+
+        if(report != null) {
+            writeReport(results);
+        }
+
+        return results.stream().allMatch(BatchResult::isOk);
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        // Nearest-rank method.
+        int rank = (int)Math.ceil(percentile / 100.0 * sorted.length);
+
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static void printDifficulties(List<BatchResult> results) {
+        Map<PuzzleDifficulty, Long> counts = results.stream()
+                .filter(BatchResult::isRated)
+                .collect(Collectors.groupingBy(r -> PuzzleDifficulty.fromScore(r.getScore()), Collectors.counting()));
+
+        System.out.println(Arrays.stream(PuzzleDifficulty.values())
+                .map(d -> String.format(Locale.US, "%s: %d", d.getName(), counts.getOrDefault(d, 0L)))
+                .collect(Collectors.joining(", ")));
+    }
+
+    private void writeReport(List<BatchResult> results) {
+        File parent = report.getAbsoluteFile().getParentFile();
+
+        if(parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            System.err.printf("Could not create directory %s for report %s\n", parent, report);
+            return;
+        }
+
+        try (PrintWriter writer = new PrintWriter(report, "UTF-8")) {
+            writer.println(BatchResult.getReportHeader());
+            results.forEach(r -> writer.println(r.toReportLine()));
+        } catch (FileNotFoundException | UnsupportedEncodingException e) {
+            System.err.printf("Could not write report %s: %s\n", report, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package rnd.puzzleapp.cli;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.solver.PuzzleSolver;
+import rnd.puzzleapp.solver.SolutionVerifier;
+import rnd.puzzleapp.solver.SolveResult;
+import rnd.puzzleapp.utils.Failures;
+
+/**
+ * Verifies the solutions of previously written puzzles. Puzzles without a solution are solved with
+ * the selected solver, if any.
+ */
+public class BatchVerifier {
+    private final File input;
+    private final BatchRunner runner;
+    private final ThreadLocal<PuzzleSolver> solvers;
+
+    /**
+     * Creates a new batch verifier from the given command-line options.
+     * @param options the options
+     */
+    public BatchVerifier(Options options) {
+        this.input = options.getFile("input");
+        this.runner = new BatchRunner(options.getThreads(), options.getFile("report"));
+        this.solvers = ThreadLocal.withInitial(SolverType.fromName(options.getString("solver", "none"))::create);
+
+        if(input == null || !input.isDirectory()) {
+            throw new IllegalArgumentException("Option --input must be an existing directory");
+        }
+    }
+
+    /**
+     * Runs the batch.
+     * @return {@code true} if all puzzles have a valid solution, {@code false} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting for the batch
+     */
+    public boolean run() throws InterruptedException {
+        File[] directories = input.listFiles(f -> new File(f, PuzzleFiles.PUZZLE_NAME).isFile());
+        List<Callable<BatchResult>> tasks = new ArrayList<>();
+
+        Arrays.sort(directories);
+        for(File directory : directories) {
+            tasks.add(() -> process(directory));
+        }
+
+        return runner.run("Verified", tasks);
+    }
+
+    private BatchResult process(File directory) {
+        long start = System.nanoTime();
+        File solutionFile = new File(directory, PuzzleFiles.SOLUTION_NAME);
+
+        return Failures.recover(() -> {
+            Puzzle puzzle = PuzzleFiles.read(new File(directory, PuzzleFiles.PUZZLE_NAME));
+
+            if(solutionFile.isFile()) {
+                Puzzle solution = PuzzleFiles.read(solutionFile);
+                boolean isValid = SolutionVerifier.verify(puzzle, solution);
+
+                return new BatchResult(directory.getName(), puzzle.getIslands().size(), isValid, true, System.nanoTime() - start, null);
+            }
+
+            PuzzleSolver solver = solvers.get();
+            boolean isSolved = false;
+
+            if(solver != null) {
+                Puzzle layout = puzzle.copy();
+                layout.reset();
+                SolveResult result = solver.solve(layout);
+                isSolved = result.isSolved() && SolutionVerifier.verify(layout, result.getPuzzle());
+            }
+
+            return new BatchResult(directory.getName(), puzzle.getIslands().size(), isSolved, isSolved,
+                    System.nanoTime() - start, isSolved ? null : "No solution");
+        }, e -> new BatchResult(directory.getName(), 0, false, false, System.nanoTime() - start, e.toString()));
+    }
+}
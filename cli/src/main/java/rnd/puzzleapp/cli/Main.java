@@ -0,0 +1,98 @@
+package rnd.puzzleapp.cli;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Entry point of the headless command-line tool, which generates, solves and verifies puzzles in bulk
+ * on the JVM, without requiring an Android device.
+ */
+public class Main {
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+
+    public static void main(String[] args) {
+        if(args.length == 0) {
+            printUsage(System.err);
+            System.exit(EXIT_USAGE);
+        }
+
+        try {
+            Options options = Options.parse(Arrays.copyOfRange(args, 1, args.length));
+            boolean ok;
+
+            switch (args[0]) {
+                case "generate":
+                    ok = new BatchGenerator(options).run();
+                    break;
+
+                case "stream":
+                    ok = new StreamGenerator(options).run();
+                    break;
+
+                case "verify":
+                    ok = new BatchVerifier(options).run();
+                    break;
+
+                case "pack":
+                    ok = new PackBuilder(options).run();
+                    break;
+
+                case "help":
+                    printUsage(System.out);
+                    ok = true;
+                    break;
+
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown command '%s'", args[0]));
+            }
+
+            System.exit(ok ? EXIT_OK : EXIT_FAILED);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            System.exit(EXIT_USAGE);
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted");
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    private static void printUsage(PrintStream stream) {
+        stream.println("Usage: puzzle-cli <command> [options]");
+        stream.println();
+        stream.println("Commands:");
+        stream.println("  generate  Generate, solve and verify puzzles over a range of seeds");
+        stream.println("    --from <seed>        first seed (inclusive, default 0)");
+        stream.println("    --to <seed>          last seed (inclusive, default from + 99)");
+        stream.println("    --min <islands>      minimum island count (default 8)");
+        stream.println("    --max <islands>      maximum island count (default min)");
+        stream.println("    --mode <name>        default, scalable for thousands of islands or unique (default default)");
+        stream.println("    --max-rounds <n>     fail puzzles that need more permutation rounds (default unbounded)");
+        stream.println("    --max-millis <ms>    fail puzzles that take longer to generate (default unbounded)");
+        stream.println("    --solver <name>      smart, heuristic, bfs, dfs, ids or none (default smart)");
+        stream.println("    --rate <yes|no>      rate the difficulty of every puzzle (default yes)");
+        stream.println("    --output <dir>       directory to write puzzles to, omit to only verify");
+        stream.println("    --prefix <name>      name prefix of written puzzles (default Random)");
+        stream.println("    --report <file>      tab separated report of every puzzle");
+        stream.println("    --threads <n>        worker threads (default all cores)");
+        stream.println("  stream    Generate, verify, rate and write puzzles through a pipeline of stages");
+        stream.println("    --from, --to, --min, --max, --mode, --solver, --output, --prefix as for generate");
+        stream.println("    --queue <n>          capacity of the queue in front of every stage (default 16)");
+        stream.println("    --generate-threads <n>  threads generating puzzles (default 1)");
+        stream.println("    --verify-threads <n>    threads verifying puzzles (default threads - 1)");
+        stream.println("    --rate-threads <n>      threads rating puzzles (default 1)");
+        stream.println("    --write-threads <n>     threads writing puzzles (default 1)");
+        stream.println("    --threads <n>        total threads the verify default is derived from (default all cores)");
+        stream.println("  verify    Verify the solutions of previously written puzzles");
+        stream.println("    --input <dir>        directory containing the puzzles");
+        stream.println("    --solver <name>      solver used for puzzles without a solution (default none)");
+        stream.println("    --report <file>      tab separated report of every puzzle");
+        stream.println("    --threads <n>        worker threads (default all cores)");
+        stream.println("  pack      Generate and verify all default puzzles and write them to a puzzle pack");
+        stream.println("    --output <file>      file to write the puzzle pack to");
+        stream.println("    --report <file>      tab separated report of every puzzle");
+        stream.println("    --threads <n>        worker threads (default all cores)");
+    }
+}
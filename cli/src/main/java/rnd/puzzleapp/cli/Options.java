@@ -0,0 +1,105 @@
+package rnd.puzzleapp.cli;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options of the form {@code --name value}.
+ */
+public class Options {
+    private final Map<String, String> values;
+
+    private Options(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Checks whether the option with the given name was specified.
+     * @param name the name of the option, without leading dashes
+     * @return {@code true} if the option was specified, {@code false} otherwise
+     */
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Returns the value of the given option.
+     * @param name the name of the option, without leading dashes
+     * @param defaultValue the value returned if the option was not specified
+     * @return the value of the option
+     */
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Returns the integer value of the given option.
+     * @param name the name of the option, without leading dashes
+     * @param defaultValue the value returned if the option was not specified
+     * @return the value of the option
+     */
+    public int getInt(String name, int defaultValue) {
+        return (int)getLong(name, defaultValue);
+    }
+
+    /**
+     * Returns the long value of the given option.
+     * @param name the name of the option, without leading dashes
+     * @param defaultValue the value returned if the option was not specified
+     * @return the value of the option
+     */
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Option --%s expects a number", name));
+        }
+    }
+
+    /**
+     * Returns the file value of the given option.
+     * @param name the name of the option, without leading dashes
+     * @return the file, or {@code null} if the option was not specified
+     */
+    public File getFile(String name) {
+        String value = values.get(name);
+
+        return value == null ? null : new File(value);
+    }
+
+    /**
+     * Returns the amount of worker threads, which defaults to the amount of available cores.
+     * @return the amount of worker threads
+     */
+    public int getThreads() {
+        int threads = getInt("threads", Runtime.getRuntime().availableProcessors());
+
+        if(threads < 1) {
+            throw new IllegalArgumentException("Option --threads must be at least 1");
+        }
+
+        return threads;
+    }
+
+    /**
+     * Parses the given arguments.
+     * @param args the arguments, excluding the command
+     * @return the parsed options
+     */
+    public static Options parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+
+        for(int i = 0; i < args.length; i += 2) {
+            if(!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException(String.format("Invalid option '%s'", args[i]));
+            }
+
+            values.put(args[i].substring(2), args[i + 1]);
+        }
+
+        return new Options(values);
+    }
+}
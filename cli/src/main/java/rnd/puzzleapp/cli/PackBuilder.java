@@ -0,0 +1,100 @@
+package rnd.puzzleapp.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import rnd.puzzleapp.puzzle.DefaultPuzzle;
+import rnd.puzzleapp.puzzle.PackedPuzzle;
+import rnd.puzzleapp.serialization.PuzzlePackSerializer;
+import rnd.puzzleapp.solver.DifficultyRater;
+import rnd.puzzleapp.solver.SolutionCounter;
+import rnd.puzzleapp.solver.SolutionVerifier;
+
+/**
+ * Generates all default puzzles, verifies they are uniquely solvable, and writes them to a single puzzle pack that is shipped
+ * with the app, so that the default puzzles do not have to be generated on the device.
+ */
+public class PackBuilder {
+    private static final long MAX_SEARCH_NODES = 10000000;
+
+    private final File output;
+    private final BatchRunner runner;
+
+    /**
+     * Creates a new pack builder from the given command-line options.
+     * @param options the options
+     */
+    public PackBuilder(Options options) {
+        this.output = options.getFile("output");
+        this.runner = new BatchRunner(options.getThreads(), options.getFile("report"));
+
+        if(output == null) {
+            throw new IllegalArgumentException("Option --output is required");
+        }
+    }
+
+    /**
+     * Builds the puzzle pack. The pack is only written if all puzzles passed verification.
+     * @return {@code true} if the pack was written, {@code false} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting for the batch
+     */
+    public boolean run() throws InterruptedException {
+        List<DefaultPuzzle> defaultPuzzles = DefaultPuzzle.all();
+        PackedPuzzle[] packedPuzzles = new PackedPuzzle[defaultPuzzles.size()];
+        List<Callable<BatchResult>> tasks = new ArrayList<>();
+
+        for(int i = 0; i < packedPuzzles.length; ++i) {
+            int index = i;
+            tasks.add(() -> process(defaultPuzzles.get(index), packedPuzzles, index));
+        }
+
+        if(!runner.run("Packed", tasks)) {
+            System.err.println("Not writing puzzle pack, as not all puzzles passed verification");
+            return false;
+        }
+
+        try {
+            write(Arrays.asList(packedPuzzles));
+        } catch (IOException e) {
+            System.err.printf("Could not write puzzle pack %s: %s\n", output, e.getMessage());
+            return false;
+        }
+
+        return true;
+    }
+
+    private BatchResult process(DefaultPuzzle defaultPuzzle, PackedPuzzle[] packedPuzzles, int index) {
+        long start = System.nanoTime();
+        PackedPuzzle packedPuzzle = defaultPuzzle.generate();
+        boolean isValid = SolutionVerifier.verify(packedPuzzle.getPuzzle(), packedPuzzle.getSolution());
+        boolean isUnique = SolutionCounter.count(packedPuzzle.getPuzzle(), 2, MAX_SEARCH_NODES).isUnique();
+
+        packedPuzzles[index] = packedPuzzle;
+
+        // NOTE: The puzzles are not run through a solver, as the larger ones can take the existing
+        // solvers minutes. The generated solution is verified against the game rules instead, and
+        // the solution counter checks it is the only one.
+        return new BatchResult(packedPuzzle.getName(), packedPuzzle.getPuzzle().getIslands().size(),
+                isValid, isUnique, System.nanoTime() - start, isUnique ? null : "Puzzle is not uniquely solvable",
+                DifficultyRater.rate(packedPuzzle.getPuzzle()).getScore());
+    }
+
+    private void write(List<PackedPuzzle> packedPuzzles) throws IOException {
+        File directory = output.getAbsoluteFile().getParentFile();
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s", directory));
+        }
+
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            PuzzlePackSerializer.INSTANCE.serialize(stream, packedPuzzles);
+        }
+    }
+}
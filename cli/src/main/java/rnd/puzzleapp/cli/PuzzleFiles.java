@@ -0,0 +1,61 @@
+package rnd.puzzleapp.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.serialization.PuzzleSerializer;
+
+/**
+ * Reads and writes puzzles as one directory per puzzle, holding the puzzle and optionally its solution in
+ * the serialization format of the app. The app only reads this layout once, when migrating its legacy
+ * storage, so written puzzles are meant for the verify command rather than for copying into the storage
+ * of the app.
+ */
+public class PuzzleFiles {
+    public static final String PUZZLE_NAME = "puzzle";
+    public static final String SOLUTION_NAME = "solution";
+
+    /**
+     * Writes a puzzle and its solution to the given directory, which is created if needed.
+     * @param directory the directory of the puzzle
+     * @param puzzle the puzzle
+     * @param solution the solution, or {@code null} if no solution should be written
+     * @throws IOException if the puzzle could not be written
+     */
+    public static void write(File directory, Puzzle puzzle, Puzzle solution) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s", directory));
+        }
+
+        write(new File(directory, PUZZLE_NAME), puzzle);
+
+        if(solution != null) {
+            write(new File(directory, SOLUTION_NAME), solution);
+        }
+    }
+
+    /**
+     * Reads a puzzle from the given file.
+     * @param file the file to read from
+     * @return the puzzle
+     * @throws IOException if the puzzle could not be read
+     */
+    public static Puzzle read(File file) throws IOException {
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return PuzzleSerializer.INSTANCE.deserialize(stream);
+        }
+    }
+
+    private static void write(File file, Puzzle puzzle) throws IOException {
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            PuzzleSerializer.INSTANCE.serialize(stream, puzzle);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package rnd.puzzleapp.cli;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import rnd.puzzleapp.solver.BFSSolver;
+import rnd.puzzleapp.solver.DFSSolver;
+import rnd.puzzleapp.solver.HeuristicSolver;
+import rnd.puzzleapp.solver.IDSSolver;
+import rnd.puzzleapp.solver.PuzzleSolver;
+import rnd.puzzleapp.solver.SmartSolver;
+
+/**
+ * The solvers that can be selected from the command-line.
+ */
+public enum SolverType {
+    Smart(SmartSolver::new),
+    Heuristic(HeuristicSolver::new),
+    BFS(BFSSolver::new),
+    DFS(DFSSolver::new),
+    IDS(IDSSolver::new),
+    None(null);
+
+    private final Supplier<PuzzleSolver> factory;
+
+    SolverType(Supplier<PuzzleSolver> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Creates a new solver instance. As solvers keep search state, every thread needs its own instance.
+     * @return the new solver, or {@code null} for {@link SolverType#None}
+     */
+    public PuzzleSolver create() {
+        return factory == null ? null : factory.get();
+    }
+
+    /**
+     * Returns the solver type with the given name, ignoring case.
+     * @param name the name of the solver type
+     * @return the solver type
+     */
+    public static SolverType fromName(String name) {
+        for(SolverType type : values()) {
+            if(type.name().toLowerCase(Locale.US).equals(name.toLowerCase(Locale.US))) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Unknown solver '%s'", name));
+    }
+}
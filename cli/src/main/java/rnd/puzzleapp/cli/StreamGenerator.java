@@ -0,0 +1,164 @@
+package rnd.puzzleapp.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import rnd.puzzleapp.pipeline.Pipeline;
+import rnd.puzzleapp.pipeline.StageMetrics;
+import rnd.puzzleapp.puzzle.PackedPuzzle;
+import rnd.puzzleapp.puzzle.Puzzle;
+import rnd.puzzleapp.puzzle.PuzzleDifficulty;
+import rnd.puzzleapp.puzzle.PuzzleGenerator;
+import rnd.puzzleapp.puzzle.RandomPuzzleGenerator;
+import rnd.puzzleapp.puzzle.UniquePuzzleGenerator;
+import rnd.puzzleapp.solver.DifficultyRater;
+import rnd.puzzleapp.solver.PuzzleSolver;
+import rnd.puzzleapp.solver.SolutionVerifier;
+import rnd.puzzleapp.solver.SolveResult;
+
+/**
+ * Generates puzzles over a range of seeds through a streaming pipeline of generation, verification,
+ * difficulty rating and writing, where every stage has its own amount of threads. Unlike the batch
+ * generator, puzzles that fail a stage are dropped rather than reported, and the metrics of every stage
+ * are printed instead, which shows which stage needs more threads.
+ */
+public class StreamGenerator {
+    private final long fromSeed;
+    private final long toSeed;
+    private final int minIslands;
+    private final int maxIslands;
+    private final String mode;
+    private final File output;
+    private final String prefix;
+    private final int queueCapacity;
+    private final int generateThreads;
+    private final int verifyThreads;
+    private final int rateThreads;
+    private final int writeThreads;
+    private final ThreadLocal<PuzzleSolver> solvers;
+
+    /**
+     * Creates a new stream generator from the given command-line options.
+     * @param options the options
+     */
+    public StreamGenerator(Options options) {
+        this.fromSeed = options.getLong("from", 0);
+        this.toSeed = options.getLong("to", fromSeed + 99);
+        this.minIslands = options.getInt("min", 8);
+        this.maxIslands = options.getInt("max", minIslands);
+        this.mode = options.getString("mode", "default");
+        this.output = options.getFile("output");
+        this.prefix = options.getString("prefix", "Random");
+        this.queueCapacity = options.getInt("queue", 16);
+        this.generateThreads = options.getInt("generate-threads", 1);
+        this.verifyThreads = options.getInt("verify-threads", Math.max(1, options.getThreads() - 1));
+        this.rateThreads = options.getInt("rate-threads", 1);
+        this.writeThreads = options.getInt("write-threads", 1);
+        this.solvers = ThreadLocal.withInitial(SolverType.fromName(options.getString("solver", "smart"))::create);
+
+        if(toSeed < fromSeed) {
+            throw new IllegalArgumentException("Option --to cannot be below --from");
+        } else if(minIslands < 2) {
+            throw new IllegalArgumentException("Option --min must be at least 2");
+        } else if(maxIslands < minIslands) {
+            throw new IllegalArgumentException("Option --max cannot be below --min");
+        } else if(!mode.equals("default") && !mode.equals("scalable") && !mode.equals("unique")) {
+            throw new IllegalArgumentException("Option --mode must be default, scalable or unique");
+        }
+    }
+
+    /**
+     * Runs the pipeline.
+     * @return {@code true} if no puzzle was dropped, {@code false} otherwise
+     * @throws InterruptedException if the current thread was interrupted while waiting for the pipeline
+     */
+    public boolean run() throws InterruptedException {
+        Map<PuzzleDifficulty, AtomicLong> difficulties = new ConcurrentHashMap<>();
+        AtomicLong completed = new AtomicLong();
+        long start = System.nanoTime();
+        List<StageMetrics> metrics = Pipeline.<Long>create(queueCapacity)
+                .map("generate", generateThreads, seed -> Optional.of(generate(seed)))
+                .filter("verify", verifyThreads, this::verify)
+                .map("rate", rateThreads, p -> Optional.of(new RatedPuzzle(p, DifficultyRater.rate(p.getPuzzle()).getScore())))
+                .filter("write", writeThreads, this::write)
+                .onFailure((stage, cause) -> System.err.printf("Stage %s failed: %s\n", stage, cause))
+                .run(() -> LongStream.rangeClosed(fromSeed, toSeed).iterator(), p -> {
+                    difficulties.computeIfAbsent(PuzzleDifficulty.fromScore(p.score), d -> new AtomicLong()).incrementAndGet();
+                    completed.incrementAndGet();
+                });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long total = toSeed - fromSeed + 1;
+
+        System.out.printf(Locale.US, "Completed %d of %d puzzles in %.2fs (%.1f puzzles/s)\n",
+                completed.get(), total, seconds, completed.get() / seconds);
+        metrics.forEach(System.out::println);
+
+        for(PuzzleDifficulty difficulty : PuzzleDifficulty.values()) {
+            System.out.printf(Locale.US, "%s: %d\n", difficulty.getName(),
+                    difficulties.getOrDefault(difficulty, new AtomicLong()).get());
+        }
+
+        return completed.get() == total;
+    }
+
+    private PackedPuzzle generate(long seed) {
+        PuzzleGenerator generator = mode.equals("unique") ?
+                new UniquePuzzleGenerator(seed, minIslands, maxIslands) :
+                new RandomPuzzleGenerator(seed, minIslands, maxIslands, mode.equals("scalable"));
+        Puzzle solution = generator.generate(true);
+        Puzzle puzzle = solution.copy();
+        puzzle.reset();
+
+        return new PackedPuzzle(String.format(Locale.US, "%s %d", prefix, seed), puzzle, solution);
+    }
+
+    private boolean verify(PackedPuzzle packedPuzzle) {
+        PuzzleSolver solver = solvers.get();
+
+        if(!SolutionVerifier.verify(packedPuzzle.getPuzzle(), packedPuzzle.getSolution())) {
+            return false;
+        } else if(solver == null) {
+            return true;
+        }
+
+        SolveResult result = solver.solve(packedPuzzle.getPuzzle());
+
+        return result.isSolved() && SolutionVerifier.verify(packedPuzzle.getPuzzle(), result.getPuzzle());
+    }
+
+    private boolean write(RatedPuzzle ratedPuzzle) {
+        PackedPuzzle packedPuzzle = ratedPuzzle.packedPuzzle;
+
+        if(output != null) {
+            try {
+                PuzzleFiles.write(new File(output, packedPuzzle.getName()), packedPuzzle.getPuzzle(), packedPuzzle.getSolution());
+            } catch (IOException e) {
+                // The pipeline counts the puzzle as failed.
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A generated puzzle together with its difficulty score.
+     */
+    private static class RatedPuzzle {
+        private final PackedPuzzle packedPuzzle;
+        private final double score;
+
+        RatedPuzzle(PackedPuzzle packedPuzzle, double score) {
+            this.packedPuzzle = packedPuzzle;
+            this.score = score;
+        }
+    }
+}
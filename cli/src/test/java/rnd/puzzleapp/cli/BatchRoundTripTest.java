@@ -0,0 +1,71 @@
+package rnd.puzzleapp.cli;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import rnd.puzzleapp.puzzle.Bridge;
+import rnd.puzzleapp.puzzle.Island;
+import rnd.puzzleapp.puzzle.Puzzle;
+
+import static org.junit.Assert.*;
+
+public class BatchRoundTripTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Puzzle createPuzzle() {
+        Puzzle puzzle = new Puzzle();
+
+        puzzle.addIsland(new Island(0, 0, 1));
+        puzzle.addIsland(new Island(2, 0, 1));
+
+        return puzzle;
+    }
+
+    @Test
+    public void generateThenVerify() throws InterruptedException {
+        File puzzles = new File(folder.getRoot(), "puzzles");
+        File report = new File(folder.getRoot(), "reports/generated.tsv");
+
+        assertTrue(new BatchGenerator(Options.parse(new String[] {
+                "--from", "0", "--to", "4", "--min", "8", "--threads", "2",
+                "--output", puzzles.getPath(), "--report", report.getPath()
+        })).run());
+
+        assertTrue(report.isFile());
+        assertEquals(5, puzzles.listFiles(File::isDirectory).length);
+
+        assertTrue(new BatchVerifier(Options.parse(new String[] {
+                "--input", puzzles.getPath(), "--threads", "2"
+        })).run());
+    }
+
+    @Test
+    public void verifySolvesPuzzlesWithoutSolution() throws IOException, InterruptedException {
+        PuzzleFiles.write(new File(folder.getRoot(), "Unsolved"), createPuzzle(), null);
+
+        assertFalse(new BatchVerifier(Options.parse(new String[] {
+                "--input", folder.getRoot().getPath(), "--threads", "1"
+        })).run());
+        assertTrue(new BatchVerifier(Options.parse(new String[] {
+                "--input", folder.getRoot().getPath(), "--threads", "1", "--solver", "smart"
+        })).run());
+    }
+
+    @Test
+    public void verifyRejectsInvalidSolution() throws IOException, InterruptedException {
+        Puzzle solution = createPuzzle();
+        solution.addBridge(new Bridge(0, 0, 2, 0));
+        solution.addBridge(new Bridge(0, 0, 2, 0));
+
+        PuzzleFiles.write(new File(folder.getRoot(), "Invalid"), createPuzzle(), solution);
+
+        assertFalse(new BatchVerifier(Options.parse(new String[] {
+                "--input", folder.getRoot().getPath(), "--threads", "1"
+        })).run());
+    }
+}